@@ -0,0 +1,306 @@
+package ByteCode;
+
+import Semantica.RecordType;
+import Semantica.SwitchTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Formato binário .cpqpc: um Chunk já compilado, para correr sem Scanner, Parser nem Compiler.
+//
+// Layout (big-endian):
+//   "CPQC"                  assinatura
+//   u16 versão do formato, u16 quantidade de opcodes (muda quando o OpCode muda)
+//   u64 tamanho e u32 CRC32 do código-fonte, u16 + UTF-8 caminho do código-fonte
+//   u32 n, n x i32          código
+//   u32 n, n x constante    pool tipado: tag u8 + valor (tabelas de ESCOLHEAI: u32 n + n constantes;
+//                           tipos de registro: nome + u32 n + n nomes de campo, todos como texto)
+//   n x i32                 linha de cada unidade de código
+//   u32                     CRC32 de tudo o que vem antes
+public final class ChunkFile {
+
+    public static final String EXTENSAO = ".cpqpc";
+
+    private static final int MAGIC = 0x43505143; // "CPQC"
+    private static final int VERSAO = 7;
+
+    private static final int TAG_NULO = 0;
+    private static final int TAG_BOOLEANO = 1;
+    private static final int TAG_INTEIRO = 2;
+    private static final int TAG_QUEBRADO = 3;
+    private static final int TAG_TEXTO = 4;
+    private static final int TAG_ESCOLHA = 5; // SwitchTable: u32 n + n constantes
+    private static final int TAG_REGISTRO = 6; // RecordType: nome + u32 n + n campos
+
+    private ChunkFile() {}
+
+    // Ficheiro recusado: desatualizado, corrompido ou de outra versão
+    public static final class Invalido extends RuntimeException {
+        Invalido(String message) {
+            super(message);
+        }
+    }
+
+    // Caminho do .cpqpc que corresponde a um .cpqp
+    public static Path caminhoPara(Path source) {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return source.resolveSibling(base + EXTENSAO);
+    }
+
+    public static void write(Chunk chunk, Path source, Path out) throws IOException {
+        byte[] sourceBytes = Files.readAllBytes(source);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSAO);
+        data.writeShort(OpCode.values().length);
+        data.writeLong(sourceBytes.length);
+        data.writeInt(crc(sourceBytes, 0, sourceBytes.length));
+        byte[] path = source.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8);
+        data.writeShort(path.length);
+        data.write(path);
+
+        data.writeInt(chunk.code.size());
+        for (int unit : chunk.code) data.writeInt(unit);
+
+        data.writeInt(chunk.constants.size());
+        for (Object constant : chunk.constants) {
+            if (constant instanceof SwitchTable) {
+                List<Object> keys = ((SwitchTable) constant).keys();
+                data.writeByte(TAG_ESCOLHA);
+                data.writeInt(keys.size());
+                for (Object key : keys) writeConstant(data, key);
+            } else if (constant instanceof RecordType) {
+                RecordType type = (RecordType) constant;
+                data.writeByte(TAG_REGISTRO);
+                writeConstant(data, type.name);
+                data.writeInt(type.shape.size());
+                for (int i = 0; i < type.shape.size(); i++) writeConstant(data, type.shape.field(i));
+            } else {
+                writeConstant(data, constant);
+            }
+        }
+
+        for (int line : chunk.lines) data.writeInt(line);
+        data.flush();
+
+        byte[] payload = bytes.toByteArray();
+        data.writeInt(crc(payload, 0, payload.length));
+        data.flush();
+        Files.write(out, bytes.toByteArray());
+    }
+
+    private static void writeConstant(DataOutputStream data, Object constant) throws IOException {
+        if (constant == null) {
+            data.writeByte(TAG_NULO);
+        } else if (constant instanceof Boolean) {
+            data.writeByte(TAG_BOOLEANO);
+            data.writeBoolean((Boolean) constant);
+        } else if (constant instanceof Integer) {
+            data.writeByte(TAG_INTEIRO);
+            data.writeInt((Integer) constant);
+        } else if (constant instanceof Double) {
+            data.writeByte(TAG_QUEBRADO);
+            data.writeDouble((Double) constant);
+        } else if (constant instanceof String) {
+            byte[] utf8 = ((String) constant).getBytes(StandardCharsets.UTF_8);
+            data.writeByte(TAG_TEXTO);
+            data.writeInt(utf8.length);
+            data.write(utf8);
+        } else {
+            // OP_INTERPRET guarda comandos da AST, que só existem depois do Parser
+            throw new Invalido("Constante do tipo " + constant.getClass().getSimpleName()
+                    + " não pode ser gravada; o programa usa comandos delegados ao interpretador.");
+        }
+    }
+
+    // Mapeia o ficheiro em memória e reconstrói o Chunk, validando tudo antes de o entregar à VM
+    public static Chunk load(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 4 + 2 + 2 + 8 + 4 + 4 || size > Integer.MAX_VALUE) {
+                throw new Invalido("Tamanho de ficheiro inválido (" + size + " bytes).");
+            }
+            // O mapeamento continua válido depois de fechar o canal
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        try {
+            if (buffer.getInt() != MAGIC) throw new Invalido("Não é um ficheiro .cpqpc.");
+            int versao = buffer.getShort() & 0xFFFF;
+            if (versao != VERSAO) {
+                throw new Invalido("Versão do formato " + versao + ", esperada " + VERSAO + ". Compile de novo.");
+            }
+            int opcodes = buffer.getShort() & 0xFFFF;
+            if (opcodes != OpCode.values().length) {
+                throw new Invalido("Gerado por outra versão da VM. Compile de novo.");
+            }
+
+            // Integridade antes de qualquer outra leitura: o CRC final cobre o resto do ficheiro
+            int end = buffer.limit() - 4;
+            int stored = buffer.getInt(end);
+            if (stored != crc(buffer, end)) throw new Invalido("Ficheiro corrompido (CRC não confere).");
+
+            long sourceLength = buffer.getLong();
+            int sourceCrc = buffer.getInt();
+            String sourcePath = readUtf(buffer);
+            checkFresh(Paths.get(sourcePath), sourceLength, sourceCrc);
+
+            Chunk chunk = new Chunk();
+            int codeSize = count(buffer, 4);
+            for (int i = 0; i < codeSize; i++) chunk.code.add(buffer.getInt());
+
+            int constants = count(buffer, 1);
+            for (int i = 0; i < constants; i++) {
+                if (buffer.get(buffer.position()) == TAG_ESCOLHA) {
+                    buffer.get();
+                    int keys = count(buffer, 1);
+                    List<Object> values = new ArrayList<>(keys);
+                    for (int k = 0; k < keys; k++) values.add(readConstant(buffer));
+                    chunk.constants.add(new SwitchTable(values));
+                } else if (buffer.get(buffer.position()) == TAG_REGISTRO) {
+                    buffer.get();
+                    chunk.constants.add(readRecordType(buffer));
+                } else {
+                    chunk.constants.add(readConstant(buffer));
+                }
+            }
+
+            for (int i = 0; i < codeSize; i++) chunk.lines.add(buffer.getInt());
+            if (buffer.position() != end) throw new Invalido("Dados a mais no fim do ficheiro.");
+
+            checkCode(chunk);
+            return chunk;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new Invalido("Ficheiro truncado.");
+        }
+    }
+
+    // O .cpqpc está desatualizado se o código-fonte ainda existe e mudou desde a compilação
+    private static void checkFresh(Path source, long length, int expectedCrc) throws IOException {
+        if (!Files.exists(source)) return; // distribuído sem o código-fonte
+        if (Files.size(source) != length) {
+            throw new Invalido("Desatualizado: " + source + " mudou desde a compilação.");
+        }
+        byte[] bytes = Files.readAllBytes(source);
+        if (crc(bytes, 0, bytes.length) != expectedCrc) {
+            throw new Invalido("Desatualizado: " + source + " mudou desde a compilação.");
+        }
+    }
+
+    // Opcodes conhecidos, operandos dentro do código, constantes existentes e pilha equilibrada
+    private static void checkCode(Chunk chunk) {
+        OpCode[] opcodes = OpCode.values();
+        int pc = 0;
+        int size = chunk.code.size();
+        while (pc < size) {
+            int raw = chunk.code.get(pc);
+            if (raw < 0 || raw >= opcodes.length) throw new Invalido("Opcode inválido " + raw + " em " + pc + ".");
+            OpCode op = opcodes[raw];
+            if (op == OpCode.OP_INTERPRET) throw new Invalido("OP_INTERPRET não pode vir de um ficheiro.");
+            if (pc + op.operandos() >= size) throw new Invalido("Instrução cortada em " + pc + ".");
+            // Slots (de contador, de valor de laço e temporários) e tamanhos de vetor e mapa não são
+            // constantes: validados pelo Verifier
+            if (!op.isJump() && op.operandos() == 1 && op != OpCode.OP_GET_COUNTER
+                    && op != OpCode.OP_GET_LOCAL && op != OpCode.OP_SET_LOCAL
+                    && op != OpCode.OP_ARRAY && op != OpCode.OP_MAP && op != OpCode.OP_LOOP_CLEAR
+                    && op != OpCode.OP_LOOP_KEEP && op != OpCode.OP_LOOP_DERIVE && op != OpCode.OP_LOOP_ADVANCE) {
+                int index = chunk.code.get(pc + 1);
+                if (index < 0 || index >= chunk.constants.size()) {
+                    throw new Invalido("Constante inexistente em " + pc + ".");
+                }
+                Object constant = chunk.constants.get(index);
+                boolean nome = op == OpCode.OP_DEFINE_GLOBAL || op == OpCode.OP_GET_GLOBAL || op == OpCode.OP_SET_GLOBAL
+                        || op == OpCode.OP_INC_GLOBAL || op == OpCode.OP_DEC_GLOBAL || op == OpCode.OP_INVOKE
+                        || op == OpCode.OP_GET_FIELD || op == OpCode.OP_SET_FIELD;
+                if (nome && !(constant instanceof String)) {
+                    throw new Invalido("Nome de variável ou método inválido em " + pc + ".");
+                }
+            }
+            pc += 1 + op.operandos();
+        }
+        // Saltos e altura da pilha
+        try {
+            Verifier.verify(chunk);
+        } catch (Verifier.Rejeitado e) {
+            throw new Invalido(e.getMessage());
+        }
+    }
+
+    private static Object readConstant(ByteBuffer buffer) {
+        int tag = buffer.get();
+        switch (tag) {
+            case TAG_NULO: return null;
+            case TAG_BOOLEANO: return buffer.get() != 0;
+            case TAG_INTEIRO: return buffer.getInt();
+            case TAG_QUEBRADO: return buffer.getDouble();
+            case TAG_TEXTO: {
+                byte[] utf8 = new byte[count(buffer, 1)];
+                buffer.get(utf8);
+                return new String(utf8, StandardCharsets.UTF_8);
+            }
+            default: throw new Invalido("Tipo de constante desconhecido: " + tag + ".");
+        }
+    }
+
+    // Nome e campos de texto, sem campos repetidos
+    private static RecordType readRecordType(ByteBuffer buffer) {
+        Object name = readConstant(buffer);
+        int count = count(buffer, 1);
+        List<String> fields = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Object field = readConstant(buffer);
+            if (!(field instanceof String) || fields.contains(field)) throw new Invalido("Campo de registro inválido.");
+            fields.add((String) field);
+        }
+        if (!(name instanceof String)) throw new Invalido("Nome de registro inválido.");
+        return new RecordType((String) name, fields);
+    }
+
+    // u16 + bytes UTF-8; só usado para o caminho do código-fonte
+    private static String readUtf(ByteBuffer buffer) {
+        byte[] utf8 = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    // Lê uma contagem e confirma que cabe no que resta do ficheiro
+    private static int count(ByteBuffer buffer, int minBytesEach) {
+        int n = buffer.getInt();
+        if (n < 0 || (long) n * minBytesEach > buffer.remaining()) {
+            throw new Invalido("Contagem inválida: " + n + ".");
+        }
+        return n;
+    }
+
+    private static int crc(byte[] bytes, int from, int to) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, from, to - from);
+        return (int) crc.getValue();
+    }
+
+    private static int crc(ByteBuffer buffer, int end) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(0);
+        view.limit(end);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,320 @@
+package ByteCode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Escritor mínimo de ficheiros .class usado pelo JitCompiler.
+// Gera a versão 49 (Java 5) do formato, que é verificada por inferência de tipos
+// e por isso dispensa o atributo StackMapTable.
+final class ClassFileWriter {
+
+    // Opcodes JVM usados pelo gerador
+    static final int ACONST_NULL = 0x01;
+    static final int BIPUSH = 0x10;
+    static final int SIPUSH = 0x11;
+    static final int LDC_W = 0x13;
+    static final int LDC2_W = 0x14;
+    static final int ILOAD = 0x15;
+    static final int ALOAD = 0x19;
+    static final int IALOAD = 0x2e;
+    static final int AALOAD = 0x32;
+    static final int ISTORE = 0x36;
+    static final int ASTORE = 0x3a;
+    static final int AASTORE = 0x53;
+    static final int POP = 0x57;
+    static final int POP2 = 0x58;
+    static final int DUP = 0x59;
+    static final int DUP_X1 = 0x5a;
+    static final int DUP2 = 0x5c;
+    static final int SWAP = 0x5f;
+    static final int IADD = 0x60;
+    static final int IFEQ = 0x99;
+    static final int IFNE = 0x9a;
+    static final int IF_ICMPLT = 0xa1;
+    static final int IF_ICMPGE = 0xa2;
+    static final int IF_ICMPGT = 0xa3;
+    static final int IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int TABLESWITCH = 0xaa;
+    static final int IRETURN = 0xac;
+    static final int ARETURN = 0xb0;
+    static final int RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2;
+    static final int PUTSTATIC = 0xb3;
+    static final int INVOKESTATIC = 0xb8;
+    static final int ANEWARRAY = 0xbd;
+    static final int IFNONNULL = 0xc7;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<Code> methods = new ArrayList<>();
+
+    ClassFileWriter(String internalName) {
+        this.thisClass = classRef(internalName);
+        this.superClass = classRef("java/lang/Object");
+    }
+
+    // --- Pool de constantes ---
+
+    int utf8(String value) {
+        return entry("U" + value, 1, out -> out.writeUTF(value));
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return entry("C" + internalName, 7, out -> out.writeShort(name));
+    }
+
+    int string(String value) {
+        int text = utf8(value);
+        return entry("S" + value, 8, out -> out.writeShort(text));
+    }
+
+    int integer(int value) {
+        return entry("I" + value, 3, out -> out.writeInt(value));
+    }
+
+    int doubleConst(double value) {
+        int index = entry("D" + Double.doubleToRawLongBits(value), 6, out -> out.writeDouble(value));
+        poolCount++; // double ocupa duas entradas no pool
+        return index;
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(9, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int owningClass = classRef(owner);
+        int nameIndex = utf8(name);
+        int descIndex = utf8(descriptor);
+        int nameAndType = entry("N" + name + ":" + descriptor, 12, out -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descIndex);
+        });
+        return entry(tag + owner + "." + name + ":" + descriptor, tag, out -> {
+            out.writeShort(owningClass);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private interface PoolWriter { void write(DataOutputStream out) throws IOException; }
+
+    private int entry(String key, int tag, PoolWriter writer) {
+        Integer existing = poolIndex.get(key);
+        if (existing != null) return existing;
+        try {
+            poolOut.writeByte(tag);
+            writer.write(poolOut);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        int index = poolCount++;
+        if (index > 0xFFFF) {
+            throw new IllegalStateException("Pool de constantes da classe excedeu 65535 entradas.");
+        }
+        poolIndex.put(key, index);
+        return index;
+    }
+
+    // --- Campos e métodos ---
+
+    void addField(int access, String name, String descriptor) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0); // sem atributos
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        fields.add(bytes.toByteArray());
+    }
+
+    Code addMethod(int access, String name, String descriptor) {
+        Code code = new Code(this, access, utf8(name), utf8(descriptor));
+        methods.add(code);
+        return code;
+    }
+
+    byte[] toBytes() {
+        int codeAttr = utf8("Code");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);  // minor
+            out.writeShort(49); // major: Java 5
+            out.writeShort(poolCount);
+            out.write(pool.toByteArray());
+            out.writeShort(ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(fields.size());
+            for (byte[] field : fields) out.write(field);
+            out.writeShort(methods.size());
+            for (Code method : methods) method.writeTo(out, codeAttr);
+            out.writeShort(0); // atributos da classe
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // Posição no código de um método; os saltos para ela são corrigidos quando é colocada.
+    static final class Label {
+        private int position = -1;
+        private final List<int[]> pending = new ArrayList<>(); // {início da instrução, posição do offset}
+    }
+
+    // Corpo (atributo Code) de um método
+    static final class Code {
+        private final ClassFileWriter owner;
+        private final int access, name, descriptor;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        int maxStack;
+        int maxLocals;
+
+        private Code(ClassFileWriter owner, int access, int name, int descriptor) {
+            this.owner = owner;
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        int size() { return code.size(); }
+
+        void op(int opcode) { code.write(opcode); }
+
+        void op(int opcode, int u2) {
+            code.write(opcode);
+            u2(u2);
+        }
+
+        void u1(int value) { code.write(value & 0xFF); }
+
+        void u2(int value) {
+            code.write((value >> 8) & 0xFF);
+            code.write(value & 0xFF);
+        }
+
+        void u4(int value) {
+            u2(value >>> 16);
+            u2(value & 0xFFFF);
+        }
+
+        void pushInt(int value) {
+            if (value >= -128 && value <= 127) {
+                op(BIPUSH);
+                u1(value);
+            } else if (value >= -32768 && value <= 32767) {
+                op(SIPUSH, value);
+            } else {
+                op(LDC_W, owner.integer(value));
+            }
+        }
+
+        void invokeStatic(String ownerClass, String method, String desc) {
+            op(INVOKESTATIC, owner.methodRef(ownerClass, method, desc));
+        }
+
+        void jump(int opcode, Label target) {
+            int start = code.size();
+            op(opcode);
+            if (target.position >= 0) {
+                u2(target.position - start);
+            } else {
+                target.pending.add(new int[]{start, code.size()});
+                u2(0);
+            }
+        }
+
+        // Offset de 4 bytes relativo a 'start' (usado pelo tableswitch)
+        void jump4(int start, Label target) {
+            if (target.position >= 0) {
+                u4(target.position - start);
+            } else {
+                target.pending.add(new int[]{start, code.size(), 4});
+                u4(0);
+            }
+        }
+
+        void align4() {
+            while (code.size() % 4 != 0) code.write(0);
+        }
+
+        void place(Label label) {
+            label.position = code.size();
+        }
+
+        private void writeTo(DataOutputStream out, int codeAttr) throws IOException {
+            byte[] body = code.toByteArray();
+            if (body.length > 0xFFFF) {
+                throw new IllegalStateException("Método gerado excede 64KB de bytecode JVM.");
+            }
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttr);
+            out.writeInt(12 + body.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeShort(0); // tabela de exceções
+            out.writeShort(0); // atributos do Code
+        }
+
+        // Corrige todos os saltos pendentes; deve ser chamado depois de colocar os labels
+        void resolve(List<Label> labels) {
+            byte[] body = code.toByteArray();
+            for (Label label : labels) {
+                if (label.position < 0 && !label.pending.isEmpty()) {
+                    throw new IllegalStateException("Label usado mas nunca colocado.");
+                }
+                for (int[] ref : label.pending) {
+                    int offset = label.position - ref[0];
+                    if (ref.length == 3) {
+                        body[ref[1]] = (byte) (offset >>> 24);
+                        body[ref[1] + 1] = (byte) (offset >>> 16);
+                        body[ref[1] + 2] = (byte) (offset >>> 8);
+                        body[ref[1] + 3] = (byte) offset;
+                    } else {
+                        if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                            throw new IllegalStateException("Salto JVM muito longo.");
+                        }
+                        body[ref[1]] = (byte) (offset >> 8);
+                        body[ref[1] + 1] = (byte) offset;
+                    }
+                }
+                label.pending.clear();
+            }
+            code.reset();
+            code.write(body, 0, body.length);
+        }
+    }
+}
@@ -1,14 +1,54 @@
 package ByteCode;
 
+import Semantica.LoopInvariants;
+import Semantica.RecordType;
+import Semantica.SwitchTable;
 import Sintatica.Expr;
 import Sintatica.Stmt;
 import Lexica.Token;
+import Lexica.TokenType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private Chunk currentChunk;
 
+    // Decide o que é traduzido para bytecode e o que fica com o Interpreter
+    private final VmSupport support = new VmSupport();
+
+    // Saltos de PAREI pendentes, um nível por VOLTAINFINITA em compilação
+    private final Deque<List<Integer>> breakJumps = new ArrayDeque<>();
+
+    // FAZAVOLTA contados em compilação: variável do laço -> slot do contador
+    private final Map<String, Integer> counterSlots = new HashMap<>();
+    private int nextCounter;
+    // Dentro da versão genérica de um FAZAVOLTA contado os laços aninhados ficam genéricos,
+    // para que cada nível não duplique o código dos que estão dentro dele
+    private int genericDepth;
+
+    // Valores de laço (LoopInvariants) dos laços em compilação: expressão invariante -> slot, e
+    // produtos 'i * k' da versão contada de um FAZAVOLTA -> slot e passo do contador
+    private final Map<Expr, Integer> loopValueSlots = new IdentityHashMap<>();
+    private final Map<Expr, Product> products = new IdentityHashMap<>();
+    private int nextLoopValue;
+
+    // Iteradores dos FAZAVOLTA (VAR x : ...), em globais escondidas "#0", "#1"... ('#' não
+    // começa nenhum identificador, por isso o programa não as vê)
+    private int nextIterator;
+
+    // Um RecordType por REGISTRO: todos os OP_NEW_RECORD do mesmo tipo partilham a constante
+    private final Map<Stmt.Record, RecordType> recordTypes = new IdentityHashMap<>();
+
+    // Estatística da última compilação: comandos traduzidos e comandos delegados
+    private int nativeStatements;
+    private int interpretedStatements;
+
     private int getCurrentLine(Token token) {
         return (token != null) ? token.line : 0;
     }
@@ -19,14 +59,25 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     public Chunk compile(List<Stmt> statements) {
         this.currentChunk = new Chunk();
+        this.breakJumps.clear();
+        this.counterSlots.clear();
+        this.nextCounter = 0;
+        this.genericDepth = 0;
+        this.nextIterator = 0;
+        this.loopValueSlots.clear();
+        this.products.clear();
+        this.nextLoopValue = 0;
+        this.recordTypes.clear();
+        this.nativeStatements = 0;
+        this.interpretedStatements = 0;
 
         try {
             for (Stmt stmt : statements) {
-                stmt.accept(this);
+                compileStatement(stmt);
             }
 
             currentChunk.write(OpCode.OP_RETURN, 0);
-            return currentChunk;
+            return Peephole.optimize(currentChunk);
 
         } catch (Exception e) {
             System.err.println("Erro de compilação: " + e.getMessage());
@@ -35,6 +86,23 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         }
     }
 
+    public int getNativeStatements() { return nativeStatements; }
+
+    public int getInterpretedStatements() { return interpretedStatements; }
+
+    // Traduz o comando para bytecode ou, se a VM não o suportar, delega-o ao Interpreter
+    private void compileStatement(Stmt stmt) {
+        if (support.isNative(stmt)) {
+            if (!(stmt instanceof Stmt.Block)) nativeStatements++;
+            stmt.accept(this);
+        } else {
+            interpretedStatements++;
+            int constIndex = currentChunk.addConstant(stmt);
+            currentChunk.write(OpCode.OP_INTERPRET, 0);
+            currentChunk.write(constIndex, 0);
+        }
+    }
+
     // --- VISITORS DE COMANDO (Stmt) ---
 
     @Override
@@ -53,42 +121,287 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
-    @Override public Void visitCallExpr(Expr.Call expr) { /* TODO */ return null; }
-    @Override public Void visitFunctionStmt(Stmt.Function stmt) { /* TODO */ return null; }
-    @Override public Void visitReturnStmt(Stmt.Return stmt) { /* TODO */ return null; }
-    @Override public Void visitBreakStmt(Stmt.Break stmt) { /* TODO */ return null; }
-    @Override public Void visitSwitchStmt(Stmt.Switch stmt) { /* TODO */ return null; }
+    // Sem tradução para bytecode: o VmSupport faz com que estes comandos vão para o Interpreter
+    @Override public Void visitFunctionStmt(Stmt.Function stmt) { throw unsupported("FUNCAO"); }
+    @Override public Void visitReturnStmt(Stmt.Return stmt) { throw unsupported("RETORNA"); }
+
+    private RuntimeException unsupported(String what) {
+        return new RuntimeException("A VM não traduz " + what + "; deveria ter sido delegado ao interpretador.");
+    }
+
+    @Override
+    // O tipo é resolvido pelo Parser; cada Ponto(...) leva o RecordType como constante
+    public Void visitRecordStmt(Stmt.Record stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        // Fora de um laço o PAREI não faz nada na VM
+        if (!breakJumps.isEmpty()) {
+            breakJumps.peek().add(emitJump(OpCode.OP_JUMP, 0));
+        }
+        return null;
+    }
 
     @Override
     public Void visitIfStmt(Stmt.If stmt) {
         int line = 0;
-        stmt.condition.accept(this);
-        int thenJump = emitJump(OpCode.OP_JUMP_IF_FALSE, line);
-        stmt.thenBranch.accept(this);
+        // Os saltos condicionais consomem a condição nos dois caminhos: a pilha fica como estava
+        List<Integer> thenJumps = conditionJumps(stmt.condition, line);
+        compileStatement(stmt.thenBranch);
         int elseJump = emitJump(OpCode.OP_JUMP, line);
-        patchJump(thenJump);
+        for (int thenJump : thenJumps) {
+            patchJump(thenJump);
+        }
         if (stmt.elseBranch != null) {
-            stmt.elseBranch.accept(this);
+            compileStatement(stmt.elseBranch);
         }
         patchJump(elseJump);
         return null;
     }
 
+    // Invariantes do laço: OP_LOOP_CLEAR antes da primeira volta, e cada uma é calculada
+    // só na primeira avaliação (OP_LOOP_VALUE / OP_LOOP_KEEP em visitBinaryExpr)
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
         int line = 0;
+        List<Expr> invariants = enterLoopValues(LoopInvariants.of(stmt).invariants);
         int loopStart = currentChunk.code.size();
-        stmt.condition.accept(this);
-        int exitJump = emitJump(OpCode.OP_JUMP_IF_FALSE, line);
-        stmt.body.accept(this);
+        List<Integer> exitJumps = conditionJumps(stmt.condition, line);
+        breakJumps.push(new ArrayList<>());
+        compileStatement(stmt.body);
+        emitLoop(loopStart, line);
+        for (int exitJump : exitJumps) {
+            patchJump(exitJump);
+        }
+        for (int breakJump : breakJumps.pop()) {
+            patchJump(breakJump);
+        }
+        invariants.forEach(loopValueSlots::remove);
+        return null;
+    }
+
+    // Dá slot às invariantes que ainda não têm (as de um laço de fora também valem neste, e um
+    // produto 'i * k' de fora é invariante num laço de dentro) e esvazia-os à entrada do laço.
+    // Devolve as registadas aqui, para serem retiradas no fim do laço.
+    private List<Expr> enterLoopValues(List<Expr.Binary> invariants) {
+        List<Expr> entered = new ArrayList<>();
+        for (Expr.Binary invariant : invariants) {
+            if (loopValueSlots.containsKey(invariant) || products.containsKey(invariant)) continue;
+            int slot = nextLoopValue++;
+            loopValueSlots.put(invariant, slot);
+            currentChunk.write(OpCode.OP_LOOP_CLEAR, getCurrentLine(invariant.operator));
+            currentChunk.write(slot, getCurrentLine(invariant.operator));
+            entered.add(invariant);
+        }
+        return entered;
+    }
+
+    // Produto 'i * k' pelo contador de um FAZAVOLTA contado (OP_LOOP_DERIVE / OP_LOOP_ADVANCE)
+    private static final class Product {
+        final int slot;
+        final int step;
+        final Expr counter;
+        final Expr factor;
+
+        Product(int slot, int step, Expr counter, Expr factor) {
+            this.slot = slot;
+            this.step = step;
+            this.counter = counter;
+            this.factor = factor;
+        }
+    }
+
+    // FAZAVOLTA: a inicialização corre uma vez; o passo, depois do corpo (PAREI salta-o).
+    // Na forma contada (CountedLoop) o contador fica num slot int da VM: OP_FOR_PREP testa a
+    // primeira volta e OP_FOR_LOOP soma, compara e salta de uma vez. Se início ou limite não forem
+    // inteiros, OP_FOR_PREP desvia para uma cópia genérica do laço, que testa a condição por extenso.
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        if (stmt.initializer != null) {
+            compileStatement(stmt.initializer);
+        }
+        CountedLoop counted = genericDepth == 0 ? CountedLoop.of(stmt) : null;
+        if (counted != null && (counterSlots.containsKey(counted.variable) || !support.isFullyNative(stmt.body))) {
+            counted = null;
+        }
+        LoopInvariants values = LoopInvariants.of(stmt, counted != null ? counted.variable : null);
+        List<Expr> invariants = enterLoopValues(values.invariants);
+        if (counted != null) {
+            compileCountedFor(stmt, counted, values);
+        } else {
+            compileGenericFor(stmt);
+        }
+        invariants.forEach(loopValueSlots::remove);
+        return null;
+    }
+
+    // Na versão contada os produtos 'i * k' são somados a cada volta: OP_LOOP_ADVANCE antes do
+    // OP_FOR_LOOP. A versão genérica não tem contador num slot e multiplica por extenso.
+    private void compileCountedFor(Stmt.For stmt, CountedLoop loop, LoopInvariants values) {
+        int line = 0;
+        int slot = nextCounter++;
+        int compare = loop.compare.ordinal();
+        int nameIndex = currentChunk.addConstant(loop.variable);
+
+        List<Expr> derived = new ArrayList<>();
+        for (Expr.Binary product : values.products) {
+            int productSlot = nextLoopValue++;
+            Expr factor = values.factor(product);
+            products.put(product, new Product(productSlot, loop.step, product.left == factor ? product.right : product.left, factor));
+            currentChunk.write(OpCode.OP_LOOP_CLEAR, line);
+            currentChunk.write(productSlot, line);
+            derived.add(product);
+        }
+
+        currentChunk.write(OpCode.OP_GET_GLOBAL, line);
+        currentChunk.write(nameIndex, line);
+        loop.limit.accept(this);
+        int genericJump = emitJump(OpCode.OP_FOR_PREP, line, slot, compare);
+
+        int bodyStart = currentChunk.code.size();
+        counterSlots.put(loop.variable, slot);
+        breakJumps.push(new ArrayList<>());
+        compileStatement(stmt.body);
+        for (Expr product : derived) {
+            currentChunk.write(OpCode.OP_LOOP_ADVANCE, line);
+            currentChunk.write(products.remove(product).slot, line);
+        }
+        counterSlots.remove(loop.variable);
+        emitLoop(OpCode.OP_FOR_LOOP, bodyStart, line, slot, loop.step, compare);
+        for (int breakJump : breakJumps.pop()) {
+            patchJump(breakJump);
+        }
+        // À saída, a variável recebe o valor final do contador
+        currentChunk.write(OpCode.OP_GET_COUNTER, line);
+        currentChunk.write(slot, line);
+        currentChunk.write(OpCode.OP_SET_GLOBAL, line);
+        currentChunk.write(nameIndex, line);
+        currentChunk.write(OpCode.OP_POP, line);
+        int endJump = emitJump(OpCode.OP_JUMP, line);
+
+        // A cópia genérica não entra na estatística: é o mesmo comando
+        patchJump(genericJump);
+        int savedNative = nativeStatements;
+        int savedInterpreted = interpretedStatements;
+        genericDepth++;
+        compileGenericFor(stmt);
+        genericDepth--;
+        nativeStatements = savedNative;
+        interpretedStatements = savedInterpreted;
+        patchJump(endJump);
+    }
+
+    private void compileGenericFor(Stmt.For stmt) {
+        int line = 0;
+        int loopStart = currentChunk.code.size();
+        List<Integer> exitJumps = stmt.condition != null ? conditionJumps(stmt.condition, line) : new ArrayList<>();
+        breakJumps.push(new ArrayList<>());
+        compileStatement(stmt.body);
+        if (stmt.increment != null) {
+            stmt.increment.accept(this);
+            currentChunk.write(OpCode.OP_POP, line);
+        }
+        emitLoop(loopStart, line);
+        for (int exitJump : exitJumps) {
+            patchJump(exitJump);
+        }
+        for (int breakJump : breakJumps.pop()) {
+            patchJump(breakJump);
+        }
+    }
+
+    // FAZAVOLTA (VAR x : sequencia): o iterador fica numa global escondida e não na pilha, para
+    // que o início do laço tenha a pilha vazia (PAREI salta direto e o laço pode subir para o JIT).
+    // OP_FOR_NEXT pede um elemento por volta; a sequência nunca é materializada.
+    @Override
+    public Void visitForEachStmt(Stmt.ForEach stmt) {
+        int line = getCurrentLine(stmt.name);
+        int iterator = currentChunk.addConstant("#" + nextIterator++);
+        stmt.iterable.accept(this);
+        currentChunk.write(OpCode.OP_ITER, line);
+        currentChunk.write(OpCode.OP_DEFINE_GLOBAL, line);
+        currentChunk.write(iterator, line);
+
+        int loopStart = currentChunk.code.size();
+        int exitJump = emitJump(OpCode.OP_FOR_NEXT, line, iterator);
+        currentChunk.write(OpCode.OP_DEFINE_GLOBAL, line);
+        currentChunk.write(currentChunk.addConstant(stmt.name.lexeme), line);
+        breakJumps.push(new ArrayList<>());
+        compileStatement(stmt.body);
         emitLoop(loopStart, line);
         patchJump(exitJump);
+        for (int breakJump : breakJumps.pop()) {
+            patchJump(breakJump);
+        }
+        // Solta o iterador (e a sequência que ele segura)
+        currentChunk.write(OpCode.OP_NIL, line);
+        currentChunk.write(OpCode.OP_DEFINE_GLOBAL, line);
+        currentChunk.write(iterator, line);
+        return null;
+    }
+
+    // ESCOLHEAI com CASO constantes (o VmSupport delega os outros ao Interpreter, que compara um a um).
+    // OP_SWITCH escolhe a entrada da tabela de saltos; cada CASO termina com um salto para o fim,
+    // e PAREI dentro de um CASO sai do ESCOLHEAI, como no Interpreter.
+    @Override
+    public Void visitSwitchStmt(Stmt.Switch stmt) {
+        SwitchTable table = SwitchTable.of(stmt);
+        if (table == null) throw unsupported("ESCOLHEAI com CASO não constante");
+        stmt.expr.accept(this);
+        currentChunk.write(OpCode.OP_SWITCH, 0);
+        currentChunk.write(currentChunk.addConstant(table), 0);
+
+        // Entradas da tabela: sempre OP_JUMP_W, para que o índice vezes ENTRADA_SWITCH as encontre
+        List<Integer> entries = new ArrayList<>();
+        for (int i = 0; i <= table.size(); i++) {
+            entries.add(emitJump(OpCode.OP_JUMP, 0));
+        }
+
+        breakJumps.push(new ArrayList<>());
+        List<Integer> endJumps = new ArrayList<>();
+        for (int i = 0; i < table.size(); i++) {
+            patchJump(entries.get(i));
+            compileStatement(stmt.cases.get(i).stmt);
+            endJumps.add(emitJump(OpCode.OP_JUMP, 0));
+        }
+        patchJump(entries.get(table.size()));
+        if (stmt.defaultCase != null) {
+            compileStatement(stmt.defaultCase.stmt);
+        }
+        for (int endJump : endJumps) {
+            patchJump(endJump);
+        }
+        for (int breakJump : breakJumps.pop()) {
+            patchJump(breakJump);
+        }
         return null;
     }
 
+    // Condição de SE/VOLTAINFINITA: devolve os saltos a tomar quando ela é falsa.
+    // 'a && b' vira um salto por operando, sem materializar o valor de 'a' na pilha.
+    private List<Integer> conditionJumps(Expr condition, int line) {
+        List<Integer> jumps = new ArrayList<>();
+        addConditionJumps(condition, line, jumps);
+        return jumps;
+    }
+
+    private void addConditionJumps(Expr condition, int line, List<Integer> jumps) {
+        if (condition instanceof Expr.Grouping) {
+            addConditionJumps(((Expr.Grouping) condition).expression, line, jumps);
+        } else if (condition instanceof Expr.Binary && ((Expr.Binary) condition).operator.type == TokenType.AND) {
+            addConditionJumps(((Expr.Binary) condition).left, line, jumps);
+            addConditionJumps(((Expr.Binary) condition).right, line, jumps);
+        } else {
+            condition.accept(this);
+            jumps.add(emitJump(OpCode.OP_JUMP_IF_FALSE, line));
+        }
+    }
+
     @Override public Void visitBlockStmt(Stmt.Block stmt) {
         for (Stmt statement : stmt.statements) {
-            statement.accept(this);
+            compileStatement(statement);
         }
         return null;
     }
@@ -134,9 +447,44 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitBinaryExpr(Expr.Binary expr) {
+        int line = getCurrentLine(expr.operator);
+        Product product = products.get(expr);
+        if (product != null) {
+            // contador * fator: o produto guardado, ou a multiplicação que o guarda
+            int skip = emitJump(OpCode.OP_LOOP_VALUE, line, product.slot);
+            product.counter.accept(this);
+            product.factor.accept(this);
+            currentChunk.write(OpCode.OP_CONSTANT, line);
+            currentChunk.write(currentChunk.addConstant(product.step), line);
+            currentChunk.write(OpCode.OP_LOOP_DERIVE, line);
+            currentChunk.write(product.slot, line);
+            patchJump(skip);
+            return null;
+        }
+        Integer slot = loopValueSlots.get(expr);
+        if (slot != null) {
+            int skip = emitJump(OpCode.OP_LOOP_VALUE, line, slot);
+            compileBinary(expr, line);
+            currentChunk.write(OpCode.OP_LOOP_KEEP, line);
+            currentChunk.write(slot, line);
+            patchJump(skip);
+            return null;
+        }
+        compileBinary(expr, line);
+        return null;
+    }
+
+    private void compileBinary(Expr.Binary expr, int line) {
+        if (expr.operator.type == TokenType.AND || expr.operator.type == TokenType.OR) {
+            // Curto-circuito: se o lado esquerdo decide, o direito nunca é avaliado
+            expr.left.accept(this);
+            int skip = emitJump(expr.operator.type == TokenType.AND ? OpCode.OP_AND : OpCode.OP_OR, line);
+            expr.right.accept(this);
+            patchJump(skip);
+            return;
+        }
         expr.left.accept(this);
         expr.right.accept(this);
-        int line = getCurrentLine(expr.operator);
         switch (expr.operator.type) {
             case PLUS:      currentChunk.write(OpCode.OP_ADD, line); break;
             case MINUS:     currentChunk.write(OpCode.OP_SUBTRACT, line); break;
@@ -150,7 +498,6 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             case GREATEREQUAL:currentChunk.write(OpCode.OP_LESS, line); currentChunk.write(OpCode.OP_NOT, line); break;
             default: throw new RuntimeException("Operador binário desconhecido: " + expr.operator.type);
         }
-        return null;
     }
 
     @Override
@@ -173,6 +520,13 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVariableExpr(Expr.Variable expr) {
+        Integer slot = counterSlots.get(expr.name.lexeme);
+        if (slot != null) {
+            // Variável de um FAZAVOLTA contado: o valor atual está no slot, não na global
+            currentChunk.write(OpCode.OP_GET_COUNTER, getCurrentLine(expr.name));
+            currentChunk.write(slot, getCurrentLine(expr.name));
+            return null;
+        }
         int constIndex = currentChunk.addConstant(expr.name.lexeme);
         currentChunk.write(OpCode.OP_GET_GLOBAL, getCurrentLine(expr.name));
         currentChunk.write(constIndex, getCurrentLine(expr.name));
@@ -235,28 +589,140 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    // --- Vetores ---
+    @Override
+    public Void visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        int line = getCurrentLine(expr.bracket);
+        for (Expr element : expr.elements) {
+            element.accept(this);
+        }
+        currentChunk.write(OpCode.OP_ARRAY, line);
+        currentChunk.write(expr.elements.size(), line);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        expr.object.accept(this);
+        expr.index.accept(this);
+        currentChunk.write(OpCode.OP_GET_INDEX, getCurrentLine(expr.bracket));
+        return null;
+    }
+
+    @Override
+    public Void visitIndexSetExpr(Expr.IndexSet expr) {
+        expr.object.accept(this);
+        expr.index.accept(this);
+        expr.value.accept(this);
+        currentChunk.write(OpCode.OP_SET_INDEX, getCurrentLine(expr.bracket));
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        int line = getCurrentLine(expr.name);
+        expr.object.accept(this);
+        if (expr.name.lexeme.equals("tamanho")) {
+            currentChunk.write(OpCode.OP_LENGTH, line);
+        } else {
+            currentChunk.write(OpCode.OP_GET_FIELD, line);
+            currentChunk.write(currentChunk.addConstant(expr.name.lexeme), line);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitRangeExpr(Expr.Range expr) {
+        expr.start.accept(this);
+        expr.end.accept(this);
+        currentChunk.write(OpCode.OP_RANGE, getCurrentLine(expr.paren));
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        int line = getCurrentLine(expr.name);
+        expr.object.accept(this);
+        expr.value.accept(this);
+        currentChunk.write(OpCode.OP_SET_FIELD, line);
+        currentChunk.write(currentChunk.addConstant(expr.name.lexeme), line);
+        return null;
+    }
+
+    @Override
+    public Void visitNewExpr(Expr.New expr) {
+        int line = getCurrentLine(expr.paren);
+        for (Expr argument : expr.arguments) {
+            argument.accept(this);
+        }
+        RecordType type = recordTypes.computeIfAbsent(expr.record, RecordType::of);
+        currentChunk.write(OpCode.OP_NEW_RECORD, line);
+        currentChunk.write(currentChunk.addConstant(type), line);
+        return null;
+    }
+
+    @Override
+    public Void visitMapLiteralExpr(Expr.MapLiteral expr) {
+        int line = getCurrentLine(expr.brace);
+        for (int i = 0; i < expr.keys.size(); i++) {
+            expr.keys.get(i).accept(this);
+            expr.values.get(i).accept(this);
+        }
+        currentChunk.write(OpCode.OP_MAP, line);
+        currentChunk.write(expr.keys.size(), line);
+        return null;
+    }
+
+    // Só métodos embutidos (m.tem(k)); chamadas de FUNCAO são delegadas ao Interpreter
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        if (!(expr.callee instanceof Expr.Get)) throw unsupported("chamada de função");
+        Expr.Get method = (Expr.Get) expr.callee;
+        int line = getCurrentLine(method.name);
+        method.object.accept(this);
+        for (Expr argument : expr.arguments) {
+            argument.accept(this);
+        }
+        currentChunk.write(OpCode.OP_INVOKE, line);
+        currentChunk.write(currentChunk.addConstant(method.name.lexeme), line);
+        return null;
+    }
+
     // --- Auxiliares para jumps ---
-    private int emitJump(OpCode jumpOpcode, int line) {
-        currentChunk.write(jumpOpcode, line);
-        currentChunk.write(0xFF, line);
-        currentChunk.write(0xFF, line);
-        return currentChunk.code.size() - 2;
+    // Os saltos saem sempre na forma larga (offset de 32 bits); o Peephole volta a codificá-los
+    // e usa a forma curta para todos os que cabem em 16 bits.
+    private int emitJump(OpCode jumpOpcode, int line, int... imediatos) {
+        currentChunk.write(jumpOpcode.largo(), line);
+        for (int value : imediatos) {
+            currentChunk.write(value, line);
+        }
+        for (int i = 0; i < 4; i++) {
+            currentChunk.write(0xFF, line);
+        }
+        return currentChunk.code.size() - 4;
     }
     private void patchJump(int offset) {
-        int jump = currentChunk.code.size() - offset - 2;
-        if (jump > 65535) {
-            throw new RuntimeException("Salto muito longo para o bytecode.");
-        }
-        currentChunk.code.set(offset, (jump >> 8) & 0xFF);
-        currentChunk.code.set(offset + 1, jump & 0xFF);
+        int jump = currentChunk.code.size() - offset - 4;
+        writeWide(offset, jump);
     }
     private void emitLoop(int loopStart, int line) {
-        currentChunk.write(OpCode.OP_LOOP, line);
-        int offset = currentChunk.code.size() - loopStart + 2;
-        if (offset > 65535) {
-            throw new RuntimeException("Loop muito longo para o bytecode.");
+        emitLoop(OpCode.OP_LOOP, loopStart, line);
+    }
+    private void emitLoop(OpCode loopOpcode, int loopStart, int line, int... imediatos) {
+        currentChunk.write(loopOpcode.largo(), line);
+        for (int value : imediatos) {
+            currentChunk.write(value, line);
         }
-        currentChunk.write((offset >> 8) & 0xFF, line);
-        currentChunk.write(offset & 0xFF, line);
+        int operand = currentChunk.code.size();
+        for (int i = 0; i < 4; i++) {
+            currentChunk.write(0, line);
+        }
+        writeWide(operand, currentChunk.code.size() - loopStart);
+    }
+    private void writeWide(int position, int value) {
+        currentChunk.code.set(position, (value >>> 24) & 0xFF);
+        currentChunk.code.set(position + 1, (value >> 16) & 0xFF);
+        currentChunk.code.set(position + 2, (value >> 8) & 0xFF);
+        currentChunk.code.set(position + 3, value & 0xFF);
     }
 }
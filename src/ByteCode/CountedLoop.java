@@ -0,0 +1,244 @@
+package ByteCode;
+
+import Lexica.TokenType;
+import Semantica.SwitchTable;
+import Sintatica.Expr;
+import Sintatica.Stmt;
+
+// FAZAVOLTA que o Compiler traduz para OP_FOR_PREP / OP_FOR_LOOP, com o contador fora da pilha:
+//   condição   i < limite, i <= limite, i > limite ou i >= limite (também escrita ao contrário)
+//   passo      i++, ++i, i--, --i, i = i + k ou i = i - k, com k inteiro constante
+//   limite     constante, variável ou v.tamanho, lido uma só vez antes da primeira volta
+// e um corpo que não escreve nem em i nem no limite. Com valores inteiros o resultado é o mesmo
+// de testar a condição a cada volta: o passo soma em int (com o mesmo transbordo de ValueOps) e
+// a comparação é a mesma. Com outros valores o OP_FOR_PREP desvia para a versão genérica do laço.
+final class CountedLoop {
+
+    final String variable;
+    final Expr limit;
+    final OpCode compare;
+    final int step;
+
+    private CountedLoop(String variable, Expr limit, OpCode compare, int step) {
+        this.variable = variable;
+        this.limit = limit;
+        this.compare = compare;
+        this.step = step;
+    }
+
+    // Forma contada do laço, ou null quando ele tem de testar a condição por extenso
+    static CountedLoop of(Stmt.For stmt) {
+        if (stmt.condition == null || stmt.increment == null) return null;
+
+        String variable;
+        int step;
+        Expr increment = stmt.increment;
+        if (increment instanceof Expr.Incremento) {
+            variable = ((Expr.Incremento) increment).name.lexeme;
+            step = 1;
+        } else if (increment instanceof Expr.Decremento) {
+            variable = ((Expr.Decremento) increment).name.lexeme;
+            step = -1;
+        } else if (increment instanceof Expr.Assign) {
+            Expr.Assign assign = (Expr.Assign) increment;
+            variable = assign.name.lexeme;
+            Integer amount = stepOf(variable, unwrap(assign.value));
+            if (amount == null) return null;
+            step = amount;
+        } else {
+            return null;
+        }
+
+        Expr condition = unwrap(stmt.condition);
+        if (!(condition instanceof Expr.Binary)) return null;
+        Expr.Binary binary = (Expr.Binary) condition;
+        OpCode compare = comparison(binary.operator.type);
+        if (compare == null) return null;
+        Expr limit;
+        if (isVariable(binary.left, variable)) {
+            limit = unwrap(binary.right);
+        } else if (isVariable(binary.right, variable)) {
+            limit = unwrap(binary.left);
+            compare = reversed(compare);
+        } else {
+            return null;
+        }
+
+        // O limite tem de valer o mesmo em todas as voltas
+        Expr fixed = lengthOf(limit);
+        if (fixed instanceof Expr.Variable) {
+            String name = ((Expr.Variable) fixed).name.lexeme;
+            if (name.equals(variable) || writes(stmt.body, name)) return null;
+        } else if (SwitchTable.constante(limit) == SwitchTable.NAO_CONSTANTE) {
+            return null;
+        }
+        if (writes(stmt.body, variable)) return null;
+        return new CountedLoop(variable, limit, compare, step);
+    }
+
+    // v.tamanho vale o mesmo enquanto v não for reatribuída (os vetores têm tamanho fixo)
+    private static Expr lengthOf(Expr limit) {
+        if (limit instanceof Expr.Get && ((Expr.Get) limit).name.lexeme.equals("tamanho")) {
+            Expr object = unwrap(((Expr.Get) limit).object);
+            if (object instanceof Expr.Variable) return object;
+        }
+        return limit;
+    }
+
+    // i + k, k + i ou i - k
+    private static Integer stepOf(String variable, Expr value) {
+        if (!(value instanceof Expr.Binary)) return null;
+        Expr.Binary binary = (Expr.Binary) value;
+        TokenType operator = binary.operator.type;
+        if (operator == TokenType.PLUS) {
+            if (isVariable(binary.left, variable)) return integer(binary.right);
+            if (isVariable(binary.right, variable)) return integer(binary.left);
+        } else if (operator == TokenType.MINUS && isVariable(binary.left, variable)) {
+            Integer amount = integer(binary.right);
+            return amount != null ? -amount : null; // i - k == i + (-k) também com transbordo
+        }
+        return null;
+    }
+
+    private static Integer integer(Expr expr) {
+        Object value = SwitchTable.constante(expr);
+        return value instanceof Integer ? (Integer) value : null;
+    }
+
+    private static OpCode comparison(TokenType type) {
+        switch (type) {
+            case LESS:         return OpCode.OP_LESS;
+            case LESSEQUAL:    return OpCode.OP_LESS_EQUAL;
+            case GREATER:      return OpCode.OP_GREATER;
+            case GREATEREQUAL: return OpCode.OP_GREATER_EQUAL;
+            default: return null;
+        }
+    }
+
+    // 'limite < i' é 'i > limite'
+    private static OpCode reversed(OpCode compare) {
+        switch (compare) {
+            case OP_LESS:       return OpCode.OP_GREATER;
+            case OP_LESS_EQUAL: return OpCode.OP_GREATER_EQUAL;
+            case OP_GREATER:    return OpCode.OP_LESS;
+            default:            return OpCode.OP_LESS_EQUAL;
+        }
+    }
+
+    private static boolean isVariable(Expr expr, String name) {
+        expr = unwrap(expr);
+        return expr instanceof Expr.Variable && ((Expr.Variable) expr).name.lexeme.equals(name);
+    }
+
+    private static Expr unwrap(Expr expr) {
+        while (expr instanceof Expr.Grouping) expr = ((Expr.Grouping) expr).expression;
+        return expr;
+    }
+
+    // Algum comando pode atribuir à variável? Chamadas contam como escrita (a função vê as globais)
+    static boolean writes(Stmt stmt, String name) {
+        if (stmt == null) return false;
+        if (stmt instanceof Stmt.Var) {
+            Stmt.Var s = (Stmt.Var) stmt;
+            return s.name.lexeme.equals(name) || writes(s.initializer, name);
+        }
+        if (stmt instanceof Stmt.Input) return ((Stmt.Input) stmt).name.lexeme.equals(name);
+        if (stmt instanceof Stmt.Print) return writes(((Stmt.Print) stmt).expression, name);
+        if (stmt instanceof Stmt.Expression) return writes(((Stmt.Expression) stmt).expr, name);
+        if (stmt instanceof Stmt.If) {
+            Stmt.If s = (Stmt.If) stmt;
+            return writes(s.condition, name) || writes(s.thenBranch, name) || writes(s.elseBranch, name);
+        }
+        if (stmt instanceof Stmt.While) {
+            Stmt.While s = (Stmt.While) stmt;
+            return writes(s.condition, name) || writes(s.body, name);
+        }
+        if (stmt instanceof Stmt.For) {
+            Stmt.For s = (Stmt.For) stmt;
+            return writes(s.initializer, name) || writes(s.condition, name)
+                    || writes(s.increment, name) || writes(s.body, name);
+        }
+        if (stmt instanceof Stmt.ForEach) {
+            Stmt.ForEach s = (Stmt.ForEach) stmt;
+            return s.name.lexeme.equals(name) || writes(s.iterable, name) || writes(s.body, name);
+        }
+        if (stmt instanceof Stmt.Block) {
+            for (Stmt s : ((Stmt.Block) stmt).statements) {
+                if (writes(s, name)) return true;
+            }
+            return false;
+        }
+        if (stmt instanceof Stmt.Switch) {
+            Stmt.Switch s = (Stmt.Switch) stmt;
+            if (writes(s.expr, name)) return true;
+            if (s.cases != null) {
+                for (Stmt.Case cs : s.cases) {
+                    if (writes(cs.value, name) || writes(cs.stmt, name)) return true;
+                }
+            }
+            return s.defaultCase != null && writes(s.defaultCase.stmt, name);
+        }
+        // PAREI e REGISTRO não escrevem; FUNCAO e RETORNA nunca chegam a um corpo traduzido por completo
+        return !(stmt instanceof Stmt.Break || stmt instanceof Stmt.Record);
+    }
+
+    private static boolean writes(Expr expr, String name) {
+        if (expr == null) return false;
+        if (expr instanceof Expr.Assign) {
+            Expr.Assign e = (Expr.Assign) expr;
+            return e.name.lexeme.equals(name) || writes(e.value, name);
+        }
+        if (expr instanceof Expr.Incremento) return ((Expr.Incremento) expr).name.lexeme.equals(name);
+        if (expr instanceof Expr.Decremento) return ((Expr.Decremento) expr).name.lexeme.equals(name);
+        if (expr instanceof Expr.Binary) {
+            return writes(((Expr.Binary) expr).left, name) || writes(((Expr.Binary) expr).right, name);
+        }
+        if (expr instanceof Expr.Unary) return writes(((Expr.Unary) expr).right, name);
+        if (expr instanceof Expr.Grouping) return writes(((Expr.Grouping) expr).expression, name);
+        // v[i] = x muda um elemento, não a variável v
+        if (expr instanceof Expr.IndexSet) {
+            Expr.IndexSet e = (Expr.IndexSet) expr;
+            return writes(e.object, name) || writes(e.index, name) || writes(e.value, name);
+        }
+        if (expr instanceof Expr.Index) {
+            return writes(((Expr.Index) expr).object, name) || writes(((Expr.Index) expr).index, name);
+        }
+        if (expr instanceof Expr.ArrayLiteral) {
+            for (Expr element : ((Expr.ArrayLiteral) expr).elements) {
+                if (writes(element, name)) return true;
+            }
+            return false;
+        }
+        if (expr instanceof Expr.Get) return writes(((Expr.Get) expr).object, name);
+        // p.x = v muda um campo, não a variável p
+        if (expr instanceof Expr.Set) {
+            return writes(((Expr.Set) expr).object, name) || writes(((Expr.Set) expr).value, name);
+        }
+        if (expr instanceof Expr.Range) {
+            return writes(((Expr.Range) expr).start, name) || writes(((Expr.Range) expr).end, name);
+        }
+        if (expr instanceof Expr.New) {
+            for (Expr argument : ((Expr.New) expr).arguments) {
+                if (writes(argument, name)) return true;
+            }
+            return false;
+        }
+        if (expr instanceof Expr.MapLiteral) {
+            Expr.MapLiteral e = (Expr.MapLiteral) expr;
+            for (int i = 0; i < e.keys.size(); i++) {
+                if (writes(e.keys.get(i), name) || writes(e.values.get(i), name)) return true;
+            }
+            return false;
+        }
+        // Um método embutido não mexe em variáveis; só os argumentos podem mexer
+        if (expr instanceof Expr.Call && ((Expr.Call) expr).callee instanceof Expr.Get) {
+            Expr.Call call = (Expr.Call) expr;
+            if (writes(call.callee, name)) return true;
+            for (Expr argument : call.arguments) {
+                if (writes(argument, name)) return true;
+            }
+            return false;
+        }
+        return expr instanceof Expr.Call;
+    }
+}
@@ -0,0 +1,295 @@
+package ByteCode;
+
+import Semantica.RecordType;
+import Semantica.SwitchTable;
+import Sintatica.Stmt;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Representação intermédia entre a AST e o Chunk: IrBuilder -> IrPasses -> IrLowering.
+// O programa é um grafo de blocos básicos com arestas explícitas (SE, laços, ESCOLHEAI, PAREI).
+// Cada instrução é também o valor SSA que produz, definido num só ponto; onde dois caminhos
+// trazem valores diferentes há uma φ no início do bloco. As variáveis do programa continuam a ser
+// globais (GET_GLOBAL / SET_GLOBAL são leituras e escritas de memória): os passes sabem, em cada
+// ponto, que valor cada global guarda, e trocam leituras por cópias desse valor.
+final class Ir {
+
+    enum Kind {
+        OP,    // um opcode da VM, com os operandos na ordem em que são empilhados
+        PHI,   // valor que depende do predecessor por onde se chegou ao bloco (um operando por predecessor)
+        COPY   // o mesmo valor que o operando, lido no ponto onde a instrução está
+    }
+
+    // Instrução e valor SSA. Os terminadores (JUMP, JUMP_IF_FALSE, SWITCH, FOR_NEXT, RETURN) fecham o
+    // bloco; o de OP_FOR_NEXT é também o elemento que o iterador entrega ao corpo do laço.
+    static final class Instr {
+        final int id;
+        Kind kind;
+        OpCode op;          // só em Kind.OP
+        Object payload;     // constante, nome da global ou do método, Stmt, SwitchTable, RecordType, tamanho
+        final List<Instr> operands = new ArrayList<>();
+        final int line;
+        Block block;
+
+        private Instr(int id, Kind kind, OpCode op, Object payload, int line) {
+            this.id = id;
+            this.kind = kind;
+            this.op = op;
+            this.payload = payload;
+            this.line = line;
+        }
+
+        boolean is(OpCode opcode) {
+            return kind == Kind.OP && op == opcode;
+        }
+
+        // Instruções que não deixam valor: escrevem, imprimem, delegam ou saltam
+        boolean hasValue() {
+            if (kind != Kind.OP) return true;
+            switch (op) {
+                case OP_DEFINE_GLOBAL: case OP_SET_GLOBAL: case OP_PRINT: case OP_INTERPRET:
+                case OP_JUMP: case OP_JUMP_IF_FALSE: case OP_SWITCH: case OP_RETURN:
+                    return false;
+                default:
+                    return true;
+            }
+        }
+
+        boolean isTerminator() {
+            if (kind != Kind.OP) return false;
+            switch (op) {
+                case OP_JUMP: case OP_JUMP_IF_FALSE: case OP_SWITCH: case OP_FOR_NEXT: case OP_RETURN:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        // Transforma a instrução numa cópia de 'value', no mesmo ponto do bloco
+        void becomeCopy(Instr value) {
+            kind = Kind.COPY;
+            op = null;
+            payload = null;
+            operands.clear();
+            operands.add(value);
+        }
+
+        @Override
+        public String toString() {
+            return "v" + id;
+        }
+    }
+
+    static final class Block {
+        final int id;
+        final List<Instr> phis = new ArrayList<>();
+        final List<Instr> instrs = new ArrayList<>();
+        Instr terminator;
+        // JUMP: destino; JUMP_IF_FALSE: verdadeiro, falso; SWITCH: um por CASO e o PADRAO (ou o fim);
+        // FOR_NEXT: corpo, saída
+        final List<Block> successors = new ArrayList<>();
+        // Na ordem dos operandos das φ
+        final List<Block> predecessors = new ArrayList<>();
+
+        private Block(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public String toString() {
+            return "b" + id;
+        }
+    }
+
+    // Blocos na ordem em que o IrLowering os coloca no Chunk (a ordem em que o IrBuilder os começa)
+    final List<Block> blocks = new ArrayList<>();
+    Block entry;
+    private int nextInstr;
+    private int nextBlock;
+
+    Block newBlock() {
+        Block block = new Block(nextBlock++);
+        if (entry == null) entry = block;
+        return block;
+    }
+
+    Instr instr(Kind kind, OpCode op, Object payload, int line) {
+        return new Instr(nextInstr++, kind, op, payload, line);
+    }
+
+    static void link(Block from, Block to) {
+        from.successors.add(to);
+        to.predecessors.add(from);
+    }
+
+    // Cópia do valor sem passar por outras cópias
+    static Instr resolve(Instr value) {
+        while (value.kind == Kind.COPY) value = value.operands.get(0);
+        return value;
+    }
+
+    // Todas as instruções do bloco na ordem de execução: φ, corpo e terminador
+    static List<Instr> all(Block block) {
+        List<Instr> all = new ArrayList<>(block.phis.size() + block.instrs.size() + 1);
+        all.addAll(block.phis);
+        all.addAll(block.instrs);
+        if (block.terminator != null) all.add(block.terminator);
+        return all;
+    }
+
+    // Troca os operandos segundo 'replacements' (seguindo cadeias de substituições)
+    void replace(Map<Instr, Instr> replacements) {
+        if (replacements.isEmpty()) return;
+        for (Block block : blocks) {
+            for (Instr instr : all(block)) {
+                for (int i = 0; i < instr.operands.size(); i++) {
+                    Instr operand = instr.operands.get(i);
+                    Instr replacement = operand;
+                    int hops = 0;
+                    while (replacements.containsKey(replacement) && hops++ <= replacements.size()) {
+                        replacement = replacements.get(replacement);
+                    }
+                    if (replacement != operand) instr.operands.set(i, replacement);
+                }
+            }
+        }
+    }
+
+    // Quantas vezes cada valor é usado como operando
+    Map<Instr, Integer> useCounts() {
+        Map<Instr, Integer> uses = new IdentityHashMap<>();
+        for (Block block : blocks) {
+            for (Instr instr : all(block)) {
+                for (Instr operand : instr.operands) uses.merge(operand, 1, Integer::sum);
+            }
+        }
+        return uses;
+    }
+
+    // --- Ordens e dominadores ---
+
+    // Pós-ordem inversa a partir da entrada (só blocos alcançáveis)
+    List<Block> reversePostorder() {
+        List<Block> order = new ArrayList<>();
+        Set<Block> seen = new HashSet<>();
+        Deque<Block> stack = new ArrayDeque<>();
+        Deque<Integer> next = new ArrayDeque<>();
+        seen.add(entry);
+        stack.push(entry);
+        next.push(0);
+        while (!stack.isEmpty()) {
+            Block block = stack.peek();
+            int i = next.pop();
+            if (i < block.successors.size()) {
+                next.push(i + 1);
+                Block successor = block.successors.get(i);
+                if (seen.add(successor)) {
+                    stack.push(successor);
+                    next.push(0);
+                }
+            } else {
+                stack.pop();
+                order.add(block);
+            }
+        }
+        Collections.reverse(order);
+        return order;
+    }
+
+    // Dominador imediato de cada bloco alcançável (Cooper, Harvey e Kennedy); a entrada domina-se
+    Map<Block, Block> dominators() {
+        List<Block> order = reversePostorder();
+        Map<Block, Integer> index = new IdentityHashMap<>();
+        for (int i = 0; i < order.size(); i++) index.put(order.get(i), i);
+        Map<Block, Block> idom = new IdentityHashMap<>();
+        idom.put(entry, entry);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Block block : order) {
+                if (block == entry) continue;
+                Block dominator = null;
+                for (Block predecessor : block.predecessors) {
+                    if (!idom.containsKey(predecessor)) continue;
+                    dominator = dominator == null ? predecessor : intersect(predecessor, dominator, idom, index);
+                }
+                if (dominator != null && idom.get(block) != dominator) {
+                    idom.put(block, dominator);
+                    changed = true;
+                }
+            }
+        }
+        return idom;
+    }
+
+    private static Block intersect(Block a, Block b, Map<Block, Block> idom, Map<Block, Integer> index) {
+        while (a != b) {
+            while (index.get(a) > index.get(b)) a = idom.get(a);
+            while (index.get(b) > index.get(a)) b = idom.get(b);
+        }
+        return a;
+    }
+
+    // --- Listagem para depuração ---
+
+    String dump() {
+        StringBuilder out = new StringBuilder();
+        for (Block block : blocks) {
+            out.append(block).append(':');
+            if (!block.predecessors.isEmpty()) out.append("  ; de ").append(block.predecessors);
+            out.append('\n');
+            for (Instr instr : all(block)) {
+                out.append("    ").append(format(instr, block)).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static String format(Instr instr, Block block) {
+        StringBuilder text = new StringBuilder();
+        if (instr.hasValue()) text.append(instr).append(" = ");
+        switch (instr.kind) {
+            case PHI:
+                text.append("φ");
+                if (instr.payload != null) text.append(' ').append(instr.payload);
+                text.append(" [");
+                for (int i = 0; i < instr.operands.size(); i++) {
+                    if (i > 0) text.append(", ");
+                    text.append(block.predecessors.get(i)).append(": ").append(instr.operands.get(i));
+                }
+                return text.append(']').toString();
+            case COPY:
+                return text.append("cópia ").append(instr.operands.get(0)).toString();
+            default:
+                break;
+        }
+        text.append(instr.op.name().substring(3));
+        if (instr.is(OpCode.OP_CONSTANT)) {
+            Object value = instr.payload;
+            text.append(' ').append(value instanceof CharSequence ? "\"" + value + "\"" : ValueOps.stringify(value));
+            return text.toString();
+        }
+        if (instr.payload != null) text.append(' ').append(payload(instr.payload));
+        for (int i = 0; i < instr.operands.size(); i++) {
+            text.append(i == 0 && instr.payload == null ? " " : ", ").append(instr.operands.get(i));
+        }
+        if (!block.successors.isEmpty() && instr == block.terminator) text.append(" -> ").append(block.successors);
+        if (instr.line > 0) text.append("  [linha ").append(instr.line).append(']');
+        return text.toString();
+    }
+
+    private static String payload(Object payload) {
+        if (payload instanceof String) return (String) payload;
+        if (payload instanceof Stmt) return "<" + payload.getClass().getSimpleName() + ">";
+        if (payload instanceof SwitchTable) return "<tabela de " + ((SwitchTable) payload).size() + " casos>";
+        if (payload instanceof RecordType) return "<registro>";
+        return String.valueOf(payload);
+    }
+}
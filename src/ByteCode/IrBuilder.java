@@ -0,0 +1,495 @@
+package ByteCode;
+
+import Semantica.RecordType;
+import Semantica.SwitchTable;
+import Sintatica.Expr;
+import Sintatica.Stmt;
+import Lexica.Token;
+import Lexica.TokenType;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Traduz a AST para a Ir: um bloco novo em cada ponto onde o fluxo se divide ou se junta.
+// As condições de SE, VOLTAINFINITA e FAZAVOLTA viram saltos entre blocos ('a && b' e 'a || b'
+// incluídos, sem materializar o valor); PAREI é uma aresta para o bloco de saída do laço ou do
+// ESCOLHEAI, e o código depois dele fica num bloco sem predecessores, que os passes descartam.
+// Os comandos que a VM não suporta (VmSupport) viram OP_INTERPRET, como no Compiler, e as linhas
+// de cada instrução são as que o Compiler usa, para que os erros saiam iguais.
+// O FAZAVOLTA fica sempre na forma genérica (condição, corpo, passo): a versão contada do Compiler
+// e os valores de laço (OP_LOOP_*) não passam pela Ir.
+final class IrBuilder implements Expr.Visitor<Ir.Instr>, Stmt.Visitor<Void> {
+
+    private final VmSupport support = new VmSupport();
+    private Ir ir;
+    private Ir.Block current;
+
+    // Destino de PAREI, um por laço ou ESCOLHEAI em construção
+    private final Deque<Ir.Block> breakTargets = new ArrayDeque<>();
+
+    // Iteradores dos FAZAVOLTA (VAR x : ...), nas mesmas globais escondidas do Compiler
+    private int nextIterator;
+
+    private final Map<Stmt.Record, RecordType> recordTypes = new IdentityHashMap<>();
+
+    private int nativeStatements;
+    private int interpretedStatements;
+
+    Ir build(List<Stmt> statements) {
+        ir = new Ir();
+        breakTargets.clear();
+        nextIterator = 0;
+        recordTypes.clear();
+        nativeStatements = 0;
+        interpretedStatements = 0;
+
+        begin(ir.newBlock());
+        for (Stmt stmt : statements) {
+            compileStatement(stmt);
+        }
+        terminate(OpCode.OP_RETURN, null, 0);
+        return ir;
+    }
+
+    int getNativeStatements() { return nativeStatements; }
+
+    int getInterpretedStatements() { return interpretedStatements; }
+
+    private static int getCurrentLine(Token token) {
+        return (token != null) ? token.line : 0;
+    }
+
+    private void compileStatement(Stmt stmt) {
+        if (support.isNative(stmt)) {
+            if (!(stmt instanceof Stmt.Block)) nativeStatements++;
+            stmt.accept(this);
+        } else {
+            interpretedStatements++;
+            emit(OpCode.OP_INTERPRET, stmt, 0);
+        }
+    }
+
+    // --- Blocos e instruções ---
+
+    // O bloco passa a receber as instruções e entra no layout do Chunk nesta posição
+    private void begin(Ir.Block block) {
+        ir.blocks.add(block);
+        current = block;
+    }
+
+    private Ir.Instr emit(OpCode op, Object payload, int line, Ir.Instr... operands) {
+        Ir.Instr instr = ir.instr(Ir.Kind.OP, op, payload, line);
+        for (Ir.Instr operand : operands) instr.operands.add(operand);
+        instr.block = current;
+        current.instrs.add(instr);
+        return instr;
+    }
+
+    private Ir.Instr constant(Object value, int line) {
+        return emit(OpCode.OP_CONSTANT, value, line);
+    }
+
+    private Ir.Instr copy(Ir.Instr value, int line) {
+        Ir.Instr copy = ir.instr(Ir.Kind.COPY, null, null, line);
+        copy.operands.add(value);
+        copy.block = current;
+        current.instrs.add(copy);
+        return copy;
+    }
+
+    // Fecha o bloco atual; o chamador começa o próximo
+    private Ir.Instr terminate(OpCode op, Object payload, int line, Ir.Block... successors) {
+        Ir.Instr terminator = ir.instr(Ir.Kind.OP, op, payload, line);
+        terminator.block = current;
+        current.terminator = terminator;
+        for (Ir.Block successor : successors) Ir.link(current, successor);
+        return terminator;
+    }
+
+    private void jump(Ir.Block target) {
+        terminate(OpCode.OP_JUMP, null, 0, target);
+    }
+
+    private void branch(Ir.Instr condition, Ir.Block ifTrue, Ir.Block ifFalse) {
+        terminate(OpCode.OP_JUMP_IF_FALSE, null, 0, ifTrue, ifFalse).operands.add(condition);
+    }
+
+    // Condição de SE/VOLTAINFINITA/FAZAVOLTA: salta para 'ifTrue' ou 'ifFalse'
+    private void condition(Expr condition, Ir.Block ifTrue, Ir.Block ifFalse) {
+        if (condition instanceof Expr.Grouping) {
+            condition(((Expr.Grouping) condition).expression, ifTrue, ifFalse);
+            return;
+        }
+        if (condition instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) condition;
+            if (binary.operator.type == TokenType.AND || binary.operator.type == TokenType.OR) {
+                Ir.Block right = ir.newBlock();
+                if (binary.operator.type == TokenType.AND) condition(binary.left, right, ifFalse);
+                else condition(binary.left, ifTrue, right);
+                begin(right);
+                condition(binary.right, ifTrue, ifFalse);
+                return;
+            }
+        }
+        branch(condition.accept(this), ifTrue, ifFalse);
+    }
+
+    // --- Comandos ---
+
+    @Override
+    public Void visitInputStmt(Stmt.Input stmt) {
+        int line = getCurrentLine(stmt.name);
+        emit(OpCode.OP_SET_GLOBAL, stmt.name.lexeme, line, emit(OpCode.OP_INPUT, null, line));
+        return null;
+    }
+
+    @Override public Void visitFunctionStmt(Stmt.Function stmt) { throw unsupported("FUNCAO"); }
+    @Override public Void visitReturnStmt(Stmt.Return stmt) { throw unsupported("RETORNA"); }
+
+    private RuntimeException unsupported(String what) {
+        return new RuntimeException("A Ir não traduz " + what + "; deveria ter sido delegado ao interpretador.");
+    }
+
+    @Override
+    public Void visitRecordStmt(Stmt.Record stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        // Fora de um laço o PAREI não faz nada na VM
+        if (!breakTargets.isEmpty()) {
+            jump(breakTargets.peek());
+            begin(ir.newBlock());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        Ir.Block thenBlock = ir.newBlock();
+        Ir.Block elseBlock = stmt.elseBranch != null ? ir.newBlock() : null;
+        Ir.Block join = ir.newBlock();
+        condition(stmt.condition, thenBlock, elseBlock != null ? elseBlock : join);
+        begin(thenBlock);
+        compileStatement(stmt.thenBranch);
+        jump(join);
+        if (elseBlock != null) {
+            begin(elseBlock);
+            compileStatement(stmt.elseBranch);
+            jump(join);
+        }
+        begin(join);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        Ir.Block header = ir.newBlock();
+        Ir.Block body = ir.newBlock();
+        Ir.Block exit = ir.newBlock();
+        jump(header);
+        begin(header);
+        condition(stmt.condition, body, exit);
+        begin(body);
+        breakTargets.push(exit);
+        compileStatement(stmt.body);
+        breakTargets.pop();
+        jump(header);
+        begin(exit);
+        return null;
+    }
+
+    // A inicialização corre uma vez; o passo fica num bloco próprio depois do corpo (PAREI salta-o)
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        if (stmt.initializer != null) {
+            compileStatement(stmt.initializer);
+        }
+        Ir.Block header = ir.newBlock();
+        Ir.Block body = ir.newBlock();
+        Ir.Block exit = ir.newBlock();
+        jump(header);
+        begin(header);
+        if (stmt.condition != null) {
+            condition(stmt.condition, body, exit);
+        } else {
+            jump(body);
+        }
+        begin(body);
+        breakTargets.push(exit);
+        compileStatement(stmt.body);
+        breakTargets.pop();
+        if (stmt.increment != null) {
+            Ir.Block step = ir.newBlock();
+            jump(step);
+            begin(step);
+            stmt.increment.accept(this);
+        }
+        jump(header);
+        begin(exit);
+        return null;
+    }
+
+    // FAZAVOLTA (VAR x : sequencia): o terminador OP_FOR_NEXT do cabeçalho é o elemento da volta,
+    // que o corpo guarda na variável
+    @Override
+    public Void visitForEachStmt(Stmt.ForEach stmt) {
+        int line = getCurrentLine(stmt.name);
+        String iterator = "#" + nextIterator++;
+        Ir.Instr sequence = stmt.iterable.accept(this);
+        emit(OpCode.OP_DEFINE_GLOBAL, iterator, line, emit(OpCode.OP_ITER, null, line, sequence));
+
+        Ir.Block header = ir.newBlock();
+        Ir.Block body = ir.newBlock();
+        Ir.Block exit = ir.newBlock();
+        jump(header);
+        begin(header);
+        Ir.Instr element = terminate(OpCode.OP_FOR_NEXT, iterator, line, body, exit);
+        begin(body);
+        emit(OpCode.OP_DEFINE_GLOBAL, stmt.name.lexeme, line, element);
+        breakTargets.push(exit);
+        compileStatement(stmt.body);
+        breakTargets.pop();
+        jump(header);
+        begin(exit);
+        // Solta o iterador (e a sequência que ele segura)
+        emit(OpCode.OP_DEFINE_GLOBAL, iterator, line, constant(null, line));
+        return null;
+    }
+
+    // ESCOLHEAI com CASO constantes: um sucessor por CASO e mais um para o PADRAO (ou para o fim)
+    @Override
+    public Void visitSwitchStmt(Stmt.Switch stmt) {
+        SwitchTable table = SwitchTable.of(stmt);
+        if (table == null) throw unsupported("ESCOLHEAI com CASO não constante");
+        Ir.Instr value = stmt.expr.accept(this);
+
+        Ir.Block[] targets = new Ir.Block[table.size() + 1];
+        for (int i = 0; i < table.size(); i++) targets[i] = ir.newBlock();
+        Ir.Block end = ir.newBlock();
+        targets[table.size()] = stmt.defaultCase != null ? ir.newBlock() : end;
+        terminate(OpCode.OP_SWITCH, table, 0, targets).operands.add(value);
+
+        breakTargets.push(end);
+        for (int i = 0; i < table.size(); i++) {
+            begin(targets[i]);
+            compileStatement(stmt.cases.get(i).stmt);
+            jump(end);
+        }
+        if (stmt.defaultCase != null) {
+            begin(targets[table.size()]);
+            compileStatement(stmt.defaultCase.stmt);
+            jump(end);
+        }
+        breakTargets.pop();
+        begin(end);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        for (Stmt statement : stmt.statements) {
+            compileStatement(statement);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        int line = getCurrentLine(stmt.name);
+        Ir.Instr value = stmt.initializer != null ? stmt.initializer.accept(this) : constant(null, line);
+        emit(OpCode.OP_DEFINE_GLOBAL, stmt.name.lexeme, line, value);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        stmt.expr.accept(this);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        emit(OpCode.OP_PRINT, null, 0, stmt.expression.accept(this));
+        return null;
+    }
+
+    // --- Expressões: cada uma devolve a instrução com o seu valor ---
+
+    @Override
+    public Ir.Instr visitLiteralExpr(Expr.Literal expr) {
+        return constant(expr.value, 0);
+    }
+
+    @Override
+    public Ir.Instr visitBinaryExpr(Expr.Binary expr) {
+        int line = getCurrentLine(expr.operator);
+        if (expr.operator.type == TokenType.AND || expr.operator.type == TokenType.OR) {
+            return shortCircuit(expr, line);
+        }
+        Ir.Instr left = expr.left.accept(this);
+        Ir.Instr right = expr.right.accept(this);
+        OpCode op;
+        switch (expr.operator.type) {
+            case PLUS:         op = OpCode.OP_ADD; break;
+            case MINUS:        op = OpCode.OP_SUBTRACT; break;
+            case STAR:         op = OpCode.OP_MULTIPLY; break;
+            case SLASH:        op = OpCode.OP_DIVIDE; break;
+            case EQUALEQUAL:   op = OpCode.OP_EQUAL; break;
+            case BANGEQUAL:    op = OpCode.OP_NOT_EQUAL; break;
+            case GREATER:      op = OpCode.OP_GREATER; break;
+            case LESSEQUAL:    op = OpCode.OP_LESS_EQUAL; break;
+            case LESS:         op = OpCode.OP_LESS; break;
+            case GREATEREQUAL: op = OpCode.OP_GREATER_EQUAL; break;
+            default: throw new RuntimeException("Operador binário desconhecido: " + expr.operator.type);
+        }
+        return emit(op, null, line, left, right);
+    }
+
+    // 'a && b' / 'a || b' como valor: o lado direito num bloco próprio e uma φ na junção
+    private Ir.Instr shortCircuit(Expr.Binary expr, int line) {
+        Ir.Instr left = expr.left.accept(this);
+        Ir.Block decided = current;
+        Ir.Block rightBlock = ir.newBlock();
+        Ir.Block join = ir.newBlock();
+        if (expr.operator.type == TokenType.AND) branch(left, rightBlock, join);
+        else branch(left, join, rightBlock);
+        begin(rightBlock);
+        Ir.Instr right = expr.right.accept(this);
+        jump(join);
+        begin(join);
+        Ir.Instr phi = ir.instr(Ir.Kind.PHI, null, null, line);
+        phi.block = join;
+        for (Ir.Block predecessor : join.predecessors) {
+            phi.operands.add(predecessor == decided ? left : right);
+        }
+        join.phis.add(phi);
+        return copy(phi, line);
+    }
+
+    @Override
+    public Ir.Instr visitUnaryExpr(Expr.Unary expr) {
+        Ir.Instr right = expr.right.accept(this);
+        int line = getCurrentLine(expr.operator);
+        switch (expr.operator.type) {
+            case MINUS: return emit(OpCode.OP_NEGATE, null, line, right);
+            case BANG:  return emit(OpCode.OP_NOT, null, line, right);
+            default: throw new RuntimeException("Operador unário desconhecido: " + expr.operator.type);
+        }
+    }
+
+    @Override
+    public Ir.Instr visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Ir.Instr visitVariableExpr(Expr.Variable expr) {
+        return emit(OpCode.OP_GET_GLOBAL, expr.name.lexeme, getCurrentLine(expr.name));
+    }
+
+    // O valor da atribuição é o próprio valor atribuído
+    @Override
+    public Ir.Instr visitAssignExpr(Expr.Assign expr) {
+        Ir.Instr value = expr.value.accept(this);
+        emit(OpCode.OP_SET_GLOBAL, expr.name.lexeme, getCurrentLine(expr.name), value);
+        return value;
+    }
+
+    @Override
+    public Ir.Instr visitIncrementoExpr(Expr.Incremento expr) {
+        return step(expr.name, OpCode.OP_ADD);
+    }
+
+    @Override
+    public Ir.Instr visitDecrementoExpr(Expr.Decremento expr) {
+        return step(expr.name, OpCode.OP_SUBTRACT);
+    }
+
+    // x++ / x--: x = x ± 1, com o valor novo como resultado
+    private Ir.Instr step(Token name, OpCode op) {
+        int line = getCurrentLine(name);
+        Ir.Instr current = emit(OpCode.OP_GET_GLOBAL, name.lexeme, line);
+        Ir.Instr value = emit(op, null, line, current, constant(1, line));
+        emit(OpCode.OP_SET_GLOBAL, name.lexeme, line, value);
+        return value;
+    }
+
+    @Override
+    public Ir.Instr visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        Ir.Instr[] elements = new Ir.Instr[expr.elements.size()];
+        for (int i = 0; i < elements.length; i++) elements[i] = expr.elements.get(i).accept(this);
+        return emit(OpCode.OP_ARRAY, elements.length, getCurrentLine(expr.bracket), elements);
+    }
+
+    @Override
+    public Ir.Instr visitIndexExpr(Expr.Index expr) {
+        Ir.Instr object = expr.object.accept(this);
+        Ir.Instr index = expr.index.accept(this);
+        return emit(OpCode.OP_GET_INDEX, null, getCurrentLine(expr.bracket), object, index);
+    }
+
+    @Override
+    public Ir.Instr visitIndexSetExpr(Expr.IndexSet expr) {
+        Ir.Instr object = expr.object.accept(this);
+        Ir.Instr index = expr.index.accept(this);
+        Ir.Instr value = expr.value.accept(this);
+        return emit(OpCode.OP_SET_INDEX, null, getCurrentLine(expr.bracket), object, index, value);
+    }
+
+    @Override
+    public Ir.Instr visitGetExpr(Expr.Get expr) {
+        int line = getCurrentLine(expr.name);
+        Ir.Instr object = expr.object.accept(this);
+        if (expr.name.lexeme.equals("tamanho")) {
+            return emit(OpCode.OP_LENGTH, null, line, object);
+        }
+        return emit(OpCode.OP_GET_FIELD, expr.name.lexeme, line, object);
+    }
+
+    @Override
+    public Ir.Instr visitRangeExpr(Expr.Range expr) {
+        Ir.Instr start = expr.start.accept(this);
+        Ir.Instr end = expr.end.accept(this);
+        return emit(OpCode.OP_RANGE, null, getCurrentLine(expr.paren), start, end);
+    }
+
+    @Override
+    public Ir.Instr visitSetExpr(Expr.Set expr) {
+        Ir.Instr object = expr.object.accept(this);
+        Ir.Instr value = expr.value.accept(this);
+        return emit(OpCode.OP_SET_FIELD, expr.name.lexeme, getCurrentLine(expr.name), object, value);
+    }
+
+    @Override
+    public Ir.Instr visitNewExpr(Expr.New expr) {
+        Ir.Instr[] arguments = new Ir.Instr[expr.arguments.size()];
+        for (int i = 0; i < arguments.length; i++) arguments[i] = expr.arguments.get(i).accept(this);
+        RecordType type = recordTypes.computeIfAbsent(expr.record, RecordType::of);
+        return emit(OpCode.OP_NEW_RECORD, type, getCurrentLine(expr.paren), arguments);
+    }
+
+    @Override
+    public Ir.Instr visitMapLiteralExpr(Expr.MapLiteral expr) {
+        Ir.Instr[] pairs = new Ir.Instr[2 * expr.keys.size()];
+        for (int i = 0; i < expr.keys.size(); i++) {
+            pairs[2 * i] = expr.keys.get(i).accept(this);
+            pairs[2 * i + 1] = expr.values.get(i).accept(this);
+        }
+        return emit(OpCode.OP_MAP, expr.keys.size(), getCurrentLine(expr.brace), pairs);
+    }
+
+    // Só métodos embutidos (m.tem(k)); chamadas de FUNCAO são delegadas ao Interpreter
+    @Override
+    public Ir.Instr visitCallExpr(Expr.Call expr) {
+        if (!(expr.callee instanceof Expr.Get)) throw unsupported("chamada de função");
+        Expr.Get method = (Expr.Get) expr.callee;
+        Ir.Instr[] operands = new Ir.Instr[expr.arguments.size() + 1];
+        operands[0] = method.object.accept(this);
+        for (int i = 0; i < expr.arguments.size(); i++) operands[i + 1] = expr.arguments.get(i).accept(this);
+        return emit(OpCode.OP_INVOKE, method.name.lexeme, getCurrentLine(method.name), operands);
+    }
+}
@@ -0,0 +1,40 @@
+package ByteCode;
+
+import Sintatica.Stmt;
+import java.io.PrintStream;
+import java.util.List;
+
+// Caminho alternativo ao Compiler: AST -> Ir (IrBuilder) -> passes (IrPasses) -> Chunk (IrLowering).
+// Produz o mesmo tipo de Chunk, que corre na VM, no JIT e no Verifier sem mudanças além dos
+// temporários (OP_GET_LOCAL / OP_SET_LOCAL). O Compiler continua a ser o caminho padrão.
+public final class IrCompiler {
+
+    private final IrPasses passes = new IrPasses();
+    private int nativeStatements;
+    private int interpretedStatements;
+
+    // 'dump' recebe a Ir antes dos passes e depois de cada passe que a mudou (null: sem listagem)
+    public Chunk compile(List<Stmt> statements, PrintStream dump) {
+        try {
+            IrBuilder builder = new IrBuilder();
+            Ir ir = builder.build(statements);
+            nativeStatements = builder.getNativeStatements();
+            interpretedStatements = builder.getInterpretedStatements();
+            if (dump != null) {
+                dump.println("; Ir inicial");
+                dump.print(ir.dump());
+            }
+            passes.run(ir, dump);
+            return IrLowering.lower(ir);
+
+        } catch (Exception e) {
+            System.err.println("Erro de compilação: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public int getNativeStatements() { return nativeStatements; }
+
+    public int getInterpretedStatements() { return interpretedStatements; }
+}
@@ -0,0 +1,424 @@
+package ByteCode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Traduz a Ir de volta para bytecode de pilha, bloco a bloco, na ordem de ir.blocks.
+// Um valor fica na pilha quando a primeira instrução do mesmo bloco que o usa o encontra no topo
+// (o caso normal de uma expressão); nos outros usos é recriado no ponto de uso:
+//   constante                    OP_CONSTANT / OP_NIL / OP_TRUE / OP_FALSE
+//   valor que uma global guarda  OP_GET_GLOBAL (a global está definida: a leitura não falha)
+//   senão                        OP_GET_LOCAL de um temporário, escrito por OP_SET_LOCAL na definição
+// As φ que precisam de temporário recebem-no em cada aresta (cópia paralela: empilha todos os
+// operandos e só depois escreve). Nas arestas de um salto condicional as cópias ficam num stub
+// depois do último bloco, que volta ao destino com OP_LOOP.
+// O que cabe na pilha e o que precisa de temporário depende um do outro: a tradução repete-se
+// até nada mudar, e só a última fica.
+final class IrLowering {
+
+    // Primeiro uso de um valor no seu bloco: candidato a recebê-lo na pilha
+    private static final class Use {
+        final Ir.Instr user;
+        final int index;
+
+        Use(Ir.Instr user, int index) {
+            this.user = user;
+            this.index = index;
+        }
+    }
+
+    // Cópias de uma aresta de salto condicional, emitidas depois de todos os blocos
+    private static final class Stub {
+        final Ir.Block from;
+        final Ir.Block to;
+        final int occurrence;
+
+        Stub(Ir.Block from, Ir.Block to, int occurrence) {
+            this.from = from;
+            this.to = to;
+            this.occurrence = occurrence;
+        }
+    }
+
+    // A tradução mudou o que está na pilha ou em temporários: recomeçar
+    private static final class Instavel extends RuntimeException {
+        Instavel() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final Ir ir;
+    private final IrPasses.Contents contents;
+    private final Map<Ir.Instr, Use> candidates = new IdentityHashMap<>();
+    // Corpo de um FAZAVOLTA -> OP_FOR_NEXT que lhe entrega o elemento na pilha
+    private final Map<Ir.Block, Ir.Instr> elements = new IdentityHashMap<>();
+    private final Set<Ir.Instr> demoted = new HashSet<>();
+    private final Set<Ir.Instr> spilled = new HashSet<>();
+    private final Map<Ir.Instr, Integer> slots = new IdentityHashMap<>();
+
+    // Estado de uma tradução
+    private Chunk chunk;
+    private List<Ir.Instr> stack;
+    private final Map<Object, Integer> positions = new IdentityHashMap<>();
+    private final Map<Integer, Object> patches = new HashMap<>();
+    private final List<Stub> stubs = new ArrayList<>();
+
+    private IrLowering(Ir ir) {
+        this.ir = ir;
+        this.contents = IrPasses.Contents.analyze(ir, false);
+    }
+
+    static Chunk lower(Ir ir) {
+        IrLowering lowering = new IrLowering(ir);
+        lowering.findCandidates();
+        while (true) {
+            try {
+                return Peephole.optimize(lowering.translate());
+            } catch (Instavel e) {
+                // mais um valor saiu da pilha ou passou a ter temporário
+            }
+        }
+    }
+
+    private void findCandidates() {
+        for (Ir.Block block : ir.blocks) {
+            if (block.terminator != null && block.terminator.is(OpCode.OP_FOR_NEXT)) {
+                Ir.Block body = block.successors.get(0);
+                elements.put(body, block.terminator);
+            }
+        }
+        for (Ir.Block block : ir.blocks) {
+            Ir.Instr element = elements.get(block);
+            for (Ir.Instr instr : sequence(block)) {
+                if (instr.kind == Ir.Kind.COPY) continue;
+                for (int i = 0; i < instr.operands.size(); i++) {
+                    Ir.Instr operand = instr.operands.get(i);
+                    boolean local = operand.block == block && operand.kind != Ir.Kind.PHI && operand != block.terminator;
+                    if ((local || operand == element) && !candidates.containsKey(operand)) {
+                        candidates.put(operand, new Use(instr, i));
+                    }
+                }
+            }
+        }
+    }
+
+    // Corpo e terminador do bloco, pela ordem de execução
+    private static List<Ir.Instr> sequence(Ir.Block block) {
+        List<Ir.Instr> sequence = new ArrayList<>(block.instrs);
+        if (block.terminator != null) sequence.add(block.terminator);
+        return sequence;
+    }
+
+    private boolean served(Ir.Instr value) {
+        return candidates.containsKey(value) && !demoted.contains(value);
+    }
+
+    private boolean servedBy(Ir.Instr value, Ir.Instr user, int index) {
+        Use use = candidates.get(value);
+        return use != null && use.user == user && use.index == index && !demoted.contains(value);
+    }
+
+    // --- Tradução ---
+
+    private Chunk translate() {
+        chunk = new Chunk();
+        positions.clear();
+        patches.clear();
+        stubs.clear();
+        for (int i = 0; i < ir.blocks.size(); i++) {
+            Ir.Block block = ir.blocks.get(i);
+            Ir.Block next = i + 1 < ir.blocks.size() ? ir.blocks.get(i + 1) : null;
+            positions.put(block, chunk.code.size());
+            lowerBlock(block, next);
+        }
+        for (Stub stub : stubs) {
+            positions.put(stub, chunk.code.size());
+            edgeCopies(stub.from, stub.to, stub.occurrence);
+            emitLoop(stub.to);
+        }
+        for (Map.Entry<Integer, Object> patch : patches.entrySet()) {
+            int offset = patch.getKey();
+            writeWide(offset, positions.get(patch.getValue()) - offset - 4);
+        }
+        return chunk;
+    }
+
+    private void lowerBlock(Ir.Block block, Ir.Block next) {
+        Map<String, Ir.Instr> state = stateIn(block);
+        stack = new ArrayList<>();
+        Ir.Instr element = elements.get(block);
+        if (element != null) {
+            // O OP_FOR_NEXT deixou o elemento na pilha
+            result(element, element.line);
+        }
+        for (Ir.Instr instr : block.instrs) {
+            lowerInstr(instr, state);
+            IrPasses.Contents.transfer(state, instr);
+        }
+        Ir.Instr terminator = block.terminator;
+        takeOperands(terminator, state);
+        if (!stack.isEmpty()) {
+            demoted.addAll(stack);
+            throw new Instavel();
+        }
+        lowerTerminator(block, terminator, next, state);
+    }
+
+    private Map<String, Ir.Instr> stateIn(Ir.Block block) {
+        return contents != null ? contents.in(block) : new HashMap<>();
+    }
+
+    private Map<String, Ir.Instr> stateOut(Ir.Block block) {
+        return contents != null ? new HashMap<>(contents.out(block)) : new HashMap<>();
+    }
+
+    private void lowerInstr(Ir.Instr instr, Map<String, Ir.Instr> state) {
+        if (instr.kind == Ir.Kind.COPY || instr.is(OpCode.OP_CONSTANT)) {
+            // Sem efeito: só aparece aqui se a pilha o leva ao primeiro uso
+            if (served(instr)) {
+                materialize(instr, state, instr.line);
+                stack.add(instr);
+            }
+            return;
+        }
+        takeOperands(instr, state);
+        emitOp(instr);
+        if (instr.is(OpCode.OP_SET_GLOBAL)) {
+            // OP_SET_GLOBAL deixa o valor na pilha: vai para o temporário adiado ou é descartado
+            Ir.Instr value = instr.operands.get(0);
+            if (deferred(value) && candidates.get(value).user == instr) write(OpCode.OP_SET_LOCAL, slot(value), 0);
+            else chunk.write(OpCode.OP_POP, 0);
+        } else if (instr.hasValue()) {
+            result(instr, instr.line);
+        }
+    }
+
+    // Operandos no topo da pilha: os que lá estão pela ordem certa ficam, os outros são recriados
+    private void takeOperands(Ir.Instr instr, Map<String, Ir.Instr> state) {
+        List<Ir.Instr> operands = instr.operands;
+        int prefix = 0;
+        while (prefix < operands.size() && servedBy(operands.get(prefix), instr, prefix)) prefix++;
+        int onStack = prefix;
+        while (onStack > 0 && !topMatches(operands, onStack)) onStack--;
+        boolean unstable = false;
+        for (int i = onStack; i < operands.size(); i++) {
+            if (servedBy(operands.get(i), instr, i)) {
+                demoted.add(operands.get(i));
+                unstable = true;
+            }
+        }
+        if (unstable) throw new Instavel();
+        stack.subList(stack.size() - onStack, stack.size()).clear();
+        for (int i = onStack; i < operands.size(); i++) {
+            materialize(operands.get(i), state, instr.line);
+        }
+    }
+
+    private boolean topMatches(List<Ir.Instr> operands, int count) {
+        if (count > stack.size()) return false;
+        for (int i = 0; i < count; i++) {
+            if (stack.get(stack.size() - count + i) != operands.get(i)) return false;
+        }
+        return true;
+    }
+
+    // Valor acabado de empilhar: fica para o primeiro uso, vai para o temporário, ou as duas coisas
+    private void result(Ir.Instr value, int line) {
+        boolean served = served(value);
+        if (spilled.contains(value) && !deferred(value)) {
+            write(OpCode.OP_SET_LOCAL, slot(value), line);
+            if (served) write(OpCode.OP_GET_LOCAL, slot(value), line);
+        } else if (!served) {
+            chunk.write(OpCode.OP_POP, line);
+            return;
+        }
+        if (served) stack.add(value);
+    }
+
+    // Valor com temporário cujo primeiro uso é um OP_SET_GLOBAL: escreve-o depois dele, em vez de POP
+    private boolean deferred(Ir.Instr value) {
+        Use use = candidates.get(value);
+        return spilled.contains(value) && served(value) && use.user.is(OpCode.OP_SET_GLOBAL) && use.index == 0;
+    }
+
+    // Empilha o valor num ponto onde ele não está na pilha
+    private void materialize(Ir.Instr value, Map<String, Ir.Instr> state, int line) {
+        Ir.Instr root = Ir.resolve(value);
+        if (root.is(OpCode.OP_CONSTANT)) {
+            constant(root.payload, line);
+            return;
+        }
+        for (Map.Entry<String, Ir.Instr> entry : state.entrySet()) {
+            if (entry.getValue() == root) {
+                write(OpCode.OP_GET_GLOBAL, chunk.addConstant(entry.getKey()), line);
+                return;
+            }
+        }
+        if (spilled.add(root)) throw new Instavel();
+        write(OpCode.OP_GET_LOCAL, slot(root), line);
+    }
+
+    private int slot(Ir.Instr value) {
+        return slots.computeIfAbsent(value, v -> slots.size());
+    }
+
+    private void constant(Object value, int line) {
+        if (value == null) {
+            chunk.write(OpCode.OP_NIL, line);
+        } else if (value instanceof Boolean) {
+            chunk.write((Boolean) value ? OpCode.OP_TRUE : OpCode.OP_FALSE, line);
+        } else {
+            write(OpCode.OP_CONSTANT, chunk.addConstant(value), line);
+        }
+    }
+
+    private void emitOp(Ir.Instr instr) {
+        int line = instr.line;
+        switch (instr.op) {
+            case OP_DEFINE_GLOBAL: case OP_GET_GLOBAL: case OP_SET_GLOBAL: case OP_INTERPRET:
+            case OP_INVOKE: case OP_GET_FIELD: case OP_SET_FIELD: case OP_NEW_RECORD:
+                write(instr.op, chunk.addConstant(instr.payload), line);
+                break;
+            case OP_ARRAY: case OP_MAP:
+                write(instr.op, (Integer) instr.payload, line);
+                break;
+            default:
+                chunk.write(instr.op, line);
+                break;
+        }
+    }
+
+    private void write(OpCode op, int operand, int line) {
+        chunk.write(op, line);
+        chunk.write(operand, line);
+    }
+
+    // --- Terminadores e arestas ---
+
+    private void lowerTerminator(Ir.Block block, Ir.Instr terminator, Ir.Block next, Map<String, Ir.Instr> state) {
+        List<Ir.Block> successors = block.successors;
+        switch (terminator.op) {
+            case OP_RETURN:
+                chunk.write(OpCode.OP_RETURN, 0);
+                break;
+            case OP_JUMP:
+                edgeCopies(block, successors.get(0), 0);
+                jumpTo(successors.get(0), next);
+                break;
+            case OP_JUMP_IF_FALSE: {
+                Ir.Block ifTrue = successors.get(0);
+                Ir.Block ifFalse = successors.get(1);
+                if (ifFalse == next && !hasCopies(ifFalse) && ifTrue != ifFalse) {
+                    branch(OpCode.OP_JUMP_IF_TRUE, block, 0, terminator.line);
+                } else {
+                    branch(OpCode.OP_JUMP_IF_FALSE, block, 1, terminator.line);
+                    edgeCopies(block, ifTrue, 0);
+                    jumpTo(ifTrue, next);
+                }
+                break;
+            }
+            case OP_SWITCH:
+                write(OpCode.OP_SWITCH, chunk.addConstant(terminator.payload), 0);
+                for (int i = 0; i < successors.size(); i++) {
+                    patches.put(emitJump(OpCode.OP_JUMP, 0), edgeTarget(block, i));
+                }
+                break;
+            case OP_FOR_NEXT: {
+                // O corpo vem logo a seguir: o elemento chega-lhe na pilha
+                if (successors.get(0) != next) {
+                    throw new IllegalStateException("Corpo do FAZAVOLTA fora de ordem em " + block);
+                }
+                int iterator = chunk.addConstant(terminator.payload);
+                patches.put(emitJump(OpCode.OP_FOR_NEXT, terminator.line, iterator), edgeTarget(block, 1));
+                break;
+            }
+            default:
+                throw new IllegalStateException("Terminador desconhecido: " + terminator.op);
+        }
+    }
+
+    private void branch(OpCode op, Ir.Block block, int successor, int line) {
+        patches.put(emitJump(op, line), edgeTarget(block, successor));
+    }
+
+    // Destino de um salto condicional: o bloco, ou um stub se a aresta tem cópias ou volta para trás
+    private Object edgeTarget(Ir.Block block, int successor) {
+        Ir.Block target = block.successors.get(successor);
+        if (!hasCopies(target) && !positions.containsKey(target)) return target;
+        int occurrence = 0;
+        for (int i = 0; i < successor; i++) {
+            if (block.successors.get(i) == target) occurrence++;
+        }
+        Stub stub = new Stub(block, target, occurrence);
+        stubs.add(stub);
+        return stub;
+    }
+
+    private void jumpTo(Ir.Block target, Ir.Block next) {
+        if (target == next) return;
+        if (positions.containsKey(target)) emitLoop(target);
+        else patches.put(emitJump(OpCode.OP_JUMP, 0), target);
+    }
+
+    private boolean hasCopies(Ir.Block block) {
+        for (Ir.Instr phi : block.phis) {
+            if (spilled.contains(phi)) return true;
+        }
+        return false;
+    }
+
+    // Cópia paralela para as φ de 'to' com temporário, pela aresta 'occurrence' de 'from' para 'to'
+    private void edgeCopies(Ir.Block from, Ir.Block to, int occurrence) {
+        int index = -1;
+        for (int i = 0, seen = 0; i < to.predecessors.size(); i++) {
+            if (to.predecessors.get(i) == from && seen++ == occurrence) {
+                index = i;
+                break;
+            }
+        }
+        Map<String, Ir.Instr> state = stateOut(from);
+        List<Ir.Instr> targets = new ArrayList<>();
+        for (Ir.Instr phi : to.phis) {
+            if (!spilled.contains(phi)) continue;
+            materialize(phi.operands.get(index), state, 0);
+            targets.add(phi);
+        }
+        for (int i = targets.size() - 1; i >= 0; i--) {
+            write(OpCode.OP_SET_LOCAL, slot(targets.get(i)), 0);
+        }
+    }
+
+    // --- Saltos (largos, como no Compiler; o Peephole escolhe a largura final) ---
+
+    private int emitJump(OpCode jumpOpcode, int line, int... imediatos) {
+        chunk.write(jumpOpcode.largo(), line);
+        for (int value : imediatos) {
+            chunk.write(value, line);
+        }
+        for (int i = 0; i < 4; i++) {
+            chunk.write(0xFF, line);
+        }
+        return chunk.code.size() - 4;
+    }
+
+    private void emitLoop(Ir.Block target) {
+        chunk.write(OpCode.OP_LOOP.largo(), 0);
+        int operand = chunk.code.size();
+        for (int i = 0; i < 4; i++) {
+            chunk.write(0, 0);
+        }
+        writeWide(operand, chunk.code.size() - positions.get(target));
+    }
+
+    private void writeWide(int position, int value) {
+        chunk.code.set(position, (value >>> 24) & 0xFF);
+        chunk.code.set(position + 1, (value >> 16) & 0xFF);
+        chunk.code.set(position + 2, (value >> 8) & 0xFF);
+        chunk.code.set(position + 3, value & 0xFF);
+    }
+}
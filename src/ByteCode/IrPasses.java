@@ -0,0 +1,500 @@
+package ByteCode;
+
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Passes sobre a Ir, por ordem e em rondas até nenhum mudar nada (no máximo MAX_RONDAS):
+//   código morto        blocos inalcançáveis e valores sem efeito que ninguém usa
+//   propagação de cópias leitura de uma global cujo valor já se conhece vira cópia desse valor
+//   subexpressões comuns a mesma conta pura já calculada num bloco dominante é reaproveitada
+// Só entram em CSE e no código morto as instruções que não têm efeitos nem podem falhar: as contas
+// só quando o tipo inferido garante números (com texto o '+' acrescenta ao buffer, e com outros
+// valores a VM reporta um erro de operando), e a divisão nunca é removida (divisão inteira por zero).
+final class IrPasses {
+
+    private static final int MAX_RONDAS = 3;
+
+    private interface Pass {
+        boolean run(Ir ir);
+    }
+
+    private final Map<String, Pass> passes = new LinkedHashMap<>();
+
+    IrPasses() {
+        passes.put("código morto", IrPasses::deadCode);
+        passes.put("propagação de cópias", IrPasses::copyPropagation);
+        passes.put("subexpressões comuns", IrPasses::commonSubexpressions);
+    }
+
+    // 'dump' recebe a Ir depois de cada passe que a mudou (null: sem listagem)
+    void run(Ir ir, PrintStream dump) {
+        for (int round = 0; round < MAX_RONDAS; round++) {
+            boolean changed = false;
+            for (Map.Entry<String, Pass> pass : passes.entrySet()) {
+                if (!pass.getValue().run(ir)) continue;
+                changed = true;
+                if (dump != null) {
+                    dump.println("; depois de " + pass.getKey() + " (ronda " + (round + 1) + ")");
+                    dump.print(ir.dump());
+                }
+            }
+            if (!changed) return;
+        }
+    }
+
+    // --- Código morto ---
+
+    static boolean deadCode(Ir ir) {
+        boolean changed = foldBranches(ir);
+        changed |= removeUnreachable(ir);
+
+        // Marca a partir das instruções que têm de ficar e segue os operandos
+        Set<Ir.Instr> live = new HashSet<>();
+        Deque<Ir.Instr> work = new ArrayDeque<>();
+        Map<Ir.Instr, Tipo> types = inferTypes(ir);
+        for (Ir.Block block : ir.blocks) {
+            for (Ir.Instr instr : Ir.all(block)) {
+                if (!isRemovable(instr, types) && live.add(instr)) work.push(instr);
+            }
+        }
+        while (!work.isEmpty()) {
+            for (Ir.Instr operand : work.pop().operands) {
+                if (live.add(operand)) work.push(operand);
+            }
+        }
+        for (Ir.Block block : ir.blocks) {
+            changed |= block.phis.retainAll(live);
+            changed |= block.instrs.retainAll(live);
+        }
+        return changed;
+    }
+
+    // Condição constante (VOLTAINFINITA (ISSOAI)): o salto condicional vira JUMP para o lado que é
+    // sempre tomado, e a outra aresta desaparece
+    private static boolean foldBranches(Ir ir) {
+        boolean changed = false;
+        for (Ir.Block block : ir.blocks) {
+            Ir.Instr terminator = block.terminator;
+            if (!terminator.is(OpCode.OP_JUMP_IF_FALSE)) continue;
+            Ir.Instr condition = Ir.resolve(terminator.operands.get(0));
+            if (!condition.is(OpCode.OP_CONSTANT)) continue;
+            int dropped = ValueOps.isTruthy(condition.payload) ? 1 : 0;
+            Ir.Block target = block.successors.remove(dropped);
+            int occurrence = dropped == 1 && block.successors.get(0) == target ? 1 : 0;
+            for (int i = 0, seen = 0; i < target.predecessors.size(); i++) {
+                if (target.predecessors.get(i) == block && seen++ == occurrence) {
+                    target.predecessors.remove(i);
+                    for (Ir.Instr phi : target.phis) phi.operands.remove(i);
+                    break;
+                }
+            }
+            terminator.op = OpCode.OP_JUMP;
+            terminator.operands.clear();
+            changed = true;
+        }
+        return changed;
+    }
+
+    // Tira os blocos sem caminho desde a entrada, e os operandos que as φ recebiam deles
+    private static boolean removeUnreachable(Ir ir) {
+        Set<Ir.Block> reachable = new HashSet<>(ir.reversePostorder());
+        if (reachable.size() == ir.blocks.size()) return false;
+        for (Ir.Block block : ir.blocks) {
+            if (!reachable.contains(block)) continue;
+            for (int i = block.predecessors.size() - 1; i >= 0; i--) {
+                if (reachable.contains(block.predecessors.get(i))) continue;
+                block.predecessors.remove(i);
+                for (Ir.Instr phi : block.phis) phi.operands.remove(i);
+            }
+        }
+        ir.blocks.retainAll(reachable);
+        return true;
+    }
+
+    private static boolean isRemovable(Ir.Instr instr, Map<Ir.Instr, Tipo> types) {
+        if (instr.kind != Ir.Kind.OP) return true;
+        switch (instr.op) {
+            case OP_CONSTANT: case OP_NOT: case OP_EQUAL: case OP_NOT_EQUAL: case OP_ARRAY: case OP_MAP:
+                return true;
+            case OP_ADD: case OP_SUBTRACT: case OP_MULTIPLY: case OP_NEGATE:
+            case OP_LESS: case OP_GREATER: case OP_LESS_EQUAL: case OP_GREATER_EQUAL:
+                return numericOperands(instr, types);
+            default:
+                return false;
+        }
+    }
+
+    // --- Propagação de cópias ---
+
+    static boolean copyPropagation(Ir ir) {
+        boolean changed = removeUnreachable(ir);
+        changed |= removeTrivialPhis(ir);
+        Contents contents = Contents.analyze(ir, true);
+        if (contents == null) return changed;
+
+        for (Ir.Block block : ir.blocks) {
+            Map<String, Ir.Instr> state = contents.in(block);
+            for (Ir.Instr instr : block.instrs) {
+                if (instr.is(OpCode.OP_GET_GLOBAL)) {
+                    Ir.Instr known = state.get((String) instr.payload);
+                    if (known != null) {
+                        // A leitura fica no mesmo ponto, como cópia: a ordem da pilha não muda
+                        instr.becomeCopy(known);
+                        changed = true;
+                        continue;
+                    }
+                }
+                Contents.transfer(state, instr);
+            }
+        }
+
+        // As φ novas entram nos blocos só se algum valor chegar a elas
+        Set<Ir.Instr> used = new HashSet<>();
+        Deque<Ir.Instr> work = new ArrayDeque<>();
+        for (Ir.Block block : ir.blocks) {
+            for (Ir.Instr instr : Ir.all(block)) {
+                for (Ir.Instr operand : instr.operands) {
+                    Ir.Instr root = Ir.resolve(operand);
+                    if (contents.created.containsKey(root) && used.add(root)) work.push(root);
+                }
+            }
+        }
+        while (!work.isEmpty()) {
+            Ir.Instr phi = work.pop();
+            String name = contents.created.get(phi);
+            for (Ir.Block predecessor : phi.block.predecessors) {
+                Ir.Instr operand = contents.out(predecessor).get(name);
+                phi.operands.add(operand);
+                if (contents.created.containsKey(operand) && used.add(operand)) work.push(operand);
+            }
+        }
+        List<Ir.Instr> phis = new ArrayList<>(used);
+        phis.sort((a, b) -> Integer.compare(a.id, b.id));
+        for (Ir.Instr phi : phis) phi.block.phis.add(phi);
+        return changed;
+    }
+
+    // φ cujos operandos são todos o mesmo valor (ou a própria φ) viram esse valor
+    private static boolean removeTrivialPhis(Ir ir) {
+        boolean changed = false;
+        boolean again = true;
+        while (again) {
+            again = false;
+            Map<Ir.Instr, Ir.Instr> replacements = new IdentityHashMap<>();
+            for (Ir.Block block : ir.blocks) {
+                for (Iterator<Ir.Instr> it = block.phis.iterator(); it.hasNext(); ) {
+                    Ir.Instr phi = it.next();
+                    Ir.Instr same = null;
+                    boolean trivial = true;
+                    for (Ir.Instr operand : phi.operands) {
+                        Ir.Instr root = Ir.resolve(operand);
+                        if (root == phi || root == same) continue;
+                        if (same != null) {
+                            trivial = false;
+                            break;
+                        }
+                        same = root;
+                    }
+                    if (!trivial || same == null) continue;
+                    it.remove();
+                    replacements.put(phi, same);
+                }
+            }
+            if (!replacements.isEmpty()) {
+                ir.replace(replacements);
+                changed = true;
+                again = true;
+            }
+        }
+        return changed;
+    }
+
+    // --- Subexpressões comuns ---
+
+    // Numeração de valores com âmbito: percorre a árvore de dominadores e cada bloco vê as contas
+    // dos blocos que o dominam
+    static boolean commonSubexpressions(Ir ir) {
+        Map<Ir.Block, Ir.Block> idom = ir.dominators();
+        Map<Ir.Block, List<Ir.Block>> children = new IdentityHashMap<>();
+        for (Ir.Block block : ir.reversePostorder()) {
+            if (block == ir.entry) continue;
+            children.computeIfAbsent(idom.get(block), b -> new ArrayList<>()).add(block);
+        }
+        Map<Ir.Instr, Tipo> types = inferTypes(ir);
+        Map<List<Object>, Ir.Instr> available = new HashMap<>();
+        boolean changed = false;
+
+        // Pilha explícita: (bloco, chaves que ele acrescentou para tirar à saída)
+        Deque<Ir.Block> blocks = new ArrayDeque<>();
+        Deque<List<List<Object>>> added = new ArrayDeque<>();
+        Deque<Boolean> visited = new ArrayDeque<>();
+        blocks.push(ir.entry);
+        added.push(new ArrayList<>());
+        visited.push(false);
+        while (!blocks.isEmpty()) {
+            Ir.Block block = blocks.peek();
+            if (visited.pop()) {
+                blocks.pop();
+                for (List<Object> key : added.pop()) available.remove(key);
+                continue;
+            }
+            visited.push(true);
+            List<List<Object>> keys = added.peek();
+            for (Ir.Instr instr : block.instrs) {
+                if (!isCommon(instr, types)) continue;
+                List<Object> key = key(instr);
+                Ir.Instr first = available.get(key);
+                if (first != null) {
+                    instr.becomeCopy(first);
+                    changed = true;
+                } else {
+                    available.put(key, instr);
+                    keys.add(key);
+                }
+            }
+            for (Ir.Block child : children.getOrDefault(block, List.of())) {
+                blocks.push(child);
+                added.push(new ArrayList<>());
+                visited.push(false);
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isCommon(Ir.Instr instr, Map<Ir.Instr, Tipo> types) {
+        if (instr.kind != Ir.Kind.OP) return false;
+        switch (instr.op) {
+            case OP_CONSTANT: case OP_NOT: case OP_EQUAL: case OP_NOT_EQUAL:
+                return true;
+            case OP_ADD: case OP_SUBTRACT: case OP_MULTIPLY: case OP_DIVIDE: case OP_NEGATE:
+            case OP_LESS: case OP_GREATER: case OP_LESS_EQUAL: case OP_GREATER_EQUAL:
+                return numericOperands(instr, types);
+            default:
+                return false;
+        }
+    }
+
+    // Opcode, constante (com a classe, para não confundir valores de tipos diferentes) e operandos
+    private static List<Object> key(Ir.Instr instr) {
+        List<Object> key = new ArrayList<>();
+        key.add(instr.op);
+        key.add(instr.payload);
+        key.add(instr.payload == null ? null : instr.payload.getClass());
+        for (Ir.Instr operand : instr.operands) key.add(Ir.resolve(operand).id);
+        return key;
+    }
+
+    // --- Tipos ---
+
+    enum Tipo { NUMERO, BOOLEANO, QUALQUER }
+
+    private static boolean numericOperands(Ir.Instr instr, Map<Ir.Instr, Tipo> types) {
+        for (Ir.Instr operand : instr.operands) {
+            if (types.get(Ir.resolve(operand)) != Tipo.NUMERO) return false;
+        }
+        return true;
+    }
+
+    // Ponto fixo otimista: tudo começa sem tipo (null) e um tipo só desce para QUALQUER; as φ
+    // ignoram os operandos ainda sem tipo, para que um contador de laço fique NUMERO
+    static Map<Ir.Instr, Tipo> inferTypes(Ir ir) {
+        Map<Ir.Instr, Tipo> types = new IdentityHashMap<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Ir.Block block : ir.blocks) {
+                for (Ir.Instr instr : Ir.all(block)) {
+                    Tipo type = typeOf(instr, types);
+                    if (type != null && type != types.get(instr)) {
+                        types.put(instr, type);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return types;
+    }
+
+    private static Tipo typeOf(Ir.Instr instr, Map<Ir.Instr, Tipo> types) {
+        switch (instr.kind) {
+            case COPY:
+                return types.get(Ir.resolve(instr));
+            case PHI: {
+                Tipo type = null;
+                for (Ir.Instr operand : instr.operands) {
+                    Tipo other = types.get(Ir.resolve(operand));
+                    if (other == null) continue;
+                    type = type == null || type == other ? other : Tipo.QUALQUER;
+                }
+                return type;
+            }
+            default:
+                break;
+        }
+        switch (instr.op) {
+            case OP_CONSTANT: {
+                Object value = instr.payload;
+                if (value instanceof Integer || value instanceof Double) return Tipo.NUMERO;
+                return value instanceof Boolean ? Tipo.BOOLEANO : Tipo.QUALQUER;
+            }
+            case OP_ADD: case OP_SUBTRACT: case OP_MULTIPLY: case OP_DIVIDE: case OP_NEGATE:
+            case OP_LESS: case OP_GREATER: case OP_LESS_EQUAL: case OP_GREATER_EQUAL: {
+                for (Ir.Instr operand : instr.operands) {
+                    if (types.get(Ir.resolve(operand)) == null) return null;
+                }
+                if (!numericOperands(instr, types)) return Tipo.QUALQUER;
+                return instr.is(OpCode.OP_ADD) || instr.is(OpCode.OP_SUBTRACT) || instr.is(OpCode.OP_MULTIPLY)
+                        || instr.is(OpCode.OP_DIVIDE) || instr.is(OpCode.OP_NEGATE) ? Tipo.NUMERO : Tipo.BOOLEANO;
+            }
+            case OP_NOT: case OP_EQUAL: case OP_NOT_EQUAL:
+                return Tipo.BOOLEANO;
+            default:
+                return Tipo.QUALQUER;
+        }
+    }
+
+    // --- Conteúdo das globais ---
+
+    // Que valor cada global guarda em cada ponto: análise para a frente sobre os blocos.
+    // Onde os predecessores discordam vale a φ do bloco para essa variável, se houver uma com os
+    // mesmos operandos; em modo 'create' a análise cria essa φ (ainda fora do bloco: quem a usar
+    // acrescenta-a). Um OP_INTERPRET pode escrever qualquer global e apaga tudo o que se sabia.
+    static final class Contents {
+
+        private static final int MAX_VOLTAS = 50;
+
+        private final Map<Ir.Block, Map<String, Ir.Instr>> in = new IdentityHashMap<>();
+        private final Map<Ir.Block, Map<String, Ir.Instr>> out = new IdentityHashMap<>();
+        // φ criadas pela análise -> variável
+        final Map<Ir.Instr, String> created = new IdentityHashMap<>();
+        private final Map<Ir.Block, Map<String, Ir.Instr>> createdByBlock = new IdentityHashMap<>();
+
+        private Contents() {}
+
+        // Cópia do estado à entrada do bloco (vazio para blocos inalcançáveis)
+        Map<String, Ir.Instr> in(Ir.Block block) {
+            return new HashMap<>(in.getOrDefault(block, Map.of()));
+        }
+
+        Map<String, Ir.Instr> out(Ir.Block block) {
+            return out.getOrDefault(block, Map.of());
+        }
+
+        // null se não estabilizar (com φ a criar outras φ em laços aninhados fundos)
+        static Contents analyze(Ir ir, boolean create) {
+            Contents contents = new Contents();
+            List<Ir.Block> order = ir.reversePostorder();
+            for (int round = 0; round < MAX_VOLTAS; round++) {
+                boolean changed = false;
+                for (Ir.Block block : order) {
+                    Map<String, Ir.Instr> state = block == ir.entry ? new HashMap<>() : contents.meet(ir, block, create);
+                    if (!state.equals(contents.in.get(block))) {
+                        contents.in.put(block, new HashMap<>(state));
+                        changed = true;
+                    }
+                    for (Ir.Instr instr : block.instrs) transfer(state, instr);
+                    if (!state.equals(contents.out.get(block))) {
+                        contents.out.put(block, state);
+                        changed = true;
+                    }
+                }
+                if (!changed) return contents;
+            }
+            return null;
+        }
+
+        static void transfer(Map<String, Ir.Instr> state, Ir.Instr instr) {
+            if (instr.kind != Ir.Kind.OP) return;
+            switch (instr.op) {
+                case OP_DEFINE_GLOBAL:
+                case OP_SET_GLOBAL:
+                    state.put((String) instr.payload, Ir.resolve(instr.operands.get(0)));
+                    break;
+                case OP_GET_GLOBAL:
+                    // Depois de uma leitura que não falhou, a global guarda o valor lido
+                    state.putIfAbsent((String) instr.payload, instr);
+                    break;
+                case OP_INTERPRET:
+                    state.clear();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private Map<String, Ir.Instr> meet(Ir ir, Ir.Block block, boolean create) {
+            List<Map<String, Ir.Instr>> states = new ArrayList<>();
+            for (Ir.Block predecessor : block.predecessors) {
+                Map<String, Ir.Instr> state = out.get(predecessor);
+                states.add(state); // null: predecessor ainda não visitado (aresta de volta)
+            }
+            Map<String, Ir.Instr> merged = new HashMap<>();
+            Map<String, Ir.Instr> first = null;
+            for (Map<String, Ir.Instr> state : states) {
+                if (state != null) {
+                    first = state;
+                    break;
+                }
+            }
+            if (first == null) return merged;
+            for (String name : first.keySet()) {
+                // Só vale se a global tem valor conhecido em todos os predecessores visitados
+                boolean everywhere = true;
+                boolean same = true;
+                Ir.Instr value = first.get(name);
+                for (Map<String, Ir.Instr> state : states) {
+                    if (state == null) continue;
+                    Ir.Instr other = state.get(name);
+                    if (other == null) {
+                        everywhere = false;
+                        break;
+                    }
+                    if (other != value) same = false;
+                }
+                if (!everywhere) continue;
+                // A φ que já existe vem primeiro: na primeira volta de um laço só a entrada é
+                // conhecida, e os predecessores parecem concordar
+                Ir.Instr phi = existingPhi(block, name, states);
+                if (phi == null && same) phi = value;
+                if (phi == null && create) phi = createdPhi(ir, block, name);
+                if (phi != null) merged.put(name, phi);
+            }
+            return merged;
+        }
+
+        private static Ir.Instr existingPhi(Ir.Block block, String name, List<Map<String, Ir.Instr>> states) {
+            for (Ir.Instr phi : block.phis) {
+                if (!name.equals(phi.payload)) continue;
+                boolean matches = true;
+                for (int i = 0; i < states.size() && matches; i++) {
+                    Map<String, Ir.Instr> state = states.get(i);
+                    if (state != null) matches = Ir.resolve(phi.operands.get(i)) == state.get(name);
+                }
+                if (matches) return phi;
+            }
+            return null;
+        }
+
+        private Ir.Instr createdPhi(Ir ir, Ir.Block block, String name) {
+            Map<String, Ir.Instr> phis = createdByBlock.computeIfAbsent(block, b -> new HashMap<>());
+            Ir.Instr phi = phis.get(name);
+            if (phi == null) {
+                phi = ir.instr(Ir.Kind.PHI, null, name, 0);
+                phi.block = block;
+                phis.put(name, phi);
+                created.put(phi, name);
+            }
+            return phi;
+        }
+    }
+}
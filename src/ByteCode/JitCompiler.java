@@ -0,0 +1,737 @@
+package ByteCode;
+
+import Semantica.Builtins;
+import Semantica.FieldCache;
+import Semantica.Interpreter;
+import Semantica.RecordType;
+import Semantica.SwitchTable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Traduz um Chunk para uma classe JVM carregada como hidden class.
+// Cada global vira um campo estático e cada opcode vira uma sequência curta de bytecode JVM
+// que chama o JitRuntime, de modo que o C2 do HotSpot compila diretamente os laços do script.
+public final class JitCompiler {
+
+    private static final String CLASS_NAME = "ByteCode/ProgramaCompilado";
+    private static final String RUNTIME = "ByteCode/JitRuntime";
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String BINARY_DESC = "(" + OBJECT + OBJECT + "I)" + OBJECT;
+
+    private JitCompiler() {}
+
+    // Lançada quando o Chunk usa algo que o backend JVM ainda não traduz
+    public static final class NaoSuportado extends RuntimeException {
+        NaoSuportado(String message) {
+            super(message);
+        }
+    }
+
+    // Programa já carregado na JVM, pronto para executar
+    public static final class CompiledProgram {
+        private final MethodHandle run;
+        private final Map<Integer, Integer> osrEntries; // posição no chunk -> índice de entrada
+        private final String[] globalNames;
+        private final MethodHandle[] getters;
+        private final MethodHandle[] setters;
+        private final MethodHandle counterSetter; // campos C e L: contadores dos FAZAVOLTA na entrada OSR
+        private final MethodHandle limitSetter;
+        private final MethodHandle localsSetter; // campo T: temporários do IrLowering na entrada OSR
+        private final MethodHandle mixedModeSetter; // campo D: Interpreter dos OP_INTERPRET
+        private MixedMode mixedMode;
+
+        private CompiledProgram(MethodHandle run, Map<Integer, Integer> osrEntries,
+                                String[] globalNames, MethodHandle[] getters, MethodHandle[] setters,
+                                MethodHandle counterSetter, MethodHandle limitSetter, MethodHandle localsSetter,
+                                MethodHandle mixedModeSetter) {
+            this.run = run;
+            this.osrEntries = osrEntries;
+            this.globalNames = globalNames;
+            this.getters = getters;
+            this.setters = setters;
+            this.counterSetter = counterSetter;
+            this.limitSetter = limitSetter;
+            this.localsSetter = localsSetter;
+            this.mixedModeSetter = mixedModeSetter;
+        }
+
+        // Mesmo contrato de VM.interpret: false quando a execução termina por erro
+        public boolean run() {
+            try {
+                useMixedMode(new MixedMode(new HashMap<>()));
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+            return invoke(0);
+        }
+
+        // Interpreter dos comandos delegados (com as funções e os caches de memoização), ou null se nenhum foi
+        public Interpreter getInterpreter() {
+            return mixedMode == null ? null : mixedMode.interpreter();
+        }
+
+        // Indica se é possível continuar a execução compilada a partir desta posição do chunk
+        public boolean canEnterAt(int pc) {
+            return osrEntries.containsKey(pc);
+        }
+
+        // On-stack replacement: continua em código compilado a partir do início de um laço,
+        // com as globais, os contadores de FAZAVOLTA e os temporários atuais da VM. Os OP_INTERPRET
+        // usam o Interpreter da VM (mixedMode). Ao terminar, devolve as globais ao mapa da VM.
+        boolean enterAt(int pc, MixedMode mixedMode, int[] counters, int[] limits, Object[] locals) {
+            Integer entry = osrEntries.get(pc);
+            if (entry == null) {
+                throw new IllegalArgumentException("Sem ponto de entrada OSR na posição " + pc);
+            }
+            Map<String, Object> globals = mixedMode.globals();
+            try {
+                useMixedMode(mixedMode);
+                for (int i = 0; i < globalNames.length; i++) {
+                    Object value = globals.containsKey(globalNames[i]) ? globals.get(globalNames[i]) : JitRuntime.UNDEFINED;
+                    setters[i].invoke(value);
+                }
+                counterSetter.invoke(counters);
+                limitSetter.invoke(limits);
+                localsSetter.invoke(locals);
+                return invoke(entry);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            } finally {
+                copyGlobalsTo(globals);
+            }
+        }
+
+        private void useMixedMode(MixedMode mixedMode) throws Throwable {
+            this.mixedMode = mixedMode;
+            mixedModeSetter.invoke(mixedMode);
+        }
+
+        private void copyGlobalsTo(Map<String, Object> globals) {
+            try {
+                for (int i = 0; i < globalNames.length; i++) {
+                    Object value = getters[i].invoke();
+                    if (value != JitRuntime.UNDEFINED) globals.put(globalNames[i], value);
+                }
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+
+        private boolean invoke(int entry) {
+            try {
+                run.invokeExact(entry);
+                return true;
+            } catch (JitRuntime.Abort e) {
+                return false;
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
+            }
+        }
+    }
+
+    public static CompiledProgram compile(Chunk chunk) {
+        Map<String, Integer> globals = new LinkedHashMap<>();
+        Map<Integer, Integer> osrEntries = new LinkedHashMap<>();
+        List<String> fieldSites = new ArrayList<>();
+        byte[] bytes;
+        try {
+            bytes = generate(chunk, globals, osrEntries, fieldSites);
+        } catch (IllegalStateException e) {
+            // Limites do formato class (métodos de 64KB, saltos de 16 bits) em programas muito grandes
+            throw new NaoSuportado(e.getMessage());
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            Class<?> programa = lookup.lookupClass();
+            // K: as constantes do chunk e, depois delas, um FieldCache por instrução de campo
+            Object[] constants = chunk.constants.toArray(new Object[chunk.constants.size() + fieldSites.size()]);
+            for (int i = 0; i < fieldSites.size(); i++) {
+                constants[chunk.constants.size() + i] = new FieldCache(fieldSites.get(i));
+            }
+            lookup.findStaticSetter(programa, "K", Object[].class).invoke(constants);
+            MethodHandle run = lookup.findStatic(programa, "run", MethodType.methodType(void.class, int.class));
+
+            String[] names = globals.keySet().toArray(new String[0]);
+            MethodHandle[] getters = new MethodHandle[names.length];
+            MethodHandle[] setters = new MethodHandle[names.length];
+            for (int i = 0; i < names.length; i++) {
+                getters[i] = lookup.findStaticGetter(programa, "g" + i, Object.class);
+                setters[i] = lookup.findStaticSetter(programa, "g" + i, Object.class);
+            }
+            return new CompiledProgram(run, osrEntries, names, getters, setters,
+                    lookup.findStaticSetter(programa, "C", int[].class),
+                    lookup.findStaticSetter(programa, "L", int[].class),
+                    lookup.findStaticSetter(programa, "T", Object[].class),
+                    lookup.findStaticSetter(programa, "D", Object.class));
+        } catch (Throwable t) {
+            throw new NaoSuportado("Falha ao carregar a classe gerada: " + t);
+        }
+    }
+
+    // Gera os bytes da classe; separado de compile() para facilitar a inspeção com javap.
+    // Preenche 'globals' (nome -> campo) e 'osrEntries' (início de laço -> entrada do tableswitch);
+    // 'fieldSites' recebe o nome do campo de cada OP_GET_FIELD / OP_SET_FIELD, na ordem do K.
+    static byte[] generate(Chunk chunk, Map<String, Integer> globals, Map<Integer, Integer> osrEntries,
+                           List<String> fieldSites) {
+        List<Integer> code = chunk.code;
+        int[] starts = decode(code);
+        Verifier.Resultado verificado;
+        try {
+            verificado = Verifier.verify(chunk);
+        } catch (Verifier.Rejeitado e) {
+            throw new NaoSuportado("Bytecode recusado pelo verificador: " + e.getMessage());
+        }
+        int[] depth = verificado.depth;
+
+        // Globais referenciadas pelo chunk, na ordem de aparição
+        for (int pc : starts) {
+            OpCode op = OpCode.values()[code.get(pc)];
+            if (op == OpCode.OP_DEFINE_GLOBAL || op == OpCode.OP_GET_GLOBAL || op == OpCode.OP_SET_GLOBAL
+                    || op == OpCode.OP_INC_GLOBAL || op == OpCode.OP_DEC_GLOBAL
+                    || op.curto() == OpCode.OP_FOR_NEXT) {
+                String name = (String) chunk.constants.get(code.get(pc + 1));
+                globals.putIfAbsent(name, globals.size());
+            }
+        }
+
+        ClassFileWriter cw = new ClassFileWriter(CLASS_NAME);
+        cw.addField(ClassFileWriter.ACC_STATIC, "K", "[" + OBJECT);
+        cw.addField(ClassFileWriter.ACC_STATIC, "C", "[I");
+        cw.addField(ClassFileWriter.ACC_STATIC, "L", "[I");
+        cw.addField(ClassFileWriter.ACC_STATIC, "V", OBJECT);
+        cw.addField(ClassFileWriter.ACC_STATIC, "T", "[" + OBJECT);
+        cw.addField(ClassFileWriter.ACC_STATIC, "D", OBJECT);
+        for (int i = 0; i < globals.size(); i++) {
+            cw.addField(ClassFileWriter.ACC_STATIC, "g" + i, OBJECT);
+        }
+
+        // Pontos de entrada OSR: inícios de laço (alvos de OP_LOOP e OP_FOR_LOOP) com a pilha vazia
+        for (int pc : starts) {
+            if (OpCode.values()[code.get(pc)].paraTras()) {
+                int target = jumpTarget(code, pc);
+                if (depth[target] == 0) osrEntries.putIfAbsent(target, osrEntries.size() + 1);
+            }
+        }
+
+        // run(int entrada): 0 começa do início; os demais valores retomam um laço (OSR)
+        ClassFileWriter.Code m = cw.addMethod(ClassFileWriter.ACC_STATIC, "run", "(I)V");
+        m.maxStack = verificado.maxDepth + 4; // folga para nome, linha e temporários das rotinas
+        // Cada slot de contador do FAZAVOLTA ocupa dois locals int: contador e limite
+        if (verificado.counters > 127) {
+            throw new NaoSuportado("FAZAVOLTA contados demais para locals JVM: " + verificado.counters);
+        }
+        m.maxLocals = 1 + 2 * verificado.counters;
+        int loopValues = cw.fieldRef(CLASS_NAME, "V", OBJECT);
+        int temporaries = cw.fieldRef(CLASS_NAME, "T", "[" + OBJECT);
+
+        ClassFileWriter.Label[] labels = new ClassFileWriter.Label[code.size() + 1];
+        List<ClassFileWriter.Label> all = new ArrayList<>();
+        for (int pc : starts) {
+            labels[pc] = new ClassFileWriter.Label();
+            all.add(labels[pc]);
+        }
+        labels[code.size()] = new ClassFileWriter.Label();
+        all.add(labels[code.size()]);
+
+        ClassFileWriter.Label start = new ClassFileWriter.Label();
+        all.add(start);
+        if (verificado.loopValues > 0) {
+            // Valores de laço vazios em qualquer entrada: são recalculados na primeira avaliação
+            m.pushInt(verificado.loopValues);
+            m.invokeStatic(RUNTIME, "loopValues", "(I)" + OBJECT);
+            m.op(ClassFileWriter.PUTSTATIC, loopValues);
+        }
+        if (verificado.locals > 0) {
+            // Temporários: novos no início do programa; numa entrada OSR vêm da VM (enterAt)
+            ClassFileWriter.Label fromVm = new ClassFileWriter.Label();
+            all.add(fromVm);
+            m.op(ClassFileWriter.ILOAD);
+            m.u1(0);
+            m.jump(ClassFileWriter.IFNE, fromVm);
+            m.pushInt(verificado.locals);
+            m.op(ClassFileWriter.ANEWARRAY, cw.classRef("java/lang/Object"));
+            m.op(ClassFileWriter.PUTSTATIC, temporaries);
+            m.place(fromVm);
+        }
+        if (verificado.counters > 0) {
+            // Contadores: zero no início do programa, os da VM numa entrada OSR (podem estar dentro
+            // do corpo de um FAZAVOLTA). Todos os caminhos os definem, como exige o verificador JVM.
+            ClassFileWriter.Label fromVm = new ClassFileWriter.Label();
+            ClassFileWriter.Label dispatch = new ClassFileWriter.Label();
+            all.add(fromVm);
+            all.add(dispatch);
+            m.op(ClassFileWriter.ILOAD);
+            m.u1(0);
+            m.jump(ClassFileWriter.IFNE, fromVm);
+            for (int local = 1; local < m.maxLocals; local++) {
+                m.pushInt(0);
+                store(m, local);
+            }
+            m.jump(ClassFileWriter.GOTO, dispatch);
+            m.place(fromVm);
+            for (int slot = 0; slot < verificado.counters; slot++) {
+                m.op(ClassFileWriter.GETSTATIC, cw.fieldRef(CLASS_NAME, "C", "[I"));
+                m.pushInt(slot);
+                m.op(ClassFileWriter.IALOAD);
+                store(m, counterLocal(slot));
+                m.op(ClassFileWriter.GETSTATIC, cw.fieldRef(CLASS_NAME, "L", "[I"));
+                m.pushInt(slot);
+                m.op(ClassFileWriter.IALOAD);
+                store(m, limitLocal(slot));
+            }
+            m.place(dispatch);
+        }
+        if (!osrEntries.isEmpty()) {
+            m.op(ClassFileWriter.ILOAD);
+            m.u1(0);
+            int switchStart = m.size();
+            m.op(ClassFileWriter.TABLESWITCH);
+            m.align4();
+            m.jump4(switchStart, start); // default
+            m.u4(1);
+            m.u4(osrEntries.size());
+            for (int target : osrEntries.keySet()) {
+                m.jump4(switchStart, labels[target]);
+            }
+        }
+        m.place(start);
+
+        int undefined = cw.fieldRef(RUNTIME, "UNDEFINED", OBJECT);
+        for (int i = 0; i < globals.size(); i++) {
+            m.op(ClassFileWriter.GETSTATIC, undefined);
+            m.op(ClassFileWriter.PUTSTATIC, cw.fieldRef(CLASS_NAME, "g" + i, OBJECT));
+        }
+
+        for (int pc : starts) {
+            m.place(labels[pc]);
+            if (depth[pc] < 0) continue; // código inalcançável
+            OpCode op = OpCode.values()[code.get(pc)];
+            int line = chunk.lines.get(pc);
+            // As formas largas dos saltos geram o mesmo código: o alvo vem de jumpTarget
+            switch (op.curto()) {
+                case OP_RETURN:
+                    m.invokeStatic(RUNTIME, "end", "()V");
+                    m.op(ClassFileWriter.RETURN);
+                    break;
+                case OP_CONSTANT: {
+                    int index = code.get(pc + 1);
+                    Object value = chunk.constants.get(index);
+                    if (value instanceof String) {
+                        m.op(ClassFileWriter.LDC_W, cw.string((String) value));
+                    } else {
+                        m.op(ClassFileWriter.GETSTATIC, cw.fieldRef(CLASS_NAME, "K", "[" + OBJECT));
+                        m.pushInt(index);
+                        m.op(ClassFileWriter.AALOAD);
+                    }
+                    break;
+                }
+                case OP_POP: m.op(ClassFileWriter.POP); break;
+                case OP_NIL: m.op(ClassFileWriter.ACONST_NULL); break;
+                case OP_TRUE:
+                    m.op(ClassFileWriter.GETSTATIC, cw.fieldRef("java/lang/Boolean", "TRUE", "Ljava/lang/Boolean;"));
+                    break;
+                case OP_FALSE:
+                    m.op(ClassFileWriter.GETSTATIC, cw.fieldRef("java/lang/Boolean", "FALSE", "Ljava/lang/Boolean;"));
+                    break;
+                case OP_NEGATE:
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "negate", "(" + OBJECT + "I)" + OBJECT);
+                    break;
+                case OP_ADD:
+                case OP_SUBTRACT:
+                case OP_MULTIPLY:
+                case OP_DIVIDE:
+                case OP_GREATER:
+                case OP_LESS:
+                case OP_EQUAL:
+                case OP_NOT_EQUAL:
+                case OP_LESS_EQUAL:
+                case OP_GREATER_EQUAL:
+                    binary(m, op, line);
+                    break;
+                case OP_NOT:
+                    m.invokeStatic(RUNTIME, "not", "(" + OBJECT + ")" + OBJECT);
+                    break;
+                case OP_DEFINE_GLOBAL:
+                    m.op(ClassFileWriter.PUTSTATIC, global(cw, chunk, globals, code.get(pc + 1)));
+                    break;
+                case OP_GET_GLOBAL: {
+                    int field = global(cw, chunk, globals, code.get(pc + 1));
+                    m.op(ClassFileWriter.GETSTATIC, field);
+                    m.op(ClassFileWriter.LDC_W, cw.string((String) chunk.constants.get(code.get(pc + 1))));
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "getGlobal", "(" + OBJECT + "Ljava/lang/String;I)" + OBJECT);
+                    break;
+                }
+                case OP_SET_GLOBAL: {
+                    int field = global(cw, chunk, globals, code.get(pc + 1));
+                    m.op(ClassFileWriter.GETSTATIC, field);
+                    m.op(ClassFileWriter.LDC_W, cw.string((String) chunk.constants.get(code.get(pc + 1))));
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "checkSetGlobal", "(" + OBJECT + "Ljava/lang/String;I)V");
+                    m.op(ClassFileWriter.DUP);
+                    m.op(ClassFileWriter.PUTSTATIC, field);
+                    break;
+                }
+                case OP_INC_GLOBAL:
+                case OP_DEC_GLOBAL: {
+                    int field = global(cw, chunk, globals, code.get(pc + 1));
+                    m.op(ClassFileWriter.GETSTATIC, field);
+                    m.op(ClassFileWriter.LDC_W, cw.string((String) chunk.constants.get(code.get(pc + 1))));
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "getGlobal", "(" + OBJECT + "Ljava/lang/String;I)" + OBJECT);
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, op == OpCode.OP_INC_GLOBAL ? "increment" : "decrement",
+                            "(" + OBJECT + "I)" + OBJECT);
+                    m.op(ClassFileWriter.DUP);
+                    m.op(ClassFileWriter.PUTSTATIC, field);
+                    break;
+                }
+                case OP_PRINT:
+                    m.invokeStatic(RUNTIME, "print", "(" + OBJECT + ")V");
+                    break;
+                case OP_INPUT:
+                    m.invokeStatic(RUNTIME, "input", "()" + OBJECT);
+                    break;
+                case OP_JUMP:
+                case OP_LOOP:
+                    m.jump(ClassFileWriter.GOTO, labels[jumpTarget(code, pc)]);
+                    break;
+                case OP_JUMP_IF_FALSE:
+                    m.invokeStatic(RUNTIME, "truthy", "(" + OBJECT + ")Z");
+                    m.jump(ClassFileWriter.IFEQ, labels[jumpTarget(code, pc)]);
+                    break;
+                case OP_JUMP_IF_TRUE:
+                    m.invokeStatic(RUNTIME, "truthy", "(" + OBJECT + ")Z");
+                    m.jump(ClassFileWriter.IFNE, labels[jumpTarget(code, pc)]);
+                    break;
+                case OP_SWITCH: {
+                    // índice do caso pela SwitchTable, depois tableswitch direto para o destino de cada entrada
+                    int tableIndex = code.get(pc + 1);
+                    int cases = ((SwitchTable) chunk.constants.get(tableIndex)).size();
+                    m.op(ClassFileWriter.GETSTATIC, cw.fieldRef(CLASS_NAME, "K", "[" + OBJECT));
+                    m.pushInt(tableIndex);
+                    m.op(ClassFileWriter.AALOAD);
+                    m.invokeStatic(RUNTIME, "switchIndex", "(" + OBJECT + OBJECT + ")I");
+                    int firstEntry = pc + 2;
+                    if (cases == 0) {
+                        m.op(ClassFileWriter.POP); // só o PADRAO: segue para a primeira entrada
+                        break;
+                    }
+                    int switchStart = m.size();
+                    m.op(ClassFileWriter.TABLESWITCH);
+                    m.align4();
+                    m.jump4(switchStart, labels[firstEntry + cases * OpCode.ENTRADA_SWITCH]); // PADRAO
+                    m.u4(0);
+                    m.u4(cases - 1);
+                    for (int i = 0; i < cases; i++) {
+                        m.jump4(switchStart, labels[firstEntry + i * OpCode.ENTRADA_SWITCH]);
+                    }
+                    break;
+                }
+                case OP_AND:
+                case OP_OR:
+                    // O operando fica na pilha como resultado quando há salto
+                    m.op(ClassFileWriter.DUP);
+                    m.invokeStatic(RUNTIME, "truthy", "(" + OBJECT + ")Z");
+                    m.jump(op.curto() == OpCode.OP_AND ? ClassFileWriter.IFEQ : ClassFileWriter.IFNE,
+                            labels[jumpTarget(code, pc)]);
+                    m.op(ClassFileWriter.POP);
+                    break;
+                case OP_JUMP_IF_NOT_LESS:
+                case OP_JUMP_IF_NOT_GREATER:
+                case OP_JUMP_IF_NOT_EQUAL:
+                case OP_JUMP_IF_EQUAL:
+                case OP_JUMP_IF_NOT_LESS_EQUAL:
+                case OP_JUMP_IF_NOT_GREATER_EQUAL:
+                    binary(m, op.comparacao(), line);
+                    m.invokeStatic(RUNTIME, "truthy", "(" + OBJECT + ")Z");
+                    m.jump(ClassFileWriter.IFEQ, labels[jumpTarget(code, pc)]);
+                    break;
+                case OP_FOR_PREP: {
+                    // pilha: início, limite. Entra no corpo com os dois em locals int, ou desvia
+                    int slot = code.get(pc + 1);
+                    ClassFileWriter.Label counted = new ClassFileWriter.Label();
+                    all.add(counted);
+                    m.op(ClassFileWriter.DUP2);
+                    m.pushInt(code.get(pc + 2));
+                    m.invokeStatic(RUNTIME, "forEnters", "(" + OBJECT + OBJECT + "I)Z");
+                    m.jump(ClassFileWriter.IFNE, counted);
+                    m.op(ClassFileWriter.POP2);
+                    m.jump(ClassFileWriter.GOTO, labels[jumpTarget(code, pc)]);
+                    m.place(counted);
+                    m.invokeStatic(RUNTIME, "intValue", "(" + OBJECT + ")I");
+                    store(m, limitLocal(slot));
+                    m.invokeStatic(RUNTIME, "intValue", "(" + OBJECT + ")I");
+                    store(m, counterLocal(slot));
+                    break;
+                }
+                case OP_FOR_LOOP: {
+                    // contador += passo; volta ao corpo enquanto a comparação com o limite valer
+                    int slot = code.get(pc + 1);
+                    m.op(ClassFileWriter.ILOAD);
+                    m.u1(counterLocal(slot));
+                    m.pushInt(code.get(pc + 2));
+                    m.op(ClassFileWriter.IADD);
+                    m.op(ClassFileWriter.DUP);
+                    store(m, counterLocal(slot));
+                    m.op(ClassFileWriter.ILOAD);
+                    m.u1(limitLocal(slot));
+                    m.jump(intComparison(OpCode.values()[code.get(pc + 3)]), labels[jumpTarget(code, pc)]);
+                    break;
+                }
+                case OP_GET_COUNTER:
+                    m.op(ClassFileWriter.ILOAD);
+                    m.u1(counterLocal(code.get(pc + 1)));
+                    m.invokeStatic("java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;");
+                    break;
+                case OP_GET_LOCAL:
+                    m.op(ClassFileWriter.GETSTATIC, temporaries);
+                    m.pushInt(code.get(pc + 1));
+                    m.op(ClassFileWriter.AALOAD);
+                    break;
+                case OP_SET_LOCAL:
+                    // pilha: valor -> T, slot, valor para o AASTORE
+                    m.op(ClassFileWriter.GETSTATIC, temporaries);
+                    m.op(ClassFileWriter.SWAP);
+                    m.pushInt(code.get(pc + 1));
+                    m.op(ClassFileWriter.SWAP);
+                    m.op(ClassFileWriter.AASTORE);
+                    break;
+                case OP_LOOP_CLEAR:
+                    m.op(ClassFileWriter.GETSTATIC, loopValues);
+                    m.pushInt(code.get(pc + 1));
+                    m.invokeStatic(RUNTIME, "loopClear", "(" + OBJECT + "I)V");
+                    break;
+                case OP_LOOP_VALUE:
+                    // valor guardado: fica na pilha e salta a conta; vazio: descarta o null e calcula
+                    m.op(ClassFileWriter.GETSTATIC, loopValues);
+                    m.pushInt(code.get(pc + 1));
+                    m.invokeStatic(RUNTIME, "loopValue", "(" + OBJECT + "I)" + OBJECT);
+                    m.op(ClassFileWriter.DUP);
+                    m.jump(ClassFileWriter.IFNONNULL, labels[jumpTarget(code, pc)]);
+                    m.op(ClassFileWriter.POP);
+                    break;
+                case OP_LOOP_KEEP:
+                    m.op(ClassFileWriter.GETSTATIC, loopValues);
+                    m.pushInt(code.get(pc + 1));
+                    m.invokeStatic(RUNTIME, "loopKeep", "(" + OBJECT + OBJECT + "I)" + OBJECT);
+                    break;
+                case OP_LOOP_DERIVE:
+                    m.op(ClassFileWriter.GETSTATIC, loopValues);
+                    m.pushInt(code.get(pc + 1));
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "loopDerive", "(" + OBJECT + OBJECT + OBJECT + OBJECT + "II)" + OBJECT);
+                    break;
+                case OP_LOOP_ADVANCE:
+                    m.op(ClassFileWriter.GETSTATIC, loopValues);
+                    m.pushInt(code.get(pc + 1));
+                    m.invokeStatic(RUNTIME, "loopAdvance", "(" + OBJECT + "I)V");
+                    break;
+                case OP_ARRAY:
+                    collect(m, cw, code.get(pc + 1));
+                    m.invokeStatic(RUNTIME, "newArray", "([" + OBJECT + ")" + OBJECT);
+                    break;
+                case OP_MAP:
+                    collect(m, cw, 2 * code.get(pc + 1));
+                    m.invokeStatic(RUNTIME, "newMap", "([" + OBJECT + ")" + OBJECT);
+                    break;
+                case OP_INVOKE: {
+                    // pilha: receptor e os argumentos do método (aridade fixa, no máximo dois)
+                    String method = (String) chunk.constants.get(code.get(pc + 1));
+                    int arity = Builtins.aridade(method);
+                    StringBuilder desc = new StringBuilder("(" + OBJECT);
+                    for (int i = 0; i < arity; i++) desc.append(OBJECT);
+                    m.op(ClassFileWriter.LDC_W, cw.string(method));
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "invoke", desc + "Ljava/lang/String;I)" + OBJECT);
+                    break;
+                }
+                case OP_NEW_RECORD:
+                    collect(m, cw, ((RecordType) chunk.constants.get(code.get(pc + 1))).shape.size());
+                    m.op(ClassFileWriter.GETSTATIC, cw.fieldRef(CLASS_NAME, "K", "[" + OBJECT));
+                    m.pushInt(code.get(pc + 1));
+                    m.op(ClassFileWriter.AALOAD);
+                    m.invokeStatic(RUNTIME, "newRecord", "([" + OBJECT + OBJECT + ")" + OBJECT);
+                    break;
+                case OP_GET_FIELD:
+                case OP_SET_FIELD:
+                    // FieldCache próprio desta instrução, guardado no K depois das constantes
+                    m.op(ClassFileWriter.GETSTATIC, cw.fieldRef(CLASS_NAME, "K", "[" + OBJECT));
+                    m.pushInt(chunk.constants.size() + fieldSites.size());
+                    m.op(ClassFileWriter.AALOAD);
+                    fieldSites.add((String) chunk.constants.get(code.get(pc + 1)));
+                    m.pushInt(line);
+                    if (op == OpCode.OP_GET_FIELD) {
+                        m.invokeStatic(RUNTIME, "getField", "(" + OBJECT + OBJECT + "I)" + OBJECT);
+                    } else {
+                        m.invokeStatic(RUNTIME, "setField", "(" + OBJECT + OBJECT + OBJECT + "I)" + OBJECT);
+                    }
+                    break;
+                case OP_RANGE:
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "range", BINARY_DESC);
+                    break;
+                case OP_ITER:
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "iterator", "(" + OBJECT + "I)" + OBJECT);
+                    break;
+                case OP_FOR_NEXT: {
+                    // o iterador está numa global escondida; empilha o próximo elemento ou sai do laço
+                    int field = global(cw, chunk, globals, code.get(pc + 1));
+                    m.op(ClassFileWriter.GETSTATIC, field);
+                    m.invokeStatic(RUNTIME, "hasNext", "(" + OBJECT + ")Z");
+                    m.jump(ClassFileWriter.IFEQ, labels[jumpTarget(code, pc)]);
+                    m.op(ClassFileWriter.GETSTATIC, field);
+                    m.invokeStatic(RUNTIME, "next", "(" + OBJECT + ")" + OBJECT);
+                    break;
+                }
+                case OP_GET_INDEX:
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "getIndex", BINARY_DESC);
+                    break;
+                case OP_SET_INDEX:
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "setIndex", "(" + OBJECT + OBJECT + OBJECT + "I)" + OBJECT);
+                    break;
+                case OP_LENGTH:
+                    m.pushInt(line);
+                    m.invokeStatic(RUNTIME, "length", "(" + OBJECT + "I)" + OBJECT);
+                    break;
+                case OP_INTERPRET: {
+                    // Modo misto: as globais vão para o mapa do Interpreter, o comando corre lá
+                    // (um erro termina o programa) e as globais voltam para os campos
+                    int mixedMode = cw.fieldRef(CLASS_NAME, "D", OBJECT);
+                    String[] names = globals.keySet().toArray(new String[0]);
+                    for (int i = 0; i < names.length; i++) {
+                        m.op(ClassFileWriter.GETSTATIC, cw.fieldRef(CLASS_NAME, "g" + i, OBJECT));
+                        m.op(ClassFileWriter.GETSTATIC, mixedMode);
+                        m.op(ClassFileWriter.LDC_W, cw.string(names[i]));
+                        m.invokeStatic(RUNTIME, "store", "(" + OBJECT + OBJECT + "Ljava/lang/String;)V");
+                    }
+                    m.op(ClassFileWriter.GETSTATIC, cw.fieldRef(CLASS_NAME, "K", "[" + OBJECT));
+                    m.pushInt(code.get(pc + 1));
+                    m.op(ClassFileWriter.AALOAD);
+                    m.op(ClassFileWriter.GETSTATIC, mixedMode);
+                    m.invokeStatic(RUNTIME, "interpret", "(" + OBJECT + OBJECT + ")V");
+                    for (int i = 0; i < names.length; i++) {
+                        m.op(ClassFileWriter.GETSTATIC, mixedMode);
+                        m.op(ClassFileWriter.LDC_W, cw.string(names[i]));
+                        m.invokeStatic(RUNTIME, "load", "(" + OBJECT + "Ljava/lang/String;)" + OBJECT);
+                        m.op(ClassFileWriter.PUTSTATIC, cw.fieldRef(CLASS_NAME, "g" + i, OBJECT));
+                    }
+                    break;
+                }
+                default:
+                    throw new NaoSuportado("Opcode sem tradução para JVM: " + op);
+            }
+        }
+        m.place(labels[code.size()]);
+        m.op(ClassFileWriter.RETURN); // fim do bytecode
+        m.resolve(all);
+        return cw.toBytes();
+    }
+
+    private static void binary(ClassFileWriter.Code m, OpCode op, int line) {
+        switch (op) {
+            case OP_EQUAL:
+                m.invokeStatic(RUNTIME, "equal", "(" + OBJECT + OBJECT + ")" + OBJECT);
+                return;
+            case OP_NOT_EQUAL:
+                m.invokeStatic(RUNTIME, "notEqual", "(" + OBJECT + OBJECT + ")" + OBJECT);
+                return;
+            default:
+                break;
+        }
+        String routine;
+        switch (op) {
+            case OP_ADD:           routine = "add"; break;
+            case OP_SUBTRACT:      routine = "subtract"; break;
+            case OP_MULTIPLY:      routine = "multiply"; break;
+            case OP_DIVIDE:        routine = "divide"; break;
+            case OP_GREATER:       routine = "greater"; break;
+            case OP_LESS:          routine = "less"; break;
+            case OP_LESS_EQUAL:    routine = "lessEqual"; break;
+            case OP_GREATER_EQUAL: routine = "greaterEqual"; break;
+            default: throw new NaoSuportado("Opcode binário sem tradução: " + op);
+        }
+        m.pushInt(line);
+        m.invokeStatic(RUNTIME, routine, BINARY_DESC);
+    }
+
+    // Tira os 'count' valores do topo da pilha JVM para um Object[], do último para o primeiro
+    private static void collect(ClassFileWriter.Code m, ClassFileWriter cw, int count) {
+        m.pushInt(count);
+        m.op(ClassFileWriter.ANEWARRAY, cw.classRef("java/lang/Object"));
+        for (int i = count - 1; i >= 0; i--) {
+            m.op(ClassFileWriter.DUP_X1);  // ..., array, valor, array
+            m.op(ClassFileWriter.SWAP);    // ..., array, array, valor
+            m.pushInt(i);
+            m.op(ClassFileWriter.SWAP);    // ..., array, array, i, valor
+            m.op(ClassFileWriter.AASTORE);
+        }
+    }
+
+    // Locals do slot de contador: 0 é o argumento 'entrada' de run
+    private static int counterLocal(int slot) { return 1 + 2 * slot; }
+
+    private static int limitLocal(int slot) { return 2 + 2 * slot; }
+
+    private static void store(ClassFileWriter.Code m, int local) {
+        m.op(ClassFileWriter.ISTORE);
+        m.u1(local);
+    }
+
+    private static int intComparison(OpCode compare) {
+        switch (compare) {
+            case OP_LESS:          return ClassFileWriter.IF_ICMPLT;
+            case OP_LESS_EQUAL:    return ClassFileWriter.IF_ICMPLE;
+            case OP_GREATER:       return ClassFileWriter.IF_ICMPGT;
+            default:               return ClassFileWriter.IF_ICMPGE;
+        }
+    }
+
+    private static int global(ClassFileWriter cw, Chunk chunk, Map<String, Integer> globals, int constIndex) {
+        String name = (String) chunk.constants.get(constIndex);
+        return cw.fieldRef(CLASS_NAME, "g" + globals.get(name), OBJECT);
+    }
+
+    // Posições de início de cada instrução do chunk
+    static int[] decode(List<Integer> code) {
+        int[] starts = new int[code.size()];
+        int count = 0;
+        int pc = 0;
+        while (pc < code.size()) {
+            int instruction = code.get(pc);
+            if (instruction < 0 || instruction >= OpCode.values().length) {
+                throw new NaoSuportado("Opcode inválido " + instruction + " na posição " + pc);
+            }
+            starts[count++] = pc;
+            pc += 1 + OpCode.values()[instruction].operandos();
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    static int jumpTarget(List<Integer> code, int pc) {
+        OpCode op = OpCode.values()[code.get(pc)];
+        int at = pc + 1 + op.imediatos();
+        int offset = ((code.get(at) & 0xFF) << 8) | (code.get(at + 1) & 0xFF);
+        if (op.isWide()) {
+            offset = (offset << 16) | ((code.get(at + 2) & 0xFF) << 8) | (code.get(at + 3) & 0xFF);
+        }
+        int after = pc + 1 + op.operandos();
+        return op.paraTras() ? after - offset : after + offset;
+    }
+
+}
@@ -0,0 +1,262 @@
+package ByteCode;
+
+import Semantica.ArrayValue;
+import Semantica.Builtins;
+import Semantica.FieldCache;
+import Semantica.MapValue;
+import Semantica.RecordType;
+import Semantica.SwitchTable;
+import Semantica.Values;
+import Sintatica.Stmt;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+// Rotinas chamadas pelo código JVM gerado pelo JitCompiler.
+// Cada rotina reproduz um opcode da VM, inclusive as mensagens de erro e a linha reportada.
+final class JitRuntime {
+
+    // Valor dos campos de globais ainda não definidas (a VM usa 'containsKey' no mapa)
+    static final Object UNDEFINED = new Object();
+
+    private static final OpCode[] OPCODES = OpCode.values();
+
+    private JitRuntime() {}
+
+    // Lançada quando a VM terminaria a execução com 'return false'
+    static final class Abort extends RuntimeException {
+        Abort() {
+            super(null, null, false, false);
+        }
+    }
+
+    static Object add(Object a, Object b, int line)      { return ValueOps.compute(OpCode.OP_ADD, a, b, line); }
+    static Object subtract(Object a, Object b, int line) { return ValueOps.compute(OpCode.OP_SUBTRACT, a, b, line); }
+    static Object multiply(Object a, Object b, int line) { return ValueOps.compute(OpCode.OP_MULTIPLY, a, b, line); }
+    static Object divide(Object a, Object b, int line)   { return ValueOps.compute(OpCode.OP_DIVIDE, a, b, line); }
+    static Object greater(Object a, Object b, int line)  { return ValueOps.compute(OpCode.OP_GREATER, a, b, line); }
+    static Object less(Object a, Object b, int line)     { return ValueOps.compute(OpCode.OP_LESS, a, b, line); }
+
+    static Object negate(Object value, int line) {
+        try {
+            return ValueOps.negate(value);
+        } catch (Values.ErroOperando e) {
+            ValueOps.runtimeError(e.getMessage(), line);
+            return null;
+        }
+    }
+
+    static Object equal(Object a, Object b) {
+        return ValueOps.isEqual(a, b);
+    }
+
+    static Object notEqual(Object a, Object b) {
+        return !ValueOps.isEqual(a, b);
+    }
+
+    static Object lessEqual(Object a, Object b, int line)    { return ValueOps.compute(OpCode.OP_LESS_EQUAL, a, b, line); }
+    static Object greaterEqual(Object a, Object b, int line) { return ValueOps.compute(OpCode.OP_GREATER_EQUAL, a, b, line); }
+
+    static Object increment(Object value, int line) {
+        return add(value, 1, line);
+    }
+
+    static Object decrement(Object value, int line) {
+        return subtract(value, 1, line);
+    }
+
+    static Object not(Object value) {
+        return !ValueOps.isTruthy(value);
+    }
+
+    static boolean truthy(Object value) {
+        return ValueOps.isTruthy(value);
+    }
+
+    static void print(Object value) {
+        System.out.println(ValueOps.stringify(value));
+    }
+
+    static Object input() {
+        System.out.print("> ");
+        return ValueOps.parseInput(ValueOps.readLine());
+    }
+
+    static Object newArray(Object[] values) {
+        return ArrayValue.of(values);
+    }
+
+    static Object newMap(Object[] pairs) {
+        return MapValue.of(pairs);
+    }
+
+    // OP_INVOKE, uma rotina por número de argumentos
+    static Object invoke(Object receiver, String method, int line) {
+        return invoke(receiver, null, null, method, line);
+    }
+
+    static Object invoke(Object receiver, Object a, String method, int line) {
+        return invoke(receiver, a, null, method, line);
+    }
+
+    static Object invoke(Object receiver, Object a, Object b, String method, int line) {
+        try {
+            return Builtins.invoke(receiver, method, a, b);
+        } catch (Builtins.Erro e) {
+            ValueOps.runtimeError(e.getMessage(), line);
+            return null;
+        }
+    }
+
+    static Object newRecord(Object[] values, Object type) {
+        return ((RecordType) type).create(values);
+    }
+
+    // OP_GET_FIELD / OP_SET_FIELD, com o FieldCache da instrução
+    static Object getField(Object record, Object cache, int line) {
+        try {
+            return ((FieldCache) cache).get(record);
+        } catch (Builtins.Erro e) {
+            ValueOps.runtimeError(e.getMessage(), line);
+            return null;
+        }
+    }
+
+    static Object setField(Object record, Object value, Object cache, int line) {
+        try {
+            ((FieldCache) cache).set(record, value);
+        } catch (Builtins.Erro e) {
+            ValueOps.runtimeError(e.getMessage(), line);
+        }
+        return value;
+    }
+
+    static Object getIndex(Object array, Object index, int line) {
+        try {
+            return Builtins.index(array, index);
+        } catch (Builtins.Erro e) {
+            ValueOps.runtimeError(e.getMessage(), line);
+            return null;
+        }
+    }
+
+    static Object setIndex(Object array, Object index, Object value, int line) {
+        try {
+            Builtins.store(array, index, value);
+        } catch (Builtins.Erro e) {
+            ValueOps.runtimeError(e.getMessage(), line);
+        }
+        return value;
+    }
+
+    static Object length(Object array, int line) {
+        try {
+            return Builtins.length(array);
+        } catch (Builtins.Erro e) {
+            ValueOps.runtimeError(e.getMessage(), line);
+            return null;
+        }
+    }
+
+    static Object range(Object start, Object end, int line) {
+        try {
+            return Builtins.range(start, end);
+        } catch (Builtins.Erro e) {
+            ValueOps.runtimeError(e.getMessage(), line);
+            return null;
+        }
+    }
+
+    static Object iterator(Object sequence, int line) {
+        try {
+            return Builtins.iterator(sequence);
+        } catch (Builtins.Erro e) {
+            ValueOps.runtimeError(e.getMessage(), line);
+            return Collections.emptyIterator();
+        }
+    }
+
+    static boolean hasNext(Object iterator) {
+        return ((Iterator<?>) iterator).hasNext();
+    }
+
+    static Object next(Object iterator) {
+        return ((Iterator<?>) iterator).next();
+    }
+
+    static int switchIndex(Object value, Object table) {
+        return ((SwitchTable) table).lookup(value);
+    }
+
+    // OP_FOR_PREP: o laço entra na forma contada só com início e limite inteiros e a primeira volta a valer
+    static boolean forEnters(Object start, Object limit, int compare) {
+        return start instanceof Integer && limit instanceof Integer
+                && ValueOps.compareInts(OPCODES[compare], (Integer) start, (Integer) limit);
+    }
+
+    // Valores de laço: o LoopValues fica no campo V do programa compilado, novo a cada entrada
+    static Object loopValues(int slots) {
+        return new LoopValues(slots);
+    }
+
+    static void loopClear(Object values, int slot) {
+        ((LoopValues) values).clear(slot);
+    }
+
+    static Object loopValue(Object values, int slot) {
+        return ((LoopValues) values).get(slot);
+    }
+
+    static Object loopKeep(Object value, Object values, int slot) {
+        ((LoopValues) values).keep(slot, value);
+        return value;
+    }
+
+    static Object loopDerive(Object counter, Object factor, Object step, Object values, int slot, int line) {
+        return ((LoopValues) values).derive(slot, counter, factor, (Integer) step, line);
+    }
+
+    static void loopAdvance(Object values, int slot) {
+        ((LoopValues) values).advance(slot);
+    }
+
+    static int intValue(Object value) {
+        return (Integer) value;
+    }
+
+    static Object getGlobal(Object value, String name, int line) {
+        if (value == UNDEFINED) {
+            ValueOps.runtimeError("Variável '" + name + "' não definida.", line);
+            throw new Abort();
+        }
+        return value;
+    }
+
+    static void checkSetGlobal(Object current, String name, int line) {
+        if (current == UNDEFINED) {
+            ValueOps.runtimeError("Variável '" + name + "' não definida. Não é possível atribuir.", line);
+            throw new Abort();
+        }
+    }
+
+    // OP_INTERPRET: as globais do programa compilado passam pelo mapa do MixedMode (store antes do
+    // comando, load depois), o único sítio onde o Interpreter as vê
+    static void store(Object value, Object mixedMode, String name) {
+        if (value != UNDEFINED) ((MixedMode) mixedMode).globals().put(name, value);
+    }
+
+    static void interpret(Object statement, Object mixedMode) {
+        if (!((MixedMode) mixedMode).execute((Stmt) statement)) {
+            throw new Abort();
+        }
+    }
+
+    static Object load(Object mixedMode, String name) {
+        Map<String, Object> globals = ((MixedMode) mixedMode).globals();
+        return globals.containsKey(name) ? globals.get(name) : UNDEFINED;
+    }
+
+    static void end() {
+        System.out.println("VM: Execução terminada.");
+    }
+}
@@ -0,0 +1,48 @@
+package ByteCode;
+
+// Valores de laço da VM e do código do JitCompiler (Semantica.LoopInvariants), um por slot:
+//   invariante  valor de uma expressão que o laço não muda, guardado por OP_LOOP_KEEP na primeira
+//               avaliação depois de entrar no laço; só números, que são imutáveis
+//   produto     'i * k' de um FAZAVOLTA contado, guardado por OP_LOOP_DERIVE com o incremento
+//               passo * k, que OP_LOOP_ADVANCE soma a cada volta em vez de multiplicar de novo
+// Slot vazio (null) quer dizer "avaliar por extenso": é o estado à entrada do laço (OP_LOOP_CLEAR)
+// e numa entrada OSR no código compilado, que começa com todos vazios.
+final class LoopValues {
+
+    private final Object[] values;
+    private final int[] steps; // incremento de cada produto
+
+    LoopValues(int slots) {
+        this.values = new Object[slots];
+        this.steps = new int[slots];
+    }
+
+    void clear(int slot) {
+        values[slot] = null;
+    }
+
+    Object get(int slot) {
+        return values[slot];
+    }
+
+    // Um resultado que não é número (texto, erro reportado) volta a ser calculado na próxima volta
+    void keep(int slot, Object value) {
+        if (value instanceof Integer || value instanceof Double) values[slot] = value;
+    }
+
+    // contador * fator, como OP_MULTIPLY. Só o produto de dois inteiros fica guardado: a soma em
+    // int dá o mesmo transbordo que a multiplicação, o que não vale para quebrados.
+    Object derive(int slot, Object counter, Object factor, int step, int line) {
+        Object product = ValueOps.compute(OpCode.OP_MULTIPLY, counter, factor, line);
+        if (counter instanceof Integer && factor instanceof Integer) {
+            values[slot] = product;
+            steps[slot] = step * (Integer) factor;
+        }
+        return product;
+    }
+
+    void advance(int slot) {
+        Object value = values[slot];
+        if (value != null) values[slot] = (Integer) value + steps[slot];
+    }
+}
@@ -0,0 +1,49 @@
+package ByteCode;
+
+import Semantica.Interpreter;
+import Sintatica.Stmt;
+import java.util.Map;
+
+// Modo misto: os comandos que o Compiler não traduz (OP_INTERPRET) correm no Semantica.Interpreter,
+// com o mapa de globais da VM como escopo global. É o mesmo para a VM e para o código do
+// JitCompiler, que copia as suas globais para o mapa antes do comando e as lê de volta depois;
+// assim um OP_INTERPRET não impede a compilação do chunk.
+final class MixedMode {
+
+    private final Map<String, Object> globals;
+    private Interpreter interpreter; // criado no primeiro comando delegado
+
+    // Estatísticas: comandos executados no interpretador e tempo gasto neles
+    private long statements;
+    private long nanos;
+
+    MixedMode(Map<String, Object> globals) {
+        this.globals = globals;
+    }
+
+    // Mesmo comportamento do Interpreter.interpret: um erro termina o programa (devolve false)
+    boolean execute(Stmt statement) {
+        if (interpreter == null) {
+            interpreter = new Interpreter(globals);
+        }
+        long start = System.nanoTime();
+        try {
+            interpreter.executar(statement);
+            return true;
+        } catch (RuntimeException error) {
+            System.err.println("Erro de execução: " + error.getMessage());
+            return false;
+        } finally {
+            statements++;
+            nanos += System.nanoTime() - start;
+        }
+    }
+
+    Map<String, Object> globals() { return globals; }
+
+    Interpreter interpreter() { return interpreter; }
+
+    long statements() { return statements; }
+
+    long nanos() { return nanos; }
+}
@@ -26,15 +26,233 @@ public enum OpCode {
     OP_DEFINE_GLOBAL, // Define uma nova variável global
     OP_GET_GLOBAL,    // Lê o valor de uma variável global
     OP_SET_GLOBAL,    // Atribui um valor a uma variável global
-    OP_GET_LOCAL,     // Lê uma variável local (da pilha)
-    OP_SET_LOCAL,     // Atribui a uma variável local (da pilha)
+    OP_GET_LOCAL,     // slot. Empilha o temporário (valores da Ir que não ficam na pilha, IrLowering)
+    OP_SET_LOCAL,     // slot. Desempilha o valor para o temporário
 
     // --- Opcodes de Controlo de Fluxo (Condicionais e Laços) ---
     OP_JUMP,            // Salto incondicional (usado no 'else')
-    OP_JUMP_IF_FALSE,   // Salta se o topo da pilha for falso (usado no 'SE')
+    OP_JUMP_IF_FALSE,   // Desempilha a condição e salta se for falsa (usado no 'SE')
     OP_LOOP,            // Salto para trás (usado em laços 'VOLTAINFINITA')
 
     // --- Opcodes de Ação ---
     OP_PRINT,           // Imprime o valor no topo da pilha
-    OP_INPUT            // NOVO: Lê uma entrada do utilizador
+    OP_INPUT,           // NOVO: Lê uma entrada do utilizador
+
+    // --- Modo misto ---
+    OP_INTERPRET,       // Executa no Interpreter o comando (Stmt) guardado na constante
+
+    // --- Superinstruções (geradas pelo Peephole) ---
+    OP_INC_GLOBAL,      // GET_GLOBAL x, CONSTANT 1, ADD, SET_GLOBAL x
+    OP_DEC_GLOBAL,      // GET_GLOBAL x, CONSTANT 1, SUBTRACT, SET_GLOBAL x
+    OP_NOT_EQUAL,       // EQUAL, NOT
+    OP_LESS_EQUAL,      // GREATER, NOT
+    OP_GREATER_EQUAL,   // LESS, NOT
+    OP_JUMP_IF_TRUE,            // NOT, JUMP_IF_FALSE
+    OP_JUMP_IF_NOT_LESS,        // LESS, JUMP_IF_FALSE
+    OP_JUMP_IF_NOT_GREATER,     // GREATER, JUMP_IF_FALSE
+    OP_JUMP_IF_NOT_EQUAL,       // EQUAL, JUMP_IF_FALSE
+    OP_JUMP_IF_EQUAL,           // NOT_EQUAL, JUMP_IF_FALSE
+    OP_JUMP_IF_NOT_LESS_EQUAL,  // LESS_EQUAL, JUMP_IF_FALSE
+    OP_JUMP_IF_NOT_GREATER_EQUAL, // GREATER_EQUAL, JUMP_IF_FALSE
+
+    // --- Curto-circuito ---
+    OP_AND,             // Se o topo for falso, salta e deixa-o como resultado; senão desempilha-o
+    OP_OR,              // Se o topo for verdadeiro, salta e deixa-o como resultado; senão desempilha-o
+
+    // --- ESCOLHEAI com CASO constantes ---
+    // Desempilha o valor, procura-o na SwitchTable da constante e salta para a entrada
+    // correspondente da tabela de saltos que vem logo a seguir: um OP_JUMP_W por CASO,
+    // mais um para o PADRAO (ou para o fim, quando não há PADRAO).
+    OP_SWITCH,
+
+    // --- FAZAVOLTA contado: a variável do laço vive num slot int da VM, fora da pilha ---
+    OP_FOR_PREP,    // slot, comparação, offset. Desempilha limite e início; se ambos forem inteiros
+                    // e a comparação valer, guarda-os no slot e entra no corpo, senão salta para a
+                    // versão genérica do laço (que volta a testar a condição)
+    OP_FOR_LOOP,    // slot, passo, comparação, offset (para trás). Soma o passo ao contador e volta
+                    // ao corpo enquanto 'contador comparação limite' valer
+    OP_GET_COUNTER, // slot. Empilha o contador (leitura da variável do laço dentro do corpo)
+
+    // --- Vetores (Semantica.ArrayValue) ---
+    OP_ARRAY,       // n. Desempilha n elementos e empilha um vetor novo com eles, na ordem
+    OP_GET_INDEX,   // Desempilha índice e vetor; empilha o elemento
+    OP_SET_INDEX,   // Desempilha valor, índice e vetor; guarda o valor e volta a empilhá-lo
+    OP_LENGTH,      // Desempilha o vetor (ou mapa); empilha o seu tamanho
+
+    // --- Mapas e métodos embutidos (Semantica.MapValue, Semantica.Builtins) ---
+    OP_MAP,         // n. Desempilha n pares chave, valor e empilha um mapa novo com eles
+    OP_INVOKE,      // nome. Desempilha os argumentos (tantos quantos o método recebe) e o receptor;
+                    // empilha o resultado do método
+    // --- Registros (Semantica.RecordValue); cada acesso a campo tem um FieldCache na VM ---
+    OP_NEW_RECORD,  // tipo. Desempilha um valor por campo do RecordType da constante; empilha o registro
+    OP_GET_FIELD,   // nome. Desempilha o registro; empilha o campo
+    OP_SET_FIELD,   // nome. Desempilha valor e registro; guarda o valor no campo e volta a empilhá-lo
+    // --- Sequências preguiçosas: intervalo(a, b) e FAZAVOLTA (VAR x : sequencia) ---
+    OP_RANGE,       // Desempilha fim e início; empilha o intervalo (só os dois limites)
+    OP_ITER,        // Desempilha a sequência; empilha um iterador sobre ela
+    OP_FOR_NEXT,    // nome, offset. O iterador está na global escondida 'nome': se tem mais um
+                    // elemento, empilha-o; senão salta para o fim do laço
+
+    // --- Valores de laço (LoopValues): invariantes e produtos pela variável contada ---
+    OP_LOOP_CLEAR,   // slot. Esvazia o slot (à entrada do laço)
+    OP_LOOP_VALUE,   // slot, offset. Se o slot tem valor, empilha-o e salta a conta que o calcula
+    OP_LOOP_KEEP,    // slot. Guarda no slot o valor do topo (que fica na pilha)
+    OP_LOOP_DERIVE,  // slot. Desempilha passo, fator e contador; empilha contador * fator e guarda-o
+                     // no slot com o incremento passo * fator
+    OP_LOOP_ADVANCE, // slot. Soma ao produto do slot o seu incremento (antes do OP_FOR_LOOP)
+
+    // --- Saltos largos: offset de 4 unidades (32 bits) em vez de 2 ---
+    // O Peephole escolhe a forma larga só para os saltos que não cabem em 16 bits
+    OP_JUMP_W,
+    OP_JUMP_IF_FALSE_W,
+    OP_LOOP_W,
+    OP_JUMP_IF_TRUE_W,
+    OP_JUMP_IF_NOT_LESS_W,
+    OP_JUMP_IF_NOT_GREATER_W,
+    OP_JUMP_IF_NOT_EQUAL_W,
+    OP_JUMP_IF_EQUAL_W,
+    OP_JUMP_IF_NOT_LESS_EQUAL_W,
+    OP_JUMP_IF_NOT_GREATER_EQUAL_W,
+    OP_AND_W,
+    OP_OR_W,
+    OP_FOR_PREP_W,
+    OP_FOR_LOOP_W,
+    OP_FOR_NEXT_W,
+    OP_LOOP_VALUE_W;
+
+    // Tamanho de cada entrada da tabela que segue um OP_SWITCH (OP_JUMP_W e 4 unidades de offset)
+    public static final int ENTRADA_SWITCH = 5;
+
+    // Forma larga de cada salto curto, e vice-versa
+    private static final OpCode[] LARGO = new OpCode[values().length];
+    private static final OpCode[] CURTO = new OpCode[values().length];
+
+    static {
+        for (OpCode op : values()) {
+            if (op.isJump() && !op.name().endsWith("_W")) {
+                OpCode wide = valueOf(op.name() + "_W");
+                LARGO[op.ordinal()] = wide;
+                CURTO[wide.ordinal()] = op;
+            }
+        }
+    }
+
+    // Quantidade de operandos (unidades do code) que seguem o opcode
+    public int operandos() {
+        switch (this) {
+            case OP_CONSTANT:
+            case OP_DEFINE_GLOBAL:
+            case OP_GET_GLOBAL:
+            case OP_SET_GLOBAL:
+            case OP_GET_LOCAL:
+            case OP_SET_LOCAL:
+            case OP_INTERPRET:
+            case OP_SWITCH:
+            case OP_INC_GLOBAL:
+            case OP_DEC_GLOBAL:
+            case OP_GET_COUNTER:
+            case OP_ARRAY:
+            case OP_MAP:
+            case OP_INVOKE:
+            case OP_NEW_RECORD:
+            case OP_GET_FIELD:
+            case OP_SET_FIELD:
+            case OP_LOOP_CLEAR:
+            case OP_LOOP_KEEP:
+            case OP_LOOP_DERIVE:
+            case OP_LOOP_ADVANCE:
+                return 1;
+            default:
+                if (!isJump()) return 0;
+                return imediatos() + (isWide() ? 4 : 2);
+        }
+    }
+
+    // Operandos de um salto que vêm antes do offset (slot, passo, comparação do FAZAVOLTA...)
+    public int imediatos() {
+        switch (curto()) {
+            case OP_FOR_PREP: return 2;
+            case OP_FOR_LOOP: return 3;
+            case OP_FOR_NEXT:
+            case OP_LOOP_VALUE: return 1;
+            default: return 0;
+        }
+    }
+
+    // Saltos cujo offset conta para trás
+    public boolean paraTras() {
+        OpCode kind = curto();
+        return kind == OP_LOOP || kind == OP_FOR_LOOP;
+    }
+
+    public boolean isWide() {
+        return CURTO[ordinal()] != null;
+    }
+
+    // O salto curto equivalente (o próprio opcode quando não é um salto largo)
+    public OpCode curto() {
+        OpCode narrow = CURTO[ordinal()];
+        return narrow != null ? narrow : this;
+    }
+
+    // O salto largo equivalente a um salto curto
+    public OpCode largo() {
+        OpCode wide = LARGO[ordinal()];
+        if (wide == null) throw new IllegalArgumentException(this + " não tem forma larga");
+        return wide;
+    }
+
+    // Opcodes seguidos de um offset de salto (2 unidades, ou 4 nas formas largas)
+    public boolean isJump() {
+        switch (this) {
+            case OP_JUMP_W:
+            case OP_JUMP_IF_FALSE_W:
+            case OP_LOOP_W:
+            case OP_JUMP_IF_TRUE_W:
+            case OP_JUMP_IF_NOT_LESS_W:
+            case OP_JUMP_IF_NOT_GREATER_W:
+            case OP_JUMP_IF_NOT_EQUAL_W:
+            case OP_JUMP_IF_EQUAL_W:
+            case OP_JUMP_IF_NOT_LESS_EQUAL_W:
+            case OP_JUMP_IF_NOT_GREATER_EQUAL_W:
+            case OP_AND_W:
+            case OP_OR_W:
+            case OP_FOR_PREP_W:
+            case OP_FOR_LOOP_W:
+            case OP_FOR_NEXT_W:
+            case OP_LOOP_VALUE_W:
+            case OP_JUMP:
+            case OP_JUMP_IF_FALSE:
+            case OP_LOOP:
+            case OP_JUMP_IF_TRUE:
+            case OP_JUMP_IF_NOT_LESS:
+            case OP_JUMP_IF_NOT_GREATER:
+            case OP_JUMP_IF_NOT_EQUAL:
+            case OP_JUMP_IF_EQUAL:
+            case OP_JUMP_IF_NOT_LESS_EQUAL:
+            case OP_JUMP_IF_NOT_GREATER_EQUAL:
+            case OP_AND:
+            case OP_OR:
+            case OP_FOR_PREP:
+            case OP_FOR_LOOP:
+            case OP_FOR_NEXT:
+            case OP_LOOP_VALUE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Para os saltos de comparação fundidos: a comparação cujo resultado falso provoca o salto
+    public OpCode comparacao() {
+        switch (curto()) {
+            case OP_JUMP_IF_NOT_LESS:          return OP_LESS;
+            case OP_JUMP_IF_NOT_GREATER:       return OP_GREATER;
+            case OP_JUMP_IF_NOT_EQUAL:         return OP_EQUAL;
+            case OP_JUMP_IF_EQUAL:             return OP_NOT_EQUAL;
+            case OP_JUMP_IF_NOT_LESS_EQUAL:    return OP_LESS_EQUAL;
+            case OP_JUMP_IF_NOT_GREATER_EQUAL: return OP_GREATER_EQUAL;
+            default: return null;
+        }
+    }
 }
\ No newline at end of file
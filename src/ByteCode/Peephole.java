@@ -0,0 +1,283 @@
+package ByteCode;
+
+import Semantica.SwitchTable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Otimizador peephole sobre um Chunk já terminado.
+// Decodifica o bytecode numa lista de instruções com alvos de salto simbólicos, funde as
+// sequências fixas que o Compiler emite em superinstruções, remove saltos inúteis e volta
+// a codificar, recalculando todos os offsets.
+public final class Peephole {
+
+    private Peephole() {}
+
+    // Instrução decodificada; saltos apontam para outra Instr (ou null = fim do código)
+    private static final class Instr {
+        OpCode op;
+        int operand; // operando de 1 unidade (índice de constante ou slot), quando existe
+        int[] imediatos; // operandos de um salto antes do offset (OP_FOR_PREP, OP_FOR_LOOP)
+        final int line;
+        Instr target;
+        boolean isJumpTarget;
+        boolean wide; // só na codificação: o offset não cabe em 16 bits
+        boolean tabela; // entrada da tabela de um OP_SWITCH: sempre larga e nunca removida
+
+        Instr(OpCode op, int operand, int line) {
+            this.op = op;
+            this.operand = operand;
+            this.line = line;
+        }
+    }
+
+    public static Chunk optimize(Chunk chunk) {
+        List<Instr> code = decode(chunk);
+        boolean changed = true;
+        // Cada passo reconstrói a lista numa só passagem (remover de um ArrayList seria quadrático)
+        while (changed) {
+            int before = code.size();
+            markTargets(code);
+            code = fuseIncrements(chunk, code);
+            code = fuseNot(code);
+            code = fuseBranches(code);
+            changed = threadJumps(code);
+            code = removeJumpsToNext(code);
+            changed |= code.size() != before;
+        }
+        return encode(chunk, code);
+    }
+
+    // --- Decodificação e codificação ---
+
+    private static List<Instr> decode(Chunk chunk) {
+        List<Integer> raw = chunk.code;
+        List<Instr> code = new ArrayList<>();
+        Instr[] at = new Instr[raw.size() + 1];
+        int[] jumpTo = new int[raw.size()];
+        int pc = 0;
+        while (pc < raw.size()) {
+            OpCode op = OpCode.values()[raw.get(pc)];
+            int operand = op.operandos() == 1 ? raw.get(pc + 1) : 0;
+            // Saltos sempre na forma curta aqui; a largura é escolhida de novo em encode()
+            Instr instr = new Instr(op.curto(), operand, chunk.lines.get(pc));
+            if (op.isJump()) jumpTo[code.size()] = JitCompiler.jumpTarget(raw, pc);
+            if (op.imediatos() > 0) {
+                instr.imediatos = new int[op.imediatos()];
+                for (int i = 0; i < instr.imediatos.length; i++) instr.imediatos[i] = raw.get(pc + 1 + i);
+            }
+            at[pc] = instr;
+            code.add(instr);
+            pc += 1 + op.operandos();
+            if (op == OpCode.OP_SWITCH) {
+                // As entradas são alcançadas por aritmética sobre o ip, não por rótulos
+                int entries = ((SwitchTable) chunk.constants.get(operand)).size() + 1;
+                for (int i = 0; i < entries; i++) {
+                    Instr entry = new Instr(OpCode.OP_JUMP, 0, chunk.lines.get(pc));
+                    entry.tabela = true;
+                    entry.wide = true;
+                    jumpTo[code.size()] = JitCompiler.jumpTarget(raw, pc);
+                    at[pc] = entry;
+                    code.add(entry);
+                    pc += OpCode.ENTRADA_SWITCH;
+                }
+            }
+        }
+        for (int i = 0; i < code.size(); i++) {
+            Instr instr = code.get(i);
+            if (instr.op.isJump()) {
+                instr.target = at[jumpTo[i]]; // null quando salta para o fim
+            }
+        }
+        return code;
+    }
+
+    private static Chunk encode(Chunk original, List<Instr> code) {
+        // Identidade, não equals: duas instruções iguais são posições diferentes
+        Map<Instr, Integer> position = new IdentityHashMap<>();
+        int end = layout(code, position);
+
+        // Relaxação: começa tudo curto e alarga os saltos que não cabem, até estabilizar.
+        // Alargar um salto só afasta os outros, por isso o processo termina.
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            for (Instr instr : code) {
+                if (instr.op.isJump() && !instr.wide && offset(instr, position, end) > 65535) {
+                    instr.wide = true;
+                    grew = true;
+                }
+            }
+            if (grew) end = layout(code, position);
+        }
+
+        Chunk chunk = new Chunk();
+        chunk.constants.addAll(original.constants);
+        for (Instr instr : code) {
+            if (instr.op.isJump()) {
+                int offset = offset(instr, position, end);
+                if (offset < 0) {
+                    throw new IllegalStateException("Salto inválido após otimização: " + offset);
+                }
+                chunk.write(instr.wide ? instr.op.largo() : instr.op, instr.line);
+                if (instr.imediatos != null) {
+                    for (int value : instr.imediatos) chunk.write(value, instr.line);
+                }
+                if (instr.wide) {
+                    chunk.write((offset >>> 24) & 0xFF, instr.line);
+                    chunk.write((offset >> 16) & 0xFF, instr.line);
+                }
+                chunk.write((offset >> 8) & 0xFF, instr.line);
+                chunk.write(offset & 0xFF, instr.line);
+            } else {
+                chunk.write(instr.op, instr.line);
+                if (instr.op.operandos() == 1) {
+                    chunk.write(instr.operand, instr.line);
+                }
+            }
+        }
+        return chunk;
+    }
+
+    // Posição de cada instrução com as larguras atuais; devolve o tamanho total
+    private static int layout(List<Instr> code, Map<Instr, Integer> position) {
+        int pc = 0;
+        for (Instr instr : code) {
+            position.put(instr, pc);
+            pc += size(instr);
+        }
+        return pc;
+    }
+
+    private static int size(Instr instr) {
+        if (instr.op.isJump()) return 1 + instr.op.imediatos() + (instr.wide ? 4 : 2);
+        return 1 + instr.op.operandos();
+    }
+
+    private static int offset(Instr instr, Map<Instr, Integer> position, int end) {
+        Integer target = instr.target == null ? Integer.valueOf(end) : position.get(instr.target);
+        if (target == null) {
+            throw new IllegalStateException("Alvo de salto removido do código.");
+        }
+        int after = position.get(instr) + size(instr);
+        return instr.op.paraTras() ? after - target : target - after;
+    }
+
+    private static void markTargets(List<Instr> code) {
+        for (Instr instr : code) instr.isJumpTarget = false;
+        for (Instr instr : code) {
+            if (instr.op.isJump() && instr.target != null) instr.target.isJumpTarget = true;
+        }
+    }
+
+    // --- Padrões ---
+
+    // x++ / x--: GET_GLOBAL x, CONSTANT 1, ADD|SUBTRACT, SET_GLOBAL x
+    private static List<Instr> fuseIncrements(Chunk chunk, List<Instr> code) {
+        List<Instr> out = new ArrayList<>(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            Instr get = code.get(i);
+            out.add(get);
+            if (i + 3 >= code.size()) continue;
+            Instr one = code.get(i + 1), arith = code.get(i + 2), set = code.get(i + 3);
+            if (get.op != OpCode.OP_GET_GLOBAL || one.op != OpCode.OP_CONSTANT || set.op != OpCode.OP_SET_GLOBAL) continue;
+            if (arith.op != OpCode.OP_ADD && arith.op != OpCode.OP_SUBTRACT) continue;
+            if (one.isJumpTarget || arith.isJumpTarget || set.isJumpTarget) continue;
+            Object value = chunk.constants.get(one.operand);
+            if (!(value instanceof Integer) || (Integer) value != 1) continue;
+            if (!chunk.constants.get(get.operand).equals(chunk.constants.get(set.operand))) continue;
+
+            get.op = arith.op == OpCode.OP_ADD ? OpCode.OP_INC_GLOBAL : OpCode.OP_DEC_GLOBAL;
+            i += 3;
+        }
+        return out;
+    }
+
+    // EQUAL|GREATER|LESS seguido de NOT, e NOT seguido de JUMP_IF_FALSE
+    private static List<Instr> fuseNot(List<Instr> code) {
+        List<Instr> out = new ArrayList<>(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            Instr first = code.get(i);
+            out.add(first);
+            if (i + 1 >= code.size()) continue;
+            Instr second = code.get(i + 1);
+            if (second.isJumpTarget) continue;
+            if (second.op == OpCode.OP_NOT) {
+                if (first.op == OpCode.OP_EQUAL) first.op = OpCode.OP_NOT_EQUAL;
+                else if (first.op == OpCode.OP_GREATER) first.op = OpCode.OP_LESS_EQUAL;
+                else if (first.op == OpCode.OP_LESS) first.op = OpCode.OP_GREATER_EQUAL;
+                else continue;
+                i++;
+            } else if (first.op == OpCode.OP_NOT && second.op == OpCode.OP_JUMP_IF_FALSE) {
+                first.op = OpCode.OP_JUMP_IF_TRUE;
+                first.target = second.target;
+                i++;
+            }
+        }
+        return out;
+    }
+
+    // Comparação seguida de JUMP_IF_FALSE vira um único salto condicional
+    private static List<Instr> fuseBranches(List<Instr> code) {
+        List<Instr> out = new ArrayList<>(code.size());
+        for (int i = 0; i < code.size(); i++) {
+            Instr compare = code.get(i);
+            out.add(compare);
+            if (i + 1 >= code.size()) continue;
+            Instr jump = code.get(i + 1);
+            if (jump.op != OpCode.OP_JUMP_IF_FALSE || jump.isJumpTarget) continue;
+            switch (compare.op) {
+                case OP_LESS:          compare.op = OpCode.OP_JUMP_IF_NOT_LESS; break;
+                case OP_GREATER:       compare.op = OpCode.OP_JUMP_IF_NOT_GREATER; break;
+                case OP_EQUAL:         compare.op = OpCode.OP_JUMP_IF_NOT_EQUAL; break;
+                case OP_NOT_EQUAL:     compare.op = OpCode.OP_JUMP_IF_EQUAL; break;
+                case OP_LESS_EQUAL:    compare.op = OpCode.OP_JUMP_IF_NOT_LESS_EQUAL; break;
+                case OP_GREATER_EQUAL: compare.op = OpCode.OP_JUMP_IF_NOT_GREATER_EQUAL; break;
+                default: continue;
+            }
+            compare.target = jump.target;
+            i++;
+        }
+        return out;
+    }
+
+    // Salto para um OP_JUMP incondicional passa a saltar direto para o destino final
+    private static boolean threadJumps(List<Instr> code) {
+        boolean changed = false;
+        for (Instr instr : code) {
+            if (!instr.op.isJump() || instr.op.paraTras()) continue;
+            int hops = 0;
+            while (instr.target != null && instr.target.op == OpCode.OP_JUMP
+                    && instr.target.target != instr.target && hops++ < 16) {
+                instr.target = instr.target.target;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // OP_JUMP para a instrução seguinte (ex.: SE sem SENAO) não faz nada.
+    // Os saltos que tinham a instrução removida como alvo passam para a seguinte.
+    private static List<Instr> removeJumpsToNext(List<Instr> code) {
+        List<Instr> out = new ArrayList<>(code.size());
+        Map<Instr, Instr> redirect = new IdentityHashMap<>();
+        for (int i = 0; i < code.size(); i++) {
+            Instr instr = code.get(i);
+            Instr next = i + 1 < code.size() ? code.get(i + 1) : null;
+            if (instr.op == OpCode.OP_JUMP && instr.target == next && !instr.tabela) {
+                redirect.put(instr, next);
+            } else {
+                out.add(instr);
+            }
+        }
+        if (!redirect.isEmpty()) {
+            for (Instr instr : out) {
+                while (instr.target != null && redirect.containsKey(instr.target)) {
+                    instr.target = redirect.get(instr.target);
+                }
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,86 @@
+package ByteCode;
+
+// Instruções da VM de registos (RegisterVM).
+// Formato fixo de quatro inteiros: opcode, A, B, C. 'R[x]' é o registo x do frame;
+// 'RK(x)' é o registo x quando x >= 0, ou a constante ~x quando x < 0.
+// As globais ocupam os primeiros registos do frame; os temporários vêm a seguir.
+public enum RegOp {
+    MOVE,           // R[A] = RK(B)
+    LOAD_NIL,       // R[A] = nulo
+    LOAD_BOOL,      // R[A] = (B != 0)
+
+    ADD,            // R[A] = RK(B) + RK(C)
+    SUBTRACT,       // R[A] = RK(B) - RK(C)
+    MULTIPLY,       // R[A] = RK(B) * RK(C)
+    DIVIDE,         // R[A] = RK(B) / RK(C)
+    EQUAL,          // R[A] = RK(B) == RK(C)
+    NOT_EQUAL,      // R[A] = RK(B) != RK(C)
+    LESS,           // R[A] = RK(B) < RK(C)
+    GREATER,        // R[A] = RK(B) > RK(C)
+    LESS_EQUAL,     // R[A] = RK(B) <= RK(C)
+    GREATER_EQUAL,  // R[A] = RK(B) >= RK(C)
+    NOT,            // R[A] = !RK(B)
+    NEGATE,         // R[A] = -RK(B)
+    INC,            // R[A] = R[A] + 1
+    DEC,            // R[A] = R[A] - 1
+
+    NEW_ARRAY,      // R[A] = vetor com os C valores de R[B] .. R[B+C-1]
+    GET_INDEX,      // R[A] = RK(B)[RK(C)]
+    SET_INDEX,      // RK(A)[RK(B)] = RK(C)
+    LENGTH,         // R[A] = RK(B).tamanho
+    NEW_MAP,        // R[A] = mapa com os C pares chave, valor de R[B] .. R[B+2C-1]
+    INVOKE,         // R[A] = R[B].método(R[B+1], ...), com o nome do método na constante C
+                    // (o número de argumentos é o do método, Semantica.Builtins.aridade)
+    NEW_RECORD,     // R[A] = registro do RecordType da constante C, com os campos em R[B] ..
+    GET_FIELD,      // R[A] = RK(B).campo, com o nome do campo na constante C
+    SET_FIELD,      // RK(A).campo = RK(B), com o nome do campo na constante C
+
+    RANGE,          // R[A] = intervalo(RK(B), RK(C))
+    ITER,           // R[A] = iterador sobre RK(B)
+    FOR_NEXT,       // R[A] = próximo elemento do iterador R[B]; salta para C se não houver mais
+
+    CHECK_DEFINED,  // Erro se a global R[A] (nome na constante B) ainda não foi definida
+    CHECK_ASSIGN,   // Idem, com a mensagem de atribuição
+
+    PRINT,          // Imprime RK(A)
+    INPUT,          // R[A] = valor lido do console
+
+    JUMP,                       // salta para C
+    JUMP_IF_FALSE,              // salta para C se RK(A) for falso
+    JUMP_IF_TRUE,               // salta para C se RK(A) for verdadeiro
+    JUMP_IF_NOT_LESS,           // salta para C se !(RK(A) < RK(B))
+    JUMP_IF_NOT_GREATER,        // salta para C se !(RK(A) > RK(B))
+    JUMP_IF_NOT_EQUAL,          // salta para C se !(RK(A) == RK(B))
+    JUMP_IF_EQUAL,              // salta para C se !(RK(A) != RK(B))
+    JUMP_IF_NOT_LESS_EQUAL,     // salta para C se !(RK(A) <= RK(B))
+    JUMP_IF_NOT_GREATER_EQUAL,  // salta para C se !(RK(A) >= RK(B))
+
+    SWITCH,         // Procura RK(A) na SwitchTable da constante B e salta para a entrada idx das
+                    // instruções JUMP que vêm a seguir (uma por CASO, mais uma para o PADRAO)
+
+    INTERPRET,      // Executa no Interpreter o Stmt da constante A
+    RETURN;         // Fim do programa
+
+    // Opcode da VM de pilha com a mesma semântica de valor (para ValueOps.compute)
+    OpCode valueOp() {
+        switch (this) {
+            case ADD:           return OpCode.OP_ADD;
+            case SUBTRACT:      return OpCode.OP_SUBTRACT;
+            case MULTIPLY:      return OpCode.OP_MULTIPLY;
+            case DIVIDE:        return OpCode.OP_DIVIDE;
+            case EQUAL:         return OpCode.OP_EQUAL;
+            case NOT_EQUAL:     return OpCode.OP_NOT_EQUAL;
+            case LESS:          return OpCode.OP_LESS;
+            case GREATER:       return OpCode.OP_GREATER;
+            case LESS_EQUAL:    return OpCode.OP_LESS_EQUAL;
+            case GREATER_EQUAL: return OpCode.OP_GREATER_EQUAL;
+            case JUMP_IF_NOT_LESS:          return OpCode.OP_LESS;
+            case JUMP_IF_NOT_GREATER:       return OpCode.OP_GREATER;
+            case JUMP_IF_NOT_EQUAL:         return OpCode.OP_EQUAL;
+            case JUMP_IF_EQUAL:             return OpCode.OP_NOT_EQUAL;
+            case JUMP_IF_NOT_LESS_EQUAL:    return OpCode.OP_LESS_EQUAL;
+            case JUMP_IF_NOT_GREATER_EQUAL: return OpCode.OP_GREATER_EQUAL;
+            default: return null;
+        }
+    }
+}
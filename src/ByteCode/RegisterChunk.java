@@ -0,0 +1,48 @@
+package ByteCode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Programa compilado para a VM de registos: instruções de quatro inteiros (opcode, A, B, C),
+// constantes, linha de cada instrução e o nome da global guardada em cada um dos primeiros registos.
+public class RegisterChunk {
+
+    public int[] code = new int[64];
+    public int size = 0; // quantidade de inteiros usados em 'code'
+
+    public final List<Object> constants = new ArrayList<>();
+
+    public int[] lines = new int[16];
+
+    public final List<String> globalNames = new ArrayList<>();
+
+    // Tamanho do frame: globais + maior número de temporários vivos ao mesmo tempo
+    public int registerCount = 0;
+
+    // Acrescenta uma instrução e devolve o seu índice
+    public int write(RegOp op, int a, int b, int c, int line) {
+        if (size + 4 > code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        int index = size / 4;
+        if (index >= lines.length) {
+            lines = Arrays.copyOf(lines, lines.length * 2);
+        }
+        code[size++] = op.ordinal();
+        code[size++] = a;
+        code[size++] = b;
+        code[size++] = c;
+        lines[index] = line;
+        return index;
+    }
+
+    public int instructionCount() {
+        return size / 4;
+    }
+
+    public int addConstant(Object value) {
+        this.constants.add(value);
+        return this.constants.size() - 1;
+    }
+}
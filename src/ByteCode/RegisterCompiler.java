@@ -0,0 +1,827 @@
+package ByteCode;
+
+import Lexica.Token;
+import Lexica.TokenType;
+import Semantica.RecordType;
+import Semantica.SwitchTable;
+import Sintatica.Expr;
+import Sintatica.Stmt;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Compila a AST para a VM de registos (RegisterVM).
+// Cada global recebe um registo fixo do frame e as expressões são avaliadas direto para o
+// registo de destino, de modo que 'x = a + b' é uma única instrução ADD x, a, b.
+// Usa o mesmo VmSupport do Compiler: o que a VM não suporta vai para o Interpreter.
+public class RegisterCompiler implements Expr.Visitor<Integer>, Stmt.Visitor<Void> {
+
+    private RegisterChunk chunk;
+    private final VmSupport support = new VmSupport();
+
+    private final Map<String, Integer> globalSlots = new HashMap<>();
+    // Globais que com certeza já foram definidas neste ponto (VAR no nível de topo já executado)
+    private final Set<String> definedGlobals = new HashSet<>();
+    private int nesting = 0; // > 0 dentro de SE / VOLTAINFINITA
+
+    private int firstTemp; // primeiro registo temporário (logo após as globais)
+    private int top;       // próximo temporário livre
+
+    // Registo onde o valor da expressão em compilação deve ficar (-1 = qualquer um)
+    private int dest = -1;
+
+    private final Deque<List<Integer>> breakJumps = new ArrayDeque<>();
+
+    // Um RecordType por REGISTRO, partilhado pelos NEW_RECORD do mesmo tipo
+    private final Map<Stmt.Record, RecordType> recordTypes = new IdentityHashMap<>();
+
+    private int getCurrentLine(Token token) {
+        return (token != null) ? token.line : 0;
+    }
+
+    public RegisterChunk compile(List<Stmt> statements) {
+        chunk = new RegisterChunk();
+        globalSlots.clear();
+        definedGlobals.clear();
+        breakJumps.clear();
+        recordTypes.clear();
+        nesting = 0;
+
+        // As globais ocupam os primeiros registos; os temporários vêm depois
+        for (Stmt stmt : statements) collectGlobals(stmt);
+        firstTemp = globalSlots.size();
+        top = firstTemp;
+        chunk.registerCount = firstTemp;
+
+        try {
+            for (Stmt stmt : statements) {
+                compileStatement(stmt);
+            }
+            chunk.write(RegOp.RETURN, 0, 0, 0, 0);
+            return chunk;
+        } catch (Exception e) {
+            System.err.println("Erro de compilação (registos): " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // --- Registos ---
+
+    private int slot(String name) {
+        Integer slot = globalSlots.get(name);
+        if (slot == null) {
+            throw new IllegalStateException("Global sem registo: " + name);
+        }
+        return slot;
+    }
+
+    private void declareGlobal(String name) {
+        if (!globalSlots.containsKey(name)) {
+            globalSlots.put(name, globalSlots.size());
+            chunk.globalNames.add(name);
+        }
+    }
+
+    private int allocTemp() {
+        int reg = top++;
+        if (top > chunk.registerCount) chunk.registerCount = top;
+        return reg;
+    }
+
+    private int constant(Object value) {
+        return ~chunk.addConstant(value);
+    }
+
+    // Avalia a expressão e devolve o operando RK onde o valor está
+    private int rk(Expr expr) {
+        dest = -1;
+        return expr.accept(this);
+    }
+
+    // Avalia a expressão garantindo que o valor termina no registo dado
+    private void into(Expr expr, int reg, int line) {
+        dest = reg;
+        int result = expr.accept(this);
+        if (result != reg) {
+            chunk.write(RegOp.MOVE, reg, result, 0, line);
+        }
+    }
+
+    // Destino pedido pela expressão atual, ou um temporário novo
+    private int target() {
+        int wanted = dest;
+        dest = -1;
+        return wanted >= 0 ? wanted : allocTemp();
+    }
+
+    private void patch(int instruction) {
+        chunk.code[instruction * 4 + 3] = chunk.instructionCount();
+    }
+
+    // --- Comandos ---
+
+    private void compileStatement(Stmt stmt) {
+        int mark = top;
+        if (support.isNative(stmt)) {
+            stmt.accept(this);
+        } else {
+            chunk.write(RegOp.INTERPRET, chunk.addConstant(stmt), 0, 0, 0);
+        }
+        top = mark;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        int value = rk(stmt.expression);
+        chunk.write(RegOp.PRINT, value, 0, 0, 0);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        int line = getCurrentLine(stmt.name);
+        int slot = slot(stmt.name.lexeme);
+        if (stmt.initializer != null) {
+            into(stmt.initializer, slot, line);
+        } else {
+            chunk.write(RegOp.LOAD_NIL, slot, 0, 0, line);
+        }
+        if (nesting == 0) definedGlobals.add(stmt.name.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        rk(stmt.expr);
+        return null;
+    }
+
+    @Override
+    public Void visitInputStmt(Stmt.Input stmt) {
+        int line = getCurrentLine(stmt.name);
+        int slot = slot(stmt.name.lexeme);
+        if (definedGlobals.contains(stmt.name.lexeme)) {
+            chunk.write(RegOp.INPUT, slot, 0, 0, line);
+        } else {
+            int temp = allocTemp();
+            chunk.write(RegOp.INPUT, temp, 0, 0, line);
+            chunk.write(RegOp.CHECK_ASSIGN, slot, chunk.addConstant(stmt.name.lexeme), 0, line);
+            chunk.write(RegOp.MOVE, slot, temp, 0, line);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        nesting++;
+        List<Integer> thenJumps = conditionJumps(stmt.condition);
+        compileStatement(stmt.thenBranch);
+        if (stmt.elseBranch != null) {
+            int elseJump = chunk.write(RegOp.JUMP, 0, 0, 0, 0);
+            for (int thenJump : thenJumps) patch(thenJump);
+            compileStatement(stmt.elseBranch);
+            patch(elseJump);
+        } else {
+            for (int thenJump : thenJumps) patch(thenJump);
+        }
+        nesting--;
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        nesting++;
+        int loopStart = chunk.instructionCount();
+        List<Integer> exitJumps = conditionJumps(stmt.condition);
+        breakJumps.push(new ArrayList<>());
+        compileStatement(stmt.body);
+        chunk.write(RegOp.JUMP, 0, 0, loopStart, 0);
+        for (int exitJump : exitJumps) patch(exitJump);
+        for (int breakJump : breakJumps.pop()) {
+            patch(breakJump);
+        }
+        nesting--;
+        return null;
+    }
+
+    // FAZAVOLTA: aqui a variável do laço já vive num registo, por isso basta a forma por extenso
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        if (stmt.initializer != null) compileStatement(stmt.initializer);
+        nesting++;
+        int loopStart = chunk.instructionCount();
+        List<Integer> exitJumps = stmt.condition != null ? conditionJumps(stmt.condition) : new ArrayList<>();
+        breakJumps.push(new ArrayList<>());
+        compileStatement(stmt.body);
+        if (stmt.increment != null) {
+            int mark = top;
+            rk(stmt.increment);
+            top = mark;
+        }
+        chunk.write(RegOp.JUMP, 0, 0, loopStart, 0);
+        for (int exitJump : exitJumps) patch(exitJump);
+        for (int breakJump : breakJumps.pop()) {
+            patch(breakJump);
+        }
+        nesting--;
+        return null;
+    }
+
+    // FAZAVOLTA (VAR x : sequencia): o iterador fica num temporário reservado durante o laço e
+    // FOR_NEXT escreve cada elemento direto no registo da variável
+    @Override
+    public Void visitForEachStmt(Stmt.ForEach stmt) {
+        int line = getCurrentLine(stmt.name);
+        int iterator = allocTemp();
+        into(stmt.iterable, iterator, line);
+        chunk.write(RegOp.ITER, iterator, iterator, 0, line);
+        nesting++;
+        int loopStart = chunk.instructionCount();
+        int exitJump = chunk.write(RegOp.FOR_NEXT, slot(stmt.name.lexeme), iterator, 0, line);
+        breakJumps.push(new ArrayList<>());
+        compileStatement(stmt.body);
+        chunk.write(RegOp.JUMP, 0, 0, loopStart, 0);
+        patch(exitJump);
+        for (int breakJump : breakJumps.pop()) {
+            patch(breakJump);
+        }
+        chunk.write(RegOp.LOAD_NIL, iterator, 0, 0, line); // solta o iterador
+        nesting--;
+        return null;
+    }
+
+    // ESCOLHEAI com CASO constantes: SWITCH seguido de uma tabela de JUMP
+    @Override
+    public Void visitSwitchStmt(Stmt.Switch stmt) {
+        SwitchTable table = SwitchTable.of(stmt);
+        if (table == null) throw unsupported("ESCOLHEAI com CASO não constante");
+        nesting++;
+        int mark = top;
+        int value = rk(stmt.expr);
+        top = mark;
+        chunk.write(RegOp.SWITCH, value, chunk.addConstant(table), 0, 0);
+        int firstEntry = chunk.instructionCount();
+        for (int i = 0; i <= table.size(); i++) {
+            chunk.write(RegOp.JUMP, 0, 0, 0, 0);
+        }
+
+        breakJumps.push(new ArrayList<>());
+        List<Integer> endJumps = new ArrayList<>();
+        for (int i = 0; i < table.size(); i++) {
+            patch(firstEntry + i);
+            compileStatement(stmt.cases.get(i).stmt);
+            endJumps.add(chunk.write(RegOp.JUMP, 0, 0, 0, 0));
+        }
+        patch(firstEntry + table.size());
+        if (stmt.defaultCase != null) {
+            compileStatement(stmt.defaultCase.stmt);
+        }
+        for (int endJump : endJumps) patch(endJump);
+        for (int breakJump : breakJumps.pop()) patch(breakJump);
+        nesting--;
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        for (Stmt statement : stmt.statements) {
+            compileStatement(statement);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        if (!breakJumps.isEmpty()) {
+            breakJumps.peek().add(chunk.write(RegOp.JUMP, 0, 0, 0, 0));
+        }
+        return null;
+    }
+
+    // O tipo é resolvido pelo Parser; não gera código
+    @Override
+    public Void visitRecordStmt(Stmt.Record stmt) {
+        return null;
+    }
+
+    // Sempre delegados ao Interpreter pelo VmSupport
+    @Override public Void visitFunctionStmt(Stmt.Function stmt) { throw unsupported("FUNCAO"); }
+    @Override public Void visitReturnStmt(Stmt.Return stmt) { throw unsupported("RETORNA"); }
+
+    private RuntimeException unsupported(String what) {
+        return new RuntimeException("A VM de registos não traduz " + what + "; deveria ter sido delegado ao interpretador.");
+    }
+
+    // Emite os saltos tomados quando a condição é falsa e devolve as instruções a corrigir.
+    // 'a && b' vira um salto por operando.
+    private List<Integer> conditionJumps(Expr condition) {
+        List<Integer> jumps = new ArrayList<>();
+        addConditionJumps(condition, jumps);
+        return jumps;
+    }
+
+    private void addConditionJumps(Expr condition, List<Integer> jumps) {
+        if (condition instanceof Expr.Grouping) {
+            addConditionJumps(((Expr.Grouping) condition).expression, jumps);
+        } else if (condition instanceof Expr.Binary && ((Expr.Binary) condition).operator.type == TokenType.AND) {
+            addConditionJumps(((Expr.Binary) condition).left, jumps);
+            addConditionJumps(((Expr.Binary) condition).right, jumps);
+        } else {
+            jumps.add(conditionJump(condition));
+        }
+    }
+
+    private int conditionJump(Expr condition) {
+        int mark = top;
+        try {
+            if (condition instanceof Expr.Binary) {
+                Expr.Binary binary = (Expr.Binary) condition;
+                RegOp jump = null;
+                switch (binary.operator.type) {
+                    case LESS:         jump = RegOp.JUMP_IF_NOT_LESS; break;
+                    case GREATER:      jump = RegOp.JUMP_IF_NOT_GREATER; break;
+                    case EQUALEQUAL:   jump = RegOp.JUMP_IF_NOT_EQUAL; break;
+                    case BANGEQUAL:    jump = RegOp.JUMP_IF_EQUAL; break;
+                    case LESSEQUAL:    jump = RegOp.JUMP_IF_NOT_LESS_EQUAL; break;
+                    case GREATEREQUAL: jump = RegOp.JUMP_IF_NOT_GREATER_EQUAL; break;
+                    default: break;
+                }
+                if (jump != null) {
+                    int[] operands = operands(binary.left, binary.right);
+                    return chunk.write(jump, operands[0], operands[1], 0, getCurrentLine(binary.operator));
+                }
+            }
+            if (condition instanceof Expr.Unary && ((Expr.Unary) condition).operator.type == TokenType.BANG) {
+                int value = rk(((Expr.Unary) condition).right);
+                return chunk.write(RegOp.JUMP_IF_TRUE, value, 0, 0, 0);
+            }
+            int value = rk(condition);
+            return chunk.write(RegOp.JUMP_IF_FALSE, value, 0, 0, 0);
+        } finally {
+            top = mark;
+        }
+    }
+
+    // Avalia os dois operandos de uma operação binária. Se o da direita alterar variáveis,
+    // o da esquerda é copiado antes, como a VM de pilha faria ao empilhá-lo.
+    private int[] operands(Expr left, Expr right) {
+        int a = rk(left);
+        if (a >= 0 && a < firstTemp && hasSideEffects(right)) {
+            int copy = allocTemp();
+            chunk.write(RegOp.MOVE, copy, a, 0, 0);
+            a = copy;
+        }
+        int b = rk(right);
+        return new int[]{a, b};
+    }
+
+    private static boolean hasSideEffects(Expr expr) {
+        if (expr instanceof Expr.Assign || expr instanceof Expr.Incremento
+                || expr instanceof Expr.Decremento || expr instanceof Expr.Call) return true;
+        if (expr instanceof Expr.Binary) {
+            return hasSideEffects(((Expr.Binary) expr).left) || hasSideEffects(((Expr.Binary) expr).right);
+        }
+        if (expr instanceof Expr.Unary) return hasSideEffects(((Expr.Unary) expr).right);
+        if (expr instanceof Expr.Grouping) return hasSideEffects(((Expr.Grouping) expr).expression);
+        // Escrever num elemento não muda nenhum registo; só as subexpressões podem mudar
+        if (expr instanceof Expr.IndexSet) {
+            Expr.IndexSet e = (Expr.IndexSet) expr;
+            return hasSideEffects(e.object) || hasSideEffects(e.index) || hasSideEffects(e.value);
+        }
+        if (expr instanceof Expr.Index) {
+            return hasSideEffects(((Expr.Index) expr).object) || hasSideEffects(((Expr.Index) expr).index);
+        }
+        if (expr instanceof Expr.ArrayLiteral) {
+            for (Expr element : ((Expr.ArrayLiteral) expr).elements) {
+                if (hasSideEffects(element)) return true;
+            }
+            return false;
+        }
+        if (expr instanceof Expr.Get) return hasSideEffects(((Expr.Get) expr).object);
+        // Como no IndexSet: o campo não é um registo
+        if (expr instanceof Expr.Set) {
+            return hasSideEffects(((Expr.Set) expr).object) || hasSideEffects(((Expr.Set) expr).value);
+        }
+        if (expr instanceof Expr.Range) {
+            return hasSideEffects(((Expr.Range) expr).start) || hasSideEffects(((Expr.Range) expr).end);
+        }
+        if (expr instanceof Expr.New) {
+            for (Expr argument : ((Expr.New) expr).arguments) {
+                if (hasSideEffects(argument)) return true;
+            }
+            return false;
+        }
+        if (expr instanceof Expr.MapLiteral) {
+            for (Expr key : ((Expr.MapLiteral) expr).keys) {
+                if (hasSideEffects(key)) return true;
+            }
+            for (Expr value : ((Expr.MapLiteral) expr).values) {
+                if (hasSideEffects(value)) return true;
+            }
+            return false;
+        }
+        return false;
+    }
+
+    // --- Expressões ---
+
+    @Override
+    public Integer visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value == null) {
+            int reg = target();
+            chunk.write(RegOp.LOAD_NIL, reg, 0, 0, 0);
+            return reg;
+        }
+        if (expr.value instanceof Boolean) {
+            int reg = target();
+            chunk.write(RegOp.LOAD_BOOL, reg, (Boolean) expr.value ? 1 : 0, 0, 0);
+            return reg;
+        }
+        int k = constant(expr.value);
+        if (dest < 0) return k;
+        int reg = target();
+        chunk.write(RegOp.MOVE, reg, k, 0, 0);
+        return reg;
+    }
+
+    @Override
+    public Integer visitVariableExpr(Expr.Variable expr) {
+        int line = getCurrentLine(expr.name);
+        int slot = slot(expr.name.lexeme);
+        if (!definedGlobals.contains(expr.name.lexeme)) {
+            chunk.write(RegOp.CHECK_DEFINED, slot, chunk.addConstant(expr.name.lexeme), 0, line);
+        }
+        if (dest < 0) return slot;
+        int reg = target();
+        if (reg != slot) chunk.write(RegOp.MOVE, reg, slot, 0, line);
+        return reg;
+    }
+
+    @Override
+    public Integer visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Integer visitBinaryExpr(Expr.Binary expr) {
+        int wanted = dest;
+        int line = getCurrentLine(expr.operator);
+        if (expr.operator.type == TokenType.AND || expr.operator.type == TokenType.OR) {
+            return shortCircuit(expr, wanted, line);
+        }
+        RegOp op;
+        switch (expr.operator.type) {
+            case PLUS:         op = RegOp.ADD; break;
+            case MINUS:        op = RegOp.SUBTRACT; break;
+            case STAR:         op = RegOp.MULTIPLY; break;
+            case SLASH:        op = RegOp.DIVIDE; break;
+            case EQUALEQUAL:   op = RegOp.EQUAL; break;
+            case BANGEQUAL:    op = RegOp.NOT_EQUAL; break;
+            case GREATER:      op = RegOp.GREATER; break;
+            case GREATEREQUAL: op = RegOp.GREATER_EQUAL; break;
+            case LESS:         op = RegOp.LESS; break;
+            case LESSEQUAL:    op = RegOp.LESS_EQUAL; break;
+            default: throw new RuntimeException("Operador binário desconhecido: " + expr.operator.type);
+        }
+        int mark = top;
+        int[] operands = operands(expr.left, expr.right);
+        top = mark; // os temporários dos operandos podem ser reaproveitados pelo resultado
+        dest = wanted;
+        int reg = target();
+        chunk.write(op, reg, operands[0], operands[1], line);
+        return reg;
+    }
+
+    // 'a && b' / 'a || b': o resultado recebe 'a' e, se 'a' não decidir, é substituído por 'b'.
+    // Nunca escreve direto numa global, porque 'b' ainda pode ler o valor antigo dela.
+    private int shortCircuit(Expr.Binary expr, int wanted, int line) {
+        int reg = wanted >= firstTemp ? wanted : allocTemp();
+        into(expr.left, reg, line);
+        RegOp skip = expr.operator.type == TokenType.AND ? RegOp.JUMP_IF_FALSE : RegOp.JUMP_IF_TRUE;
+        int jump = chunk.write(skip, reg, 0, 0, line);
+        into(expr.right, reg, line);
+        patch(jump);
+        if (wanted < 0 || wanted == reg) return reg;
+        chunk.write(RegOp.MOVE, wanted, reg, 0, line);
+        return wanted;
+    }
+
+    @Override
+    public Integer visitUnaryExpr(Expr.Unary expr) {
+        int wanted = dest;
+        int line = getCurrentLine(expr.operator);
+        int mark = top;
+        int operand = rk(expr.right);
+        top = mark;
+        dest = wanted;
+        int reg = target();
+        switch (expr.operator.type) {
+            case MINUS: chunk.write(RegOp.NEGATE, reg, operand, 0, line); break;
+            case BANG:  chunk.write(RegOp.NOT, reg, operand, 0, line); break;
+            default: throw new RuntimeException("Operador unário desconhecido: " + expr.operator.type);
+        }
+        return reg;
+    }
+
+    @Override
+    public Integer visitAssignExpr(Expr.Assign expr) {
+        int wanted = dest;
+        int line = getCurrentLine(expr.name);
+        int slot = slot(expr.name.lexeme);
+        if (definedGlobals.contains(expr.name.lexeme)) {
+            into(expr.value, slot, line);
+        } else {
+            // A VM de pilha avalia o valor antes de verificar a variável
+            int temp = allocTemp();
+            into(expr.value, temp, line);
+            chunk.write(RegOp.CHECK_ASSIGN, slot, chunk.addConstant(expr.name.lexeme), 0, line);
+            chunk.write(RegOp.MOVE, slot, temp, 0, line);
+        }
+        if (wanted < 0 || wanted == slot) return slot;
+        chunk.write(RegOp.MOVE, wanted, slot, 0, line);
+        return wanted;
+    }
+
+    @Override
+    public Integer visitIncrementoExpr(Expr.Incremento expr) {
+        return step(RegOp.INC, expr.name);
+    }
+
+    @Override
+    public Integer visitDecrementoExpr(Expr.Decremento expr) {
+        return step(RegOp.DEC, expr.name);
+    }
+
+    // ++ e --: como na VM de pilha, o valor da expressão é o novo valor da variável
+    private int step(RegOp op, Token name) {
+        int wanted = dest;
+        int line = getCurrentLine(name);
+        int slot = slot(name.lexeme);
+        if (!definedGlobals.contains(name.lexeme)) {
+            chunk.write(RegOp.CHECK_DEFINED, slot, chunk.addConstant(name.lexeme), 0, line);
+        }
+        chunk.write(op, slot, 0, 0, line);
+        if (wanted < 0 || wanted == slot) return slot;
+        chunk.write(RegOp.MOVE, wanted, slot, 0, line);
+        return wanted;
+    }
+
+    // --- Vetores ---
+
+    // Os elementos são avaliados em temporários consecutivos, que o NEW_ARRAY copia
+    @Override
+    public Integer visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        int wanted = dest;
+        int line = getCurrentLine(expr.bracket);
+        int first = consecutive(expr.elements, line);
+        dest = wanted;
+        int reg = target();
+        chunk.write(RegOp.NEW_ARRAY, reg, first, expr.elements.size(), line);
+        return reg;
+    }
+
+    @Override
+    public Integer visitMapLiteralExpr(Expr.MapLiteral expr) {
+        int wanted = dest;
+        int line = getCurrentLine(expr.brace);
+        List<Expr> pairs = new ArrayList<>();
+        for (int i = 0; i < expr.keys.size(); i++) {
+            pairs.add(expr.keys.get(i));
+            pairs.add(expr.values.get(i));
+        }
+        int first = consecutive(pairs, line);
+        dest = wanted;
+        int reg = target();
+        chunk.write(RegOp.NEW_MAP, reg, first, expr.keys.size(), line);
+        return reg;
+    }
+
+    // Método embutido: receptor e argumentos em registos consecutivos
+    @Override
+    public Integer visitCallExpr(Expr.Call expr) {
+        if (!(expr.callee instanceof Expr.Get)) throw unsupported("chamada de função");
+        Expr.Get method = (Expr.Get) expr.callee;
+        int wanted = dest;
+        int line = getCurrentLine(method.name);
+        List<Expr> operands = new ArrayList<>();
+        operands.add(method.object);
+        operands.addAll(expr.arguments);
+        int first = consecutive(operands, line);
+        dest = wanted;
+        int reg = target();
+        chunk.write(RegOp.INVOKE, reg, first, chunk.addConstant(method.name.lexeme), line);
+        return reg;
+    }
+
+    // Avalia as expressões em temporários consecutivos, por ordem, e devolve o primeiro.
+    // Os temporários ficam livres outra vez: a instrução seguinte lê-os antes de qualquer escrita.
+    private int consecutive(List<Expr> exprs, int line) {
+        int first = top;
+        for (Expr expr : exprs) {
+            int reg = allocTemp();
+            into(expr, reg, line);
+            top = reg + 1;
+        }
+        top = first;
+        return first;
+    }
+
+    @Override
+    public Integer visitIndexExpr(Expr.Index expr) {
+        int wanted = dest;
+        int line = getCurrentLine(expr.bracket);
+        int mark = top;
+        int[] operands = operands(expr.object, expr.index);
+        top = mark;
+        dest = wanted;
+        int reg = target();
+        chunk.write(RegOp.GET_INDEX, reg, operands[0], operands[1], line);
+        return reg;
+    }
+
+    @Override
+    public Integer visitIndexSetExpr(Expr.IndexSet expr) {
+        int wanted = dest;
+        int line = getCurrentLine(expr.bracket);
+        int mark = top;
+        int[] target = operands(expr.object, expr.index);
+        if (hasSideEffects(expr.value)) {
+            // Vetor e índice valem o que tinham antes de o valor ser avaliado
+            for (int i = 0; i < 2; i++) {
+                if (target[i] >= 0 && target[i] < firstTemp) {
+                    int copy = allocTemp();
+                    chunk.write(RegOp.MOVE, copy, target[i], 0, line);
+                    target[i] = copy;
+                }
+            }
+        }
+        int value = rk(expr.value);
+        chunk.write(RegOp.SET_INDEX, target[0], target[1], value, line);
+        if (wanted < 0) return value;
+        top = mark;
+        chunk.write(RegOp.MOVE, wanted, value, 0, line);
+        return wanted;
+    }
+
+    @Override
+    public Integer visitGetExpr(Expr.Get expr) {
+        int wanted = dest;
+        int mark = top;
+        int object = rk(expr.object);
+        top = mark;
+        dest = wanted;
+        int reg = target();
+        int line = getCurrentLine(expr.name);
+        if (expr.name.lexeme.equals("tamanho")) {
+            chunk.write(RegOp.LENGTH, reg, object, 0, line);
+        } else {
+            chunk.write(RegOp.GET_FIELD, reg, object, chunk.addConstant(expr.name.lexeme), line);
+        }
+        return reg;
+    }
+
+    // --- Registros ---
+
+    @Override
+    public Integer visitSetExpr(Expr.Set expr) {
+        int wanted = dest;
+        int line = getCurrentLine(expr.name);
+        int mark = top;
+        int object = rk(expr.object);
+        if (object >= 0 && object < firstTemp && hasSideEffects(expr.value)) {
+            // O registro é o que a variável tinha antes de o valor ser avaliado
+            int copy = allocTemp();
+            chunk.write(RegOp.MOVE, copy, object, 0, line);
+            object = copy;
+        }
+        int value = rk(expr.value);
+        chunk.write(RegOp.SET_FIELD, object, value, chunk.addConstant(expr.name.lexeme), line);
+        if (wanted < 0) return value;
+        top = mark;
+        chunk.write(RegOp.MOVE, wanted, value, 0, line);
+        return wanted;
+    }
+
+    @Override
+    public Integer visitRangeExpr(Expr.Range expr) {
+        int wanted = dest;
+        int line = getCurrentLine(expr.paren);
+        int mark = top;
+        int[] bounds = operands(expr.start, expr.end);
+        top = mark;
+        dest = wanted;
+        int reg = target();
+        chunk.write(RegOp.RANGE, reg, bounds[0], bounds[1], line);
+        return reg;
+    }
+
+    // Os campos são avaliados em temporários consecutivos, que o NEW_RECORD copia
+    @Override
+    public Integer visitNewExpr(Expr.New expr) {
+        int wanted = dest;
+        int line = getCurrentLine(expr.paren);
+        int first = consecutive(expr.arguments, line);
+        dest = wanted;
+        int reg = target();
+        RecordType type = recordTypes.computeIfAbsent(expr.record, RecordType::of);
+        chunk.write(RegOp.NEW_RECORD, reg, first, chunk.addConstant(type), line);
+        return reg;
+    }
+
+    // --- Levantamento das globais usadas por código nativo ---
+
+    private void collectGlobals(Stmt stmt) {
+        if (stmt instanceof Stmt.Var) {
+            declareGlobal(((Stmt.Var) stmt).name.lexeme);
+            if (((Stmt.Var) stmt).initializer != null) collectGlobals(((Stmt.Var) stmt).initializer);
+        } else if (stmt instanceof Stmt.Print) {
+            collectGlobals(((Stmt.Print) stmt).expression);
+        } else if (stmt instanceof Stmt.Expression) {
+            collectGlobals(((Stmt.Expression) stmt).expr);
+        } else if (stmt instanceof Stmt.Input) {
+            declareGlobal(((Stmt.Input) stmt).name.lexeme);
+        } else if (stmt instanceof Stmt.If) {
+            Stmt.If s = (Stmt.If) stmt;
+            collectGlobals(s.condition);
+            collectGlobals(s.thenBranch);
+            if (s.elseBranch != null) collectGlobals(s.elseBranch);
+        } else if (stmt instanceof Stmt.While) {
+            collectGlobals(((Stmt.While) stmt).condition);
+            collectGlobals(((Stmt.While) stmt).body);
+        } else if (stmt instanceof Stmt.For) {
+            Stmt.For s = (Stmt.For) stmt;
+            if (s.initializer != null) collectGlobals(s.initializer);
+            if (s.condition != null) collectGlobals(s.condition);
+            if (s.increment != null) collectGlobals(s.increment);
+            collectGlobals(s.body);
+        } else if (stmt instanceof Stmt.ForEach) {
+            Stmt.ForEach s = (Stmt.ForEach) stmt;
+            declareGlobal(s.name.lexeme);
+            collectGlobals(s.iterable);
+            collectGlobals(s.body);
+        } else if (stmt instanceof Stmt.Block) {
+            for (Stmt s : ((Stmt.Block) stmt).statements) collectGlobals(s);
+        } else if (stmt instanceof Stmt.Switch) {
+            Stmt.Switch s = (Stmt.Switch) stmt;
+            collectGlobals(s.expr);
+            if (s.cases != null) {
+                for (Stmt.Case cs : s.cases) collectGlobals(cs.stmt);
+            }
+            if (s.defaultCase != null) collectGlobals(s.defaultCase.stmt);
+        }
+        // FUNCAO e RETORNA correm no Interpreter, com as globais no mapa partilhado
+    }
+
+    private void collectGlobals(Expr expr) {
+        if (expr instanceof Expr.Variable) {
+            declareGlobal(((Expr.Variable) expr).name.lexeme);
+        } else if (expr instanceof Expr.Assign) {
+            declareGlobal(((Expr.Assign) expr).name.lexeme);
+            collectGlobals(((Expr.Assign) expr).value);
+        } else if (expr instanceof Expr.Incremento) {
+            declareGlobal(((Expr.Incremento) expr).name.lexeme);
+        } else if (expr instanceof Expr.Decremento) {
+            declareGlobal(((Expr.Decremento) expr).name.lexeme);
+        } else if (expr instanceof Expr.Binary) {
+            collectGlobals(((Expr.Binary) expr).left);
+            collectGlobals(((Expr.Binary) expr).right);
+        } else if (expr instanceof Expr.Unary) {
+            collectGlobals(((Expr.Unary) expr).right);
+        } else if (expr instanceof Expr.Grouping) {
+            collectGlobals(((Expr.Grouping) expr).expression);
+        } else if (expr instanceof Expr.Call) {
+            collectGlobals(((Expr.Call) expr).callee);
+            for (Expr argument : ((Expr.Call) expr).arguments) collectGlobals(argument);
+        } else if (expr instanceof Expr.ArrayLiteral) {
+            for (Expr element : ((Expr.ArrayLiteral) expr).elements) collectGlobals(element);
+        } else if (expr instanceof Expr.Index) {
+            collectGlobals(((Expr.Index) expr).object);
+            collectGlobals(((Expr.Index) expr).index);
+        } else if (expr instanceof Expr.IndexSet) {
+            collectGlobals(((Expr.IndexSet) expr).object);
+            collectGlobals(((Expr.IndexSet) expr).index);
+            collectGlobals(((Expr.IndexSet) expr).value);
+        } else if (expr instanceof Expr.Get) {
+            collectGlobals(((Expr.Get) expr).object);
+        } else if (expr instanceof Expr.Set) {
+            collectGlobals(((Expr.Set) expr).object);
+            collectGlobals(((Expr.Set) expr).value);
+        } else if (expr instanceof Expr.Range) {
+            collectGlobals(((Expr.Range) expr).start);
+            collectGlobals(((Expr.Range) expr).end);
+        } else if (expr instanceof Expr.New) {
+            for (Expr argument : ((Expr.New) expr).arguments) collectGlobals(argument);
+        } else if (expr instanceof Expr.MapLiteral) {
+            for (Expr key : ((Expr.MapLiteral) expr).keys) collectGlobals(key);
+            for (Expr value : ((Expr.MapLiteral) expr).values) collectGlobals(value);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package ByteCode;
+
+import Semantica.ArrayValue;
+import Semantica.Builtins;
+import Semantica.FieldCache;
+import Semantica.Interpreter;
+import Semantica.MapValue;
+import Semantica.RecordType;
+import Semantica.SwitchTable;
+import Semantica.Values;
+import Sintatica.Stmt;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// VM de registos: alternativa à VM de pilha que executa um RegisterChunk.
+// As globais vivem em registos fixos do frame, por isso ler ou escrever uma variável não passa
+// pelo mapa de globais nem pela pilha; os valores usam as mesmas regras de ValueOps.
+public class RegisterVM {
+
+    private static final RegOp[] OPS = RegOp.values();
+
+    // Valor dos registos de globais ainda não definidas
+    private static final Object UNDEFINED = JitRuntime.UNDEFINED;
+
+    private Object[] registers;
+    private Object[] constants;
+    private int[] lines;
+    // Cache de forma de cada GET_FIELD / SET_FIELD, indexado pela instrução
+    private FieldCache[] fieldCaches;
+
+    // Modo misto: o Interpreter vê as globais através deste mapa
+    private final Map<String, Object> globals = new HashMap<>();
+    private Interpreter interpreter;
+
+    private long instructions;
+    private long interpretedStatements;
+    private long interpretedNanos;
+
+    public boolean interpret(RegisterChunk chunk) {
+        int[] code = chunk.code;
+        this.constants = chunk.constants.toArray();
+        this.lines = chunk.lines;
+        this.fieldCaches = new FieldCache[chunk.instructionCount()];
+        this.registers = new Object[Math.max(chunk.registerCount, 1)];
+        int globalCount = chunk.globalNames.size();
+        for (int i = 0; i < globalCount; i++) registers[i] = UNDEFINED;
+
+        Object[] r = registers;
+        int pc = 0;
+        while (true) {
+            int index = pc;
+            int base = pc * 4;
+            int a = code[base + 1];
+            int b = code[base + 2];
+            int c = code[base + 3];
+            pc++;
+            instructions++;
+
+            RegOp op = OPS[code[base]];
+            switch (op) {
+                case MOVE:      r[a] = rk(b); break;
+                case LOAD_NIL:  r[a] = null; break;
+                case LOAD_BOOL: r[a] = b != 0; break;
+
+                case ADD:
+                case SUBTRACT:
+                case MULTIPLY:
+                case DIVIDE:
+                case EQUAL:
+                case NOT_EQUAL:
+                case LESS:
+                case GREATER:
+                case LESS_EQUAL:
+                case GREATER_EQUAL:
+                    r[a] = ValueOps.compute(op.valueOp(), rk(b), rk(c), lines[index]);
+                    break;
+                case NOT:
+                    r[a] = !ValueOps.isTruthy(rk(b));
+                    break;
+                case NEGATE: {
+                    try {
+                        r[a] = ValueOps.negate(rk(b));
+                    } catch (Values.ErroOperando e) {
+                        ValueOps.runtimeError(e.getMessage(), lines[index]);
+                        r[a] = null;
+                    }
+                    break;
+                }
+                case INC:
+                    r[a] = ValueOps.compute(OpCode.OP_ADD, r[a], 1, lines[index]);
+                    break;
+                case DEC:
+                    r[a] = ValueOps.compute(OpCode.OP_SUBTRACT, r[a], 1, lines[index]);
+                    break;
+
+                // Vetores: como na VM de pilha, um erro é reportado e o resultado fica 'nulo'
+                case NEW_ARRAY:
+                    r[a] = ArrayValue.of(Arrays.copyOfRange(r, b, b + c));
+                    break;
+                case GET_INDEX:
+                    try {
+                        r[a] = Builtins.index(rk(b), rk(c));
+                    } catch (Builtins.Erro e) {
+                        ValueOps.runtimeError(e.getMessage(), lines[index]);
+                        r[a] = null;
+                    }
+                    break;
+                case SET_INDEX:
+                    try {
+                        Builtins.store(rk(a), rk(b), rk(c));
+                    } catch (Builtins.Erro e) {
+                        ValueOps.runtimeError(e.getMessage(), lines[index]);
+                    }
+                    break;
+                case LENGTH:
+                    try {
+                        r[a] = Builtins.length(rk(b));
+                    } catch (Builtins.Erro e) {
+                        ValueOps.runtimeError(e.getMessage(), lines[index]);
+                        r[a] = null;
+                    }
+                    break;
+
+                case NEW_MAP:
+                    r[a] = MapValue.of(Arrays.copyOfRange(r, b, b + 2 * c));
+                    break;
+                case INVOKE: {
+                    String method = (String) constants[c];
+                    int arity = Builtins.aridade(method);
+                    try {
+                        r[a] = Builtins.invoke(r[b], method, arity > 0 ? r[b + 1] : null, arity > 1 ? r[b + 2] : null);
+                    } catch (Builtins.Erro e) {
+                        ValueOps.runtimeError(e.getMessage(), lines[index]);
+                        r[a] = null;
+                    }
+                    break;
+                }
+
+                // Registros: o FieldCache da instrução guarda o slot do campo para a última forma vista
+                case NEW_RECORD: {
+                    RecordType type = (RecordType) constants[c];
+                    r[a] = type.create(Arrays.copyOfRange(r, b, b + type.shape.size()));
+                    break;
+                }
+                case GET_FIELD:
+                    try {
+                        r[a] = fieldCache(index, c).get(rk(b));
+                    } catch (Builtins.Erro e) {
+                        ValueOps.runtimeError(e.getMessage(), lines[index]);
+                        r[a] = null;
+                    }
+                    break;
+                case SET_FIELD:
+                    try {
+                        fieldCache(index, c).set(rk(a), rk(b));
+                    } catch (Builtins.Erro e) {
+                        ValueOps.runtimeError(e.getMessage(), lines[index]);
+                    }
+                    break;
+
+                // Sequências preguiçosas: o iterador de um FAZAVOLTA (VAR x : ...) vive num temporário
+                case RANGE:
+                    try {
+                        r[a] = Builtins.range(rk(b), rk(c));
+                    } catch (Builtins.Erro e) {
+                        ValueOps.runtimeError(e.getMessage(), lines[index]);
+                        r[a] = null;
+                    }
+                    break;
+                case ITER:
+                    try {
+                        r[a] = Builtins.iterator(rk(b));
+                    } catch (Builtins.Erro e) {
+                        ValueOps.runtimeError(e.getMessage(), lines[index]);
+                        r[a] = Collections.emptyIterator();
+                    }
+                    break;
+                case FOR_NEXT: {
+                    Iterator<?> iterator = (Iterator<?>) r[b];
+                    if (iterator.hasNext()) {
+                        r[a] = iterator.next();
+                    } else {
+                        pc = c;
+                    }
+                    break;
+                }
+
+                case CHECK_DEFINED:
+                    if (r[a] == UNDEFINED) {
+                        ValueOps.runtimeError("Variável '" + constants[b] + "' não definida.", lines[index]);
+                        return false;
+                    }
+                    break;
+                case CHECK_ASSIGN:
+                    if (r[a] == UNDEFINED) {
+                        ValueOps.runtimeError("Variável '" + constants[b] + "' não definida. Não é possível atribuir.", lines[index]);
+                        return false;
+                    }
+                    break;
+
+                case PRINT:
+                    System.out.println(ValueOps.stringify(rk(a)));
+                    break;
+                case INPUT:
+                    System.out.print("> ");
+                    r[a] = ValueOps.parseInput(ValueOps.readLine());
+                    break;
+
+                case JUMP:
+                    pc = c;
+                    break;
+                case JUMP_IF_FALSE:
+                    if (!ValueOps.isTruthy(rk(a))) pc = c;
+                    break;
+                case JUMP_IF_TRUE:
+                    if (ValueOps.isTruthy(rk(a))) pc = c;
+                    break;
+                case JUMP_IF_NOT_LESS:
+                case JUMP_IF_NOT_GREATER:
+                case JUMP_IF_NOT_EQUAL:
+                case JUMP_IF_EQUAL:
+                case JUMP_IF_NOT_LESS_EQUAL:
+                case JUMP_IF_NOT_GREATER_EQUAL:
+                    if (!ValueOps.isTruthy(ValueOps.compute(op.valueOp(), rk(a), rk(b), lines[index]))) pc = c;
+                    break;
+
+                case SWITCH: {
+                    SwitchTable table = (SwitchTable) constants[b];
+                    int entry = table.lookup(rk(a));
+                    pc += entry >= 0 ? entry : table.size();
+                    break;
+                }
+
+                case INTERPRET:
+                    if (!runInterpreted((Stmt) constants[a], chunk.globalNames)) return false;
+                    break;
+
+                case RETURN:
+                    System.out.println("VM: Execução terminada.");
+                    return true;
+
+                default:
+                    System.err.println("VM Erro: Opcode desconhecido " + op);
+                    return false;
+            }
+        }
+    }
+
+    public long getInstructions() { return instructions; }
+
+    public long getInterpretedStatements() { return interpretedStatements; }
+
+    public long getInterpretedNanos() { return interpretedNanos; }
+
+    // Interpreter dos comandos delegados (com as funções e os caches de memoização), ou null se nenhum foi
+    public Interpreter getInterpreter() { return interpreter; }
+
+    private FieldCache fieldCache(int index, int name) {
+        FieldCache cache = fieldCaches[index];
+        if (cache == null) {
+            cache = new FieldCache((String) constants[name]);
+            fieldCaches[index] = cache;
+        }
+        return cache;
+    }
+
+    private Object rk(int operand) {
+        return operand >= 0 ? registers[operand] : constants[~operand];
+    }
+
+    // Copia os registos das globais para o mapa, corre o comando e traz as alterações de volta
+    private boolean runInterpreted(Stmt statement, List<String> names) {
+        for (int i = 0; i < names.size(); i++) {
+            if (registers[i] != UNDEFINED) globals.put(names.get(i), registers[i]);
+        }
+        if (interpreter == null) {
+            interpreter = new Interpreter(globals);
+        }
+        long start = System.nanoTime();
+        try {
+            interpreter.executar(statement);
+        } catch (RuntimeException error) {
+            System.err.println("Erro de execução: " + error.getMessage());
+            return false;
+        } finally {
+            interpretedStatements++;
+            interpretedNanos += System.nanoTime() - start;
+            for (int i = 0; i < names.size(); i++) {
+                if (globals.containsKey(names.get(i))) registers[i] = globals.get(names.get(i));
+            }
+        }
+        return true;
+    }
+}
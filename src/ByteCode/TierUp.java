@@ -0,0 +1,52 @@
+package ByteCode;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Perfil de execução da VM e promoção para o nível compilado (JitCompiler).
+// A VM incrementa um contador por laço a cada back-edge (OP_LOOP). Quando um laço fica quente,
+// o chunk é compilado numa thread de fundo enquanto a VM continua a interpretar; no próximo
+// back-edge depois de a compilação terminar a VM troca para o código compilado (OSR).
+final class TierUp {
+
+    // Back-edges de um mesmo laço até pedir a compilação
+    static final int HOT_LOOP_THRESHOLD = 2000;
+
+    private static final ExecutorService COMPILER_THREAD = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cpqp-jit");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Chunk chunk;
+    private final int[] backEdges; // contador por posição de OP_LOOP
+    private boolean requested;
+    private volatile JitCompiler.CompiledProgram compiled;
+
+    TierUp(Chunk chunk) {
+        this.chunk = chunk;
+        this.backEdges = new int[chunk.code.size()];
+    }
+
+    // Chamado pela VM em cada OP_LOOP; devolve o programa compilado quando já é possível trocar
+    JitCompiler.CompiledProgram onBackEdge(int loopPc, int targetPc) {
+        JitCompiler.CompiledProgram ready = compiled;
+        if (ready != null) {
+            return ready.canEnterAt(targetPc) ? ready : null;
+        }
+        if (!requested && ++backEdges[loopPc] >= HOT_LOOP_THRESHOLD) {
+            requested = true;
+            COMPILER_THREAD.execute(this::compile);
+        }
+        return null;
+    }
+
+    private void compile() {
+        try {
+            compiled = JitCompiler.compile(chunk);
+        } catch (JitCompiler.NaoSuportado e) {
+            // O chunk usa algo que o backend JVM não traduz: continua tudo na VM
+            compiled = null;
+        }
+    }
+}
@@ -1,9 +1,19 @@
 package ByteCode;
 
+import Semantica.ArrayValue;
+import Semantica.Builtins;
+import Semantica.FieldCache;
+import Semantica.Interpreter;
+import Semantica.MapValue;
+import Semantica.RecordType;
+import Semantica.SwitchTable;
+import Semantica.Values;
+import Sintatica.Stmt;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Stack;
-import java.util.Scanner;
 
 //A Máquina Virtual (VM) que executa o bytecode.
 
@@ -11,21 +21,61 @@ public class VM {
 
     private Chunk chunk;
     private int ip; // Instruction Pointer
-    private Stack<Object> stack;
+    // Pilha de operandos pré-alocada com a altura máxima calculada pelo Verifier
+    private Object[] stack;
+    private int sp;
+    // Contador e limite de cada FAZAVOLTA contado, desembrulhados (slots do OP_FOR_PREP)
+    private int[] counters;
+    private int[] limits;
+    // Invariantes e produtos dos laços (OP_LOOP_*), guardados entre voltas
+    private LoopValues loopValues;
+    // Temporários do IrLowering (OP_GET_LOCAL / OP_SET_LOCAL)
+    private Object[] locals;
     private Map<String, Object> globals;
+    // Cache de forma de cada OP_GET_FIELD / OP_SET_FIELD, indexado pela posição da instrução
+    private FieldCache[] fieldCaches;
 
-    // NOVO: Scanner para ler a entrada do console
-    private final Scanner consoleInput;
+    // Cópia única de OpCode.values(): o método cria um array novo a cada chamada
+    private static final OpCode[] OPCODES = OpCode.values();
+
+    // Promoção de laços quentes para o JitCompiler (null quando desligada)
+    private final boolean tierUpEnabled;
+    private TierUp tierUp;
+    private boolean osrResult;
+
+    // Modo misto: comandos que o Compiler não traduz correm no Interpreter, com as mesmas globais
+    private final MixedMode mixedMode;
+
+    // Estatísticas da execução: instruções da VM (as do interpretador ficam no MixedMode)
+    private long vmInstructions;
 
     public VM() {
-        this.stack = new Stack<>();
+        this(true);
+    }
+
+    public VM(boolean tierUpEnabled) {
         this.globals = new HashMap<>();
-        this.consoleInput = new Scanner(System.in); // Inicializa o scanner
+        this.tierUpEnabled = tierUpEnabled;
+        this.mixedMode = new MixedMode(globals);
     }
 
     public boolean interpret(Chunk chunk) {
         this.chunk = chunk;
         this.ip = 0;
+        try {
+            Verifier.Resultado verificado = Verifier.verify(chunk);
+            this.stack = new Object[Math.max(verificado.maxDepth, 1)];
+            this.counters = new int[verificado.counters];
+            this.limits = new int[verificado.counters];
+            this.loopValues = new LoopValues(verificado.loopValues);
+            this.locals = new Object[verificado.locals];
+        } catch (Verifier.Rejeitado e) {
+            System.err.println("VM Erro: bytecode inválido: " + e.getMessage());
+            return false;
+        }
+        this.sp = 0;
+        this.fieldCaches = new FieldCache[chunk.code.size()];
+        this.tierUp = tierUpEnabled ? new TierUp(chunk) : null;
 
         while (true) {
             int instruction;
@@ -35,7 +85,8 @@ public class VM {
                 return true; // Fim do bytecode
             }
 
-            OpCode op = OpCode.values()[instruction];
+            OpCode op = OPCODES[instruction];
+            vmInstructions++;
 
             // ESTE É O SWITCH COMPLETO COM TODOS OS CASES
             switch (op) {
@@ -46,47 +97,52 @@ public class VM {
                 }
                 case OP_CONSTANT: { // <-- O OPCODE QUE ESTAVA A FALTAR
                     int constIndex = chunk.code.get(ip++);
-                    stack.push(chunk.constants.get(constIndex));
+                    push(chunk.constants.get(constIndex));
                     break;
                 }
-                case OP_POP: stack.pop(); break;
+                case OP_POP: pop(); break;
 
                 // --- Literais ---
-                case OP_NIL: stack.push(null); break;
-                case OP_TRUE: stack.push(true); break;
-                case OP_FALSE: stack.push(false); break;
+                case OP_NIL: push(null); break;
+                case OP_TRUE: push(true); break;
+                case OP_FALSE: push(false); break;
 
                 // --- Aritmética ---
                 case OP_NEGATE: {
-                    Object value = stack.pop();
-                    if (value instanceof Double) stack.push(-(Double) value);
-                    else if (value instanceof Integer) stack.push(-(Integer) value);
-                    else { runtimeError("Operando deve ser um número."); }
+                    Object value = pop();
+                    try {
+                        push(ValueOps.negate(value));
+                    } catch (Values.ErroOperando e) {
+                        runtimeError(e.getMessage());
+                        push(null); // Evita falha
+                    }
                     break;
                 }
-                case OP_ADD:      binaryOp("+"); break;
-                case OP_SUBTRACT: binaryOp("-"); break;
-                case OP_MULTIPLY: binaryOp("*"); break;
-                case OP_DIVIDE:   binaryOp("/"); break;
+                case OP_ADD:
+                case OP_SUBTRACT:
+                case OP_MULTIPLY:
+                case OP_DIVIDE:
+                case OP_GREATER:
+                case OP_LESS:
+                    binaryOp(op);
+                    break;
 
                 // --- Lógica ---
-                case OP_GREATER:  binaryOp(">"); break;
-                case OP_LESS:     binaryOp("<"); break;
-                case OP_EQUAL: {
-                    Object b = stack.pop();
-                    Object a = stack.pop();
-                    stack.push(isEqual(a, b));
+                case OP_EQUAL:
+                case OP_NOT_EQUAL:
+                case OP_LESS_EQUAL:
+                case OP_GREATER_EQUAL:
+                    binaryOp(op);
                     break;
-                }
                 case OP_NOT:
-                    stack.push(!isTruthy(stack.pop()));
+                    push(!isTruthy(pop()));
                     break;
 
                 // --- Variáveis Globais ---
                 case OP_DEFINE_GLOBAL: {
                     int constIndex = chunk.code.get(ip++);
                     String varName = (String) chunk.constants.get(constIndex);
-                    globals.put(varName, stack.pop());
+                    globals.put(varName, pop());
                     break;
                 }
                 case OP_GET_GLOBAL: {
@@ -96,7 +152,7 @@ public class VM {
                         runtimeError("Variável '" + varName + "' não definida.");
                         return false;
                     }
-                    stack.push(globals.get(varName));
+                    push(globals.get(varName));
                     break;
                 }
                 case OP_SET_GLOBAL: {
@@ -106,36 +162,25 @@ public class VM {
                         runtimeError("Variável '" + varName + "' não definida. Não é possível atribuir.");
                         return false;
                     }
-                    globals.put(varName, stack.peek());
+                    globals.put(varName, peek());
                     break;
                 }
 
                 // --- Ação ---
                 case OP_PRINT: {
-                    System.out.println(stringify(stack.pop()));
+                    System.out.println(stringify(pop()));
                     break;
                 }
                 case OP_INPUT: { // <-- O NOVO OPCODE (LEIA)
                     System.out.print("> ");
-                    String line = consoleInput.nextLine();
-                    Object value;
-                    try {
-                        value = Integer.parseInt(line);
-                    } catch (NumberFormatException e1) {
-                        try {
-                            value = Double.parseDouble(line);
-                        } catch (NumberFormatException e2) {
-                            value = line;
-                        }
-                    }
-                    stack.push(value);
+                    push(ValueOps.parseInput(ValueOps.readLine()));
                     break;
                 }
 
                 // --- Controlo de Fluxo ---
                 case OP_JUMP_IF_FALSE: {
                     int offset = readShort();
-                    if (!isTruthy(stack.peek())) {
+                    if (!isTruthy(pop())) {
                         ip += offset;
                     }
                     break;
@@ -146,8 +191,337 @@ public class VM {
                     break;
                 }
                 case OP_LOOP: {
+                    int loopPc = ip - 1;
                     int offset = readShort();
                     ip -= offset;
+                    if (backEdge(loopPc)) return osrResult;
+                    break;
+                }
+
+                // --- Superinstruções ---
+                case OP_INC_GLOBAL:
+                case OP_DEC_GLOBAL: {
+                    int constIndex = chunk.code.get(ip++);
+                    String varName = (String) chunk.constants.get(constIndex);
+                    if (!globals.containsKey(varName)) {
+                        runtimeError("Variável '" + varName + "' não definida.");
+                        return false;
+                    }
+                    OpCode arith = op == OpCode.OP_INC_GLOBAL ? OpCode.OP_ADD : OpCode.OP_SUBTRACT;
+                    Object value = compute(arith, globals.get(varName), 1);
+                    globals.put(varName, value);
+                    push(value);
+                    break;
+                }
+                case OP_JUMP_IF_TRUE: {
+                    int offset = readShort();
+                    if (isTruthy(pop())) {
+                        ip += offset;
+                    }
+                    break;
+                }
+                case OP_JUMP_IF_NOT_LESS:
+                case OP_JUMP_IF_NOT_GREATER:
+                case OP_JUMP_IF_NOT_EQUAL:
+                case OP_JUMP_IF_EQUAL:
+                case OP_JUMP_IF_NOT_LESS_EQUAL:
+                case OP_JUMP_IF_NOT_GREATER_EQUAL: {
+                    int offset = readShort();
+                    Object b = pop();
+                    Object a = pop();
+                    if (!isTruthy(compute(op.comparacao(), a, b))) {
+                        ip += offset;
+                    }
+                    break;
+                }
+
+                // --- Curto-circuito: o operando esquerdo fica como resultado quando decide ---
+                case OP_AND: {
+                    int offset = readShort();
+                    if (!isTruthy(peek())) ip += offset;
+                    else pop();
+                    break;
+                }
+                case OP_OR: {
+                    int offset = readShort();
+                    if (isTruthy(peek())) ip += offset;
+                    else pop();
+                    break;
+                }
+
+                // --- Saltos largos (programas com mais de 64K unidades entre salto e alvo) ---
+                case OP_JUMP_W: {
+                    int offset = readWide(); // lido antes de somar: readWide avança o ip
+                    ip += offset;
+                    break;
+                }
+                case OP_JUMP_IF_FALSE_W: {
+                    int offset = readWide();
+                    if (!isTruthy(pop())) ip += offset;
+                    break;
+                }
+                case OP_JUMP_IF_TRUE_W: {
+                    int offset = readWide();
+                    if (isTruthy(pop())) ip += offset;
+                    break;
+                }
+                case OP_LOOP_W: {
+                    int loopPc = ip - 1;
+                    int offset = readWide();
+                    ip -= offset;
+                    if (backEdge(loopPc)) return osrResult;
+                    break;
+                }
+                case OP_AND_W: {
+                    int offset = readWide();
+                    if (!isTruthy(peek())) ip += offset;
+                    else pop();
+                    break;
+                }
+                case OP_OR_W: {
+                    int offset = readWide();
+                    if (isTruthy(peek())) ip += offset;
+                    else pop();
+                    break;
+                }
+                case OP_JUMP_IF_NOT_LESS_W:
+                case OP_JUMP_IF_NOT_GREATER_W:
+                case OP_JUMP_IF_NOT_EQUAL_W:
+                case OP_JUMP_IF_EQUAL_W:
+                case OP_JUMP_IF_NOT_LESS_EQUAL_W:
+                case OP_JUMP_IF_NOT_GREATER_EQUAL_W: {
+                    int offset = readWide();
+                    Object b = pop();
+                    Object a = pop();
+                    if (!isTruthy(compute(op.comparacao(), a, b))) ip += offset;
+                    break;
+                }
+
+                // --- ESCOLHEAI: salta para a entrada idx da tabela que segue a instrução ---
+                case OP_SWITCH: {
+                    SwitchTable table = (SwitchTable) chunk.constants.get(chunk.code.get(ip++));
+                    int index = table.lookup(pop());
+                    if (index < 0) index = table.size(); // PADRAO
+                    ip += index * OpCode.ENTRADA_SWITCH;
+                    break;
+                }
+
+                // --- FAZAVOLTA contado ---
+                case OP_FOR_PREP:
+                case OP_FOR_PREP_W: {
+                    int slot = chunk.code.get(ip++);
+                    OpCode compare = OPCODES[chunk.code.get(ip++)];
+                    int offset = op.isWide() ? readWide() : readShort();
+                    Object limit = pop();
+                    Object start = pop();
+                    if (start instanceof Integer && limit instanceof Integer
+                            && ValueOps.compareInts(compare, (Integer) start, (Integer) limit)) {
+                        counters[slot] = (Integer) start;
+                        limits[slot] = (Integer) limit;
+                    } else {
+                        ip += offset; // versão genérica: também trata a condição já falsa
+                    }
+                    break;
+                }
+                case OP_FOR_LOOP:
+                case OP_FOR_LOOP_W: {
+                    int loopPc = ip - 1;
+                    int slot = chunk.code.get(ip++);
+                    int step = chunk.code.get(ip++);
+                    OpCode compare = OPCODES[chunk.code.get(ip++)];
+                    int offset = op.isWide() ? readWide() : readShort();
+                    int value = counters[slot] + step;
+                    counters[slot] = value;
+                    if (ValueOps.compareInts(compare, value, limits[slot])) {
+                        ip -= offset;
+                        if (backEdge(loopPc)) return osrResult;
+                    }
+                    break;
+                }
+                case OP_GET_COUNTER:
+                    push(counters[chunk.code.get(ip++)]);
+                    break;
+
+                // --- Temporários do IrLowering ---
+                case OP_GET_LOCAL:
+                    push(locals[chunk.code.get(ip++)]);
+                    break;
+                case OP_SET_LOCAL:
+                    locals[chunk.code.get(ip++)] = pop();
+                    break;
+
+                // --- Valores de laço ---
+                case OP_LOOP_CLEAR:
+                    loopValues.clear(chunk.code.get(ip++));
+                    break;
+                case OP_LOOP_VALUE:
+                case OP_LOOP_VALUE_W: {
+                    int slot = chunk.code.get(ip++);
+                    int offset = op.isWide() ? readWide() : readShort();
+                    Object value = loopValues.get(slot);
+                    if (value != null) {
+                        push(value);
+                        ip += offset;
+                    }
+                    break;
+                }
+                case OP_LOOP_KEEP:
+                    loopValues.keep(chunk.code.get(ip++), peek());
+                    break;
+                case OP_LOOP_DERIVE: {
+                    int slot = chunk.code.get(ip++);
+                    int step = (Integer) pop();
+                    Object factor = pop();
+                    Object counter = pop();
+                    push(loopValues.derive(slot, counter, factor, step, chunk.lines.get(ip - 1)));
+                    break;
+                }
+                case OP_LOOP_ADVANCE:
+                    loopValues.advance(chunk.code.get(ip++));
+                    break;
+
+                // --- Vetores: um erro é reportado e o resultado fica 'nulo', como nos operandos ---
+                case OP_ARRAY: {
+                    Object[] values = new Object[chunk.code.get(ip++)];
+                    sp -= values.length;
+                    System.arraycopy(stack, sp, values, 0, values.length);
+                    Arrays.fill(stack, sp, sp + values.length, null);
+                    push(ArrayValue.of(values));
+                    break;
+                }
+                case OP_GET_INDEX: {
+                    Object index = pop();
+                    Object array = pop();
+                    try {
+                        push(Builtins.index(array, index));
+                    } catch (Builtins.Erro e) {
+                        runtimeError(e.getMessage());
+                        push(null);
+                    }
+                    break;
+                }
+                case OP_SET_INDEX: {
+                    Object value = pop();
+                    Object index = pop();
+                    Object array = pop();
+                    try {
+                        Builtins.store(array, index, value);
+                    } catch (Builtins.Erro e) {
+                        runtimeError(e.getMessage());
+                    }
+                    push(value);
+                    break;
+                }
+                case OP_LENGTH: {
+                    Object array = pop();
+                    try {
+                        push(Builtins.length(array));
+                    } catch (Builtins.Erro e) {
+                        runtimeError(e.getMessage());
+                        push(null);
+                    }
+                    break;
+                }
+
+                case OP_MAP: {
+                    Object[] pairs = new Object[2 * chunk.code.get(ip++)];
+                    sp -= pairs.length;
+                    System.arraycopy(stack, sp, pairs, 0, pairs.length);
+                    Arrays.fill(stack, sp, sp + pairs.length, null);
+                    push(MapValue.of(pairs));
+                    break;
+                }
+                case OP_INVOKE: {
+                    String method = (String) chunk.constants.get(chunk.code.get(ip++));
+                    int arity = Builtins.aridade(method);
+                    Object b = arity > 1 ? pop() : null;
+                    Object a = arity > 0 ? pop() : null;
+                    Object receiver = pop();
+                    try {
+                        push(Builtins.invoke(receiver, method, a, b));
+                    } catch (Builtins.Erro e) {
+                        runtimeError(e.getMessage());
+                        push(null);
+                    }
+                    break;
+                }
+
+                case OP_NEW_RECORD: {
+                    RecordType type = (RecordType) chunk.constants.get(chunk.code.get(ip++));
+                    Object[] values = new Object[type.shape.size()];
+                    sp -= values.length;
+                    System.arraycopy(stack, sp, values, 0, values.length);
+                    Arrays.fill(stack, sp, sp + values.length, null);
+                    push(type.create(values));
+                    break;
+                }
+                case OP_GET_FIELD: {
+                    FieldCache cache = fieldCache(ip - 1);
+                    ip++;
+                    Object record = pop();
+                    try {
+                        push(cache.get(record));
+                    } catch (Builtins.Erro e) {
+                        runtimeError(e.getMessage());
+                        push(null);
+                    }
+                    break;
+                }
+                case OP_SET_FIELD: {
+                    FieldCache cache = fieldCache(ip - 1);
+                    ip++;
+                    Object value = pop();
+                    Object record = pop();
+                    try {
+                        cache.set(record, value);
+                    } catch (Builtins.Erro e) {
+                        runtimeError(e.getMessage());
+                    }
+                    push(value);
+                    break;
+                }
+
+                // --- Sequências preguiçosas ---
+                case OP_RANGE: {
+                    Object end = pop();
+                    Object start = pop();
+                    try {
+                        push(Builtins.range(start, end));
+                    } catch (Builtins.Erro e) {
+                        runtimeError(e.getMessage());
+                        push(null);
+                    }
+                    break;
+                }
+                case OP_ITER: {
+                    Object sequence = pop();
+                    try {
+                        push(Builtins.iterator(sequence));
+                    } catch (Builtins.Erro e) {
+                        runtimeError(e.getMessage());
+                        push(Collections.emptyIterator()); // o laço não dá nenhuma volta
+                    }
+                    break;
+                }
+                case OP_FOR_NEXT:
+                case OP_FOR_NEXT_W: {
+                    String name = (String) chunk.constants.get(chunk.code.get(ip++));
+                    int offset = op.isWide() ? readWide() : readShort();
+                    Iterator<?> iterator = (Iterator<?>) globals.get(name);
+                    if (iterator.hasNext()) {
+                        push(iterator.next());
+                    } else {
+                        ip += offset;
+                    }
+                    break;
+                }
+
+                // --- Modo misto ---
+                case OP_INTERPRET: {
+                    int constIndex = chunk.code.get(ip++);
+                    if (!mixedMode.execute((Stmt) chunk.constants.get(constIndex))) {
+                        return false;
+                    }
                     break;
                 }
 
@@ -158,54 +532,56 @@ public class VM {
         }
     }
 
+    public long getVmInstructions() { return vmInstructions; }
+
+    public int getMaxStack() { return stack == null ? 0 : stack.length; }
+
+    public long getInterpretedStatements() { return mixedMode.statements(); }
+
+    public long getInterpretedNanos() { return mixedMode.nanos(); }
+
+    // Interpreter dos comandos delegados (com as funções e os caches de memoização), ou null se nenhum foi
+    public Interpreter getInterpreter() { return mixedMode.interpreter(); }
+
     // --- Funções Auxiliares da VM ---
 
-    private void binaryOp(String op) {
-        Object b = stack.pop();
-        Object a = stack.pop();
+    private void push(Object value) {
+        stack[sp++] = value;
+    }
 
-        // Lógica de String para OP_ADD
-        if (op.equals("+")) {
-            if (a instanceof String || b instanceof String) {
-                stack.push(stringify(a) + stringify(b));
-                return;
-            }
-        }
+    private Object pop() {
+        Object value = stack[--sp];
+        stack[sp] = null; // não segura referências mortas
+        return value;
+    }
 
-        // Lógica de Números (para todas as ops)
-        if (!(a instanceof Number) || !(b instanceof Number)) {
-            runtimeError("Operandos devem ser números para a operação '" + op + "'.");
-            stack.push(null); // Evita falha
-            return;
-        }
+    private Object peek() {
+        return stack[sp - 1];
+    }
 
-        // Lógica de conversão Double/Integer
-        if (a instanceof Double || b instanceof Double) {
-            double valA = (a instanceof Integer) ? ((Integer) a).doubleValue() : (Double) a;
-            double valB = (b instanceof Integer) ? ((Integer) b).doubleValue() : (Double) b;
-            switch(op) {
-                case "+": stack.push(valA + valB); break;
-                case "-": stack.push(valA - valB); break;
-                case "*": stack.push(valA * valB); break;
-                case "/": // (TODO: Adicionar checagem de divisão por zero)
-                    stack.push(valA / valB); break;
-                case ">": stack.push(valA > valB); break;
-                case "<": stack.push(valA < valB); break;
-            }
-        } else {
-            // Ambos são Inteiros
-            int valA = (Integer) a;
-            int valB = (Integer) b;
-            switch(op) {
-                case "+": stack.push(valA + valB); break;
-                case "-": stack.push(valA - valB); break;
-                case "*": stack.push(valA * valB); break;
-                case "/": // (TODO: Adicionar checagem de divisão por zero)
-                    stack.push(valA / valB); break;
-                case ">": stack.push(valA > valB); break;
-                case "<": stack.push(valA < valB); break;
-            }
-        }
+    private void binaryOp(OpCode op) {
+        Object b = pop();
+        Object a = pop();
+        push(compute(op, a, b));
+    }
+
+    private Object compute(OpCode op, Object a, Object b) {
+        return ValueOps.compute(op, a, b, chunk.lines.get(ip - 1));
+    }
+
+    // OP_LOOP: conta o back-edge e, se o laço já foi compilado, continua o programa no JIT (OSR).
+    // Devolve true quando a execução terminou no código compilado, com o resultado em osrResult.
+    private boolean backEdge(int loopPc) {
+        if (tierUp == null) return false;
+        JitCompiler.CompiledProgram compiled = tierUp.onBackEdge(loopPc, ip);
+        if (compiled == null) return false;
+        osrResult = compiled.enterAt(ip, mixedMode, counters, limits, locals);
+        return true;
+    }
+
+    private int readWide() {
+        int high = readShort();
+        return (high << 16) | readShort();
     }
 
     private int readShort() {
@@ -214,32 +590,30 @@ public class VM {
         return (high << 8) | low;
     }
 
+    // Cache da instrução de campo em 'at', criado na primeira execução com o nome da constante
+    private FieldCache fieldCache(int at) {
+        FieldCache cache = fieldCaches[at];
+        if (cache == null) {
+            cache = new FieldCache((String) chunk.constants.get(chunk.code.get(at + 1)));
+            fieldCaches[at] = cache;
+        }
+        return cache;
+    }
+
     private void runtimeError(String message) {
         System.err.println(message + " [linha " + chunk.lines.get(ip - 1) + "]");
     }
 
     private String stringify(Object object) {
-        if (object == null) return "nulo";
-        if (object instanceof Boolean) return (Boolean) object ? "verdadeiro" : "falso";
-        if (object instanceof Double) {
-            String text = object.toString();
-            if (text.endsWith(".0")) {
-                return text.substring(0, text.length() - 2);
-            }
-        }
-        return object.toString();
+        return ValueOps.stringify(object);
     }
 
     private boolean isTruthy(Object object) {
-        if (object == null) return false;
-        if (object instanceof Boolean) return (boolean) object;
-        return true;
+        return ValueOps.isTruthy(object);
     }
 
     private boolean isEqual(Object a, Object b) {
-        if (a == null && b == null) return true;
-        if (a == null) return false;
-        return a.equals(b);
+        return ValueOps.isEqual(a, b);
     }
 
     // --- Casos de Switch que omiti por brevidade ---
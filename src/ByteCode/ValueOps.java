@@ -0,0 +1,87 @@
+package ByteCode;
+
+import Lexica.TokenType;
+import Semantica.Values;
+
+// Semântica dos valores da VM (aritmética, comparação, verdade e impressão).
+// As regras ficam em Semantica.Values, partilhadas com o Interpreter; aqui só se traduz o opcode
+// para o operador, para que a VM, o código JVM gerado pelo JitCompiler e o Interpreter (no modo
+// misto) produzam exatamente o mesmo resultado.
+final class ValueOps {
+
+    // Operador de cada opcode binário, indexado pelo ordinal
+    private static final TokenType[] OPERATORS = new TokenType[OpCode.values().length];
+
+    static {
+        OPERATORS[OpCode.OP_ADD.ordinal()] = TokenType.PLUS;
+        OPERATORS[OpCode.OP_SUBTRACT.ordinal()] = TokenType.MINUS;
+        OPERATORS[OpCode.OP_MULTIPLY.ordinal()] = TokenType.STAR;
+        OPERATORS[OpCode.OP_DIVIDE.ordinal()] = TokenType.SLASH;
+        OPERATORS[OpCode.OP_GREATER.ordinal()] = TokenType.GREATER;
+        OPERATORS[OpCode.OP_LESS.ordinal()] = TokenType.LESS;
+        OPERATORS[OpCode.OP_EQUAL.ordinal()] = TokenType.EQUALEQUAL;
+        OPERATORS[OpCode.OP_NOT_EQUAL.ordinal()] = TokenType.BANGEQUAL;
+        OPERATORS[OpCode.OP_LESS_EQUAL.ordinal()] = TokenType.LESSEQUAL;
+        OPERATORS[OpCode.OP_GREATER_EQUAL.ordinal()] = TokenType.GREATEREQUAL;
+    }
+
+    private ValueOps() {}
+
+    static Object binary(OpCode op, Object a, Object b) {
+        return Values.binary(OPERATORS[op.ordinal()], a, b);
+    }
+
+    // Resultado de um opcode binário como a VM o produz (ver Values.compute)
+    static Object compute(OpCode op, Object a, Object b, int line) {
+        return Values.compute(OPERATORS[op.ordinal()], a, b, line);
+    }
+
+    // Comparação de ordem entre dois inteiros já desembrulhados (contador do FAZAVOLTA)
+    static boolean compareInts(OpCode op, int a, int b) {
+        switch (op) {
+            case OP_LESS:          return a < b;
+            case OP_LESS_EQUAL:    return a <= b;
+            case OP_GREATER:       return a > b;
+            case OP_GREATER_EQUAL: return a >= b;
+            default: throw new IllegalArgumentException("Comparação de contador inválida: " + op);
+        }
+    }
+
+    static void runtimeError(String message, int line) {
+        Values.runtimeError(message, line);
+    }
+
+    static Object negate(Object value) {
+        return Values.negate(value);
+    }
+
+    static String stringify(Object object) {
+        return Values.stringify(object);
+    }
+
+    static boolean isTruthy(Object object) {
+        return Values.isTruthy(object);
+    }
+
+    static boolean isEqual(Object a, Object b) {
+        return Values.isEqual(a, b);
+    }
+
+    // O leitor do console é o de Values, o mesmo do Interpreter
+    static String readLine() {
+        return Values.readLine();
+    }
+
+    // Converte a linha lida do console em inteiro, depois double, senão mantém string
+    static Object parseInput(String line) {
+        try {
+            return Integer.parseInt(line);
+        } catch (NumberFormatException e1) {
+            try {
+                return Double.parseDouble(line);
+            } catch (NumberFormatException e2) {
+                return line;
+            }
+        }
+    }
+}
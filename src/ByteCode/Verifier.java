@@ -0,0 +1,227 @@
+package ByteCode;
+
+import Semantica.Builtins;
+import Semantica.RecordType;
+import Semantica.SwitchTable;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+// Verificador de bytecode: interpretação abstrata sobre a altura da pilha.
+// Percorre todos os caminhos do Chunk calculando quantos valores estão na pilha antes de cada
+// instrução e recusa código em que dois caminhos chegam ao mesmo ponto com alturas diferentes,
+// em que a pilha ficaria negativa, ou que termina com valores esquecidos na pilha.
+// A VM usa a altura máxima para alocar a pilha de uma vez; o JitCompiler, para max_stack.
+public final class Verifier {
+
+    private Verifier() {}
+
+    // Código recusado pelo verificador
+    public static final class Rejeitado extends RuntimeException {
+        Rejeitado(String message) {
+            super(message);
+        }
+    }
+
+    public static final class Resultado {
+        // Altura da pilha antes de cada posição do código (-1 quando inalcançável ou operando)
+        public final int[] depth;
+        public final int maxDepth;
+        // Slots de contador usados pelos FAZAVOLTA contados (maior slot + 1)
+        public final int counters;
+        // Slots de valores de laço (LoopValues) usados pelos OP_LOOP_* (maior slot + 1)
+        public final int loopValues;
+        // Temporários usados por OP_GET_LOCAL / OP_SET_LOCAL (maior slot + 1)
+        public final int locals;
+
+        Resultado(int[] depth, int maxDepth, int counters, int loopValues, int locals) {
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.counters = counters;
+            this.loopValues = loopValues;
+            this.locals = locals;
+        }
+    }
+
+    public static Resultado verify(Chunk chunk) {
+        List<Integer> code = chunk.code;
+        OpCode[] opcodes = OpCode.values();
+
+        // Inícios de instrução, para recusar saltos para o meio de um operando
+        boolean[] start = new boolean[code.size() + 1];
+        int pc = 0;
+        while (pc < code.size()) {
+            int instruction = code.get(pc);
+            if (instruction < 0 || instruction >= opcodes.length) {
+                throw new Rejeitado("Opcode inválido " + instruction + " na posição " + pc);
+            }
+            start[pc] = true;
+            pc += 1 + opcodes[instruction].operandos();
+        }
+        if (pc != code.size()) throw new Rejeitado("Última instrução cortada na posição " + pc);
+        start[code.size()] = true; // fim do código
+
+        int[] depth = new int[code.size() + 1];
+        Arrays.fill(depth, -1);
+        Deque<Integer> work = new ArrayDeque<>();
+        depth[0] = 0;
+        work.push(0);
+        int maxDepth = 0;
+        int counters = 0;
+        int loopValues = 0;
+        int locals = 0;
+        while (!work.isEmpty()) {
+            pc = work.pop();
+            if (pc == code.size()) {
+                if (depth[pc] != 0) throw new Rejeitado("Fim do código com " + depth[pc] + " valores na pilha");
+                continue;
+            }
+            OpCode op = opcodes[code.get(pc)];
+            int after = depth[pc] + (op.operandos() == 1 ? operandEffect(chunk, pc, op) : stackEffect(op));
+            if (after < 0) {
+                throw new Rejeitado("Pilha negativa em " + op + " na posição " + pc);
+            }
+            maxDepth = Math.max(maxDepth, after);
+            if (op.curto() == OpCode.OP_FOR_PREP || op.curto() == OpCode.OP_FOR_LOOP || op == OpCode.OP_GET_COUNTER) {
+                counters = Math.max(counters, counterSlot(code, pc, op, opcodes) + 1);
+            }
+            if (isLoopValue(op)) {
+                int slot = code.get(pc + 1);
+                if (slot < 0 || slot > 0xFFFF) throw new Rejeitado("Slot de valor de laço inválido em " + op + " na posição " + pc);
+                loopValues = Math.max(loopValues, slot + 1);
+            }
+            if (op == OpCode.OP_GET_LOCAL || op == OpCode.OP_SET_LOCAL) {
+                int slot = code.get(pc + 1);
+                if (slot < 0 || slot > 0xFFFF) throw new Rejeitado("Temporário inválido em " + op + " na posição " + pc);
+                locals = Math.max(locals, slot + 1);
+            }
+            if (op == OpCode.OP_RETURN) {
+                if (depth[pc] != 0) throw new Rejeitado("OP_RETURN com " + depth[pc] + " valores na pilha na posição " + pc);
+                continue;
+            }
+            if (op.curto() == OpCode.OP_FOR_NEXT && !(constantAt(chunk, code.get(pc + 1)) instanceof String)) {
+                throw new Rejeitado("OP_FOR_NEXT sem nome de iterador na posição " + pc);
+            }
+            if (op.isJump()) flow(depth, start, work, JitCompiler.jumpTarget(code, pc), depth[pc] + branchEffect(op), pc);
+            if (op == OpCode.OP_SWITCH) switchEntries(chunk, pc, depth, start, work, after);
+            if (op.curto() != OpCode.OP_JUMP && op.curto() != OpCode.OP_LOOP) flow(depth, start, work, pc + 1 + op.operandos(), after, pc);
+        }
+        return new Resultado(depth, maxDepth, counters, loopValues, locals);
+    }
+
+    // Slot do contador e, nos saltos do FAZAVOLTA, a comparação (uma das quatro de ordem)
+    private static int counterSlot(List<Integer> code, int pc, OpCode op, OpCode[] opcodes) {
+        int slot = code.get(pc + 1);
+        if (slot < 0 || slot > 0xFFFF) throw new Rejeitado("Slot de contador inválido em " + op + " na posição " + pc);
+        if (op == OpCode.OP_GET_COUNTER) return slot;
+        int compare = code.get(pc + op.imediatos());
+        OpCode kind = compare >= 0 && compare < opcodes.length ? opcodes[compare] : null;
+        if (kind != OpCode.OP_LESS && kind != OpCode.OP_LESS_EQUAL
+                && kind != OpCode.OP_GREATER && kind != OpCode.OP_GREATER_EQUAL) {
+            throw new Rejeitado("Comparação inválida em " + op + " na posição " + pc);
+        }
+        return slot;
+    }
+
+    private static boolean isLoopValue(OpCode op) {
+        switch (op.curto()) {
+            case OP_LOOP_CLEAR: case OP_LOOP_VALUE: case OP_LOOP_KEEP: case OP_LOOP_DERIVE: case OP_LOOP_ADVANCE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Opcodes cuja variação da altura depende do operando: OP_ARRAY e OP_MAP consomem os seus
+    // n elementos (ou pares) e deixam o valor novo; OP_INVOKE consome o receptor e os argumentos;
+    // OP_NEW_RECORD consome um valor por campo do tipo
+    private static int operandEffect(Chunk chunk, int pc, OpCode op) {
+        int operand = chunk.code.get(pc + 1);
+        switch (op) {
+            case OP_ARRAY:
+            case OP_MAP:
+                if (operand < 0 || operand > chunk.code.size()) throw new Rejeitado("Tamanho inválido em " + op + " na posição " + pc);
+                return 1 - (op == OpCode.OP_MAP ? 2 * operand : operand);
+            case OP_INVOKE: {
+                Object name = operand >= 0 && operand < chunk.constants.size() ? chunk.constants.get(operand) : null;
+                int aridade = name instanceof String ? Builtins.aridade((String) name) : -1;
+                if (aridade < 0) throw new Rejeitado("Método inválido na posição " + pc);
+                return -aridade;
+            }
+            case OP_NEW_RECORD: {
+                Object type = operand >= 0 && operand < chunk.constants.size() ? chunk.constants.get(operand) : null;
+                if (!(type instanceof RecordType)) throw new Rejeitado("OP_NEW_RECORD sem tipo na posição " + pc);
+                return 1 - ((RecordType) type).shape.size();
+            }
+            default:
+                return stackEffect(op);
+        }
+    }
+
+    // A tabela de um OP_SWITCH: uma entrada OP_JUMP_W por CASO e mais uma para o PADRAO.
+    // A primeira é a instrução seguinte (tratada como fluxo normal); as outras são alcançadas
+    // somando índice * ENTRADA_SWITCH ao ip.
+    private static void switchEntries(Chunk chunk, int pc, int[] depth, boolean[] start,
+                                      Deque<Integer> work, int value) {
+        Object constant = chunk.constants.get(chunk.code.get(pc + 1));
+        if (!(constant instanceof SwitchTable)) {
+            throw new Rejeitado("OP_SWITCH sem tabela na posição " + pc);
+        }
+        int entries = ((SwitchTable) constant).size() + 1;
+        for (int i = 0; i < entries; i++) {
+            int entry = pc + 2 + i * OpCode.ENTRADA_SWITCH;
+            if (entry >= chunk.code.size() || chunk.code.get(entry) != OpCode.OP_JUMP_W.ordinal()) {
+                throw new Rejeitado("Tabela do OP_SWITCH incompleta na posição " + pc);
+            }
+            if (i > 0) flow(depth, start, work, entry, value, pc);
+        }
+    }
+
+    private static void flow(int[] depth, boolean[] start, Deque<Integer> work, int target, int value, int from) {
+        if (target < 0 || target >= depth.length || !start[target]) {
+            throw new Rejeitado("Salto inválido para " + target + " na posição " + from);
+        }
+        if (depth[target] == -1) {
+            depth[target] = value;
+            work.push(target);
+        } else if (depth[target] != value) {
+            throw new Rejeitado("Altura de pilha inconsistente na posição " + target
+                    + " (" + depth[target] + " e " + value + ")");
+        }
+    }
+
+    private static Object constantAt(Chunk chunk, int index) {
+        return index >= 0 && index < chunk.constants.size() ? chunk.constants.get(index) : null;
+    }
+
+    // Variação da altura no caminho do salto: igual à de stackEffect, exceto em OP_AND/OP_OR,
+    // que deixam o operando na pilha quando saltam (é o resultado da expressão), e em
+    // OP_FOR_NEXT, que só empilha quando não salta, e em OP_LOOP_VALUE, que só empilha quando salta
+    static int branchEffect(OpCode op) {
+        OpCode kind = op.curto();
+        if (kind == OpCode.OP_LOOP_VALUE) return 1;
+        return kind == OpCode.OP_AND || kind == OpCode.OP_OR || kind == OpCode.OP_FOR_NEXT ? 0 : stackEffect(op);
+    }
+
+    // Variação da altura da pilha (no caminho que segue para a próxima instrução).
+    // Os saltos condicionais consomem a condição nos dois caminhos.
+    static int stackEffect(OpCode op) {
+        switch (op.curto()) {
+            case OP_CONSTANT: case OP_NIL: case OP_TRUE: case OP_FALSE:
+            case OP_GET_GLOBAL: case OP_INPUT: case OP_INC_GLOBAL: case OP_DEC_GLOBAL:
+            case OP_GET_COUNTER: case OP_FOR_NEXT: case OP_GET_LOCAL:
+                return 1;
+            case OP_FOR_PREP: case OP_SET_INDEX: case OP_LOOP_DERIVE:
+                return -2;
+            case OP_POP: case OP_DEFINE_GLOBAL: case OP_PRINT: case OP_SWITCH:
+            case OP_JUMP_IF_FALSE: case OP_JUMP_IF_TRUE: case OP_AND: case OP_OR:
+            case OP_ADD: case OP_SUBTRACT: case OP_MULTIPLY: case OP_DIVIDE:
+            case OP_GREATER: case OP_LESS: case OP_EQUAL: case OP_GET_INDEX: case OP_SET_FIELD:
+            case OP_NOT_EQUAL: case OP_LESS_EQUAL: case OP_GREATER_EQUAL: case OP_RANGE: case OP_SET_LOCAL:
+                return -1;
+            default:
+                return op.comparacao() != null ? -2 : 0;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package ByteCode;
+
+import Semantica.Builtins;
+import Semantica.SwitchTable;
+import Sintatica.Expr;
+import Sintatica.Stmt;
+
+// Decide que partes da AST o Compiler traduz para bytecode.
+// O que não for suportado é delegado ao Semantica.Interpreter (OP_INTERPRET), comando a comando.
+final class VmSupport implements Expr.Visitor<Boolean>, Stmt.Visitor<Boolean> {
+
+    // Em isFullyNative: nenhum comando aninhado pode ser delegado
+    private boolean strict;
+
+    // O comando pode ser traduzido por completo para bytecode?
+    boolean isNative(Stmt stmt) {
+        return stmt.accept(this);
+    }
+
+    // Como isNative, mas também sem OP_INTERPRET em nenhum comando aninhado
+    // (o corpo de um FAZAVOLTA contado, cujo contador o Interpreter não veria)
+    boolean isFullyNative(Stmt stmt) {
+        boolean saved = strict;
+        strict = true;
+        try {
+            return isNative(stmt);
+        } finally {
+            strict = saved;
+        }
+    }
+
+    // O comando pode aparecer no código da VM, nativo ou delegado ao interpretador?
+    // Um comando delegado não pode conter PAREI que saia dele: o laço que o contém está na VM.
+    boolean isCompilable(Stmt stmt) {
+        return isNative(stmt) || (!strict && !hasEscapingBreak(stmt));
+    }
+
+    // Verdadeiro se algum PAREI dentro do comando interromperia um laço exterior a ele
+    static boolean hasEscapingBreak(Stmt stmt) {
+        if (stmt instanceof Stmt.Break) return true;
+        if (stmt instanceof Stmt.If) {
+            Stmt.If s = (Stmt.If) stmt;
+            return hasEscapingBreak(s.thenBranch) || (s.elseBranch != null && hasEscapingBreak(s.elseBranch));
+        }
+        if (stmt instanceof Stmt.Block) {
+            for (Stmt s : ((Stmt.Block) stmt).statements) {
+                if (hasEscapingBreak(s)) return true;
+            }
+        }
+        // Laços e ESCOLHEAI capturam os seus próprios PAREI; funções têm o seu próprio fluxo
+        return false;
+    }
+
+    private boolean expr(Expr expr) {
+        return expr.accept(this);
+    }
+
+    // Expressão cujo valor é descartado: aí x++ / x-- valem o mesmo que ++x / --x
+    private boolean discarded(Expr expr) {
+        return expr instanceof Expr.Incremento || expr instanceof Expr.Decremento || expr(expr);
+    }
+
+    // --- Comandos ---
+
+    @Override public Boolean visitPrintStmt(Stmt.Print stmt) { return expr(stmt.expression); }
+    @Override public Boolean visitExpressionStmt(Stmt.Expression stmt) { return discarded(stmt.expr); }
+    @Override public Boolean visitInputStmt(Stmt.Input stmt) { return true; }
+    @Override public Boolean visitBreakStmt(Stmt.Break stmt) { return true; }
+    @Override public Boolean visitRecordStmt(Stmt.Record stmt) { return true; }
+
+    @Override
+    public Boolean visitVarStmt(Stmt.Var stmt) {
+        return stmt.initializer == null || expr(stmt.initializer);
+    }
+
+    @Override
+    public Boolean visitIfStmt(Stmt.If stmt) {
+        return expr(stmt.condition)
+                && isCompilable(stmt.thenBranch)
+                && (stmt.elseBranch == null || isCompilable(stmt.elseBranch));
+    }
+
+    @Override
+    public Boolean visitBlockStmt(Stmt.Block stmt) {
+        for (Stmt s : stmt.statements) {
+            if (!isCompilable(s)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean visitWhileStmt(Stmt.While stmt) {
+        return expr(stmt.condition) && isCompilable(stmt.body);
+    }
+
+    @Override
+    public Boolean visitForStmt(Stmt.For stmt) {
+        return (stmt.initializer == null || isNative(stmt.initializer))
+                && (stmt.condition == null || expr(stmt.condition))
+                && (stmt.increment == null || discarded(stmt.increment))
+                && isCompilable(stmt.body);
+    }
+
+    // OP_ITER / OP_FOR_NEXT, com o iterador numa global escondida
+    @Override
+    public Boolean visitForEachStmt(Stmt.ForEach stmt) {
+        return expr(stmt.iterable) && isCompilable(stmt.body);
+    }
+
+    // Só CASO constantes (OP_SWITCH); com CASO calculados o Interpreter compara um a um
+    @Override
+    public Boolean visitSwitchStmt(Stmt.Switch stmt) {
+        if (SwitchTable.of(stmt) == null || !expr(stmt.expr)) return false;
+        if (stmt.cases != null) {
+            for (Stmt.Case cs : stmt.cases) {
+                if (!isCompilable(cs.stmt)) return false;
+            }
+        }
+        return stmt.defaultCase == null || isCompilable(stmt.defaultCase.stmt);
+    }
+
+    // Ainda sem tradução para bytecode
+    @Override public Boolean visitFunctionStmt(Stmt.Function stmt) { return false; }
+    @Override public Boolean visitReturnStmt(Stmt.Return stmt) { return false; }
+
+    // --- Expressões ---
+
+    @Override public Boolean visitAssignExpr(Expr.Assign expr) { return expr(expr.value); }
+    @Override public Boolean visitGroupingExpr(Expr.Grouping expr) { return expr(expr.expression); }
+    @Override public Boolean visitLiteralExpr(Expr.Literal expr) { return true; }
+    @Override public Boolean visitUnaryExpr(Expr.Unary expr) { return expr(expr.right); }
+    @Override public Boolean visitVariableExpr(Expr.Variable expr) { return true; }
+    // O bytecode deixa o valor novo na pilha: o valor anterior (x++ usado numa expressão) fica com o Interpreter
+    @Override public Boolean visitIncrementoExpr(Expr.Incremento expr) { return expr.prefix; }
+    @Override public Boolean visitDecrementoExpr(Expr.Decremento expr) { return expr.prefix; }
+    @Override public Boolean visitIndexExpr(Expr.Index expr) { return expr(expr.object) && expr(expr.index); }
+
+    @Override
+    public Boolean visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        for (Expr element : expr.elements) {
+            if (!expr(element)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean visitIndexSetExpr(Expr.IndexSet expr) {
+        return expr(expr.object) && expr(expr.index) && expr(expr.value);
+    }
+
+    @Override
+    public Boolean visitMapLiteralExpr(Expr.MapLiteral expr) {
+        for (int i = 0; i < expr.keys.size(); i++) {
+            if (!expr(expr.keys.get(i)) || !expr(expr.values.get(i))) return false;
+        }
+        return true;
+    }
+
+    // Métodos embutidos com o número certo de argumentos (OP_INVOKE); FUNCAO fica no Interpreter
+    @Override
+    public Boolean visitCallExpr(Expr.Call expr) {
+        if (!(expr.callee instanceof Expr.Get)) return false;
+        Expr.Get method = (Expr.Get) expr.callee;
+        if (Builtins.aridade(method.name.lexeme) != expr.arguments.size() || !expr(method.object)) return false;
+        for (Expr argument : expr.arguments) {
+            if (!expr(argument)) return false;
+        }
+        return true;
+    }
+
+    // '.tamanho' (OP_LENGTH) ou campo de registro (OP_GET_FIELD)
+    @Override
+    public Boolean visitGetExpr(Expr.Get expr) {
+        return expr(expr.object);
+    }
+
+    @Override
+    public Boolean visitSetExpr(Expr.Set expr) {
+        return expr(expr.object) && expr(expr.value);
+    }
+
+    @Override
+    public Boolean visitRangeExpr(Expr.Range expr) {
+        return expr(expr.start) && expr(expr.end);
+    }
+
+    @Override
+    public Boolean visitNewExpr(Expr.New expr) {
+        for (Expr argument : expr.arguments) {
+            if (!expr(argument)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean visitBinaryExpr(Expr.Binary expr) {
+        switch (expr.operator.type) {
+            case PLUS: case MINUS: case STAR: case SLASH:
+            case EQUALEQUAL: case BANGEQUAL:
+            case GREATER: case GREATEREQUAL: case LESS: case LESSEQUAL:
+            case AND: case OR:
+                return expr(expr.left) && expr(expr.right);
+            default:
+                return false;
+        }
+    }
+}
@@ -31,6 +31,7 @@ public class Scanner {
         keywords.put("PADRAO", TokenType.DEFAULT);
         keywords.put("LEIA", TokenType.INPUT);
         keywords.put("PAREI", TokenType.BREAK);
+        keywords.put("REGISTRO", TokenType.RECORD);
     }
 
     public Scanner(String source) {
@@ -67,6 +68,7 @@ public class Scanner {
             case '[': addToken(TokenType.LEFT_BRACKET); break;
             case ']': addToken(TokenType.RIGHT_BRACKET); break;
             case ',': addToken(TokenType.COMMA); break;
+            case '.': addToken(TokenType.DOT); break;
             case ';': addToken(TokenType.SEMICOLON); break;
             case '=': addToken(match('=') ? TokenType.EQUALEQUAL : TokenType.EQUAL); break;
             case '!': addToken(match('=') ? TokenType.BANGEQUAL : TokenType.BANG); break;
@@ -7,7 +7,7 @@ public enum TokenType {
     SWITCH, CASE, DEFAULT, COLON,
     INT, FLOAT, BOOL, IF, ELSE,
     TRUE, FALSE, NIL, EOF,
-    INPUT, BREAK,
+    INPUT, BREAK, RECORD,
 
     // Identificadores/literais
     IDENTIFIER, NUMBER, STRING,
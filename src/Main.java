@@ -1,8 +1,16 @@
 import ByteCode.Chunk;
+import ByteCode.ChunkFile;
 import ByteCode.Compiler;
+import ByteCode.IrCompiler;
+import ByteCode.JitCompiler;
+import ByteCode.RegisterChunk;
+import ByteCode.RegisterCompiler;
+import ByteCode.RegisterVM;
 import ByteCode.VM;
 import Lexica.Scanner;
 import Lexica.Token;
+import Semantica.Interpreter;
+import Semantica.MemoTable;
 import Sintatica.Parser;
 import Sintatica.Stmt;
 import Utils.AstHtml;
@@ -11,18 +19,49 @@ import Utils.AstHtml;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
 public class Main {
     public static void main(String[] args) {
 
-        // Usar o caminho fixo
-        String caminhoPrograma = "C:\\Users\\arthu\\OneDrive\\Desktop\\CodesPQP\\CodesPqp\\src\\programa.cpqp";
+        // Usar o caminho fixo, a menos que seja passado outro na linha de comando
+        String caminhoPrograma = args.length > 0 ? args[0]
+                : "C:\\Users\\arthu\\OneDrive\\Desktop\\CodesPQP\\CodesPqp\\src\\programa.cpqp";
+
+        // Motor de execução: "vm" (padrão, promove laços quentes para o JIT),
+        // "vm-puro" (só interpreta bytecode), "jit" (bytecode JVM em hidden class desde o início),
+        // "registos" (VM de registos), "comparar" (VM de pilha e de registos, lado a lado),
+        // "compilar" (grava o bytecode em .cpqpc ao lado do código-fonte),
+        // "ir" (lista a representação intermédia antes e depois de cada passe, sem executar),
+        // "vm-ir" (compila pela representação intermédia e corre como "vm")
+        // ou "interp" (só o interpretador da árvore, Semantica.Interpreter).
+        // Um ficheiro .cpqpc é carregado direto na VM (ou no JIT), sem passar pelo Compiler.
+        String modo = args.length > 1 ? args[1] : "vm";
+
+        // "pre-analise" (terceiro argumento): o Parser só casa as chavetas dos corpos das FUNCAO e
+        // analisa cada um na primeira chamada. Arranca mais depressa com muitas funções por chamar,
+        // mas um erro de sintaxe no corpo só aparece quando a função é chamada (ou nunca).
+        boolean preAnalise = args.length > 2 && args[2].equals("pre-analise");
 
         String caminhoHtml = "src\\arvore.html";
 
         try {
+            // Bytecode pré-compilado: vai direto para a VM, sem Scanner, Parser nem Compiler
+            if (caminhoPrograma.endsWith(ChunkFile.EXTENSAO)) {
+                Chunk chunk;
+                try {
+                    chunk = ChunkFile.load(Paths.get(caminhoPrograma));
+                } catch (ChunkFile.Invalido e) {
+                    System.err.println("Bytecode recusado (" + caminhoPrograma + "): " + e.getMessage());
+                    return;
+                }
+                System.out.println("Bytecode carregado de: " + caminhoPrograma);
+                executar(chunk, modo);
+                return;
+            }
+
             //Ler o ficheiro
             String programa = new String(Files.readAllBytes(Paths.get(caminhoPrograma)));
 
@@ -32,7 +71,7 @@ public class Main {
             System.out.println("Análise léxica concluída: " + tokens.size() + " tokens.");
 
             //Análise Sintática (Parser -> AST)
-            Parser parser = new Parser(tokens);
+            Parser parser = new Parser(tokens, preAnalise);
             List<Stmt> statements = parser.parse();
 
             if (statements == null || statements.isEmpty()) {
@@ -46,6 +85,28 @@ public class Main {
             printer.gerarHtml(statements, caminhoHtml);
             System.out.println("Arquivo HTML da AST salvo em: " + caminhoHtml);
 
+            if (modo.equals("interp")) {
+                System.out.println("\n--------- EXECUÇÃO DO INTERPRETADOR ---------");
+                Interpreter interpreter = new Interpreter();
+                interpreter.interpret(statements);
+                mostrarMemoizacao(interpreter);
+                return;
+            }
+
+            if (modo.equals("ir") || modo.equals("vm-ir")) {
+                // Compilação pela Ir (AST -> Ir -> passes -> Bytecode)
+                IrCompiler irCompiler = new IrCompiler();
+                Chunk chunk = irCompiler.compile(statements, modo.equals("ir") ? System.out : null);
+                if (chunk == null) {
+                    System.err.println("Falha na compilação.");
+                    return;
+                }
+                System.out.println("Compilação pela Ir concluída. (" + irCompiler.getNativeStatements()
+                        + " comandos na VM, " + irCompiler.getInterpretedStatements() + " delegados ao interpretador)");
+                if (modo.equals("vm-ir")) executar(chunk, "vm");
+                return;
+            }
+
             //Compilação (AST -> Bytecode)
             Compiler compiler = new Compiler();
             Chunk chunk = compiler.compile(statements);
@@ -54,10 +115,69 @@ public class Main {
                 System.err.println("Falha na compilação.");
                 return;
             }
-            System.out.println("Compilação para bytecode concluída.");
-            VM vm = new VM();
-            System.out.println("\n--------- EXECUÇÃO DA VM ---------");
-            vm.interpret(chunk);
+            System.out.println("Compilação para bytecode concluída. (" + compiler.getNativeStatements()
+                    + " comandos na VM, " + compiler.getInterpretedStatements() + " delegados ao interpretador)");
+
+            if (modo.equals("registos")) {
+                RegisterChunk registos = new RegisterCompiler().compile(statements);
+                if (registos == null) {
+                    System.err.println("Falha na compilação para a VM de registos.");
+                    return;
+                }
+                RegisterVM rvm = new RegisterVM();
+                System.out.println("\n--------- EXECUÇÃO DA VM DE REGISTOS ---------");
+                long inicio = System.nanoTime();
+                rvm.interpret(registos);
+                long totalNanos = System.nanoTime() - inicio;
+
+                System.out.println("\n--------- ESTATÍSTICAS DA EXECUÇÃO ---------");
+                System.out.println("Instruções executadas na VM de registos: " + rvm.getInstructions());
+                System.out.println("Comandos executados no interpretador: " + rvm.getInterpretedStatements());
+                System.out.printf("Tempo: %.2f ms no total, %.2f ms no interpretador%n",
+                        totalNanos / 1e6, rvm.getInterpretedNanos() / 1e6);
+                mostrarMemoizacao(rvm.getInterpreter());
+                return;
+            }
+
+            if (modo.equals("comparar")) {
+                // Mesmo programa nas duas VMs, sem JIT, para comparar instruções e tempo
+                RegisterChunk registos = new RegisterCompiler().compile(statements);
+                if (registos == null) {
+                    System.err.println("Falha na compilação para a VM de registos.");
+                    return;
+                }
+                System.out.println("\n--------- VM DE PILHA ---------");
+                VM pilha = new VM(false);
+                long inicio = System.nanoTime();
+                pilha.interpret(chunk);
+                long nanosPilha = System.nanoTime() - inicio;
+
+                System.out.println("\n--------- VM DE REGISTOS ---------");
+                RegisterVM rvm = new RegisterVM();
+                inicio = System.nanoTime();
+                rvm.interpret(registos);
+                long nanosRegistos = System.nanoTime() - inicio;
+
+                System.out.println("\n--------- COMPARAÇÃO ---------");
+                System.out.printf("Pilha:    %d unidades de bytecode, %d instruções executadas, %.2f ms%n",
+                        chunk.code.size(), pilha.getVmInstructions(), nanosPilha / 1e6);
+                System.out.printf("Registos: %d instruções no código, %d instruções executadas, %.2f ms%n",
+                        registos.instructionCount(), rvm.getInstructions(), nanosRegistos / 1e6);
+                return;
+            }
+
+            if (modo.equals("compilar")) {
+                Path destino = ChunkFile.caminhoPara(Paths.get(caminhoPrograma));
+                try {
+                    ChunkFile.write(chunk, Paths.get(caminhoPrograma), destino);
+                    System.out.println("Bytecode gravado em: " + destino);
+                } catch (ChunkFile.Invalido e) {
+                    System.err.println("Não foi possível gravar o bytecode: " + e.getMessage());
+                }
+                return;
+            }
+
+            executar(chunk, modo);
 
         } catch (IOException e) {
             System.err.println("Erro ao ler o arquivo do programa: " + e.getMessage());
@@ -66,4 +186,44 @@ public class Main {
             e.printStackTrace();
         }
     }
+
+    // Corre o Chunk no JIT ou na VM e mostra as estatísticas da execução
+    private static void executar(Chunk chunk, String modo) {
+        if (modo.equals("jit")) {
+            try {
+                JitCompiler.CompiledProgram compilado = JitCompiler.compile(chunk);
+                System.out.println("\n--------- EXECUÇÃO JIT (JVM) ---------");
+                compilado.run();
+                mostrarMemoizacao(compilado.getInterpreter());
+                return;
+            } catch (JitCompiler.NaoSuportado e) {
+                System.err.println("JIT indisponível, usando a VM: " + e.getMessage());
+            }
+        }
+
+        VM vm = new VM(!modo.equals("vm-puro"));
+        System.out.println("\n--------- EXECUÇÃO DA VM ---------");
+        long inicio = System.nanoTime();
+        vm.interpret(chunk);
+        long totalNanos = System.nanoTime() - inicio;
+
+        // Estatísticas do modo misto: quanto da execução correu em cada motor
+        System.out.println("\n--------- ESTATÍSTICAS DA EXECUÇÃO ---------");
+        System.out.println("Instruções executadas na VM: " + vm.getVmInstructions()
+                + " (pilha de " + vm.getMaxStack() + " posições)");
+        System.out.println("Comandos executados no interpretador: " + vm.getInterpretedStatements());
+        System.out.printf("Tempo: %.2f ms no total, %.2f ms no interpretador%n",
+                totalNanos / 1e6, vm.getInterpretedNanos() / 1e6);
+        mostrarMemoizacao(vm.getInterpreter());
+    }
+
+    // Acertos e faltas do cache de cada FUNCAO pura (só as que foram chamadas)
+    private static void mostrarMemoizacao(Interpreter interpreter) {
+        if (interpreter == null) return;
+        for (MemoTable memo : interpreter.getMemoTables()) {
+            if (memo.hits() + memo.misses() == 0) continue;
+            System.out.println("Memoização de '" + memo.name() + "': " + memo.hits() + " acertos, "
+                    + memo.misses() + " faltas, " + memo.size() + " resultados guardados");
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+package Semantica;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+// Vetor da linguagem: [1, 2, 3], v[i], v[i] = x, v.tamanho.
+// Enquanto todos os elementos forem inteiros (ou todos quebrados) eles ficam desembrulhados
+// num int[] (ou double[]). O primeiro valor de outro tipo guardado copia o vetor para um
+// Object[] de uma vez, e ele continua genérico daí em diante. O tamanho é fixo e a igualdade
+// é por identidade. Partilhado pelo Interpreter e pelas VMs, que veem o mesmo objeto.
+public final class ArrayValue {
+
+    // Só um dos três está preenchido
+    private int[] ints;
+    private double[] doubles;
+    private Object[] objects;
+    private final int length;
+
+    private ArrayValue(int[] ints, double[] doubles, Object[] objects, int length) {
+        this.ints = ints;
+        this.doubles = doubles;
+        this.objects = objects;
+        this.length = length;
+    }
+
+    // Vetor com os valores do literal, na representação mais estreita que os comporta
+    public static ArrayValue of(Object[] values) {
+        boolean allInts = true, allDoubles = true;
+        for (Object value : values) {
+            allInts &= value instanceof Integer;
+            allDoubles &= value instanceof Double;
+        }
+        if (allInts) {
+            int[] ints = new int[values.length];
+            for (int i = 0; i < ints.length; i++) ints[i] = (Integer) values[i];
+            return new ArrayValue(ints, null, null, values.length);
+        }
+        if (allDoubles) {
+            double[] doubles = new double[values.length];
+            for (int i = 0; i < doubles.length; i++) doubles[i] = (Double) values[i];
+            return new ArrayValue(null, doubles, null, values.length);
+        }
+        return new ArrayValue(null, null, values.clone(), values.length);
+    }
+
+    // Vetor que já nasce na forma int[] (as chaves inteiras de um mapa)
+    static ArrayValue ofInts(int[] ints) {
+        return new ArrayValue(ints, null, null, ints.length);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public Object get(int index) {
+        if (ints != null) return ints[index];
+        if (doubles != null) return doubles[index];
+        return objects[index];
+    }
+
+    public void set(int index, Object value) {
+        if (ints != null) {
+            if (value instanceof Integer) {
+                ints[index] = (Integer) value;
+                return;
+            }
+            generalize();
+        } else if (doubles != null) {
+            if (value instanceof Double) {
+                doubles[index] = (Double) value;
+                return;
+            }
+            generalize();
+        }
+        objects[index] = value;
+    }
+
+    private void generalize() {
+        Object[] boxed = new Object[length];
+        for (int i = 0; i < length; i++) boxed[i] = get(i);
+        objects = boxed;
+        ints = null;
+        doubles = null;
+    }
+
+    // v[i]
+    public Object index(Object index) {
+        return get(checkIndex(index));
+    }
+
+    // v[i] = valor
+    public void store(Object index, Object value) {
+        set(checkIndex(index), value);
+    }
+
+    private int checkIndex(Object index) {
+        if (!(index instanceof Integer)) throw new Builtins.Erro("Índice de vetor deve ser inteiro.");
+        int i = (Integer) index;
+        if (i < 0 || i >= length) {
+            throw new Builtins.Erro("Índice " + i + " fora do vetor de tamanho " + length + ".");
+        }
+        return i;
+    }
+
+    // [1, 2, 3], com cada elemento escrito pelo stringify do motor que imprime
+    public String format(Function<Object, String> stringify) {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < length; i++) {
+            if (i > 0) text.append(", ");
+            text.append(stringify.apply(get(i)));
+        }
+        return text.append(']').toString();
+    }
+
+    @Override
+    public String toString() {
+        if (ints != null) return Arrays.toString(ints);
+        if (doubles != null) return Arrays.toString(doubles);
+        return Arrays.toString(objects);
+    }
+}
@@ -0,0 +1,228 @@
+package Semantica;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+// Operações embutidas sobre os valores compostos (vetores, mapas e registros) e sobre os textos:
+// índice, tamanho, campos, métodos e o percurso de FAZAVOLTA (VAR x : ...).
+// Ficam num só lugar para que o Interpreter e as VMs deem o mesmo resultado e as mesmas mensagens.
+//
+// Métodos dos mapas:
+//   m.pega(k, padrao)   valor da chave, ou o padrão quando ela não existe
+//   m.poe(k, v)         o mesmo que m[k] = v; devolve v
+//   m.tira(k)           remove a chave e devolve o valor que ela tinha (nulo se não existia)
+//   m.tem(k)            verdadeiro se a chave existe
+//   m.chaves()          vetor com as chaves, na ordem de inserção
+//   m.valores()         vetor com os valores, na mesma ordem
+//
+// Métodos dos textos (t[i] é o mesmo que t.letra(i)):
+//   t.letra(i)          texto com o caractere na posição i
+//   t.parte(i, f)       os caracteres de i até antes de f
+//   t.acha(x)           posição da primeira ocorrência de x, ou -1
+//   t.divide(sep)       vetor com os pedaços entre cada sep (sep vazio: um por caractere)
+// parte e divide devolvem pedaços que partilham os caracteres do texto original (StringValue).
+// Cada método tem um número fixo de argumentos (no máximo dois), conhecido na compilação.
+public final class Builtins {
+
+    // Operação inválida para o valor (índice fora do vetor, método que não existe...).
+    // O Interpreter termina o programa; as VMs reportam a mensagem com a linha e continuam com 'nulo'.
+    public static final class Erro extends RuntimeException {
+        public Erro(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final Map<String, Integer> ARIDADE = new HashMap<>();
+    static {
+        ARIDADE.put("pega", 2);
+        ARIDADE.put("poe", 2);
+        ARIDADE.put("tira", 1);
+        ARIDADE.put("tem", 1);
+        ARIDADE.put("chaves", 0);
+        ARIDADE.put("valores", 0);
+        ARIDADE.put("letra", 1);
+        ARIDADE.put("parte", 2);
+        ARIDADE.put("acha", 1);
+        ARIDADE.put("divide", 1);
+    }
+
+    private Builtins() {}
+
+    // Número de argumentos do método, ou -1 se não há método com esse nome
+    public static int aridade(String metodo) {
+        Integer n = ARIDADE.get(metodo);
+        return n != null ? n : -1;
+    }
+
+    // v[i] / m[k] (chave que não existe vale nulo) / t[i]
+    public static Object index(Object target, Object key) {
+        if (target instanceof ArrayValue) return ((ArrayValue) target).index(key);
+        if (target instanceof MapValue) return ((MapValue) target).get(key);
+        if (StringValue.isText(target)) return letter((CharSequence) target, key);
+        throw new Erro("Só vetores, mapas e textos podem ser indexados.");
+    }
+
+    // v[i] = valor / m[k] = valor
+    public static void store(Object target, Object key, Object value) {
+        if (target instanceof ArrayValue) {
+            ((ArrayValue) target).store(key, value);
+        } else if (target instanceof MapValue) {
+            ((MapValue) target).put(key, value);
+        } else {
+            throw new Erro(StringValue.isText(target)
+                    ? "Textos não podem ser alterados."
+                    : "Só vetores e mapas podem receber valores por índice.");
+        }
+    }
+
+    // .tamanho (de um texto, sem montar o String de um StringValue)
+    public static int length(Object target) {
+        if (target instanceof ArrayValue) return ((ArrayValue) target).length();
+        if (target instanceof MapValue) return ((MapValue) target).size();
+        if (target instanceof RangeValue) return ((RangeValue) target).length();
+        if (StringValue.isText(target)) return ((CharSequence) target).length();
+        throw new Erro("Só vetores, mapas, textos e intervalos têm 'tamanho'.");
+    }
+
+    // intervalo(a, b)
+    public static RangeValue range(Object start, Object end) {
+        if (!(start instanceof Integer) || !(end instanceof Integer)) {
+            throw new Erro("'intervalo' espera dois inteiros.");
+        }
+        return new RangeValue((Integer) start, (Integer) end);
+    }
+
+    // Elementos de FAZAVOLTA (VAR x : valor), pedidos um de cada vez: os números de um intervalo,
+    // os elementos de um vetor, as chaves de um mapa (as que existiam ao começar) ou as letras de um texto
+    public static Iterator<Object> iterator(Object value) {
+        if (value instanceof RangeValue) return ((RangeValue) value).iterator();
+        if (value instanceof ArrayValue) return elements((ArrayValue) value);
+        if (value instanceof MapValue) return elements(((MapValue) value).keys());
+        if (StringValue.isText(value)) {
+            CharSequence text = (CharSequence) value;
+            return new Iterator<Object>() {
+                private int next;
+                @Override public boolean hasNext() { return next < text.length(); }
+                @Override public Object next() {
+                    if (next >= text.length()) throw new NoSuchElementException();
+                    return String.valueOf(text.charAt(next++));
+                }
+            };
+        }
+        throw new Erro("Só intervalos, vetores, mapas e textos podem ser percorridos com FAZAVOLTA.");
+    }
+
+    private static Iterator<Object> elements(ArrayValue array) {
+        return new Iterator<Object>() {
+            private int next;
+            @Override public boolean hasNext() { return next < array.length(); }
+            @Override public Object next() {
+                if (next >= array.length()) throw new NoSuchElementException();
+                return array.get(next++);
+            }
+        };
+    }
+
+    // p.x, sem cache (o Interpreter, e os FieldCache quando veem uma forma sem o campo)
+    public static Object field(Object target, String name) {
+        int slot = slot(target, name);
+        return ((RecordValue) target).get(slot);
+    }
+
+    // p.x = valor
+    public static void setField(Object target, String name, Object value) {
+        int slot = slot(target, name);
+        ((RecordValue) target).set(slot, value);
+    }
+
+    private static int slot(Object target, String name) {
+        int slot = target instanceof RecordValue ? ((RecordValue) target).shape().slot(name) : -1;
+        if (slot < 0) throw new Erro(descricao(target) + " não tem o campo '" + name + "'.");
+        return slot;
+    }
+
+    // receptor.metodo(a, b); os argumentos que o método não usa chegam como nulo
+    public static Object invoke(Object receiver, String metodo, Object a, Object b) {
+        if (receiver instanceof MapValue) {
+            MapValue map = (MapValue) receiver;
+            switch (metodo) {
+                case "pega":    return map.getOrDefault(a, b);
+                case "poe":     map.put(a, b); return b;
+                case "tira":    return map.remove(a);
+                case "tem":     return map.containsKey(a);
+                case "chaves":  return map.keys();
+                case "valores": return map.values();
+                default: break;
+            }
+        }
+        if (StringValue.isText(receiver)) {
+            CharSequence text = (CharSequence) receiver;
+            switch (metodo) {
+                case "letra":  return letter(text, a);
+                case "parte":  return slice(text, a, b);
+                case "acha":   return StringValue.indexOf(text, text("acha", a), 0);
+                case "divide": return split(text, text("divide", a));
+                default: break;
+            }
+        }
+        throw new Erro(descricao(receiver) + " não tem o método '" + metodo + "'.");
+    }
+
+    // --- Textos ---
+
+    private static String letter(CharSequence text, Object index) {
+        int i = position(index, "Índice de texto deve ser inteiro.");
+        if (i < 0 || i >= text.length()) {
+            throw new Erro("Índice " + i + " fora do texto de tamanho " + text.length() + ".");
+        }
+        return String.valueOf(text.charAt(i));
+    }
+
+    private static CharSequence slice(CharSequence text, Object from, Object to) {
+        int start = position(from, "Posições de 'parte' devem ser inteiras.");
+        int end = position(to, "Posições de 'parte' devem ser inteiras.");
+        if (start < 0 || start > end || end > text.length()) {
+            throw new Erro("Parte " + start + ".." + end + " fora do texto de tamanho " + text.length() + ".");
+        }
+        return StringValue.slice(text, start, end);
+    }
+
+    private static ArrayValue split(CharSequence text, String separator) {
+        List<Object> parts = new ArrayList<>();
+        if (separator.isEmpty()) {
+            for (int i = 0; i < text.length(); i++) parts.add(String.valueOf(text.charAt(i)));
+        } else {
+            int start = 0;
+            for (int at; (at = StringValue.indexOf(text, separator, start)) >= 0; start = at + separator.length()) {
+                parts.add(StringValue.slice(text, start, at));
+            }
+            parts.add(StringValue.slice(text, start, text.length()));
+        }
+        return ArrayValue.of(parts.toArray());
+    }
+
+    private static int position(Object value, String erro) {
+        if (!(value instanceof Integer)) throw new Erro(erro);
+        return (Integer) value;
+    }
+
+    // Argumento que tem de ser texto; o String de um StringValue
+    private static String text(String metodo, Object value) {
+        if (!StringValue.isText(value)) throw new Erro("O argumento de '" + metodo + "' deve ser um texto.");
+        return value.toString();
+    }
+
+    private static String descricao(Object value) {
+        if (value instanceof ArrayValue) return "Vetor";
+        if (value instanceof MapValue) return "Mapa";
+        if (value instanceof RangeValue) return "Intervalo";
+        if (value instanceof RecordValue) return "Registro '" + ((RecordValue) value).type().name + "'";
+        if (StringValue.isText(value)) return "Texto";
+        if (value == null) return "nulo";
+        return "Valor";
+    }
+}
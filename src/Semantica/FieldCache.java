@@ -0,0 +1,46 @@
+package Semantica;
+
+// Cache de uma instrução que lê ou escreve o campo 'name' (p.x): guarda a última forma vista
+// e o slot do campo nela. Enquanto os registros que passam pela instrução tiverem essa forma
+// (o caso comum: o mesmo tipo de registro), o acesso é uma comparação de referências e a
+// leitura do array; só uma forma nova volta a procurar o nome (Builtins.field).
+// Cada instrução tem o seu, criado na primeira execução.
+public final class FieldCache {
+
+    private final String name;
+    private Shape shape;
+    private int slot;
+
+    public FieldCache(String name) {
+        this.name = name;
+    }
+
+    // p.x
+    public Object get(Object target) {
+        if (target instanceof RecordValue) {
+            RecordValue record = (RecordValue) target;
+            if (record.shape() == shape || learn(record)) return record.get(slot);
+        }
+        return Builtins.field(target, name);
+    }
+
+    // p.x = valor
+    public void set(Object target, Object value) {
+        if (target instanceof RecordValue) {
+            RecordValue record = (RecordValue) target;
+            if (record.shape() == shape || learn(record)) {
+                record.set(slot, value);
+                return;
+            }
+        }
+        Builtins.setField(target, name, value);
+    }
+
+    private boolean learn(RecordValue record) {
+        int found = record.shape().slot(name);
+        if (found < 0) return false;
+        shape = record.shape();
+        slot = found;
+        return true;
+    }
+}
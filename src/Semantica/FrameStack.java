@@ -0,0 +1,635 @@
+package Semantica;
+
+import Lexica.TokenType;
+import Sintatica.Expr;
+import Sintatica.Stmt;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+// Pilha de chamadas de FUNCAO do Interpreter, na memória.
+// O Interpreter percorre a árvore recursivamente e cada chamada da linguagem gasta uma dúzia de
+// frames Java; uma recursão que não é de cauda (percorrer uma árvore, fatorial) estourava a pilha
+// com poucos milhares de níveis. Passadas as primeiras chamadas aninhadas, o Interpreter entrega a
+// chamada a esta classe, que executa o corpo com uma pilha explícita: cada comando ou expressão que
+// contém uma chamada de FUNCAO ganha um frame, e uma chamada empilha o frame da função em vez de
+// chamar o Interpreter. A profundidade da recursão fica limitada pela memória, não pelo -Xss.
+// O que não contém chamadas (quase todas as expressões e muitos comandos) é executado pelo
+// Interpreter, como sempre: a pilha Java que isso gasta depende só do tamanho do código. O PAREI e o
+// RETORNA desses comandos chegam aqui como exceções e desempilham frames até ao laço ou à função.
+// Nos frames as chamadas não são expandidas no lugar (Inliner) e os laços não guardam invariantes
+// (LoopInvariants não as encontra num laço com chamadas).
+// Os passos de cada frame são os 'case' de um switch sobre 'pc': um passo que termina sem esperar
+// por outro frame segue para o seguinte (marcado com "continua no passo seguinte").
+@SuppressWarnings("fallthrough")
+final class FrameStack {
+
+    private final Interpreter interpreter;
+    private final ArrayList<Frame> stack = new ArrayList<>();
+    // Início dos frames da entrada atual: um comando executado pelo Interpreter pode voltar a chamar
+    // call() (LEIA, CASO calculado), e essa chamada só desempilha os seus próprios frames
+    private int base;
+    // Valor da última expressão avaliada (ou do último frame de expressão ou função terminado)
+    private Object value;
+
+    // Comandos e expressões que contêm chamadas de FUNCAO, e operandos de cada expressão
+    private final Map<Object, Boolean> calls = new IdentityHashMap<>();
+    private final Map<Expr, Expr[]> operands = new IdentityHashMap<>();
+    private final CallFinder finder = new CallFinder();
+
+    FrameStack(Interpreter interpreter) {
+        this.interpreter = interpreter;
+    }
+
+    private static final class Frame {
+        Object node;                    // Stmt ou Expr em execução, ou a LoxFunction chamada
+        int pc;                         // passo seguinte, próprio de cada tipo de frame
+        Object[] values;                // operandos já avaliados
+        Interpreter.Environment saved;  // ambiente a repor quando o frame sai (blocos e funções)
+        Iterator<Object> elements;      // FAZAVOLTA (VAR x : sequencia)
+        Interpreter.LoxFunction owner;  // função cujo cache recebe o resultado (com 'key')
+        Object key;
+        long errors;                    // erros reportados antes da chamada (ver remember)
+
+        Frame(Object node) {
+            this.node = node;
+        }
+    }
+
+    // Executa a chamada e tudo o que ela chamar nos frames; devolve o resultado
+    Object call(Interpreter.LoxFunction function, List<Object> arguments) {
+        int savedBase = base;
+        Interpreter.Environment entry = interpreter.environment;
+        base = stack.size();
+        try {
+            invoke(function, arguments);
+            while (stack.size() > base) {
+                try {
+                    step(stack.get(stack.size() - 1));
+                } catch (Interpreter.BreakException e) {
+                    unwindBreak(e);
+                } catch (Interpreter.ReturnException e) {
+                    unwindReturn(e.value);
+                }
+            }
+            return value;
+        } finally {
+            // Num erro, os frames desta entrada ficam para trás
+            while (stack.size() > base) stack.remove(stack.size() - 1);
+            base = savedBase;
+            interpreter.environment = entry;
+        }
+    }
+
+    // O resultado guardado no cache (em 'value'), ou o frame da função no topo
+    private void invoke(Interpreter.LoxFunction function, List<Object> arguments) {
+        Object key = function.memoKey(arguments);
+        if (key != null) {
+            Object cached = function.cached(key);
+            if (cached != MemoTable.AUSENTE) {
+                value = cached;
+                return;
+            }
+        }
+        Frame frame = push(function);
+        frame.owner = function;
+        frame.key = key;
+        frame.errors = Values.reportedErrors();
+        frame.saved = interpreter.environment;
+        interpreter.environment = function.bind(arguments);
+    }
+
+    private Frame push(Object node) {
+        Frame frame = new Frame(node);
+        stack.add(frame);
+        return frame;
+    }
+
+    private void pop(Frame frame) {
+        stack.remove(stack.size() - 1);
+        if (frame.saved != null) interpreter.environment = frame.saved;
+    }
+
+    // Retira o frame do topo; o resultado fica em 'value' para o frame de baixo
+    private void complete(Frame frame, Object result) {
+        pop(frame);
+        if (frame.key != null) frame.owner.remember(frame.key, result, frame.errors);
+        value = result;
+    }
+
+    // Sem chamadas, avalia já ('value'); com chamadas, empilha o frame e devolve falso
+    private boolean evaluate(Expr expr) {
+        if (!calls(expr)) {
+            value = interpreter.evaluate(expr);
+            return true;
+        }
+        push(expr);
+        return false;
+    }
+
+    private boolean execute(Stmt stmt) {
+        if (!calls(stmt)) {
+            interpreter.execute(stmt);
+            return true;
+        }
+        push(stmt);
+        return false;
+    }
+
+    private void step(Frame frame) {
+        if (frame.node instanceof Interpreter.LoxFunction) {
+            if (sequence(frame, ((Interpreter.LoxFunction) frame.node).body())) complete(frame, null);
+        } else if (frame.node instanceof Expr) {
+            expression(frame, (Expr) frame.node);
+        } else {
+            statement(frame, (Stmt) frame.node);
+        }
+    }
+
+    // Executa os comandos a partir de frame.pc; falso se parou à espera de um frame novo
+    private boolean sequence(Frame frame, List<Stmt> statements) {
+        while (frame.pc < statements.size()) {
+            if (!execute(statements.get(frame.pc++))) return false;
+        }
+        return true;
+    }
+
+    // --- Comandos ---
+    // Cada 'case' é um ponto de retoma: o frame guarda em pc o seguinte e, se o passo empilhou um
+    // frame, volta a ele quando esse terminar.
+
+    private void statement(Frame frame, Stmt stmt) {
+        if (stmt instanceof Stmt.Block) {
+            if (frame.saved == null) {
+                frame.saved = interpreter.environment;
+                interpreter.environment = interpreter.new Environment(frame.saved);
+            }
+            if (sequence(frame, ((Stmt.Block) stmt).statements)) complete(frame, null);
+        } else if (stmt instanceof Stmt.Expression) {
+            if (frame.pc == 0) {
+                frame.pc = 1;
+                if (!evaluate(((Stmt.Expression) stmt).expr)) return;
+            }
+            complete(frame, null);
+        } else if (stmt instanceof Stmt.Print) {
+            if (frame.pc == 0) {
+                frame.pc = 1;
+                if (!evaluate(((Stmt.Print) stmt).expression)) return;
+            }
+            interpreter.print(value);
+            complete(frame, null);
+        } else if (stmt instanceof Stmt.Var) {
+            Stmt.Var s = (Stmt.Var) stmt;
+            if (frame.pc == 0) {
+                frame.pc = 1;
+                if (!evaluate(s.initializer)) return;
+            }
+            interpreter.environment.define(s.name.lexeme, value);
+            complete(frame, null);
+        } else if (stmt instanceof Stmt.If) {
+            ifStmt(frame, (Stmt.If) stmt);
+        } else if (stmt instanceof Stmt.While) {
+            whileStmt(frame, (Stmt.While) stmt);
+        } else if (stmt instanceof Stmt.For) {
+            forStmt(frame, (Stmt.For) stmt);
+        } else if (stmt instanceof Stmt.ForEach) {
+            forEachStmt(frame, (Stmt.ForEach) stmt);
+        } else if (stmt instanceof Stmt.Switch) {
+            switchStmt(frame, (Stmt.Switch) stmt);
+        } else if (stmt instanceof Stmt.Return) {
+            returnStmt(frame, (Stmt.Return) stmt);
+        } else {
+            // Os outros comandos não contêm chamadas: nunca chegam a ter frame
+            throw new IllegalStateException("Comando sem frame: " + stmt.getClass().getSimpleName());
+        }
+    }
+
+    private void ifStmt(Frame frame, Stmt.If stmt) {
+        switch (frame.pc) {
+            case 0:
+                frame.pc = 1;
+                if (!evaluate(stmt.condition)) return;
+                // continua no passo seguinte
+            case 1:
+                frame.pc = 2;
+                Stmt branch = Values.isTruthy(value) ? stmt.thenBranch : stmt.elseBranch;
+                if (branch != null && !execute(branch)) return;
+                // continua no passo seguinte
+            default:
+                complete(frame, null);
+        }
+    }
+
+    private void whileStmt(Frame frame, Stmt.While stmt) {
+        while (true) {
+            switch (frame.pc) {
+                case 0:
+                    frame.pc = 1;
+                    if (!evaluate(stmt.condition)) return;
+                    // continua no passo seguinte
+                case 1:
+                    if (!Values.isTruthy(value)) {
+                        complete(frame, null);
+                        return;
+                    }
+                    frame.pc = 2;
+                    if (!execute(stmt.body)) return;
+                    // continua no passo seguinte
+                default:
+                    frame.pc = 0;
+            }
+        }
+    }
+
+    // A variável da inicialização fica no escopo atual, como no Interpreter
+    private void forStmt(Frame frame, Stmt.For stmt) {
+        while (true) {
+            switch (frame.pc) {
+                case 0:
+                    frame.pc = 1;
+                    if (stmt.initializer != null && !execute(stmt.initializer)) return;
+                    // continua no passo seguinte
+                case 1:
+                    frame.pc = 2;
+                    if (stmt.condition == null) value = Boolean.TRUE;
+                    else if (!evaluate(stmt.condition)) return;
+                    // continua no passo seguinte
+                case 2:
+                    if (!Values.isTruthy(value)) {
+                        complete(frame, null);
+                        return;
+                    }
+                    frame.pc = 3;
+                    if (!execute(stmt.body)) return;
+                    // continua no passo seguinte
+                case 3:
+                    frame.pc = 4;
+                    if (stmt.increment != null && !evaluate(stmt.increment)) return;
+                    // continua no passo seguinte
+                default:
+                    frame.pc = 1;
+            }
+        }
+    }
+
+    private void forEachStmt(Frame frame, Stmt.ForEach stmt) {
+        switch (frame.pc) {
+            case 0:
+                frame.pc = 1;
+                if (!evaluate(stmt.iterable)) return;
+                // continua no passo seguinte
+            case 1:
+                frame.pc = 2;
+                frame.elements = interpreter.iterator(stmt, value);
+                // continua no passo seguinte
+            default:
+                while (frame.elements.hasNext()) {
+                    interpreter.environment.define(stmt.name.lexeme, frame.elements.next());
+                    if (!execute(stmt.body)) return;
+                }
+                complete(frame, null);
+        }
+    }
+
+    // Um CASO calculado com chamadas é avaliado pelo Interpreter (e a chamada volta a call())
+    private void switchStmt(Frame frame, Stmt.Switch stmt) {
+        switch (frame.pc) {
+            case 0:
+                frame.pc = 1;
+                if (!evaluate(stmt.expr)) return;
+                // continua no passo seguinte
+            case 1:
+                frame.pc = 2;
+                Stmt.Case chosen = interpreter.chosen(stmt, value);
+                if (chosen != null && !execute(chosen.stmt)) return;
+                // continua no passo seguinte
+            default:
+                complete(frame, null);
+        }
+    }
+
+    // RETORNA f(x) em posição de cauda troca a função do frame, como o laço de LoxFunction.run
+    private void returnStmt(Frame frame, Stmt.Return stmt) {
+        if (!stmt.tailCall) {
+            if (frame.pc == 0) {
+                frame.pc = 1;
+                if (!evaluate(stmt.value)) return;
+            }
+            unwindReturn(value);
+            return;
+        }
+        Expr.Call call = (Expr.Call) stmt.value;
+        if (!operands(frame, call, operands(call))) return;
+        List<Object> arguments = arguments(frame.values);
+        Interpreter.LoxCallable function = interpreter.checkArity((Interpreter.LoxCallable) frame.values[0], arguments);
+        if (!(function instanceof Interpreter.LoxFunction)) {
+            unwindReturn(function.call(interpreter, arguments));
+            return;
+        }
+        Frame top = stack.get(stack.size() - 1);
+        while (!(top.node instanceof Interpreter.LoxFunction)) {
+            pop(top);
+            top = stack.get(stack.size() - 1);
+        }
+        // O cache que recebe o resultado continua a ser o da função chamada primeiro
+        Interpreter.LoxFunction next = (Interpreter.LoxFunction) function;
+        top.node = next;
+        top.pc = 0;
+        interpreter.environment = next.bind(arguments);
+    }
+
+    // PAREI: desempilha até ao laço ou ESCOLHEAI que o apanha (inclusive)
+    private void unwindBreak(Interpreter.BreakException e) {
+        while (stack.size() > base) {
+            Frame frame = stack.get(stack.size() - 1);
+            pop(frame);
+            if (frame.node instanceof Stmt.While || frame.node instanceof Stmt.For
+                    || frame.node instanceof Stmt.ForEach || frame.node instanceof Stmt.Switch) {
+                return;
+            }
+        }
+        throw e;
+    }
+
+    // RETORNA: desempilha até à função, que termina com o valor (o frame de base é sempre uma função)
+    private void unwindReturn(Object result) {
+        Frame frame = stack.get(stack.size() - 1);
+        while (!(frame.node instanceof Interpreter.LoxFunction)) {
+            pop(frame);
+            frame = stack.get(stack.size() - 1);
+        }
+        complete(frame, result);
+    }
+
+    // --- Expressões ---
+
+    private void expression(Frame frame, Expr expr) {
+        if (expr instanceof Expr.Binary && isLogical((Expr.Binary) expr)) {
+            logical(frame, (Expr.Binary) expr);
+            return;
+        }
+        if (!operands(frame, expr, operands(expr))) return;
+        Object[] v = frame.values;
+        if (expr instanceof Expr.Call) {
+            Expr.Call call = (Expr.Call) expr;
+            if (call.callee instanceof Expr.Get) {
+                Expr.Get target = (Expr.Get) call.callee;
+                complete(frame, interpreter.invokeMethod(target, v[0], v.length > 1 ? v[1] : null, v.length > 2 ? v[2] : null));
+                return;
+            }
+            List<Object> arguments = arguments(v);
+            Interpreter.LoxCallable function = interpreter.checkArity((Interpreter.LoxCallable) v[0], arguments);
+            // O frame da função fica no lugar do da chamada
+            pop(frame);
+            if (function instanceof Interpreter.LoxFunction) invoke((Interpreter.LoxFunction) function, arguments);
+            else value = function.call(interpreter, arguments);
+            return;
+        }
+        complete(frame, apply(expr, v));
+    }
+
+    private static boolean isLogical(Expr.Binary expr) {
+        return expr.operator.type == TokenType.AND || expr.operator.type == TokenType.OR;
+    }
+
+    // && e ||: o lado direito só é avaliado se decidir o resultado
+    private void logical(Frame frame, Expr.Binary expr) {
+        switch (frame.pc) {
+            case 0:
+                frame.pc = 1;
+                if (!evaluate(expr.left)) return;
+                // continua no passo seguinte
+            case 1:
+                boolean left = Values.isTruthy(value);
+                if (expr.operator.type == TokenType.AND ? !left : left) {
+                    complete(frame, value);
+                    return;
+                }
+                frame.pc = 2;
+                if (!evaluate(expr.right)) return;
+                // continua no passo seguinte
+            default:
+                complete(frame, value);
+        }
+    }
+
+    // Avalia os operandos que faltam, por ordem; falso se parou à espera de um frame novo
+    private boolean operands(Frame frame, Expr expr, Expr[] ops) {
+        if (frame.values == null) {
+            frame.values = new Object[ops.length];
+        } else {
+            arrived(frame, expr, value);
+        }
+        while (frame.pc < ops.length) {
+            Expr op = ops[frame.pc++];
+            if (calls(op)) {
+                push(op);
+                return false;
+            }
+            arrived(frame, expr, interpreter.evaluate(op));
+        }
+        return true;
+    }
+
+    // Guarda o operando; numa chamada, o primeiro é conferido antes de avaliar os argumentos
+    private void arrived(Frame frame, Expr expr, Object operand) {
+        frame.values[frame.pc - 1] = operand;
+        if (frame.pc == 1 && expr instanceof Expr.Call) {
+            Expr.Call call = (Expr.Call) expr;
+            if (call.callee instanceof Expr.Get) {
+                interpreter.checkMethod((Expr.Get) call.callee, call.arguments.size());
+            } else {
+                interpreter.callable(operand);
+            }
+        }
+    }
+
+    private static List<Object> arguments(Object[] values) {
+        List<Object> arguments = new ArrayList<>(values.length - 1);
+        for (int i = 1; i < values.length; i++) arguments.add(values[i]);
+        return arguments;
+    }
+
+    // Resultado da expressão com os operandos já avaliados, pelos mesmos métodos do Interpreter
+    private Object apply(Expr expr, Object[] v) {
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary e = (Expr.Binary) expr;
+            return Values.compute(e.operator.type, v[0], v[1], e.operator.line);
+        }
+        if (expr instanceof Expr.Grouping) return v[0];
+        if (expr instanceof Expr.Assign) return interpreter.assign((Expr.Assign) expr, v[0]);
+        if (expr instanceof Expr.Unary) return interpreter.unary((Expr.Unary) expr, v[0]);
+        if (expr instanceof Expr.Index) return interpreter.index((Expr.Index) expr, v[0], v[1]);
+        if (expr instanceof Expr.IndexSet) return interpreter.indexSet((Expr.IndexSet) expr, v[0], v[1], v[2]);
+        if (expr instanceof Expr.Get) return interpreter.get((Expr.Get) expr, v[0]);
+        if (expr instanceof Expr.Set) return interpreter.set((Expr.Set) expr, v[0], v[1]);
+        if (expr instanceof Expr.Range) return interpreter.range((Expr.Range) expr, v[0], v[1]);
+        if (expr instanceof Expr.New) return interpreter.newRecord((Expr.New) expr, v);
+        if (expr instanceof Expr.ArrayLiteral) return ArrayValue.of(v);
+        if (expr instanceof Expr.MapLiteral) return MapValue.of(v);
+        throw new IllegalStateException("Expressão sem frame: " + expr.getClass().getSimpleName());
+    }
+
+    // Operandos de cada expressão, na ordem em que o Interpreter os avalia
+    private Expr[] operands(Expr expr) {
+        Expr[] ops = operands.get(expr);
+        if (ops == null) {
+            ops = operandsOf(expr);
+            operands.put(expr, ops);
+        }
+        return ops;
+    }
+
+    private static Expr[] operandsOf(Expr expr) {
+        if (expr instanceof Expr.Binary) return new Expr[] {((Expr.Binary) expr).left, ((Expr.Binary) expr).right};
+        if (expr instanceof Expr.Grouping) return new Expr[] {((Expr.Grouping) expr).expression};
+        if (expr instanceof Expr.Assign) return new Expr[] {((Expr.Assign) expr).value};
+        if (expr instanceof Expr.Unary) return new Expr[] {((Expr.Unary) expr).right};
+        if (expr instanceof Expr.Index) return new Expr[] {((Expr.Index) expr).object, ((Expr.Index) expr).index};
+        if (expr instanceof Expr.IndexSet) {
+            Expr.IndexSet e = (Expr.IndexSet) expr;
+            return new Expr[] {e.object, e.index, e.value};
+        }
+        if (expr instanceof Expr.Get) return new Expr[] {((Expr.Get) expr).object};
+        if (expr instanceof Expr.Set) return new Expr[] {((Expr.Set) expr).object, ((Expr.Set) expr).value};
+        if (expr instanceof Expr.Range) return new Expr[] {((Expr.Range) expr).start, ((Expr.Range) expr).end};
+        if (expr instanceof Expr.New) return ((Expr.New) expr).arguments.toArray(new Expr[0]);
+        if (expr instanceof Expr.ArrayLiteral) return ((Expr.ArrayLiteral) expr).elements.toArray(new Expr[0]);
+        if (expr instanceof Expr.MapLiteral) {
+            Expr.MapLiteral e = (Expr.MapLiteral) expr;
+            Expr[] ops = new Expr[e.keys.size() * 2];
+            for (int i = 0; i < e.keys.size(); i++) {
+                ops[2 * i] = e.keys.get(i);
+                ops[2 * i + 1] = e.values.get(i);
+            }
+            return ops;
+        }
+        if (expr instanceof Expr.Call) {
+            // Um método embutido tem como primeiro operando o receptor; uma FUNCAO, a própria função
+            Expr.Call e = (Expr.Call) expr;
+            Expr[] ops = new Expr[e.arguments.size() + 1];
+            ops[0] = e.callee instanceof Expr.Get ? ((Expr.Get) e.callee).object : e.callee;
+            for (int i = 0; i < e.arguments.size(); i++) ops[i + 1] = e.arguments.get(i);
+            return ops;
+        }
+        throw new IllegalStateException("Expressão sem operandos: " + expr.getClass().getSimpleName());
+    }
+
+    // --- Chamadas ---
+
+    private boolean calls(Expr expr) {
+        return expr != null && finder.test(expr);
+    }
+
+    private boolean calls(Stmt stmt) {
+        return stmt != null && finder.test(stmt);
+    }
+
+    // O nó contém uma chamada de FUNCAO (não um método embutido) que seria executada com ele?
+    // O corpo de uma FUNCAO declarada não conta: declarar não chama.
+    private final class CallFinder implements Expr.Visitor<Boolean>, Stmt.Visitor<Boolean> {
+
+        boolean test(Expr expr) {
+            Boolean known = calls.get(expr);
+            if (known == null) {
+                known = expr.accept(this);
+                calls.put(expr, known);
+            }
+            return known;
+        }
+
+        boolean test(Stmt stmt) {
+            Boolean known = calls.get(stmt);
+            if (known == null) {
+                known = stmt.accept(this);
+                calls.put(stmt, known);
+            }
+            return known;
+        }
+
+        private boolean any(List<? extends Expr> exprs) {
+            for (Expr expr : exprs) {
+                if (calls(expr)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Boolean visitCallExpr(Expr.Call expr) {
+            if (!(expr.callee instanceof Expr.Get)) return true;
+            return calls(((Expr.Get) expr.callee).object) || any(expr.arguments);
+        }
+
+        @Override public Boolean visitAssignExpr(Expr.Assign expr) { return calls(expr.value); }
+        @Override public Boolean visitBinaryExpr(Expr.Binary expr) { return calls(expr.left) || calls(expr.right); }
+        @Override public Boolean visitGroupingExpr(Expr.Grouping expr) { return calls(expr.expression); }
+        @Override public Boolean visitLiteralExpr(Expr.Literal expr) { return false; }
+        @Override public Boolean visitUnaryExpr(Expr.Unary expr) { return calls(expr.right); }
+        @Override public Boolean visitVariableExpr(Expr.Variable expr) { return false; }
+        @Override public Boolean visitIncrementoExpr(Expr.Incremento expr) { return false; }
+        @Override public Boolean visitDecrementoExpr(Expr.Decremento expr) { return false; }
+        @Override public Boolean visitArrayLiteralExpr(Expr.ArrayLiteral expr) { return any(expr.elements); }
+        @Override public Boolean visitIndexExpr(Expr.Index expr) { return calls(expr.object) || calls(expr.index); }
+        @Override public Boolean visitGetExpr(Expr.Get expr) { return calls(expr.object); }
+        @Override public Boolean visitMapLiteralExpr(Expr.MapLiteral expr) { return any(expr.keys) || any(expr.values); }
+        @Override public Boolean visitNewExpr(Expr.New expr) { return any(expr.arguments); }
+        @Override public Boolean visitSetExpr(Expr.Set expr) { return calls(expr.object) || calls(expr.value); }
+        @Override public Boolean visitRangeExpr(Expr.Range expr) { return calls(expr.start) || calls(expr.end); }
+
+        @Override
+        public Boolean visitIndexSetExpr(Expr.IndexSet expr) {
+            return calls(expr.object) || calls(expr.index) || calls(expr.value);
+        }
+
+        @Override public Boolean visitPrintStmt(Stmt.Print stmt) { return calls(stmt.expression); }
+        @Override public Boolean visitVarStmt(Stmt.Var stmt) { return calls(stmt.initializer); }
+        @Override public Boolean visitFunctionStmt(Stmt.Function stmt) { return false; }
+        @Override public Boolean visitReturnStmt(Stmt.Return stmt) { return calls(stmt.value); }
+        @Override public Boolean visitExpressionStmt(Stmt.Expression stmt) { return calls(stmt.expr); }
+        @Override public Boolean visitBreakStmt(Stmt.Break stmt) { return false; }
+        @Override public Boolean visitInputStmt(Stmt.Input stmt) { return false; }
+        @Override public Boolean visitRecordStmt(Stmt.Record stmt) { return false; }
+
+        @Override
+        public Boolean visitIfStmt(Stmt.If stmt) {
+            return calls(stmt.condition) || calls(stmt.thenBranch) || calls(stmt.elseBranch);
+        }
+
+        @Override
+        public Boolean visitBlockStmt(Stmt.Block stmt) {
+            for (Stmt s : stmt.statements) {
+                if (calls(s)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Boolean visitWhileStmt(Stmt.While stmt) {
+            return calls(stmt.condition) || calls(stmt.body);
+        }
+
+        @Override
+        public Boolean visitForStmt(Stmt.For stmt) {
+            return calls(stmt.initializer) || calls(stmt.condition) || calls(stmt.increment) || calls(stmt.body);
+        }
+
+        @Override
+        public Boolean visitForEachStmt(Stmt.ForEach stmt) {
+            return calls(stmt.iterable) || calls(stmt.body);
+        }
+
+        @Override
+        public Boolean visitSwitchStmt(Stmt.Switch stmt) {
+            if (calls(stmt.expr)) return true;
+            if (stmt.cases != null) {
+                for (Stmt.Case cs : stmt.cases) {
+                    if (calls(cs.value) || calls(cs.stmt)) return true;
+                }
+            }
+            return stmt.defaultCase != null && calls(stmt.defaultCase.stmt);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package Semantica;
+
+import Lexica.TokenType;
+import Sintatica.Expr;
+import Sintatica.Stmt;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Expansão de FUNCAO pequenas no lugar da chamada.
+// Uma chamada custa um ArrayList de argumentos, um Environment novo e a ReturnException do RETORNA;
+// numa função de uma linha isso pesa mais do que o corpo. Para 'FUNCAO dobro(x) { RETORNA x * 2; }',
+// a chamada 'dobro(a)' passa a ser avaliada como 'a * 2'. Só é expandida quando:
+//   - o corpo é um único RETORNA expr, com até ORCAMENTO nós;
+//   - a expressão só lê parâmetros (sem variáveis livres não há como um nome do chamador capturar
+//     um nome do corpo) e não chama funções, por isso a expansão nunca é recursiva;
+//   - cada argumento é avaliado exatamente como na chamada: literais e variáveis podem aparecer
+//     quantas vezes for preciso (o corpo não muda nada entre as leituras); outras expressões só
+//     entram se não tiverem efeitos e o parâmetro for lido uma vez;
+//   - os erros aparecem pela mesma ordem que na chamada, onde os argumentos são avaliados da
+//     esquerda para a direita antes do corpo. Um argumento que não é literal pode falhar (até uma
+//     variável, se não estiver definida), por isso cada um tem de ser lido pela primeira vez pela
+//     ordem dos parâmetros e fora do lado direito de um && / || (que pode nem ser avaliado).
+//     Uma expressão tem ainda de ser lida antes de qualquer operação do corpo que possa falhar;
+//     uma variável pode vir depois, porque só falha se não estiver definida, e esse erro termina
+//     o programa tal como na chamada.
+// O Interpreter guarda a expansão por chamada e confere, a cada execução, que o nome ainda é a
+// mesma função; se mudou, volta à chamada normal (ou expande a nova função).
+final class Inliner implements Expr.Visitor<Expr> {
+
+    private static final int ORCAMENTO = 16;
+
+    private final Map<String, Integer> parameters = new HashMap<>();
+    private final List<Expr> arguments;
+    private final int[] uses;
+    private int size;
+    // Próximo argumento (não literal) que o corpo tem de ler, e se a ordem já foi quebrada
+    private int nextArgument;
+    private boolean outOfOrder;
+    // Já foi avaliada uma operação que pode falhar / dentro do lado direito de E ou OU
+    private boolean operated;
+    private int conditional;
+
+    private Inliner(Stmt.Function function, List<Expr> arguments) {
+        for (int i = 0; i < function.parameters.size(); i++) {
+            parameters.put(function.parameters.get(i).lexeme, i);
+        }
+        this.arguments = arguments;
+        this.uses = new int[arguments.size()];
+    }
+
+    // Expressão equivalente à chamada da função, ou null se ela não pode ser expandida
+    static Expr inline(Stmt.Function function, Expr.Call call) {
+        List<Stmt> statements = function.body();
+        if (statements.size() != 1 || !(statements.get(0) instanceof Stmt.Return)) return null;
+        Expr value = ((Stmt.Return) statements.get(0)).value;
+        if (value == null || call.arguments.size() != function.parameters.size()) return null;
+
+        Inliner inliner = new Inliner(function, call.arguments);
+        Expr body = inliner.copy(value);
+        if (body == null || inliner.outOfOrder) return null;
+        for (int i = 0; i < inliner.uses.length; i++) {
+            Expr argument = call.arguments.get(i);
+            if (argument instanceof Expr.Literal) continue;
+            if (inliner.uses[i] == 0) return null;
+            if (!(argument instanceof Expr.Variable) && (inliner.uses[i] > 1 || !hasNoEffects(argument))) return null;
+        }
+        return body;
+    }
+
+    private Expr copy(Expr expr) {
+        if (++size > ORCAMENTO) return null;
+        return expr.accept(this);
+    }
+
+    private List<Expr> copy(List<Expr> exprs) {
+        List<Expr> copies = new ArrayList<>(exprs.size());
+        for (Expr expr : exprs) {
+            Expr copy = copy(expr);
+            if (copy == null) return null;
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    // Argumento que pode ser avaliado noutro ponto sem mudar nada: sem atribuições nem chamadas
+    private static boolean hasNoEffects(Expr expr) {
+        if (expr instanceof Expr.Literal || expr instanceof Expr.Variable) return true;
+        if (expr instanceof Expr.Grouping) return hasNoEffects(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) return hasNoEffects(((Expr.Unary) expr).right);
+        if (expr instanceof Expr.Binary) {
+            return hasNoEffects(((Expr.Binary) expr).left) && hasNoEffects(((Expr.Binary) expr).right);
+        }
+        if (expr instanceof Expr.Index) {
+            return hasNoEffects(((Expr.Index) expr).object) && hasNoEffects(((Expr.Index) expr).index);
+        }
+        if (expr instanceof Expr.Get) return hasNoEffects(((Expr.Get) expr).object);
+        return false;
+    }
+
+    // --- Cópia do corpo, com os parâmetros trocados pelos argumentos (null: não expande) ---
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        Integer index = parameters.get(expr.name.lexeme);
+        if (index == null) return null; // variável livre
+        if (uses[index]++ == 0 && !(arguments.get(index) instanceof Expr.Literal)) firstRead(index);
+        return arguments.get(index);
+    }
+
+    // Primeira leitura do argumento 'index': tem de ser a vez dele e ainda sem nada que possa falhar
+    // (ler uma variável também pode: uma variável não definida é um erro fatal)
+    private void firstRead(int index) {
+        while (nextArgument < arguments.size() && arguments.get(nextArgument) instanceof Expr.Literal) nextArgument++;
+        if (index != nextArgument || operated || conditional > 0) outOfOrder = true;
+        nextArgument = index + 1;
+    }
+
+    // Operação do corpo que pode falhar (operador, índice, campo, método...)
+    private Expr operation(Expr copy) {
+        if (copy != null) operated = true;
+        return copy;
+    }
+
+    @Override public Expr visitLiteralExpr(Expr.Literal expr) { return expr; }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        boolean logical = expr.operator.type == TokenType.AND || expr.operator.type == TokenType.OR;
+        Expr left = copy(expr.left);
+        if (logical) conditional++;
+        Expr right = left != null ? copy(expr.right) : null;
+        if (logical) {
+            conditional--;
+            return right != null ? new Expr.Binary(left, expr.operator, right) : null;
+        }
+        return operation(right != null ? new Expr.Binary(left, expr.operator, right) : null);
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = copy(expr.right);
+        return operation(right != null ? new Expr.Unary(expr.operator, right) : null);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        Expr inner = copy(expr.expression);
+        return inner != null ? new Expr.Grouping(inner) : null;
+    }
+
+    @Override
+    public Expr visitIndexExpr(Expr.Index expr) {
+        Expr object = copy(expr.object);
+        Expr index = object != null ? copy(expr.index) : null;
+        return operation(index != null ? new Expr.Index(object, expr.bracket, index) : null);
+    }
+
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        Expr object = copy(expr.object);
+        return operation(object != null ? new Expr.Get(object, expr.name) : null);
+    }
+
+    @Override
+    public Expr visitRangeExpr(Expr.Range expr) {
+        Expr start = copy(expr.start);
+        Expr end = start != null ? copy(expr.end) : null;
+        return operation(end != null ? new Expr.Range(expr.paren, start, end) : null);
+    }
+
+    @Override
+    public Expr visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        List<Expr> elements = copy(expr.elements);
+        return elements != null ? new Expr.ArrayLiteral(expr.bracket, elements) : null;
+    }
+
+    @Override
+    public Expr visitMapLiteralExpr(Expr.MapLiteral expr) {
+        List<Expr> keys = copy(expr.keys);
+        List<Expr> values = keys != null ? copy(expr.values) : null;
+        return values != null ? new Expr.MapLiteral(expr.brace, keys, values) : null;
+    }
+
+    @Override
+    public Expr visitNewExpr(Expr.New expr) {
+        List<Expr> arguments = copy(expr.arguments);
+        return operation(arguments != null ? new Expr.New(expr.record, expr.paren, arguments) : null);
+    }
+
+    // Só métodos embutidos ('t.parte(0, n)'): chamar uma FUNCAO poderia ser recursivo
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        if (!(expr.callee instanceof Expr.Get)) return null;
+        // O receptor é avaliado e o método conferido antes dos argumentos
+        Expr.Get method = (Expr.Get) expr.callee;
+        if (++size > ORCAMENTO) return null;
+        Expr object = copy(method.object);
+        if (object == null) return null;
+        operated = true;
+        List<Expr> arguments = copy(expr.arguments);
+        return operation(arguments != null ? new Expr.Call(new Expr.Get(object, method.name), expr.paren, arguments) : null);
+    }
+
+    // Atribuições mudariam variáveis do corpo, que depois da expansão já não existem
+    @Override public Expr visitAssignExpr(Expr.Assign expr) { return null; }
+    @Override public Expr visitIncrementoExpr(Expr.Incremento expr) { return null; }
+    @Override public Expr visitDecrementoExpr(Expr.Decremento expr) { return null; }
+    @Override public Expr visitIndexSetExpr(Expr.IndexSet expr) { return null; }
+    @Override public Expr visitSetExpr(Expr.Set expr) { return null; }
+}
@@ -2,10 +2,13 @@ package Semantica;
 
 import Lexica.Scanner;
 import Lexica.Token;
+import Lexica.TokenType;
 import Sintatica.Expr;
 import Sintatica.Parser;
 import Sintatica.Stmt;
 
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -15,10 +18,44 @@ import java.util.HashMap;
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     // Ambiente atual com variáveis e seus valores, suporta escopos aninhados
-    private Environment environment = new Environment();
+    Environment environment;
 
-    // Leitor de entrada padrão para comandos de entrada do usuário
-    private final java.util.Scanner consoleInput = new java.util.Scanner(System.in);
+    public Interpreter() {
+        this(new HashMap<>());
+    }
+
+    // Usa o mapa dado como escopo global; o modo misto partilha-o com as globais da VM
+    public Interpreter(Map<String, Object> globals) {
+        this.environment = new Environment(globals);
+    }
+
+    // Tabelas de despacho dos ESCOLHEAI já executados (null: algum CASO não é constante)
+    private final Map<Stmt.Switch, SwitchTable> switchTables = new IdentityHashMap<>();
+
+    // Tipo (com a sua forma) de cada REGISTRO, criado na primeira vez que é instanciado
+    private final Map<Stmt.Record, RecordType> recordTypes = new IdentityHashMap<>();
+
+    // Funções chamadas por cada FUNCAO pura (Purity), ou null se ela não for pura.
+    // Calculado na primeira chamada: o corpo pode ainda nem ter sido analisado pelo Parser.
+    private final Map<Stmt.Function, String[]> pureCallees = new IdentityHashMap<>();
+    // Caches das funções puras já chamadas, para as estatísticas
+    private final List<MemoTable> memoTables = new java.util.ArrayList<>();
+
+    // Chamadas de FUNCAO expandidas no lugar (Inliner), com a função que cada uma viu da última vez
+    private final Map<Expr.Call, InlineSite> inlineSites = new IdentityHashMap<>();
+
+    // Expressões invariantes de cada laço já executado (LoopInvariants)
+    private final Map<Stmt, List<Expr.Binary>> loopInvariants = new IdentityHashMap<>();
+    // Invariantes dos laços em execução -> valor guardado desde a entrada no laço. Só números:
+    // um texto, ou uma invariante ainda não avaliada (NAO_AVALIADA), é calculado por extenso.
+    private final Map<Expr, Object> loopValues = new IdentityHashMap<>();
+    private static final Object NAO_AVALIADA = new Object();
+
+    // Chamadas de FUNCAO aninhadas na pilha Java; a partir de CHAMADAS_NATIVAS, a chamada corre
+    // em frames na memória (FrameStack) e a profundidade da recursão deixa de depender do -Xss
+    private static final int CHAMADAS_NATIVAS = 16;
+    private int depth;
+    private final FrameStack frames = new FrameStack(this);
 
     // Interpreta uma lista de comandos (statements).
     // O Parametro statements Lista de comandos a executar.
@@ -32,82 +69,53 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
+    // Caches de memoização das funções puras chamadas até agora (acertos e faltas de cada uma)
+    public List<MemoTable> getMemoTables() {
+        return memoTables;
+    }
+
+    // Executa um único comando no ambiente atual, sem capturar erros.
+    // Usado pela VM para os comandos que ela não traduz para bytecode.
+    public void executar(Stmt statement) {
+        execute(statement);
+    }
+
     // Avalia expressões binárias (+, -, *, /, etc)
     @Override
     public Object visitBinaryExpr(Expr.Binary expr) {
-        Object left = evaluate(expr.left);
-        Object right = evaluate(expr.right);
-        switch (expr.operator.type) {
-            case PLUS:
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (Integer) left + (Integer) right;
-                }
-                if (left instanceof Number && right instanceof Number) {
-                    return ((Number) left).doubleValue() + ((Number) right).doubleValue();
-                }
-                if (left instanceof String && right instanceof String) {
-                    return (String) left + (String) right;
-                }
-                throw new RuntimeException("Operadores '+' exigem dois números ou duas strings.");
-            case MINUS:
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (Integer) left - (Integer) right;
-                }
-                if (left instanceof Number && right instanceof Number) {
-                    return ((Number) left).doubleValue() - ((Number) right).doubleValue();
-                }
-                throw new RuntimeException("Operador '-' exige números.");
-            case STAR:
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (Integer) left * (Integer) right;
-                }
-                if (left instanceof Number && right instanceof Number) {
-                    return ((Number) left).doubleValue() * ((Number) right).doubleValue();
-                }
-                throw new RuntimeException("Operador '*' exige números.");
-            case SLASH:
-                if (left instanceof Number && right instanceof Number) {
-                    double denominator = ((Number) right).doubleValue();
-                    if (denominator == 0)
-                        throw new RuntimeException("Divisão por zero.");
-                    return ((Number) left).doubleValue() / denominator;
-                }
-                throw new RuntimeException("Operador '/' exige números.");
-            case LESS:
-                return toDouble(left) < toDouble(right);
-            case GREATER:
-                return toDouble(left) > toDouble(right);
-            case LESSEQUAL:
-                return toDouble(left) <= toDouble(right);
-            case GREATEREQUAL:
-                return toDouble(left) >= toDouble(right);
-            case EQUALEQUAL:
-                return isEqual(left, right);
-            case BANGEQUAL:
-                return !isEqual(left, right);
-            case PERCENT:
-                if (left instanceof Integer && right instanceof Integer) {
-                    return (Integer) left % (Integer) right;
-                }
-                if (left instanceof Number && right instanceof Number) {
-                    return ((Number) left).doubleValue() % ((Number) right).doubleValue();
-                }
-                throw new RuntimeException("Operador '%' exige números.");
-            default:
-                throw new RuntimeException("Operador binário desconhecido: " + expr.operator.type);
+        if (!loopValues.isEmpty()) {
+            Object kept = loopValues.get(expr);
+            if (kept == NAO_AVALIADA) {
+                Object value = binary(expr);
+                if (value instanceof Integer || value instanceof Double) loopValues.put(expr, value);
+                return value;
+            }
+            if (kept != null) return kept;
         }
+        return binary(expr);
     }
 
-    // Converte objeto do tipo Number para double, para operações de comparação.
-    private double toDouble(Object o) {
-        if (o instanceof Number) return ((Number) o).doubleValue();
-        throw new RuntimeException("Operador de comparação exige números.");
+    private Object binary(Expr.Binary expr) {
+        Object left = evaluate(expr.left);
+        // Curto-circuito: o lado direito só é avaliado se decidir o resultado
+        if (expr.operator.type == TokenType.AND) {
+            return Values.isTruthy(left) ? evaluate(expr.right) : left;
+        }
+        if (expr.operator.type == TokenType.OR) {
+            return Values.isTruthy(left) ? left : evaluate(expr.right);
+        }
+        Object right = evaluate(expr.right);
+        // Mesma semântica da VM: um erro de operando é reportado com a linha e vale 'nulo'
+        return Values.compute(expr.operator.type, left, right, expr.operator.line);
     }
 
     // Atribui valor a uma variável no ambiente
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
-        Object value = evaluate(expr.value);
+        return assign(expr, evaluate(expr.value));
+    }
+
+    Object assign(Expr.Assign expr, Object value) {
         environment.assign(expr.name.lexeme, value);
         return value;
     }
@@ -115,20 +123,55 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     // Avalia chamada de função/metodo
     @Override
     public Object visitCallExpr(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get) return invokeMethod((Expr.Get) expr.callee, expr.arguments);
         Object callee = evaluate(expr.callee);
-        if (!(callee instanceof LoxCallable)) {
-            throw new RuntimeException("Só é possível chamar funções.");
-        }
+        Expr inlined = inlined(expr, callee);
+        if (inlined != null) return evaluate(inlined);
+        LoxCallable function = callable(callee);
         List<Object> arguments = new java.util.ArrayList<>();
         for (Expr argument : expr.arguments) {
             arguments.add(evaluate(argument));
         }
-        LoxCallable function = (LoxCallable) callee;
+        return checkArity(function, arguments).call(this, arguments);
+    }
+
+    // Corpo expandido da chamada (Inliner), se 'callee' ainda é a função para a qual ele foi montado.
+    // Quando o nome passa a ser outra função, a expansão é refeita para ela (ou a chamada volta a ser normal).
+    private Expr inlined(Expr.Call expr, Object callee) {
+        InlineSite site = inlineSites.get(expr);
+        if (site == null || site.function != callee) {
+            Expr body = callee instanceof LoxFunction ? Inliner.inline(((LoxFunction) callee).declaration, expr) : null;
+            site = new InlineSite(callee, body);
+            inlineSites.put(expr, site);
+        }
+        return site.body;
+    }
+
+    private static final class InlineSite {
+        final Object function;
+        final Expr body;
+
+        InlineSite(Object function, Expr body) {
+            this.function = function;
+            this.body = body;
+        }
+    }
+
+    // Confere que 'callee' é uma função (antes de avaliar os argumentos)
+    LoxCallable callable(Object callee) {
+        if (!(callee instanceof LoxCallable)) {
+            throw new RuntimeException("Só é possível chamar funções.");
+        }
+        return (LoxCallable) callee;
+    }
+
+    // Confere que a função aceita os argumentos já avaliados
+    LoxCallable checkArity(LoxCallable function, List<Object> arguments) {
         if (arguments.size() != function.arity()) {
             throw new RuntimeException(
                     "Função espera " + function.arity() + " argumentos, recebidos " + arguments.size() + ".");
         }
-        return function.call(this, arguments);
+        return function;
     }
 
     @Override
@@ -151,14 +194,20 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     // Avalia expressão unária (!, -)
     @Override
     public Object visitUnaryExpr(Expr.Unary expr) {
-        Object right = evaluate(expr.right);
+        return unary(expr, evaluate(expr.right));
+    }
+
+    Object unary(Expr.Unary expr, Object right) {
         switch (expr.operator.type) {
             case MINUS:
-                if (right instanceof Integer) return -(Integer) right;
-                if (right instanceof Number) return -((Number) right).doubleValue();
-                throw new RuntimeException("Operador '-' exige número.");
+                try {
+                    return Values.negate(right);
+                } catch (Values.ErroOperando e) {
+                    Values.runtimeError(e.getMessage(), expr.operator.line);
+                    return null;
+                }
             case BANG:
-                return !isTruthy(right);
+                return !Values.isTruthy(right);
             default:
                 throw new RuntimeException("Operador unário desconhecido: " + expr.operator.type);
         }
@@ -170,50 +219,182 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     // Avalia expressão de incremento (++x ou x++)
     @Override
     public Object visitIncrementoExpr(Expr.Incremento expr) {
-        Object value = environment.get(expr.name);
-        if (!(value instanceof Integer)) {
-            throw new RuntimeException("Operador '++' exige variável do tipo inteiro.");
-        }
-        int resultado;
-        if (expr.prefix) {
-            resultado = ((Integer) value) + 1;
-            environment.assign(expr.name.lexeme, resultado);
-            return resultado;
-        } else {
-            resultado = ((Integer) value);
-            environment.assign(expr.name.lexeme, resultado + 1);
-            return resultado;
-        }
+        return step(expr.name, TokenType.PLUS, expr.prefix);
     }
 
 
     // Avalia expressão de decremento (--x ou x--)
     @Override
     public Object visitDecrementoExpr(Expr.Decremento expr) {
-        Object value = environment.get(expr.name);
-        if (!(value instanceof Integer)) {
-            throw new RuntimeException("Operador '--' exige variável do tipo inteiro.");
+        return step(expr.name, TokenType.MINUS, expr.prefix);
+    }
+
+    // x = x + 1 (ou - 1) com a aritmética da VM; o valor é o novo (prefixo) ou o anterior (sufixo)
+    private Object step(Token name, TokenType op, boolean prefix) {
+        Object value = environment.get(name);
+        Object resultado = Values.compute(op, value, 1, name.line);
+        environment.assign(name.lexeme, resultado);
+        return prefix ? resultado : value;
+    }
+
+    // *****************************************
+    //           VETORES E MAPAS
+    // *****************************************
+    @Override
+    public Object visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        Object[] values = new Object[expr.elements.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluate(expr.elements.get(i));
+        }
+        return ArrayValue.of(values);
+    }
+
+    @Override
+    public Object visitIndexExpr(Expr.Index expr) {
+        return index(expr, evaluate(expr.object), evaluate(expr.index));
+    }
+
+    Object index(Expr.Index expr, Object array, Object index) {
+        try {
+            return Builtins.index(array, index);
+        } catch (Builtins.Erro e) {
+            Values.runtimeError(e.getMessage(), expr.bracket.line);
+            return null;
+        }
+    }
+
+    @Override
+    public Object visitIndexSetExpr(Expr.IndexSet expr) {
+        Object array = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        return indexSet(expr, array, index, evaluate(expr.value));
+    }
+
+    Object indexSet(Expr.IndexSet expr, Object array, Object index, Object value) {
+        try {
+            Builtins.store(array, index, value);
+        } catch (Builtins.Erro e) {
+            Values.runtimeError(e.getMessage(), expr.bracket.line);
+        }
+        return value;
+    }
+
+    @Override
+    public Object visitMapLiteralExpr(Expr.MapLiteral expr) {
+        Object[] pairs = new Object[expr.keys.size() * 2];
+        for (int i = 0; i < expr.keys.size(); i++) {
+            pairs[2 * i] = evaluate(expr.keys.get(i));
+            pairs[2 * i + 1] = evaluate(expr.values.get(i));
+        }
+        return MapValue.of(pairs);
+    }
+
+    // receptor.metodo(args): métodos embutidos dos mapas
+    private Object invokeMethod(Expr.Get target, List<Expr> arguments) {
+        Object receiver = evaluate(target.object);
+        int aridade = checkMethod(target, arguments.size());
+        Object a = aridade > 0 ? evaluate(arguments.get(0)) : null;
+        Object b = aridade > 1 ? evaluate(arguments.get(1)) : null;
+        return invokeMethod(target, receiver, a, b);
+    }
+
+    // Confere (depois de avaliar o receptor) que o método existe e aceita 'count' argumentos
+    int checkMethod(Expr.Get target, int count) {
+        String metodo = target.name.lexeme;
+        int aridade = Builtins.aridade(metodo);
+        if (aridade < 0) throw new RuntimeException("Método '" + metodo + "' desconhecido.");
+        if (count != aridade) {
+            throw new RuntimeException(
+                    "Método '" + metodo + "' espera " + aridade + " argumentos, recebidos " + count + ".");
+        }
+        return aridade;
+    }
+
+    Object invokeMethod(Expr.Get target, Object receiver, Object a, Object b) {
+        try {
+            return Builtins.invoke(receiver, target.name.lexeme, a, b);
+        } catch (Builtins.Erro e) {
+            Values.runtimeError(e.getMessage(), target.name.line);
+            return null;
+        }
+    }
+
+    // Por enquanto a única propriedade é o tamanho (de vetores e mapas)
+    @Override
+    public Object visitGetExpr(Expr.Get expr) {
+        return get(expr, evaluate(expr.object));
+    }
+
+    Object get(Expr.Get expr, Object object) {
+        try {
+            if (expr.name.lexeme.equals("tamanho")) return Builtins.length(object);
+            return Builtins.field(object, expr.name.lexeme);
+        } catch (Builtins.Erro e) {
+            Values.runtimeError(e.getMessage(), expr.name.line);
+            return null;
+        }
+    }
+
+    @Override
+    public Object visitRangeExpr(Expr.Range expr) {
+        Object start = evaluate(expr.start);
+        return range(expr, start, evaluate(expr.end));
+    }
+
+    Object range(Expr.Range expr, Object start, Object end) {
+        try {
+            return Builtins.range(start, end);
+        } catch (Builtins.Erro e) {
+            Values.runtimeError(e.getMessage(), expr.paren.line);
+            return null;
+        }
+    }
+
+    @Override
+    public Object visitSetExpr(Expr.Set expr) {
+        Object object = evaluate(expr.object);
+        return set(expr, object, evaluate(expr.value));
+    }
+
+    Object set(Expr.Set expr, Object object, Object value) {
+        try {
+            Builtins.setField(object, expr.name.lexeme, value);
+        } catch (Builtins.Erro e) {
+            Values.runtimeError(e.getMessage(), expr.name.line);
         }
-        int resultado;
-        if (expr.prefix) {
-            resultado = ((Integer) value) - 1;
-            environment.assign(expr.name.lexeme, resultado);
-            return resultado;
-        } else {
-            resultado = ((Integer) value);
-            environment.assign(expr.name.lexeme, resultado - 1);
-            return resultado;
+        return value;
+    }
+
+    @Override
+    public Object visitNewExpr(Expr.New expr) {
+        Object[] values = new Object[expr.arguments.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = evaluate(expr.arguments.get(i));
         }
+        return newRecord(expr, values);
+    }
+
+    Object newRecord(Expr.New expr, Object[] values) {
+        return recordTypes.computeIfAbsent(expr.record, RecordType::of).create(values);
+    }
+
+    // O tipo já é conhecido pelo Parser; não há nada a executar
+    @Override
+    public Void visitRecordStmt(Stmt.Record stmt) {
+        return null;
     }
 
     // Executa comando "print"
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
-        Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        print(evaluate(stmt.expression));
         return null;
     }
 
+    void print(Object value) {
+        System.out.println(Values.stringify(value));
+    }
+
     // Declaração de variável
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
@@ -228,14 +409,30 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     // Declaração de função
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
-        LoxFunction function = new LoxFunction(stmt, environment);
-        environment.define(stmt.name.lexeme, function);
+        environment.define(stmt.name.lexeme, new LoxFunction(stmt, environment));
         return null;
     }
 
-    // Retorna um valor da função (usando exceção para controle de fluxo)
+    // Retorna um valor da função (usando exceção para controle de fluxo).
+    // Chamada de cauda: em vez de chamar daqui (mais um nível na pilha Java a cada volta de uma
+    // recursão), devolve a função e os argumentos ao LoxFunction.call de quem retorna, que a executa
+    // no lugar do corpo atual. Assim a recursão de cauda corre com a pilha constante.
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.tailCall) {
+            Expr.Call call = (Expr.Call) stmt.value;
+            Object callee = evaluate(call.callee);
+            Expr inlined = inlined(call, callee);
+            if (inlined != null) throw new ReturnException(evaluate(inlined));
+            LoxCallable function = callable(callee);
+            List<Object> arguments = new java.util.ArrayList<>();
+            for (Expr argument : call.arguments) {
+                arguments.add(evaluate(argument));
+            }
+            checkArity(function, arguments);
+            if (function instanceof LoxFunction) throw new TailCall((LoxFunction) function, arguments);
+            throw new ReturnException(function.call(this, arguments));
+        }
         Object value = null;
         if (stmt.value != null) value = evaluate(stmt.value);
         throw new ReturnException(value);
@@ -244,7 +441,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     // Executa um comando "if"
     @Override
     public Void visitIfStmt(Stmt.If stmt) {
-        if (isTruthy(evaluate(stmt.condition))) {
+        if (Values.isTruthy(evaluate(stmt.condition))) {
             execute(stmt.thenBranch);
         } else if (stmt.elseBranch != null) {
             execute(stmt.elseBranch);
@@ -269,7 +466,62 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     // Laço while com suporte a break
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
-        while (isTruthy(evaluate(stmt.condition))) {
+        List<Expr.Binary> invariants = enterLoop(loopInvariants.computeIfAbsent(stmt, s -> LoopInvariants.of(stmt).invariants));
+        try {
+            while (Values.isTruthy(evaluate(stmt.condition))) {
+                try {
+                    execute(stmt.body);
+                } catch (BreakException e) {
+                    break;
+                }
+            }
+        } finally {
+            invariants.forEach(loopValues::remove);
+        }
+        return null;
+    }
+
+    // FAZAVOLTA: a variável da inicialização fica no escopo atual, como nas VMs (que só têm globais)
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        if (stmt.initializer != null) execute(stmt.initializer);
+        List<Expr.Binary> invariants = enterLoop(loopInvariants.computeIfAbsent(stmt, s -> LoopInvariants.of(stmt, null).invariants));
+        try {
+            while (stmt.condition == null || Values.isTruthy(evaluate(stmt.condition))) {
+                try {
+                    execute(stmt.body);
+                } catch (BreakException e) {
+                    break;
+                }
+                if (stmt.increment != null) evaluate(stmt.increment);
+            }
+        } finally {
+            invariants.forEach(loopValues::remove);
+        }
+        return null;
+    }
+
+    // Invariantes do laço: cada uma é calculada na primeira avaliação depois da entrada e o valor
+    // serve às voltas seguintes. As que um laço de fora já registou ficam com ele; devolve as
+    // registadas aqui, para serem retiradas à saída.
+    private List<Expr.Binary> enterLoop(List<Expr.Binary> invariants) {
+        if (invariants.isEmpty()) return invariants;
+        List<Expr.Binary> entered = new java.util.ArrayList<>(invariants.size());
+        for (Expr.Binary invariant : invariants) {
+            if (!loopValues.containsKey(invariant)) {
+                loopValues.put(invariant, NAO_AVALIADA);
+                entered.add(invariant);
+            }
+        }
+        return entered;
+    }
+
+    // FAZAVOLTA (VAR x : sequencia): um elemento de cada vez, sem montar a sequência
+    @Override
+    public Void visitForEachStmt(Stmt.ForEach stmt) {
+        Iterator<Object> elements = iterator(stmt, evaluate(stmt.iterable));
+        while (elements.hasNext()) {
+            environment.define(stmt.name.lexeme, elements.next());
             try {
                 execute(stmt.body);
             } catch (BreakException e) {
@@ -279,28 +531,22 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    Iterator<Object> iterator(Stmt.ForEach stmt, Object sequence) {
+        try {
+            return Builtins.iterator(sequence);
+        } catch (Builtins.Erro e) {
+            Values.runtimeError(e.getMessage(), stmt.name.line);
+            return java.util.Collections.emptyIterator(); // o laço não dá nenhuma volta
+        }
+    }
+
     // Implementa o comando switch-case com break
     @Override
     public Void visitSwitchStmt(Stmt.Switch stmt) {
-        Object switchValue = evaluate(stmt.expr);
-        boolean found = false;
-        if (stmt.cases != null) {
-            for (Stmt.Case cs : stmt.cases) {
-                Object caseValue = evaluate(cs.value);
-                if (isEqual(switchValue, caseValue)) {
-                    try {
-                        execute(cs.stmt);
-                    } catch (BreakException e) {
-                        return null;
-                    }
-                    found = true;
-                    break;
-                }
-            }
-        }
-        if (!found && stmt.defaultCase != null) {
+        Stmt.Case chosen = chosen(stmt, evaluate(stmt.expr));
+        if (chosen != null) {
             try {
-                execute(stmt.defaultCase.stmt);
+                execute(chosen.stmt);
             } catch (BreakException e) {
                 return null;
             }
@@ -308,6 +554,31 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         return null;
     }
 
+    // O CASO (ou PADRAO) escolhido pelo valor, ou null
+    Stmt.Case chosen(Stmt.Switch stmt, Object switchValue) {
+        if (!switchTables.containsKey(stmt)) {
+            switchTables.put(stmt, SwitchTable.of(stmt));
+        }
+        SwitchTable table = switchTables.get(stmt);
+
+        Stmt.Case chosen = null;
+        if (table != null) {
+            // CASO todos constantes: o caso sai da tabela, sem avaliar nem comparar um a um
+            int index = table.lookup(switchValue);
+            if (index >= 0) chosen = stmt.cases.get(index);
+        } else if (stmt.cases != null) {
+            for (Stmt.Case cs : stmt.cases) {
+                Object caseValue = evaluate(cs.value);
+                if (Values.isEqual(switchValue, caseValue)) {
+                    chosen = cs;
+                    break;
+                }
+            }
+        }
+        if (chosen == null) chosen = stmt.defaultCase;
+        return chosen;
+    }
+
     // Comando break interrompe loops (throw para controle de fluxo)
     public Void visitBreakStmt(Stmt.Break stmt) {
         throw new BreakException();
@@ -317,7 +588,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitInputStmt(Stmt.Input stmt) {
         System.out.print("> ");
-        String linha = consoleInput.nextLine();
+        String linha = Values.readLine(); // o mesmo leitor da VM (modo misto)
         Object valor = null;
         boolean atribuiu = false;
         // Tenta interpretar a linha como uma atribuição da linguagem
@@ -351,12 +622,12 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     // Avalia uma expressão chamando o metodo accept do padrão visitor
-    private Object evaluate(Expr expr) {
+    Object evaluate(Expr expr) {
         return expr.accept(this);
     }
 
     // Executa um comando chamando accept
-    private void execute(Stmt stmt) {
+    void execute(Stmt stmt) {
         stmt.accept(this);
     }
 
@@ -375,27 +646,6 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         }
     }
 
-    // Converte objeto para string, com tratamento especial para nulo e booleanos
-    private String stringify(Object object) {
-        if (object == null) return "nulo";
-        if (object instanceof Boolean) return (Boolean) object ? "verdadeiro" : "falso";
-        return object.toString();
-    }
-
-    // Checa o que é considerado "verdadeiro" na linguagem
-    private boolean isTruthy(Object object) {
-        if (object == null) return false;
-        if (object instanceof Boolean) return (boolean) object;
-        return true;
-    }
-
-    // Compara igualdade de dois objetos, tratando nulos
-    private boolean isEqual(Object a, Object b) {
-        if (a == null && b == null) return true;
-        if (a == null) return false;
-        return a.equals(b);
-    }
-
     // Interface para funções e métodos chamados na linguagem.
     interface LoxCallable {
         int arity(); // quantidade de parâmetros
@@ -403,9 +653,21 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     // Implementação de uma função definida pelo usuário.
+    // Uma função pura guarda os resultados em 'memo'. Os resultados só valem enquanto os nomes que
+    // o corpo chama continuarem a ser as mesmas funções puras: 'bound' guarda cada uma (e a versão
+    // do cache dela) tal como estavam quando os resultados foram calculados.
+    // A análise de pureza (e com ela a do corpo, se o Parser só o pré-analisou) fica para a
+    // primeira chamada: declarar uma função que nunca é chamada não custa mais que isso.
     class LoxFunction implements LoxCallable {
         private final Stmt.Function declaration;
         private final Environment closure;
+        private boolean prepared;
+        private MemoTable memo;
+        private String[] callees;
+        private LoxFunction[] bound;
+        private int[] boundVersions;
+        private int version;       // muda cada vez que o cache é esvaziado
+        private boolean checking;  // em memoizable(), para não dar voltas na recursão mútua
 
         LoxFunction(Stmt.Function declaration, Environment closure) {
             this.declaration = declaration;
@@ -415,18 +677,128 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         public int arity() {
             return declaration.parameters.size();
         }
+
+        private void prepare() {
+            if (prepared) return;
+            if (!pureCallees.containsKey(declaration)) {
+                java.util.Set<String> names = Purity.callees(declaration);
+                pureCallees.put(declaration, names != null ? names.toArray(new String[0]) : null);
+            }
+            callees = pureCallees.get(declaration);
+            if (callees != null) {
+                memo = new MemoTable(declaration.name.lexeme);
+                bound = new LoxFunction[callees.length];
+                boundVersions = new int[callees.length];
+                memoTables.add(memo);
+            }
+            prepared = true;
+        }
+
+        // As primeiras CHAMADAS_NATIVAS chamadas aninhadas correm na pilha Java; daí para baixo
+        // a chamada (e tudo o que ela chamar) corre nos frames do FrameStack
         @Override
         public Object call(Interpreter interpreter, List<Object> arguments) {
+            if (interpreter.depth >= CHAMADAS_NATIVAS) return interpreter.frames.call(this, arguments);
+            Object key = memoKey(arguments);
+            if (key == null) return runNative(interpreter, arguments);
+            Object cached = memo.get(key);
+            if (cached != MemoTable.AUSENTE) return cached;
+            long errors = Values.reportedErrors();
+            Object result = runNative(interpreter, arguments);
+            remember(key, result, errors);
+            return result;
+        }
+
+        private Object runNative(Interpreter interpreter, List<Object> arguments) {
+            interpreter.depth++;
+            try {
+                return run(interpreter, arguments);
+            } finally {
+                interpreter.depth--;
+            }
+        }
+
+        // Chave dos argumentos no cache, ou null se a chamada não pode usar o cache
+        Object memoKey(List<Object> arguments) {
+            prepare();
+            return memo != null && memoizable() ? MemoTable.key(arguments) : null;
+        }
+
+        // Resultado guardado para a chave (ou MemoTable.AUSENTE)
+        Object cached(Object key) {
+            return memo.get(key);
+        }
+
+        // Guarda o resultado, a não ser que a chamada tenha reportado um erro (desde 'errors')
+        void remember(Object key, Object result, long errors) {
+            if (Values.reportedErrors() == errors) memo.put(key, result);
+        }
+
+        // Ambiente de uma chamada: os parâmetros sobre o ambiente onde a função foi declarada
+        Environment bind(List<Object> arguments) {
             Environment environment = new Environment(closure);
-            for (int i = 0; i < declaration.parameters.size(); i++) {
-                environment.define(declaration.parameters.get(i).lexeme, arguments.get(i));
+            List<Token> parameters = declaration.parameters;
+            for (int i = 0; i < parameters.size(); i++) {
+                environment.define(parameters.get(i).lexeme, arguments.get(i));
             }
+            return environment;
+        }
+
+        List<Stmt> body() {
+            return declaration.body();
+        }
+
+        // Cada função chamada pelo corpo ainda é pura? Se alguma mudou (outra função com o mesmo
+        // nome, ou o cache dela foi esvaziado), os resultados guardados aqui também caem.
+        private boolean memoizable() {
+            if (checking) return true; // recursão: já está a ser conferida mais acima
+            checking = true;
             try {
-                interpreter.executeBlock(declaration.body, environment);
-            } catch (ReturnException returnValue) {
-                return returnValue.value;
+                for (int i = 0; i < callees.length; i++) {
+                    Object current = closure.find(callees[i]);
+                    if (current == this) continue;
+                    if (!(current instanceof LoxFunction)) return false;
+                    LoxFunction callee = (LoxFunction) current;
+                    callee.prepare();
+                    if (callee.memo == null || !callee.memoizable()) return false;
+                    if (callee != bound[i] || callee.version != boundVersions[i]) {
+                        bound[i] = callee;
+                        boundVersions[i] = callee.version;
+                        memo.clear();
+                        version++;
+                    }
+                }
+                return true;
+            } finally {
+                checking = false;
+            }
+        }
+
+        // Cada TailCall troca a função e os argumentos e repete o laço, no mesmo frame Java
+        private Object run(Interpreter interpreter, List<Object> arguments) {
+            LoxFunction function = this;
+            while (true) {
+                try {
+                    interpreter.executeBlock(function.body(), function.bind(arguments));
+                    return null;
+                } catch (ReturnException returnValue) {
+                    return returnValue.value;
+                } catch (TailCall tail) {
+                    function = tail.function;
+                    arguments = tail.arguments;
+                }
             }
-            return null;
+        }
+    }
+
+    // RETORNA f(x) em posição de cauda: a chamada pendente, executada pelo LoxFunction.call
+    static class TailCall extends RuntimeException {
+        final LoxFunction function;
+        final List<Object> arguments;
+        TailCall(LoxFunction function, List<Object> arguments) {
+            super(null, null, false, false);
+            this.function = function;
+            this.arguments = arguments;
         }
     }
 
@@ -445,13 +817,15 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     // Ambiente que representa variáveis definidas e seus valores.
     class Environment {
-        private final Map<String, Object> values = new HashMap<>();
+        private final Map<String, Object> values;
         private final Environment enclosing; // ambiente pai para escopos aninhados
 
-        Environment() {
+        Environment(Map<String, Object> values) {
+            this.values = values;
             this.enclosing = null;
         }
         Environment(Environment enclosing) {
+            this.values = new HashMap<>();
             this.enclosing = enclosing;
         }
         // Define uma nova variável no ambiente atual
@@ -466,6 +840,14 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             if (enclosing != null) return enclosing.get(name);
             throw new RuntimeException("Variável '" + name.lexeme + "' não definida.");
         }
+        // Valor da variável, ou null se ela não existe (sem erro)
+        Object find(String name) {
+            for (Environment scope = this; scope != null; scope = scope.enclosing) {
+                Object value = scope.values.get(name);
+                if (value != null || scope.values.containsKey(name)) return value;
+            }
+            return null;
+        }
         // Atribui valor a variável existente, buscando recursivamente em ambientes pai
         void assign(String name, Object value) {
             if (values.containsKey(name)) {
@@ -0,0 +1,287 @@
+package Semantica;
+
+import Lexica.TokenType;
+import Sintatica.Expr;
+import Sintatica.Stmt;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Expressões de um laço que valem o mesmo em todas as voltas: contas (+ - * /) sobre literais e
+// variáveis que nada no laço escreve (condição, corpo, passo e laços de dentro). Em
+// 'VOLTAINFINITA (i <= n * 2)', 'n * 2' não precisa de ser recalculada a cada volta.
+// Quem executa o laço guarda o valor na primeira avaliação depois de entrar nele e reaproveita-o
+// nas seguintes; por isso a primeira avaliação acontece no mesmo ponto de antes, com os mesmos
+// erros, mesmo que a expressão esteja dentro de um SE ou o laço não dê nenhuma volta.
+// Num FAZAVOLTA contado, os produtos 'i * k' (i a variável do laço, k invariante) também são
+// devolvidos: a cada volta o produto cresce passo * k, e uma soma substitui a multiplicação.
+// Uma chamada de FUNCAO (ou uma FUNCAO declarada no laço) pode escrever qualquer variável: nesse
+// caso não há invariantes. Usada pelo Interpreter e pelo Compiler.
+public final class LoopInvariants implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    // Invariantes máximas (nenhuma está dentro de outra), na ordem do código
+    public final List<Expr.Binary> invariants = new ArrayList<>();
+    // Produtos 'i * k' / 'k * i' pela variável contada (só com counter != null)
+    public final List<Expr.Binary> products = new ArrayList<>();
+
+    private final String counter;
+    private final Set<String> written = new HashSet<>();
+    private boolean opaque;
+    // Primeira passagem: só recolhe as variáveis escritas; a segunda procura as expressões
+    private boolean collecting = true;
+
+    private LoopInvariants(String counter) {
+        this.counter = counter;
+    }
+
+    public static LoopInvariants of(Stmt.While stmt) {
+        LoopInvariants loop = new LoopInvariants(null);
+        loop.scan(stmt.condition, null, stmt.body);
+        return loop;
+    }
+
+    // 'counter': variável de um FAZAVOLTA contado, cujos produtos interessam; null nos outros
+    public static LoopInvariants of(Stmt.For stmt, String counter) {
+        LoopInvariants loop = new LoopInvariants(counter);
+        loop.scan(stmt.condition, stmt.increment, stmt.body);
+        return loop;
+    }
+
+    // O outro fator de um produto devolvido em 'products'
+    public Expr factor(Expr.Binary product) {
+        return isCounter(product.left) ? product.right : product.left;
+    }
+
+    private void scan(Expr condition, Expr increment, Stmt body) {
+        expr(condition);
+        expr(increment);
+        stmt(body);
+        if (opaque) return;
+        collecting = false;
+        expr(condition);
+        expr(increment);
+        stmt(body);
+    }
+
+    private void stmt(Stmt stmt) {
+        if (stmt != null) stmt.accept(this);
+    }
+
+    private void expr(Expr expr) {
+        if (expr != null) expr.accept(this);
+    }
+
+    // Literais, variáveis não escritas e contas sobre elas
+    private boolean isInvariant(Expr expr) {
+        if (expr instanceof Expr.Literal) return true;
+        if (expr instanceof Expr.Variable) return !written.contains(((Expr.Variable) expr).name.lexeme);
+        if (expr instanceof Expr.Grouping) return isInvariant(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            return unary.operator.type == TokenType.MINUS && isInvariant(unary.right);
+        }
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            return isArithmetic(binary) && isInvariant(binary.left) && isInvariant(binary.right);
+        }
+        return false;
+    }
+
+    private static boolean isArithmetic(Expr.Binary expr) {
+        switch (expr.operator.type) {
+            case PLUS: case MINUS: case STAR: case SLASH: return true;
+            default: return false;
+        }
+    }
+
+    private boolean isCounter(Expr expr) {
+        while (expr instanceof Expr.Grouping) expr = ((Expr.Grouping) expr).expression;
+        return counter != null && expr instanceof Expr.Variable && ((Expr.Variable) expr).name.lexeme.equals(counter);
+    }
+
+    // --- Comandos ---
+
+    @Override public Void visitPrintStmt(Stmt.Print stmt) { expr(stmt.expression); return null; }
+    @Override public Void visitExpressionStmt(Stmt.Expression stmt) { expr(stmt.expr); return null; }
+    @Override public Void visitReturnStmt(Stmt.Return stmt) { expr(stmt.value); return null; }
+    @Override public Void visitBreakStmt(Stmt.Break stmt) { return null; }
+    @Override public Void visitRecordStmt(Stmt.Record stmt) { return null; }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        opaque = true;
+        return null;
+    }
+
+    @Override
+    public Void visitInputStmt(Stmt.Input stmt) {
+        written.add(stmt.name.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        expr(stmt.initializer);
+        written.add(stmt.name.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        expr(stmt.condition);
+        stmt(stmt.thenBranch);
+        stmt(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        for (Stmt s : stmt.statements) stmt(s);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        expr(stmt.condition);
+        stmt(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitForStmt(Stmt.For stmt) {
+        stmt(stmt.initializer);
+        expr(stmt.condition);
+        expr(stmt.increment);
+        stmt(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitForEachStmt(Stmt.ForEach stmt) {
+        expr(stmt.iterable);
+        written.add(stmt.name.lexeme);
+        stmt(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitSwitchStmt(Stmt.Switch stmt) {
+        expr(stmt.expr);
+        if (stmt.cases != null) {
+            for (Stmt.Case cs : stmt.cases) {
+                expr(cs.value);
+                stmt(cs.stmt);
+            }
+        }
+        if (stmt.defaultCase != null) stmt(stmt.defaultCase.stmt);
+        return null;
+    }
+
+    // --- Expressões ---
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        if (!collecting) {
+            if (isInvariant(expr)) {
+                invariants.add(expr);
+                return null;
+            }
+            if (expr.operator.type == TokenType.STAR && (isCounter(expr.left) != isCounter(expr.right))
+                    && isInvariant(factor(expr))) {
+                products.add(expr);
+                expr(factor(expr)); // o fator pode ser ele próprio uma invariante
+                return null;
+            }
+        }
+        expr(expr.left);
+        expr(expr.right);
+        return null;
+    }
+
+    @Override public Void visitLiteralExpr(Expr.Literal expr) { return null; }
+    @Override public Void visitVariableExpr(Expr.Variable expr) { return null; }
+    @Override public Void visitGroupingExpr(Expr.Grouping expr) { expr(expr.expression); return null; }
+    @Override public Void visitUnaryExpr(Expr.Unary expr) { expr(expr.right); return null; }
+    @Override public Void visitGetExpr(Expr.Get expr) { expr(expr.object); return null; }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        written.add(expr.name.lexeme);
+        expr(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitIncrementoExpr(Expr.Incremento expr) {
+        written.add(expr.name.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitDecrementoExpr(Expr.Decremento expr) {
+        written.add(expr.name.lexeme);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        expr(expr.object);
+        expr(expr.index);
+        return null;
+    }
+
+    // v[i] = x e p.x = v mudam um elemento ou um campo, não a variável
+    @Override
+    public Void visitIndexSetExpr(Expr.IndexSet expr) {
+        expr(expr.object);
+        expr(expr.index);
+        expr(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        expr(expr.object);
+        expr(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitRangeExpr(Expr.Range expr) {
+        expr(expr.start);
+        expr(expr.end);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        for (Expr element : expr.elements) expr(element);
+        return null;
+    }
+
+    @Override
+    public Void visitMapLiteralExpr(Expr.MapLiteral expr) {
+        for (int i = 0; i < expr.keys.size(); i++) {
+            expr(expr.keys.get(i));
+            expr(expr.values.get(i));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitNewExpr(Expr.New expr) {
+        for (Expr argument : expr.arguments) expr(argument);
+        return null;
+    }
+
+    // Um método embutido não mexe em variáveis; uma FUNCAO pode mexer em qualquer uma
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        if (!(expr.callee instanceof Expr.Get)) opaque = true;
+        expr(expr.callee);
+        for (Expr argument : expr.arguments) expr(argument);
+        return null;
+    }
+}
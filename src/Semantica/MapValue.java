@@ -0,0 +1,232 @@
+package Semantica;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+// Mapa da linguagem: {"a": 1, 2: "b"}, m[k], m[k] = v, m.tem(k), m.chaves()...
+// As entradas ficam em arrays paralelos, na ordem de inserção; 'slots' é uma tabela de
+// endereçamento aberto (sondagem linear) que guarda a posição de cada entrada. Enquanto todas
+// as chaves forem inteiras elas ficam num int[], sem caixas; a primeira chave de outro tipo
+// passa para um Object[] (o hash de um inteiro é o mesmo nas duas formas, a tabela não muda).
+// Procurar uma chave não aloca nada. Igualdade das chaves como em isEqual (um StringValue entra
+// como o seu String); dos mapas, por identidade.
+public final class MapValue {
+
+    private static final int VAZIO = 0;
+    private static final int APAGADO = -1;
+
+    // Valor das entradas removidas (até a próxima reconstrução, que as descarta)
+    private static final Object REMOVIDO = new Object();
+
+    private int[] slots;     // potência de 2: posição da entrada + 1, VAZIO ou APAGADO
+    private int[] intKeys;   // chaves enquanto forem todas inteiras (null na forma genérica)
+    private Object[] keys;   // chaves na forma genérica
+    private Object[] values;
+    private int used;        // entradas escritas, incluindo as removidas
+    private int size;
+
+    public MapValue() {
+        slots = new int[8];
+        intKeys = new int[capacity(slots.length)];
+        values = new Object[intKeys.length];
+    }
+
+    // Mapa do literal: chave e valor alternados
+    public static MapValue of(Object[] pairs) {
+        MapValue map = new MapValue();
+        for (int i = 0; i + 1 < pairs.length; i += 2) {
+            map.put(pairs[i], pairs[i + 1]);
+        }
+        return map;
+    }
+
+    // Entradas que cabem numa tabela de 'slots' posições: ocupação máxima de 2/3
+    private static int capacity(int slotCount) {
+        return slotCount * 2 / 3;
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(Object key) {
+        return hash(key == null ? 0 : key.hashCode()); // Integer.hashCode() é o próprio valor
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // --- Procura ---
+
+    // Posição da entrada com a chave, ou -1
+    private int find(Object key) {
+        key = StringValue.flat(key);
+        if (intKeys != null) {
+            return key instanceof Integer ? find((int) (Integer) key) : -1;
+        }
+        int mask = slots.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == VAZIO) return -1;
+            if (slot > 0 && Objects.equals(keys[slot - 1], key)) return slot - 1;
+        }
+    }
+
+    private int find(int key) {
+        int mask = slots.length - 1;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == VAZIO) return -1;
+            if (slot > 0 && intKeys[slot - 1] == key) return slot - 1;
+        }
+    }
+
+    // Posição na tabela que aponta para a entrada dada
+    private int slotOf(int entry, int hash) {
+        int mask = slots.length - 1;
+        int i = hash & mask;
+        while (slots[i] != entry + 1) i = (i + 1) & mask;
+        return i;
+    }
+
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    public Object get(Object key) {
+        int entry = find(key);
+        return entry >= 0 ? values[entry] : null;
+    }
+
+    public Object getOrDefault(Object key, Object fallback) {
+        int entry = find(key);
+        return entry >= 0 ? values[entry] : fallback;
+    }
+
+    // --- Alteração ---
+
+    public void put(Object key, Object value) {
+        key = StringValue.flat(key);
+        int entry = find(key);
+        if (entry >= 0) {
+            values[entry] = value;
+            return;
+        }
+        if (intKeys != null && !(key instanceof Integer)) generalize();
+        if (used == values.length) rebuild(size + 1);
+
+        int h = hash(key);
+        int mask = slots.length - 1;
+        int i = h & mask;
+        while (slots[i] > 0) i = (i + 1) & mask; // primeira posição livre ou apagada
+        slots[i] = used + 1;
+        if (intKeys != null) intKeys[used] = (Integer) key;
+        else keys[used] = key;
+        values[used] = value;
+        used++;
+        size++;
+    }
+
+    // Remove a chave e devolve o valor que ela tinha (nulo se não existia)
+    public Object remove(Object key) {
+        int entry = find(key);
+        if (entry < 0) return null;
+        Object old = values[entry];
+        int h = intKeys != null ? hash(intKeys[entry]) : hash(keys[entry]);
+        slots[slotOf(entry, h)] = APAGADO;
+        values[entry] = REMOVIDO;
+        if (keys != null) keys[entry] = null;
+        size--;
+        return old;
+    }
+
+    // Primeira chave que não é inteira: as chaves existentes ganham caixa, uma só vez
+    private void generalize() {
+        keys = new Object[values.length];
+        for (int i = 0; i < used; i++) {
+            if (values[i] != REMOVIDO) keys[i] = intKeys[i];
+        }
+        intKeys = null;
+    }
+
+    // Tabela nova para pelo menos 'needed' entradas, sem as removidas
+    private void rebuild(int needed) {
+        int slotCount = Integer.highestOneBit(Math.max(needed, 4) * 3) << 1;
+        int capacity = capacity(slotCount);
+        int[] newIntKeys = intKeys != null ? new int[capacity] : null;
+        Object[] newKeys = intKeys == null ? new Object[capacity] : null;
+        Object[] newValues = new Object[capacity];
+        int[] newSlots = new int[slotCount];
+        int mask = slotCount - 1;
+        int count = 0;
+        for (int e = 0; e < used; e++) {
+            if (values[e] == REMOVIDO) continue;
+            int h;
+            if (newIntKeys != null) {
+                newIntKeys[count] = intKeys[e];
+                h = hash(intKeys[e]);
+            } else {
+                newKeys[count] = keys[e];
+                h = hash(keys[e]);
+            }
+            newValues[count] = values[e];
+            int i = h & mask;
+            while (newSlots[i] != VAZIO) i = (i + 1) & mask;
+            newSlots[i] = ++count;
+        }
+        slots = newSlots;
+        intKeys = newIntKeys;
+        keys = newKeys;
+        values = newValues;
+        used = count;
+    }
+
+    // --- Iteração, na ordem de inserção ---
+
+    public ArrayValue keys() {
+        if (intKeys != null) {
+            int[] result = new int[size];
+            int n = 0;
+            for (int e = 0; e < used; e++) {
+                if (values[e] != REMOVIDO) result[n++] = intKeys[e];
+            }
+            return ArrayValue.ofInts(result);
+        }
+        Object[] result = new Object[size];
+        int n = 0;
+        for (int e = 0; e < used; e++) {
+            if (values[e] != REMOVIDO) result[n++] = keys[e];
+        }
+        return ArrayValue.of(result);
+    }
+
+    public ArrayValue values() {
+        Object[] result = new Object[size];
+        int n = 0;
+        for (int e = 0; e < used; e++) {
+            if (values[e] != REMOVIDO) result[n++] = values[e];
+        }
+        return ArrayValue.of(result);
+    }
+
+    // {chave: valor, ...}, com cada chave e valor escritos pelo stringify do motor que imprime
+    public String format(Function<Object, String> stringify) {
+        StringBuilder text = new StringBuilder("{");
+        boolean first = true;
+        for (int e = 0; e < used; e++) {
+            if (values[e] == REMOVIDO) continue;
+            if (!first) text.append(", ");
+            first = false;
+            Object key = intKeys != null ? (Object) intKeys[e] : keys[e];
+            text.append(stringify.apply(key)).append(": ").append(stringify.apply(values[e]));
+        }
+        return text.append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return format(String::valueOf);
+    }
+}
@@ -0,0 +1,80 @@
+package Semantica;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Cache de resultados de uma FUNCAO pura (Purity), com contadores de acertos e faltas.
+// Só entram chamadas cujos argumentos são todos primitivos (inteiro, quebrado, booleano, texto,
+// nulo) e cujo resultado também é: um vetor devolvido do cache seria partilhado entre chamadas.
+// Um ou dois argumentos inteiros viram uma chave long; os outros casos, uma lista dos valores.
+// Capacidade fixa, com despejo do menos usado recentemente (LinkedHashMap em ordem de acesso).
+public final class MemoTable {
+
+    private static final int CAPACIDADE = 4096;
+
+    // Resultado de get quando a chave não está no cache (nulo é um resultado válido)
+    static final Object AUSENTE = new Object();
+
+    private final String name;
+    private final Map<Object, Object> entries = new LinkedHashMap<Object, Object>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+            return size() > CAPACIDADE;
+        }
+    };
+    private long hits;
+    private long misses;
+
+    MemoTable(String name) {
+        this.name = name;
+    }
+
+    // Chave dos argumentos, ou null se algum não for primitivo
+    static Object key(List<Object> arguments) {
+        int size = arguments.size();
+        if (size <= 2) {
+            boolean ints = true;
+            for (Object argument : arguments) ints &= argument instanceof Integer;
+            if (ints) {
+                long high = size > 0 ? (Integer) arguments.get(0) : 0;
+                long low = size > 1 ? (Integer) arguments.get(1) & 0xFFFFFFFFL : 0;
+                return (high << 32) | low;
+            }
+        }
+        List<Object> key = new ArrayList<>(size + 1);
+        key.add(size); // distingue das chaves long e entre aridades
+        for (Object argument : arguments) {
+            if (!isPrimitive(argument)) return null;
+            key.add(StringValue.flat(argument));
+        }
+        return key;
+    }
+
+    static boolean isPrimitive(Object value) {
+        return value == null || value instanceof Integer || value instanceof Double
+                || value instanceof Boolean || StringValue.isText(value);
+    }
+
+    Object get(Object key) {
+        Object value = entries.getOrDefault(key, AUSENTE);
+        if (value == AUSENTE) misses++;
+        else hits++;
+        return value;
+    }
+
+    void put(Object key, Object value) {
+        if (isPrimitive(value)) entries.put(key, StringValue.flat(value));
+    }
+
+    // Alguma função chamada pelo corpo mudou: os resultados guardados já não valem
+    void clear() {
+        entries.clear();
+    }
+
+    public String name() { return name; }
+    public long hits() { return hits; }
+    public long misses() { return misses; }
+    public int size() { return entries.size(); }
+}
@@ -0,0 +1,214 @@
+package Semantica;
+
+import Sintatica.Expr;
+import Sintatica.Stmt;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+// Análise de pureza de uma FUNCAO: o resultado depende só dos argumentos e a chamada não tem
+// efeitos visíveis fora dela, por isso pode ser memoizada (MemoTable).
+// Conservadora: qualquer coisa que não seja claramente local torna a função impura.
+//   - nada de ESCREVEAI nem LEIA, nem FUNCAO declarada dentro do corpo;
+//   - só lê e escreve parâmetros e variáveis declaradas no próprio corpo (ler uma global também
+//     conta: o valor dela pode mudar entre duas chamadas com os mesmos argumentos). Os escopos
+//     seguem os do Interpreter: um VAR dentro de um bloco deixa de valer quando o bloco acaba, e
+//     o mesmo nome volta a ser a global. Um VAR que só corre às vezes (ramo de SE sem chavetas,
+//     corpo de laço, CASO) vale só nesse ramo, e a variável do FAZAVOLTA (VAR x : ...) só no corpo;
+//   - só chama funções pelo nome (a própria ou outras); quais são elas só se sabe na execução,
+//     por isso a análise devolve esses nomes e o Interpreter confere, a cada chamada memoizada,
+//     que cada um ainda é a mesma função pura (LoxFunction.memoizable).
+// Vetores, mapas e registros criados dentro do corpo podem ser alterados: nenhum deles vem de fora,
+// porque só as chamadas com argumentos primitivos são memoizadas e nenhuma global é lida.
+final class Purity implements Expr.Visitor<Boolean>, Stmt.Visitor<Boolean> {
+
+    // Nomes declarados em cada escopo aberto (o do corpo, com os parâmetros, está no fundo)
+    private final Deque<Set<String>> scopes = new ArrayDeque<>();
+    private final Set<String> callees = new HashSet<>();
+
+    private Purity(Stmt.Function function) {
+        scopes.push(new HashSet<>());
+        function.parameters.forEach(parameter -> declare(parameter.lexeme));
+    }
+
+    // Nomes das funções que o corpo chama, ou null se a função não é pura
+    static Set<String> callees(Stmt.Function function) {
+        Purity purity = new Purity(function);
+        for (Stmt stmt : function.body()) {
+            if (!purity.stmt(stmt)) return null;
+        }
+        return purity.callees;
+    }
+
+    private boolean stmt(Stmt stmt) {
+        return stmt == null || stmt.accept(this);
+    }
+
+    private boolean expr(Expr expr) {
+        return expr == null || expr.accept(this);
+    }
+
+    private void declare(String name) {
+        scopes.peek().add(name);
+    }
+
+    private boolean isLocal(String name) {
+        for (Set<String> scope : scopes) {
+            if (scope.contains(name)) return true;
+        }
+        return false;
+    }
+
+    // Comando num escopo próprio: o que ele declara não vale depois dele
+    private boolean scoped(Stmt stmt) {
+        scopes.push(new HashSet<>());
+        try {
+            return stmt(stmt);
+        } finally {
+            scopes.pop();
+        }
+    }
+
+    // --- Comandos ---
+
+    @Override public Boolean visitPrintStmt(Stmt.Print stmt) { return false; }
+    @Override public Boolean visitInputStmt(Stmt.Input stmt) { return false; }
+    @Override public Boolean visitFunctionStmt(Stmt.Function stmt) { return false; }
+    @Override public Boolean visitBreakStmt(Stmt.Break stmt) { return true; }
+    @Override public Boolean visitRecordStmt(Stmt.Record stmt) { return true; }
+    @Override public Boolean visitReturnStmt(Stmt.Return stmt) { return expr(stmt.value); }
+    @Override public Boolean visitExpressionStmt(Stmt.Expression stmt) { return expr(stmt.expr); }
+
+    @Override
+    public Boolean visitVarStmt(Stmt.Var stmt) {
+        boolean pure = expr(stmt.initializer);
+        declare(stmt.name.lexeme);
+        return pure;
+    }
+
+    @Override
+    public Boolean visitIfStmt(Stmt.If stmt) {
+        return expr(stmt.condition) && scoped(stmt.thenBranch) && scoped(stmt.elseBranch);
+    }
+
+    @Override
+    public Boolean visitBlockStmt(Stmt.Block stmt) {
+        scopes.push(new HashSet<>());
+        try {
+            for (Stmt s : stmt.statements) {
+                if (!stmt(s)) return false;
+            }
+            return true;
+        } finally {
+            scopes.pop();
+        }
+    }
+
+    @Override
+    public Boolean visitWhileStmt(Stmt.While stmt) {
+        return expr(stmt.condition) && scoped(stmt.body);
+    }
+
+    @Override
+    public Boolean visitForStmt(Stmt.For stmt) {
+        // A variável da inicialização fica no escopo atual, como no Interpreter
+        return stmt(stmt.initializer) && expr(stmt.condition) && expr(stmt.increment) && scoped(stmt.body);
+    }
+
+    @Override
+    public Boolean visitForEachStmt(Stmt.ForEach stmt) {
+        if (!expr(stmt.iterable)) return false;
+        scopes.push(new HashSet<>());
+        try {
+            declare(stmt.name.lexeme);
+            return stmt(stmt.body);
+        } finally {
+            scopes.pop();
+        }
+    }
+
+    @Override
+    public Boolean visitSwitchStmt(Stmt.Switch stmt) {
+        if (!expr(stmt.expr)) return false;
+        if (stmt.cases != null) {
+            for (Stmt.Case cs : stmt.cases) {
+                if (!expr(cs.value) || !scoped(cs.stmt)) return false;
+            }
+        }
+        return stmt.defaultCase == null || scoped(stmt.defaultCase.stmt);
+    }
+
+    // --- Expressões ---
+
+    @Override public Boolean visitLiteralExpr(Expr.Literal expr) { return true; }
+    @Override public Boolean visitVariableExpr(Expr.Variable expr) { return isLocal(expr.name.lexeme); }
+    @Override public Boolean visitIncrementoExpr(Expr.Incremento expr) { return isLocal(expr.name.lexeme); }
+    @Override public Boolean visitDecrementoExpr(Expr.Decremento expr) { return isLocal(expr.name.lexeme); }
+    @Override public Boolean visitGroupingExpr(Expr.Grouping expr) { return expr(expr.expression); }
+    @Override public Boolean visitUnaryExpr(Expr.Unary expr) { return expr(expr.right); }
+    @Override public Boolean visitBinaryExpr(Expr.Binary expr) { return expr(expr.left) && expr(expr.right); }
+    @Override public Boolean visitIndexExpr(Expr.Index expr) { return expr(expr.object) && expr(expr.index); }
+    @Override public Boolean visitGetExpr(Expr.Get expr) { return expr(expr.object); }
+    @Override public Boolean visitRangeExpr(Expr.Range expr) { return expr(expr.start) && expr(expr.end); }
+
+    @Override
+    public Boolean visitAssignExpr(Expr.Assign expr) {
+        return isLocal(expr.name.lexeme) && expr(expr.value);
+    }
+
+    @Override
+    public Boolean visitIndexSetExpr(Expr.IndexSet expr) {
+        return expr(expr.object) && expr(expr.index) && expr(expr.value);
+    }
+
+    @Override
+    public Boolean visitSetExpr(Expr.Set expr) {
+        return expr(expr.object) && expr(expr.value);
+    }
+
+    @Override
+    public Boolean visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        for (Expr element : expr.elements) {
+            if (!expr(element)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean visitMapLiteralExpr(Expr.MapLiteral expr) {
+        for (int i = 0; i < expr.keys.size(); i++) {
+            if (!expr(expr.keys.get(i)) || !expr(expr.values.get(i))) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Boolean visitNewExpr(Expr.New expr) {
+        for (Expr argument : expr.arguments) {
+            if (!expr(argument)) return false;
+        }
+        return true;
+    }
+
+    // Método embutido sobre um valor local, ou chamada de uma função global pelo nome
+    @Override
+    public Boolean visitCallExpr(Expr.Call expr) {
+        boolean callee;
+        if (expr.callee instanceof Expr.Get) {
+            callee = expr(((Expr.Get) expr.callee).object);
+        } else if (expr.callee instanceof Expr.Variable) {
+            String name = ((Expr.Variable) expr.callee).name.lexeme;
+            callee = !isLocal(name);
+            if (callee) callees.add(name);
+        } else {
+            callee = false;
+        }
+        if (!callee) return false;
+        for (Expr argument : expr.arguments) {
+            if (!expr(argument)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package Semantica;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// intervalo(a, b): os inteiros de a até b - 1. Só guarda os dois limites; os elementos são
+// produzidos um a um por quem o percorre (FAZAVOLTA (VAR x : ...)), por isso percorrer um
+// intervalo de um bilhão de números usa a mesma memória que um de dez.
+public final class RangeValue implements Iterable<Object> {
+
+    private final int start;
+    private final int end;
+
+    public RangeValue(int start, int end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public int length() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0L, (long) end - start));
+    }
+
+    @Override
+    public Iterator<Object> iterator() {
+        return new Iterator<Object>() {
+            private int next = start;
+
+            @Override
+            public boolean hasNext() {
+                return next < end;
+            }
+
+            @Override
+            public Object next() {
+                if (next >= end) throw new NoSuchElementException();
+                return next++;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "intervalo(" + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,36 @@
+package Semantica;
+
+import Lexica.Token;
+import Sintatica.Stmt;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Tipo declarado com REGISTRO: o nome e a forma dos seus registros.
+// É também a constante do OP_NEW_RECORD.
+public final class RecordType {
+
+    public final String name;
+    public final Shape shape;
+
+    public RecordType(String name, List<String> fields) {
+        this.name = name;
+        this.shape = Shape.of(fields);
+    }
+
+    public static RecordType of(Stmt.Record declaration) {
+        List<String> fields = new ArrayList<>();
+        for (Token field : declaration.fields) fields.add(field.lexeme);
+        return new RecordType(declaration.name.lexeme, fields);
+    }
+
+    // Registro novo com os valores dos campos, na ordem da declaração
+    public RecordValue create(Object[] values) {
+        return new RecordValue(this, values);
+    }
+
+    @Override
+    public String toString() {
+        return name + shape;
+    }
+}
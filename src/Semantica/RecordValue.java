@@ -0,0 +1,48 @@
+package Semantica;
+
+import java.util.function.Function;
+
+// Registro da linguagem: Ponto(1, 2), p.x, p.x = 3.
+// Os valores ficam num array, na ordem dos campos da forma; ler um campo pelo nome passa
+// pela forma, e um FieldCache que já viu essa forma lê direto do slot. Igualdade por identidade.
+public final class RecordValue {
+
+    private final RecordType type;
+    private final Object[] values;
+
+    RecordValue(RecordType type, Object[] values) {
+        this.type = type;
+        this.values = values;
+    }
+
+    public RecordType type() {
+        return type;
+    }
+
+    public Shape shape() {
+        return type.shape;
+    }
+
+    public Object get(int slot) {
+        return values[slot];
+    }
+
+    public void set(int slot, Object value) {
+        values[slot] = value;
+    }
+
+    // Ponto(x: 1, y: 2), com cada valor escrito pelo stringify do motor que imprime
+    public String format(Function<Object, String> stringify) {
+        StringBuilder text = new StringBuilder(type.name).append('(');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) text.append(", ");
+            text.append(type.shape.field(i)).append(": ").append(stringify.apply(values[i]));
+        }
+        return text.append(')').toString();
+    }
+
+    @Override
+    public String toString() {
+        return format(String::valueOf);
+    }
+}
@@ -0,0 +1,47 @@
+package Semantica;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Forma (hidden class) de um registro: os nomes dos campos e o slot de cada um.
+// Há uma só forma para cada lista de campos, partilhada por todos os registros com esse
+// layout (mesmo de declarações diferentes), de modo que comparar formas é comparar referências.
+// É isso que os caches de campo (FieldCache) guardam: vista uma forma, o slot não muda mais.
+public final class Shape {
+
+    private static final Map<List<String>, Shape> FORMAS = new ConcurrentHashMap<>();
+
+    private final String[] fields;
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    private Shape(String[] fields) {
+        this.fields = fields;
+        for (int i = 0; i < fields.length; i++) slots.put(fields[i], i);
+    }
+
+    public static Shape of(List<String> fields) {
+        return FORMAS.computeIfAbsent(List.copyOf(fields), f -> new Shape(f.toArray(new String[0])));
+    }
+
+    public int size() {
+        return fields.length;
+    }
+
+    public String field(int slot) {
+        return fields[slot];
+    }
+
+    // Slot do campo, ou -1 se a forma não o tem
+    public int slot(String field) {
+        Integer slot = slots.get(field);
+        return slot != null ? slot : -1;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(fields);
+    }
+}
@@ -0,0 +1,109 @@
+package Semantica;
+
+// Texto que não é um String pronto: o resultado de concatenações com '+' ou um pedaço de outro
+// texto (t.parte, t.divide). Guarda onde estão os caracteres (um StringBuilder ou um String),
+// a posição do primeiro e quantos são; nada é copiado até o String ser preciso.
+//
+// Concatenação: em vez de copiar os dois lados a cada '+', concatenar à direita de um texto que
+// termina no fim do seu StringBuilder acrescenta no próprio buffer e devolve um valor novo com o
+// tamanho maior; o valor antigo continua válido, porque os seus caracteres não mudaram.
+// Assim 's = s + x' repetido é linear no total de caracteres. Quando o buffer já foi estendido
+// por outro valor, a concatenação copia para um buffer novo.
+//
+// Pedaços: partilham os caracteres do texto de onde vieram (os de um StringBuilder também,
+// porque um buffer só cresce no fim). Um pedaço pequeno mantém vivo o texto inteiro; troca-se
+// essa memória por não copiar em cada parte ou divide.
+//
+// O String só é montado (e guardado) quando o texto é impresso, comparado ou usado como chave.
+public final class StringValue implements CharSequence {
+
+    // Concatenações com menos caracteres do que isto (sem buffer para estender) ficam como String:
+    // não compensa criar um buffer para textos curtos que provavelmente não vão crescer
+    private static final int MINIMO = 64;
+
+    private final CharSequence source;
+    private final int offset;
+    private final int length;
+    private String flat;
+
+    private StringValue(CharSequence source, int offset, int length) {
+        this.source = source;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    // left + right, com left já convertido para texto (String ou StringValue)
+    public static CharSequence concat(CharSequence left, String right) {
+        if (left instanceof StringValue) {
+            StringValue text = (StringValue) left;
+            if (text.source instanceof StringBuilder) {
+                StringBuilder buffer = (StringBuilder) text.source;
+                if (text.offset + text.length == buffer.length()) {
+                    buffer.append(right);
+                    return new StringValue(buffer, text.offset, text.length + right.length());
+                }
+            }
+        }
+        int total = left.length() + right.length();
+        if (total < MINIMO) return left.toString().concat(right);
+        StringBuilder buffer = new StringBuilder(Math.max(MINIMO, total * 2));
+        buffer.append(left).append(right);
+        return new StringValue(buffer, 0, total);
+    }
+
+    // Os caracteres [start, end) de um texto, sem copiar
+    public static CharSequence slice(CharSequence text, int start, int end) {
+        if (start == 0 && end == text.length()) return text;
+        if (text instanceof StringValue) {
+            StringValue parent = (StringValue) text;
+            return new StringValue(parent.source, parent.offset + start, end - start);
+        }
+        return new StringValue(text, start, end - start);
+    }
+
+    // Posição da primeira ocorrência de 'target' a partir de 'from', ou -1
+    public static int indexOf(CharSequence text, String target, int from) {
+        if (text instanceof String) return ((String) text).indexOf(target, from);
+        int last = text.length() - target.length();
+        for (int i = Math.max(from, 0); i <= last; i++) {
+            int j = 0;
+            while (j < target.length() && text.charAt(i + j) == target.charAt(j)) j++;
+            if (j == target.length()) return i;
+        }
+        return -1;
+    }
+
+    // String ou StringValue
+    public static boolean isText(Object value) {
+        return value instanceof String || value instanceof StringValue;
+    }
+
+    // O String de um StringValue; qualquer outro valor fica como está.
+    // Usado antes de comparar ou de procurar o valor numa tabela de hash.
+    public static Object flat(Object value) {
+        return value instanceof StringValue ? value.toString() : value;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+        return source.charAt(offset + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) throw new IndexOutOfBoundsException(start);
+        return slice(this, start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) flat = source.subSequence(offset, offset + length).toString();
+        return flat;
+    }
+}
@@ -0,0 +1,111 @@
+package Semantica;
+
+import Lexica.TokenType;
+import Sintatica.Expr;
+import Sintatica.Stmt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Tabela de despacho de um ESCOLHEAI cujos CASO são todos constantes.
+// Inteiros próximos uns dos outros ficam num array indexado pelo próprio valor; os demais
+// (inteiros espalhados, textos, quebrados, booleanos, NULO) num HashMap. As duas formas
+// devolvem, em O(1), o índice do primeiro CASO igual ao valor (mesmo critério de isEqual).
+// Usada pelo Interpreter e, como constante do OP_SWITCH, pelas VMs.
+public final class SwitchTable {
+
+    // Valor devolvido por constante() quando o CASO não é um literal
+    public static final Object NAO_CONSTANTE = new Object();
+
+    private final List<Object> keys;
+
+    // Forma densa: dense[valor - min] = índice do caso + 1 (0 = sem caso)
+    private final int[] dense;
+    private final int min;
+
+    // Forma espalhada
+    private final Map<Object, Integer> hash;
+
+    public SwitchTable(List<Object> keys) {
+        this.keys = Collections.unmodifiableList(new ArrayList<>(keys));
+
+        boolean allIntegers = !keys.isEmpty();
+        int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+        for (Object key : keys) {
+            if (!(key instanceof Integer)) {
+                allIntegers = false;
+                break;
+            }
+            lo = Math.min(lo, (Integer) key);
+            hi = Math.max(hi, (Integer) key);
+        }
+        // Densa quando pelo menos metade das posições do intervalo tem um caso
+        long range = (long) hi - lo + 1;
+        if (allIntegers && range <= 2L * keys.size() + 2) {
+            this.min = lo;
+            this.dense = new int[(int) range];
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                dense[(Integer) keys.get(i) - lo] = i + 1; // de trás para a frente: o primeiro ganha
+            }
+            this.hash = null;
+        } else {
+            this.min = 0;
+            this.dense = null;
+            this.hash = new HashMap<>();
+            for (int i = 0; i < keys.size(); i++) {
+                hash.putIfAbsent(keys.get(i), i);
+            }
+        }
+    }
+
+    // Tabela para o ESCOLHEAI, ou null se algum CASO não for constante
+    public static SwitchTable of(Stmt.Switch stmt) {
+        List<Object> keys = new ArrayList<>();
+        if (stmt.cases != null) {
+            for (Stmt.Case cs : stmt.cases) {
+                Object value = constante(cs.value);
+                if (value == NAO_CONSTANTE) return null;
+                keys.add(value);
+            }
+        }
+        return new SwitchTable(keys);
+    }
+
+    // Valor de um CASO conhecido em tempo de compilação: literal, entre parênteses ou com '-'
+    public static Object constante(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value;
+        if (expr instanceof Expr.Grouping) return constante(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary && ((Expr.Unary) expr).operator.type == TokenType.MINUS) {
+            Object value = constante(((Expr.Unary) expr).right);
+            if (value instanceof Integer) return -(Integer) value;
+            if (value instanceof Double) return -(Double) value;
+        }
+        return NAO_CONSTANTE;
+    }
+
+    // Índice do caso igual ao valor, ou -1 (PADRAO)
+    public int lookup(Object value) {
+        if (dense != null) {
+            if (!(value instanceof Integer)) return -1;
+            long slot = (long) (Integer) value - min;
+            return slot >= 0 && slot < dense.length ? dense[(int) slot] - 1 : -1;
+        }
+        Integer index = hash.get(StringValue.flat(value));
+        return index != null ? index : -1;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public List<Object> keys() {
+        return keys;
+    }
+
+    public boolean isDense() {
+        return dense != null;
+    }
+}
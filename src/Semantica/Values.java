@@ -0,0 +1,158 @@
+package Semantica;
+
+import Lexica.TokenType;
+
+// Semântica dos valores da linguagem (aritmética, concatenação, comparação, verdade e impressão).
+// É a mesma para o Interpreter e para os motores de bytecode (ByteCode.ValueOps delega aqui):
+// no modo misto um comando dá o mesmo resultado seja qual for o motor que o executa.
+public final class Values {
+
+    // Leitor único do console: o Interpreter, as VMs e o código compilado leem todos do mesmo
+    // buffer de System.in (um Scanner por motor levaria a entrada toda para o primeiro a ler)
+    private static java.util.Scanner consoleInput;
+
+    // Erros de execução reportados até agora (a memoização não guarda o resultado de uma
+    // chamada que reportou algum: o 'nulo' do erro não é o valor da função)
+    private static long reportedErrors;
+
+    private Values() {}
+
+    // Erro de operando: quem o apanha imprime a mensagem com a linha e continua com 'nulo'.
+    public static final class ErroOperando extends RuntimeException {
+        public ErroOperando(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    // Operadores aritméticos (+, -, *, /, %) e de ordem (>, <)
+    public static Object binary(TokenType op, Object a, Object b) {
+        // Com um texto, '+' concatena: acrescenta ao buffer do texto da esquerda (StringValue)
+        if (op == TokenType.PLUS) {
+            if (StringValue.isText(a) || StringValue.isText(b)) {
+                return StringValue.concat(a instanceof StringValue ? (StringValue) a : stringify(a), stringify(b));
+            }
+        }
+
+        if (!(a instanceof Number) || !(b instanceof Number)) {
+            throw new ErroOperando("Operandos devem ser números para a operação '" + symbol(op) + "'.");
+        }
+
+        // Com um double, a operação é em double
+        if (a instanceof Double || b instanceof Double) {
+            double valA = (a instanceof Integer) ? ((Integer) a).doubleValue() : (Double) a;
+            double valB = (b instanceof Integer) ? ((Integer) b).doubleValue() : (Double) b;
+            switch (op) {
+                case PLUS:    return valA + valB;
+                case MINUS:   return valA - valB;
+                case STAR:    return valA * valB;
+                case SLASH:   return valA / valB;
+                case PERCENT: return valA % valB;
+                case GREATER: return valA > valB;
+                case LESS:    return valA < valB;
+                default: return null;
+            }
+        }
+
+        // Ambos são inteiros: a divisão é inteira
+        int valA = (Integer) a;
+        int valB = (Integer) b;
+        switch (op) {
+            case PLUS:    return valA + valB;
+            case MINUS:   return valA - valB;
+            case STAR:    return valA * valB;
+            case SLASH:
+                if (valB == 0) throw new ErroOperando("Divisão por zero.");
+                return valA / valB;
+            case PERCENT:
+                if (valB == 0) throw new ErroOperando("Divisão por zero.");
+                return valA % valB;
+            case GREATER: return valA > valB;
+            case LESS:    return valA < valB;
+            default: return null;
+        }
+    }
+
+    // Resultado de um operador binário (exceto && e ||). As formas negadas seguem a sequência
+    // da VM (op + OP_NOT) e um erro de operando é reportado na linha dada e vale 'nulo'.
+    public static Object compute(TokenType op, Object a, Object b, int line) {
+        switch (op) {
+            case EQUALEQUAL:   return isEqual(a, b);
+            case BANGEQUAL:    return !isEqual(a, b);
+            case LESSEQUAL:    return !isTruthy(compute(TokenType.GREATER, a, b, line));
+            case GREATEREQUAL: return !isTruthy(compute(TokenType.LESS, a, b, line));
+            default:
+                try {
+                    return binary(op, a, b);
+                } catch (ErroOperando e) {
+                    runtimeError(e.getMessage(), line);
+                    return null; // Evita falha
+                }
+        }
+    }
+
+    public static void runtimeError(String message, int line) {
+        reportedErrors++;
+        System.err.println(message + " [linha " + line + "]");
+    }
+
+    public static long reportedErrors() {
+        return reportedErrors;
+    }
+
+    public static Object negate(Object value) {
+        if (value instanceof Double) return -(Double) value;
+        if (value instanceof Integer) return -(Integer) value;
+        throw new ErroOperando("Operando deve ser um número.");
+    }
+
+    // Converte valor para texto: 'nulo', 'verdadeiro'/'falso' e doubles inteiros sem o ".0"
+    public static String stringify(Object object) {
+        if (object == null) return "nulo";
+        if (object instanceof Boolean) return (Boolean) object ? "verdadeiro" : "falso";
+        if (object instanceof ArrayValue) return ((ArrayValue) object).format(Values::stringify);
+        if (object instanceof MapValue) return ((MapValue) object).format(Values::stringify);
+        if (object instanceof RecordValue) return ((RecordValue) object).format(Values::stringify);
+        if (object instanceof Double) {
+            String text = object.toString();
+            if (text.endsWith(".0")) {
+                return text.substring(0, text.length() - 2);
+            }
+        }
+        return object.toString();
+    }
+
+    // Próxima linha da entrada padrão (LEIA)
+    public static String readLine() {
+        if (consoleInput == null) {
+            consoleInput = new java.util.Scanner(System.in);
+        }
+        return consoleInput.nextLine();
+    }
+
+    public static boolean isTruthy(Object object) {
+        if (object == null) return false;
+        if (object instanceof Boolean) return (boolean) object;
+        return true;
+    }
+
+    public static boolean isEqual(Object a, Object b) {
+        a = StringValue.flat(a);
+        b = StringValue.flat(b);
+        if (a == null && b == null) return true;
+        if (a == null) return false;
+        return a.equals(b);
+    }
+
+    private static String symbol(TokenType op) {
+        switch (op) {
+            case PLUS:    return "+";
+            case MINUS:   return "-";
+            case STAR:    return "*";
+            case SLASH:   return "/";
+            case PERCENT: return "%";
+            case GREATER: return ">";
+            case LESS:    return "<";
+            default: return op.name();
+        }
+    }
+}
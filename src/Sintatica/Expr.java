@@ -18,6 +18,14 @@ public abstract class Expr {
         R visitVariableExpr(Variable expr);
         R visitIncrementoExpr(Incremento expr);
         R visitDecrementoExpr(Decremento expr);
+        R visitArrayLiteralExpr(ArrayLiteral expr);
+        R visitIndexExpr(Index expr);
+        R visitIndexSetExpr(IndexSet expr);
+        R visitGetExpr(Get expr);
+        R visitMapLiteralExpr(MapLiteral expr);
+        R visitNewExpr(New expr);
+        R visitSetExpr(Set expr);
+        R visitRangeExpr(Range expr);
     }
 
     public abstract <R> R accept(Visitor<R> visitor);
@@ -140,4 +148,130 @@ public abstract class Expr {
             return visitor.visitDecrementoExpr(this);
         }
     }
+
+    // Vetor literal: [1, 2, 3]
+    public static class ArrayLiteral extends Expr {
+        public final Token bracket;
+        public final List<Expr> elements;
+        public ArrayLiteral(Token bracket, List<Expr> elements) {
+            this.bracket = bracket;
+            this.elements = elements;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitArrayLiteralExpr(this);
+        }
+    }
+
+    // Leitura de elemento: v[i]
+    public static class Index extends Expr {
+        public final Expr object;
+        public final Token bracket;
+        public final Expr index;
+        public Index(Expr object, Token bracket, Expr index) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitIndexExpr(this);
+        }
+    }
+
+    // Escrita de elemento: v[i] = x
+    public static class IndexSet extends Expr {
+        public final Expr object;
+        public final Token bracket;
+        public final Expr index;
+        public final Expr value;
+        public IndexSet(Expr object, Token bracket, Expr index, Expr value) {
+            this.object = object;
+            this.bracket = bracket;
+            this.index = index;
+            this.value = value;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitIndexSetExpr(this);
+        }
+    }
+
+    // Acesso a propriedade: v.tamanho, p.x
+    public static class Get extends Expr {
+        public final Expr object;
+        public final Token name;
+        public Get(Expr object, Token name) {
+            this.object = object;
+            this.name = name;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitGetExpr(this);
+        }
+    }
+
+    // Mapa literal: {"a": 1, 2: "b"}
+    public static class MapLiteral extends Expr {
+        public final Token brace;
+        public final List<Expr> keys;
+        public final List<Expr> values;
+        public MapLiteral(Token brace, List<Expr> keys, List<Expr> values) {
+            this.brace = brace;
+            this.keys = keys;
+            this.values = values;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitMapLiteralExpr(this);
+        }
+    }
+
+    // Criação de registro: Ponto(1, 2), com um argumento por campo, na ordem da declaração
+    public static class New extends Expr {
+        public final Stmt.Record record;
+        public final Token paren;
+        public final List<Expr> arguments;
+        public New(Stmt.Record record, Token paren, List<Expr> arguments) {
+            this.record = record;
+            this.paren = paren;
+            this.arguments = arguments;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitNewExpr(this);
+        }
+    }
+
+    // Intervalo preguiçoso: intervalo(0, 10) são os inteiros de 0 a 9, produzidos só quando percorridos
+    public static class Range extends Expr {
+        public final Token paren;
+        public final Expr start;
+        public final Expr end;
+        public Range(Token paren, Expr start, Expr end) {
+            this.paren = paren;
+            this.start = start;
+            this.end = end;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitRangeExpr(this);
+        }
+    }
+
+    // Escrita de campo: p.x = 3
+    public static class Set extends Expr {
+        public final Expr object;
+        public final Token name;
+        public final Expr value;
+        public Set(Expr object, Token name, Expr value) {
+            this.object = object;
+            this.name = name;
+            this.value = value;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitSetExpr(this);
+        }
+    }
 }
@@ -5,11 +5,23 @@ import Lexica.TokenType;
 
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 // Sintatica.Parser que transforma tokens em comandos e expressões (AST).
 public class Parser {
     private final List<Token> tokens;  // Lista de tokens de entrada
     private int current = 0;           // Posição do parser nos tokens
+    // Registros já declarados: 'Nome(...)' cria um registro em vez de chamar uma função
+    private final Map<String, Stmt.Record> records;
+    // Pré-análise: o corpo de cada FUNCAO só tem as chavetas casadas e é analisado na primeira chamada
+    private final boolean preParse;
+
+    // Função embutida: 'intervalo(a, b)' é sempre um Expr.Range, nunca uma chamada
+    private static final String INTERVALO = "intervalo";
+
+    // Profundidade de FUNCAO em análise: só um RETORNA dentro de uma função pode ser chamada de cauda
+    private int functionDepth = 0;
 
     private interface ParseFnPrefix { Expr parse(Parser parser); }
     private interface ParseFnInfix { Expr parse(Parser parser, Expr left); }
@@ -29,10 +41,12 @@ public class Parser {
     static {
         rules[TokenType.LEFTPAREN.ordinal()]    = new ParseRule(Parser::grouping, Parser::call, Precedence.CALL);
         rules[TokenType.RIGHTPAREN.ordinal()]   = new ParseRule(null, null, Precedence.NONE);
-        rules[TokenType.LEFTBRACE.ordinal()]    = new ParseRule(null, null, Precedence.NONE);
+        rules[TokenType.LEFTBRACE.ordinal()]    = new ParseRule(Parser::mapLiteral, null, Precedence.NONE);
         rules[TokenType.RIGHTBRACE.ordinal()]   = new ParseRule(null, null, Precedence.NONE);
         rules[TokenType.COMMA.ordinal()]        = new ParseRule(null, null, Precedence.NONE);
-        rules[TokenType.DOT.ordinal()]          = new ParseRule(null, null, Precedence.NONE);
+        rules[TokenType.DOT.ordinal()]          = new ParseRule(null, Parser::dot, Precedence.CALL);
+        rules[TokenType.LEFT_BRACKET.ordinal()] = new ParseRule(Parser::arrayLiteral, Parser::index, Precedence.CALL);
+        rules[TokenType.RIGHT_BRACKET.ordinal()] = new ParseRule(null, null, Precedence.NONE);
         rules[TokenType.MINUS.ordinal()]        = new ParseRule(Parser::unary, Parser::binary, Precedence.TERM);
         rules[TokenType.PLUS.ordinal()]         = new ParseRule(null, Parser::binary, Precedence.TERM);
         rules[TokenType.SEMICOLON.ordinal()]    = new ParseRule(null, null, Precedence.NONE);
@@ -75,7 +89,17 @@ public class Parser {
 
     }
 
-    public Parser(List<Token> tokens) { this.tokens = tokens; }
+    public Parser(List<Token> tokens) { this(tokens, false); }
+
+    public Parser(List<Token> tokens, boolean preParse) {
+        this(tokens, new HashMap<>(), preParse);
+    }
+
+    private Parser(List<Token> tokens, Map<String, Stmt.Record> records, boolean preParse) {
+        this.tokens = tokens;
+        this.records = records;
+        this.preParse = preParse;
+    }
 
     public List<Stmt> parse() {
         List<Stmt> statements = new ArrayList<>();
@@ -95,7 +119,7 @@ public class Parser {
         while (!isAtEnd()) {
             if (previous().type == TokenType.SEMICOLON) return;
             switch (peek().type) {
-                case VAR: case FUN: case FOR: case IF: case WHILE:
+                case VAR: case FUN: case FOR: case IF: case WHILE: case RECORD:
                 case PRINT: case RETURN: case ELSE:
                     return;
             }
@@ -106,6 +130,7 @@ public class Parser {
     private Stmt declaration() {
         if (match(TokenType.VAR))    return varDeclaration();
         if (match(TokenType.WHILE))  return whileStatement();
+        if (match(TokenType.FOR))    return forStatement();
         if (match(TokenType.PRINT))  return printStatement();
         if (match(TokenType.IF))     return ifStatement();
         if (match(TokenType.INPUT))  return inputStatement();
@@ -113,11 +138,13 @@ public class Parser {
         if (match(TokenType.BREAK))  return breakStatement();
         if (match(TokenType.FUN))    return functionDeclaration("Função");
         if (match(TokenType.RETURN)) return returnStatement();
+        if (match(TokenType.RECORD)) return recordDeclaration();
         return expressionStatement();
     }
 
     private Stmt.Function functionDeclaration(String kind) {
         Token name = consume(TokenType.IDENTIFIER, "Esperava nome da " + kind + ".");
+        if (name.lexeme.equals(INTERVALO)) error(name, "'" + INTERVALO + "' é uma função embutida.");
         consume(TokenType.LEFTPAREN, "Esperava '(' após nome da " + kind + ".");
         List<Token> parameters = new ArrayList<>();
         if (!check(TokenType.RIGHTPAREN)) {
@@ -130,10 +157,74 @@ public class Parser {
         }
         consume(TokenType.RIGHTPAREN, "Esperava ')' após parâmetros.");
         consume(TokenType.LEFTBRACE, "Esperava '{' antes do corpo da " + kind + ".");
-        List<Stmt> body = ((Stmt.Block) block()).statements;
+        int start = current;
+        if (preParse && skipBody()) {
+            // Os registros declarados até aqui: são eles que decidem se 'Nome(...)' cria um registro
+            Map<String, Stmt.Record> visible = new HashMap<>(records);
+            return new Stmt.Function(name, parameters, () -> new Parser(tokens, visible, true).functionBody(start, name));
+        }
+        functionDepth++;
+        List<Stmt> body;
+        try {
+            body = ((Stmt.Block) block()).statements;
+        } finally {
+            functionDepth--;
+        }
         return new Stmt.Function(name, parameters, body);
     }
 
+    // Pré-análise: salta o corpo casando as chavetas, sem construir a árvore.
+    // Um corpo com REGISTRO é analisado já, porque o registro vale para o resto do programa.
+    private boolean skipBody() {
+        int depth = 1;
+        int index = current;
+        while (tokens.get(index).type != TokenType.EOF) {
+            TokenType type = tokens.get(index).type;
+            if (type == TokenType.RECORD) return false;
+            if (type == TokenType.LEFTBRACE) depth++;
+            if (type == TokenType.RIGHTBRACE && --depth == 0) {
+                current = index + 1;
+                return true;
+            }
+            index++;
+        }
+        return false; // sem '}': a análise completa dá o erro
+    }
+
+    // Análise completa de um corpo saltado pela pré-análise ('start' é o token depois de '{')
+    private List<Stmt> functionBody(int start, Token name) {
+        current = start;
+        functionDepth = 1;
+        try {
+            return ((Stmt.Block) block()).statements;
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Erro sintático na função '" + name.lexeme + "': " + e.getMessage());
+        }
+    }
+
+    // REGISTRO Ponto { x, y }
+    private Stmt recordDeclaration() {
+        Token name = consume(TokenType.IDENTIFIER, "Esperava nome do registro.");
+        if (records.containsKey(name.lexeme)) error(name, "Registro '" + name.lexeme + "' já foi declarado.");
+        consume(TokenType.LEFTBRACE, "Esperava '{' após nome do registro.");
+        List<Token> fields = new ArrayList<>();
+        if (!check(TokenType.RIGHTBRACE)) {
+            do {
+                Token field = consume(TokenType.IDENTIFIER, "Esperava nome do campo.");
+                // '.tamanho' é do vetor, mapa ou texto; um campo com esse nome nunca seria lido
+                if (field.lexeme.equals("tamanho")) error(field, "'tamanho' não pode ser nome de campo.");
+                for (Token other : fields) {
+                    if (other.lexeme.equals(field.lexeme)) error(field, "Campo '" + field.lexeme + "' repetido.");
+                }
+                fields.add(field);
+            } while (match(TokenType.COMMA));
+        }
+        consume(TokenType.RIGHTBRACE, "Esperava '}' após os campos do registro.");
+        Stmt.Record record = new Stmt.Record(name, fields);
+        records.put(name.lexeme, record);
+        return record;
+    }
+
     private Stmt returnStatement() {
         Token keyword = previous();
         Expr value = null;
@@ -141,7 +232,10 @@ public class Parser {
             value = expression();
         }
         consume(TokenType.SEMICOLON, "Esperava ';' após valor de retorno.");
-        return new Stmt.Return(keyword, value);
+        // RETORNA f(x): nada resta a fazer depois da chamada (métodos embutidos, 'v.pega(k)', não contam)
+        boolean tailCall = functionDepth > 0 && value instanceof Expr.Call
+                && !(((Expr.Call) value).callee instanceof Expr.Get);
+        return new Stmt.Return(keyword, value, tailCall);
     }
 
     private Stmt ifStatement() {
@@ -183,6 +277,40 @@ public class Parser {
         return new Stmt.While(condition, body);
     }
 
+    // FAZAVOLTA (VAR i = 0; i < 10; i++) { ... } ou FAZAVOLTA (VAR x : sequencia) { ... }
+    private Stmt forStatement() {
+        consume(TokenType.LEFTPAREN, "Esperava '(' após FAZAVOLTA.");
+        if (check(TokenType.VAR) && peekAt(1).type == TokenType.IDENTIFIER && peekAt(2).type == TokenType.COLON) {
+            return forEachStatement();
+        }
+        Stmt initializer;
+        if (match(TokenType.SEMICOLON)) initializer = null;
+        else if (match(TokenType.VAR)) initializer = varDeclaration();
+        else initializer = expressionStatement();
+
+        Expr condition = null;
+        if (!check(TokenType.SEMICOLON)) condition = expression();
+        consume(TokenType.SEMICOLON, "Esperava ';' após condição do FAZAVOLTA.");
+
+        Expr increment = null;
+        if (!check(TokenType.RIGHTPAREN)) increment = expression();
+        consume(TokenType.RIGHTPAREN, "Esperava ')' após o passo do FAZAVOLTA.");
+        consume(TokenType.LEFTBRACE, "Esperava '{' após FAZAVOLTA.");
+        Stmt body = block();
+        return new Stmt.For(initializer, condition, increment, body);
+    }
+
+    private Stmt forEachStatement() {
+        advance(); // VAR
+        Token name = advance();
+        advance(); // ':'
+        Expr iterable = expression();
+        consume(TokenType.RIGHTPAREN, "Esperava ')' após a sequência do FAZAVOLTA.");
+        consume(TokenType.LEFTBRACE, "Esperava '{' após FAZAVOLTA.");
+        Stmt body = block();
+        return new Stmt.ForEach(name, iterable, body);
+    }
+
     private Stmt switchStatement() {
         Expr expr = expression();
         consume(TokenType.LEFTBRACE, "Esperava '{' após expressão do ESCOLHEAI.");
@@ -268,6 +396,16 @@ public class Parser {
     }
 
     private static Expr assign(Parser parser, Expr left) {
+        if (left instanceof Expr.Index) {
+            Expr.Index target = (Expr.Index) left;
+            Expr value = parser.parsePrecedence(Precedence.ASSIGNMENT);
+            return new Expr.IndexSet(target.object, target.bracket, target.index, value);
+        }
+        if (left instanceof Expr.Get) {
+            Expr.Get target = (Expr.Get) left;
+            Expr value = parser.parsePrecedence(Precedence.ASSIGNMENT);
+            return new Expr.Set(target.object, target.name, value);
+        }
         if (!(left instanceof Expr.Variable))
             throw new RuntimeException("Alvo de atribuição inválido!");
         Token name = ((Expr.Variable) left).name;
@@ -310,9 +448,68 @@ public class Parser {
             } while (parser.match(TokenType.COMMA));
         }
         Token paren = parser.consume(TokenType.RIGHTPAREN, "Esperava ')' após os argumentos da chamada.");
+        if (callee instanceof Expr.Variable && ((Expr.Variable) callee).name.lexeme.equals(INTERVALO)) {
+            if (arguments.size() != 2) parser.error(paren, "'" + INTERVALO + "' recebe 2 argumentos (início e fim).");
+            return new Expr.Range(paren, arguments.get(0), arguments.get(1));
+        }
+        if (callee instanceof Expr.Variable) {
+            Stmt.Record record = parser.records.get(((Expr.Variable) callee).name.lexeme);
+            if (record != null) {
+                if (arguments.size() != record.fields.size()) {
+                    parser.error(paren, "Registro '" + record.name.lexeme + "' tem " + record.fields.size()
+                            + " campos, recebidos " + arguments.size() + ".");
+                }
+                return new Expr.New(record, paren, arguments);
+            }
+        }
         return new Expr.Call(callee, paren, arguments);
     }
 
+    // -------- VETORES E MAPAS ---------
+
+    // [a, b, c]
+    private static Expr arrayLiteral(Parser parser) {
+        Token bracket = parser.previous();
+        List<Expr> elements = new ArrayList<>();
+        if (!parser.check(TokenType.RIGHT_BRACKET)) {
+            do {
+                elements.add(parser.expression());
+            } while (parser.match(TokenType.COMMA));
+        }
+        parser.consume(TokenType.RIGHT_BRACKET, "Esperava ']' após os elementos do vetor.");
+        return new Expr.ArrayLiteral(bracket, elements);
+    }
+
+    // {k: v, ...}
+    private static Expr mapLiteral(Parser parser) {
+        Token brace = parser.previous();
+        List<Expr> keys = new ArrayList<>();
+        List<Expr> values = new ArrayList<>();
+        if (!parser.check(TokenType.RIGHTBRACE)) {
+            do {
+                keys.add(parser.expression());
+                parser.consume(TokenType.COLON, "Esperava ':' após a chave do mapa.");
+                values.add(parser.expression());
+            } while (parser.match(TokenType.COMMA));
+        }
+        parser.consume(TokenType.RIGHTBRACE, "Esperava '}' após os elementos do mapa.");
+        return new Expr.MapLiteral(brace, keys, values);
+    }
+
+    // v[i]
+    private static Expr index(Parser parser, Expr object) {
+        Token bracket = parser.previous();
+        Expr index = parser.expression();
+        parser.consume(TokenType.RIGHT_BRACKET, "Esperava ']' após o índice.");
+        return new Expr.Index(object, bracket, index);
+    }
+
+    // v.tamanho, p.x; seguido de '(' vira chamada de método: m.tem(k); seguido de '=', escrita: p.x = 1
+    private static Expr dot(Parser parser, Expr object) {
+        Token name = parser.consume(TokenType.IDENTIFIER, "Esperava nome da propriedade após '.'.");
+        return new Expr.Get(object, name);
+    }
+
     // -------- INCREMENTO/DECREMENTO ---------
 
     // Parse prefixo: ++i ou --i
@@ -346,6 +543,7 @@ public class Parser {
     // ****** Utilitários para navegação de tokens ******
     private Token previous() { return tokens.get(current - 1); }
     private Token peek()     { return tokens.get(current); }
+    private Token peekAt(int ahead) { return tokens.get(Math.min(current + ahead, tokens.size() - 1)); }
     private Token advance()  { if (!isAtEnd()) current++; return previous(); }
     private Token consume(TokenType type, String message) {
         if (check(type)) return advance();
@@ -3,9 +3,9 @@ package Sintatica;
 // Enum que define os níveis de precedência dos operadores
 public enum Precedence {
     NONE,         // Nenhuma precedência (usado para tokens que não participam de expressões)
-    AND,          //
-    OR,
     ASSIGNMENT,   // Atribuição (ex: =)
+    OR,           // Ou lógico (||)
+    AND,          // E lógico (&&)
     EQUALITY,     // Igualdade e diferença (ex: ==, !=)
     COMPARISON,   // Comparação (ex: <, >, <=, >=)
     TERM,         // Soma e subtração (ex: +, -)
@@ -3,6 +3,7 @@ package Sintatica;
 import Lexica.Token;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 // Classe abstrata para todos os tipos de comandos (statements) da linguagem
 public abstract class Stmt {
@@ -17,9 +18,12 @@ public abstract class Stmt {
         R visitBlockStmt(Block stmt);
         R visitExpressionStmt(Expression stmt);
         R visitWhileStmt(While stmt);
+        R visitForStmt(For stmt);
         R visitBreakStmt(Break stmt);
         R visitSwitchStmt(Switch stmt);
         R visitInputStmt(Input stmt);
+        R visitRecordStmt(Record stmt);
+        R visitForEachStmt(ForEach stmt);
     }
 
     public abstract <R> R accept(Visitor<R> visitor);
@@ -55,29 +59,51 @@ public abstract class Stmt {
         }
     }
 
-    // Definição de função
+    // Definição de função. Com a pré-análise do Parser, o corpo chega só como um intervalo de
+    // tokens ('pending') e é analisado na primeira vez que alguém o pede (body()), em regra a
+    // primeira chamada; funções que nunca são chamadas nunca passam pelo Parser completo.
     public static class Function extends Stmt {
         public final Token name;
         public final List<Token> parameters;
-        public final List<Stmt> body;
+        private List<Stmt> body;
+        private Supplier<List<Stmt>> pending;
         Function(Token name, List<Token> parameters, List<Stmt> body) {
             this.name = name;
             this.parameters = parameters;
             this.body = body;
         }
+        Function(Token name, List<Token> parameters, Supplier<List<Stmt>> pending) {
+            this.name = name;
+            this.parameters = parameters;
+            this.pending = pending;
+        }
+        public List<Stmt> body() {
+            if (body == null) {
+                body = pending.get();
+                pending = null;
+            }
+            return body;
+        }
+        // O corpo já foi analisado (sem forçar a análise)
+        public boolean isParsed() {
+            return body != null;
+        }
         @Override
         public <R> R accept(Visitor<R> visitor) {
             return visitor.visitFunctionStmt(this);
         }
     }
 
-    // Comando return
+    // Comando return. 'tailCall': o valor é uma chamada de FUNCAO cujo resultado é devolvido
+    // tal como vem (marcado pelo Parser), e a chamada pode reaproveitar o frame de quem retorna
     public static class Return extends Stmt {
         public final Token keyword;
         public final Expr value;
-        Return(Token keyword, Expr value) {
+        public final boolean tailCall;
+        Return(Token keyword, Expr value, boolean tailCall) {
             this.keyword = keyword;
             this.value = value;
+            this.tailCall = tailCall;
         }
         @Override
         public <R> R accept(Visitor<R> visitor) {
@@ -135,6 +161,42 @@ public abstract class Stmt {
         }
     }
 
+    // Laço FAZAVOLTA (inicialização; condição; passo): cada parte pode faltar.
+    // A inicialização corre uma vez, no escopo onde o laço está; o passo, no fim de cada volta.
+    public static class For extends Stmt {
+        public final Stmt initializer;
+        public final Expr condition;
+        public final Expr increment;
+        public final Stmt body;
+        For(Stmt initializer, Expr condition, Expr increment, Stmt body) {
+            this.initializer = initializer;
+            this.condition = condition;
+            this.increment = increment;
+            this.body = body;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitForStmt(this);
+        }
+    }
+
+    // Laço FAZAVOLTA (VAR x : sequencia): x recebe cada elemento, pedido um de cada vez.
+    // Como no FAZAVOLTA contado, x fica no escopo onde o laço está.
+    public static class ForEach extends Stmt {
+        public final Token name;
+        public final Expr iterable;
+        public final Stmt body;
+        ForEach(Token name, Expr iterable, Stmt body) {
+            this.name = name;
+            this.iterable = iterable;
+            this.body = body;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitForEachStmt(this);
+        }
+    }
+
     // Estrutura switch-case completa
     public static class Switch extends Stmt {
         public final Expr expr;
@@ -168,6 +230,18 @@ public abstract class Stmt {
         public <R> R accept(Visitor<R> visitor) { return visitor.visitInputStmt(this); }
     }
 
+    // Declaração de registro: REGISTRO Ponto { x, y }
+    public static class Record extends Stmt {
+        public final Token name;
+        public final List<Token> fields;
+        Record(Token name, List<Token> fields) {
+            this.name = name;
+            this.fields = fields;
+        }
+        @Override
+        public <R> R accept(Visitor<R> visitor) { return visitor.visitRecordStmt(this); }
+    }
+
     // Comando break para laço ou switch
     public static class Break extends Stmt {
         public Break() {}
@@ -1,5 +1,6 @@
 package Utils;
 
+import Lexica.Token;
 import Sintatica.Expr;
 import Sintatica.Stmt;
 import java.io.FileWriter;
@@ -60,6 +61,56 @@ public class AstHtml implements Expr.Visitor<String>, Stmt.Visitor<String> {
         return tag(tipo + ": " + expr.name.lexeme, "");
     }
 
+    // Vetores e mapas
+    @Override
+    public String visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        StringBuilder elements = new StringBuilder();
+        for (Expr e : expr.elements) elements.append(e.accept(this));
+        return tag("Vetor (" + expr.elements.size() + ")", elements.toString());
+    }
+
+    @Override
+    public String visitIndexExpr(Expr.Index expr) {
+        return tag("Índice", expr.object.accept(this) + expr.index.accept(this));
+    }
+
+    @Override
+    public String visitIndexSetExpr(Expr.IndexSet expr) {
+        return tag("Atribuição a índice",
+                expr.object.accept(this) + expr.index.accept(this) + expr.value.accept(this));
+    }
+
+    @Override
+    public String visitMapLiteralExpr(Expr.MapLiteral expr) {
+        StringBuilder pairs = new StringBuilder();
+        for (int i = 0; i < expr.keys.size(); i++) {
+            pairs.append(tag("Par", expr.keys.get(i).accept(this) + expr.values.get(i).accept(this)));
+        }
+        return tag("Mapa (" + expr.keys.size() + ")", pairs.toString());
+    }
+
+    @Override
+    public String visitGetExpr(Expr.Get expr) {
+        return tag("Propriedade: " + expr.name.lexeme, expr.object.accept(this));
+    }
+
+    @Override
+    public String visitSetExpr(Expr.Set expr) {
+        return tag("Atribuição a campo: " + expr.name.lexeme, expr.object.accept(this) + expr.value.accept(this));
+    }
+
+    @Override
+    public String visitRangeExpr(Expr.Range expr) {
+        return tag("Intervalo", expr.start.accept(this) + expr.end.accept(this));
+    }
+
+    @Override
+    public String visitNewExpr(Expr.New expr) {
+        StringBuilder args = new StringBuilder();
+        for (Expr argument : expr.arguments) args.append(argument.accept(this));
+        return tag("Novo registro: " + expr.record.name.lexeme, args.toString());
+    }
+
     // COMANDOS
     @Override
     public String visitPrintStmt(Stmt.Print stmt) {
@@ -74,8 +125,10 @@ public class AstHtml implements Expr.Visitor<String>, Stmt.Visitor<String> {
 
     @Override
     public String visitFunctionStmt(Stmt.Function stmt) {
+        // Corpo ainda não analisado (pré-análise): mostrá-lo obrigaria a analisá-lo agora
+        if (!stmt.isParsed()) return tag("Função: " + stmt.name.lexeme + " (corpo por analisar)", "");
         StringBuilder body = new StringBuilder();
-        for (Stmt s : stmt.body) body.append(s.accept(this));
+        for (Stmt s : stmt.body()) body.append(s.accept(this));
         return tag("Função: " + stmt.name.lexeme, body.toString());
     }
 
@@ -109,11 +162,34 @@ public class AstHtml implements Expr.Visitor<String>, Stmt.Visitor<String> {
         return tag("While", stmt.condition.accept(this) + stmt.body.accept(this));
     }
 
+    @Override
+    public String visitForStmt(Stmt.For stmt) {
+        String init = stmt.initializer != null ? stmt.initializer.accept(this) : "";
+        String condition = stmt.condition != null ? stmt.condition.accept(this) : "";
+        String increment = stmt.increment != null ? stmt.increment.accept(this) : "";
+        return tag("For", init + condition + increment + stmt.body.accept(this));
+    }
+
     @Override
     public String visitBreakStmt(Stmt.Break stmt) {
         return tag("Break", "");
     }
 
+    @Override
+    public String visitForEachStmt(Stmt.ForEach stmt) {
+        return tag("ForEach: " + stmt.name.lexeme, stmt.iterable.accept(this) + stmt.body.accept(this));
+    }
+
+    @Override
+    public String visitRecordStmt(Stmt.Record stmt) {
+        StringBuilder fields = new StringBuilder();
+        for (Token field : stmt.fields) {
+            if (fields.length() > 0) fields.append(", ");
+            fields.append(field.lexeme);
+        }
+        return tag("Registro " + stmt.name.lexeme + " { " + fields + " }", "");
+    }
+
     @Override
     public String visitSwitchStmt(Stmt.Switch stmt) {
         StringBuilder sb = new StringBuilder();